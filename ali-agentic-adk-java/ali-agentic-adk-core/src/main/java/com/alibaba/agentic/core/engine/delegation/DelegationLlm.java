@@ -17,15 +17,13 @@ package com.alibaba.agentic.core.engine.delegation;
 
 import com.alibaba.agentic.core.engine.delegation.domain.LlmRequest;
 import com.alibaba.agentic.core.engine.delegation.domain.LlmResponse;
+import com.alibaba.agentic.core.engine.utils.PropertyMapper;
 import com.alibaba.agentic.core.exceptions.BaseException;
 import com.alibaba.agentic.core.exceptions.ErrorEnum;
 import com.alibaba.agentic.core.executor.Request;
 import com.alibaba.agentic.core.executor.Result;
 import com.alibaba.agentic.core.executor.SystemContext;
 import com.alibaba.agentic.core.models.BasicLlm;
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
 import com.alibaba.smart.framework.engine.context.ExecutionContext;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -35,8 +33,6 @@ import org.apache.commons.collections.MapUtils;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.concurrent.ConcurrentHashMap;
@@ -56,6 +52,8 @@ public class DelegationLlm extends FrameworkDelegationBase {
 
     private static final ObjectMapper mapper = new ObjectMapper();
 
+    private static final PropertyMapper<LlmRequest> REQUEST_MAPPER = PropertyMapper.of(LlmRequest.class);
+
     /**
      * llm注册
      *
@@ -98,7 +96,7 @@ public class DelegationLlm extends FrameworkDelegationBase {
     @Override
     public Flowable<Result> invoke(SystemContext systemContext, Request request) throws Throwable {
         try {
-            LlmRequest llmRequest = new JSONObject(request.getParam()).toJavaObject(LlmRequest.class);
+            LlmRequest llmRequest = REQUEST_MAPPER.toBean(request.getParam());
             BasicLlm basicLlm = getModel(llmRequest.getModel());
             return basicLlm.invoke(llmRequest, systemContext)
                     .map(llmResponse -> {
@@ -115,54 +113,19 @@ public class DelegationLlm extends FrameworkDelegationBase {
 
     }
 
+    /**
+     * 节点属性转换为LlmRequest参数. 属性里已经是Message对象的messages不会被深拷贝:
+     * 列表按写时复制交出, 增删互不影响, 但Message实例与节点属性共享, 不要原地修改
+     */
     @Override
     public Map<String, Object> generateRequest(ExecutionContext executionContext, String activityId) {
         Map<String, Object> properties = super.generateRequest(executionContext, activityId);
         if (MapUtils.isEmpty(properties)) {
             return Map.of();
         }
-        LlmRequest request = new LlmRequest();
-        request.setModelName((String) properties.get("modelName"));
-        request.setModel((String) properties.get("model"));
-        if (properties.containsKey("maxTokens")) {
-            request.setMaxTokens(Integer.valueOf(properties.get("maxTokens").toString()));
-        }
-        if (properties.containsKey("temperature")) {
-            request.setTemperature(Double.valueOf(properties.get("temperature").toString()));
-        }
-        if (properties.containsKey("topP")) {
-            request.setTopP(Double.valueOf(properties.get("topP").toString()));
-        }
-        if (properties.containsKey("stop")) {
-            // 假设 stop 是 List<String>，要保证类型转换正确
-            Object stopValue = properties.get("stop");
-            if (stopValue instanceof List) {
-                request.setStop((List<String>) stopValue);
-            } else if (stopValue instanceof String) {
-                // 可能是 ["a","b"] 这种字符串，需要解析
-                request.setStop(JSONArray.parseArray((String) stopValue, String.class));
-            }
-        }
-        if (properties.containsKey("stream")) {
-            request.setStream(Boolean.valueOf(properties.get("stream").toString()));
-        }
-        if (properties.containsKey("user")) {
-            request.setUser((String) properties.get("user"));
-        }
-        if (properties.containsKey("messages")) {
-            // messages 可能是 JSON 字符串或 List
-            Object messagesObj = properties.get("messages");
-            if (messagesObj instanceof List) {
-                request.setMessages((List<LlmRequest.Message>) messagesObj);
-            } else if (messagesObj instanceof String) {
-                request.setMessages(JSONArray.parseArray((String) messagesObj, LlmRequest.Message.class));
-            }
-        }
-        if (properties.containsKey("extraParams")) {
-            request.setExtraParams(properties.get("extraParams"));
-        }
-        // 关键：**封装成对象再序列化！**
-        return JSONObject.parseObject(JSONObject.toJSONString(request));
+        // 节点属性里的数值、stop、messages 等可能是字符串形式，由映射器按字段类型转换
+        LlmRequest request = REQUEST_MAPPER.toBean(properties);
+        return REQUEST_MAPPER.toMap(request);
     }
 
 }
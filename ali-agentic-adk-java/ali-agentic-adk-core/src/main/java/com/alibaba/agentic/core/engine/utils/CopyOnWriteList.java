@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.agentic.core.engine.utils;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 结构上写时复制的列表。
+ * <p>
+ * 通过 {@link #share(List)} 得到的列表与来源共用同一份底层数组，任何一方第一次增删改元素时才复制出自己的数组，
+ * 用于在请求之间传递消息历史而不整体克隆。元素本身不复制。
+ * </p>
+ *
+ * @author baliang.smy
+ * @date 2026/10/19 14:20
+ */
+public class CopyOnWriteList<E> extends AbstractList<E> implements RandomAccess {
+
+    private List<E> elements;
+
+    private boolean shared;
+
+    private CopyOnWriteList(List<E> elements, boolean shared) {
+        this.elements = elements;
+        this.shared = shared;
+    }
+
+    /**
+     * 返回一个内容与 source 相同的列表。source 是本类实例时共享底层数组，否则复制一次元素引用。
+     */
+    public static <E> List<E> share(List<E> source) {
+        if (source instanceof CopyOnWriteList) {
+            CopyOnWriteList<E> origin = (CopyOnWriteList<E>) source;
+            synchronized (origin) {
+                origin.shared = true;
+                return new CopyOnWriteList<>(origin.elements, true);
+            }
+        }
+        return new CopyOnWriteList<>(new ArrayList<>(source), false);
+    }
+
+    @Override
+    public E get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public synchronized E set(int index, E element) {
+        return own().set(index, element);
+    }
+
+    @Override
+    public synchronized void add(int index, E element) {
+        own().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public synchronized E remove(int index) {
+        E removed = own().remove(index);
+        modCount++;
+        return removed;
+    }
+
+    private List<E> own() {
+        if (shared) {
+            elements = new ArrayList<>(elements);
+            shared = false;
+        }
+        return elements;
+    }
+}
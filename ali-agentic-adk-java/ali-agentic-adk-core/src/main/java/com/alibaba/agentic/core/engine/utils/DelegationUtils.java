@@ -15,13 +15,14 @@
  */
 package com.alibaba.agentic.core.engine.utils;
 
+import com.alibaba.agentic.core.executor.NodeOutputStore;
 import com.alibaba.agentic.core.executor.Result;
 import com.alibaba.agentic.core.executor.SystemContext;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.TypeReference;
 import org.apache.commons.collections.MapUtils;
 
-import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -36,27 +37,37 @@ public class DelegationUtils {
 
     public static void saveInterOutput(String activityId, SystemContext systemContext, Result result) {
         if (systemContext.getInterOutput() == null) {
-            systemContext.setInterOutput(new HashMap<>());
+            systemContext.setInterOutput(new NodeOutputStore());
         }
         if (MapUtils.isEmpty(result.getData())) {
             return;
         }
+        // NodeOutputStore 在 put 时生成快照
         systemContext.getInterOutput().put(getInterOutputKey(activityId), result.getData());
     }
 
     public static <T> T getResultOfNode(SystemContext systemContext, String activityId, Class<T> clazz) {
-        if (systemContext.getInterOutput() == null) {
+        Map<String, Map<String, Object>> interOutput = systemContext.getInterOutput();
+        if (interOutput == null) {
             return null;
         }
-        return Optional.ofNullable(systemContext.getInterOutput().get(getInterOutputKey(activityId)))
+        if (interOutput instanceof NodeOutputStore) {
+            return ((NodeOutputStore) interOutput).get(getInterOutputKey(activityId), clazz);
+        }
+        // 调用方自行设置的普通 Map，保持原来的 JSON 往返拷贝
+        return Optional.ofNullable(interOutput.get(getInterOutputKey(activityId)))
                 .map(map -> JSON.parseObject(JSON.toJSONString(map), clazz)).orElse(null);
     }
 
     public static <T> T getResultOfNode(SystemContext systemContext, String activityId, TypeReference<T> typeReference) {
-        if (systemContext.getInterOutput() == null) {
+        Map<String, Map<String, Object>> interOutput = systemContext.getInterOutput();
+        if (interOutput == null) {
             return null;
         }
-        return Optional.ofNullable(systemContext.getInterOutput().get(getInterOutputKey(activityId)))
+        if (interOutput instanceof NodeOutputStore) {
+            return ((NodeOutputStore) interOutput).get(getInterOutputKey(activityId), typeReference.getType());
+        }
+        return Optional.ofNullable(interOutput.get(getInterOutputKey(activityId)))
                 .map(map -> JSON.parseObject(JSON.toJSONString(map), typeReference)).orElse(null);
     }
 
@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.agentic.core.engine.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.util.TypeUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 属性 Map 与 Java Bean 之间的字段映射器，每个类只在第一次使用时解析一次字段并生成各字段的类型转换函数。
+ * <p>
+ * 取代 {@code new JSONObject(map).toJavaObject(clazz)} 与 JSON 序列化往返：数值、布尔按 fastjson 的规则转换，
+ * 字符串形式的 JSON 数组按元素类型解析，元素类型已匹配的列表以 {@link CopyOnWriteList} 共享，不再逐个复制。
+ * 属性名先精确匹配，再忽略大小写与下划线匹配，与 fastjson 的智能匹配一致。
+ * </p>
+ *
+ * @author baliang.smy
+ * @date 2026/10/19 14:20
+ */
+public final class PropertyMapper<T> {
+
+    private static final ClassValue<PropertyMapper<?>> MAPPERS = new ClassValue<PropertyMapper<?>>() {
+        @Override
+        protected PropertyMapper<?> computeValue(Class<?> type) {
+            return new PropertyMapper<>(type);
+        }
+    };
+
+    private final Constructor<T> constructor;
+
+    private final List<Property> properties = new ArrayList<>();
+
+    private final Map<String, Property> byName = new HashMap<>();
+
+    private final Map<String, Property> byNormalizedName = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public static <T> PropertyMapper<T> of(Class<T> type) {
+        return (PropertyMapper<T>) MAPPERS.get(type);
+    }
+
+    private PropertyMapper(Class<T> type) {
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " has no default constructor", e);
+        }
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()
+                        || byName.containsKey(field.getName())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                Property property = new Property(field, converterFor(field.getType(), field.getGenericType()));
+                properties.add(property);
+                byName.put(field.getName(), property);
+                byNormalizedName.putIfAbsent(normalize(field.getName()), property);
+            }
+        }
+    }
+
+    /**
+     * 由属性 Map 构造 Bean，值为 null 或没有对应字段的属性被忽略。
+     */
+    public T toBean(Map<String, ?> source) {
+        T bean;
+        try {
+            bean = constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot instantiate " + constructor.getDeclaringClass().getName(), e);
+        }
+        if (source == null) {
+            return bean;
+        }
+        for (Map.Entry<String, ?> entry : source.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                continue;
+            }
+            Property property = byName.get(entry.getKey());
+            if (property == null) {
+                property = byNormalizedName.get(normalize(entry.getKey()));
+            }
+            if (property != null) {
+                property.set(bean, property.converter.apply(entry.getValue()));
+            }
+        }
+        return bean;
+    }
+
+    /**
+     * 将 Bean 的非空字段导出为属性 Map，列表字段以 {@link CopyOnWriteList} 共享。
+     */
+    public Map<String, Object> toMap(T bean) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Property property : properties) {
+            Object value = property.get(bean);
+            if (value instanceof List) {
+                value = CopyOnWriteList.share((List<?>) value);
+            }
+            if (value != null) {
+                result.put(property.field.getName(), value);
+            }
+        }
+        return result;
+    }
+
+    private static Function<Object, Object> converterFor(Class<?> rawType, Type genericType) {
+        if (rawType == Object.class) {
+            return value -> value;
+        }
+        if (rawType == String.class) {
+            return value -> value instanceof String ? value : TypeUtils.castToString(value);
+        }
+        if (rawType == Integer.class || rawType == int.class) {
+            return TypeUtils::castToInt;
+        }
+        if (rawType == Long.class || rawType == long.class) {
+            return TypeUtils::castToLong;
+        }
+        if (rawType == Double.class || rawType == double.class) {
+            return TypeUtils::castToDouble;
+        }
+        if (rawType == Boolean.class || rawType == boolean.class) {
+            return TypeUtils::castToBoolean;
+        }
+        if ((rawType == List.class || rawType == Collection.class) && genericType instanceof ParameterizedType) {
+            Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (elementType instanceof Class) {
+                return listConverter((Class<?>) elementType, genericType);
+            }
+        }
+        return value -> TypeUtils.cast(value, genericType, ParserConfig.getGlobalInstance());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> listConverter(Class<?> elementType, Type listType) {
+        Function<Object, Object> elementConverter = isBean(elementType)
+                ? element -> element instanceof Map ? of(elementType).toBean((Map<String, ?>) element)
+                        : TypeUtils.cast(element, elementType, ParserConfig.getGlobalInstance())
+                : element -> TypeUtils.cast(element, elementType, ParserConfig.getGlobalInstance());
+        return value -> {
+            if (value instanceof String) {
+                return JSON.parseArray((String) value, elementType);
+            }
+            if (!(value instanceof List)) {
+                return TypeUtils.cast(value, listType, ParserConfig.getGlobalInstance());
+            }
+            List<Object> list = (List<Object>) value;
+            boolean matches = true;
+            for (Object element : list) {
+                if (element != null && !elementType.isInstance(element)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                return CopyOnWriteList.share(list);
+            }
+            List<Object> converted = new ArrayList<>(list.size());
+            for (Object element : list) {
+                converted.add(element == null || elementType.isInstance(element) ? element : elementConverter.apply(element));
+            }
+            return converted;
+        };
+    }
+
+    private static boolean isBean(Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || type.isEnum() || type.isInterface()
+                || Modifier.isAbstract(type.getModifiers()) || type.getName().startsWith("java.")) {
+            return false;
+        }
+        try {
+            type.getDeclaredConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").replace("-", "").toLowerCase();
+    }
+
+    private static final class Property {
+
+        private final Field field;
+
+        private final Function<Object, Object> converter;
+
+        private Property(Field field, Function<Object, Object> converter) {
+            this.field = field;
+            this.converter = converter;
+        }
+
+        private Object get(Object bean) {
+            try {
+                return field.get(bean);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void set(Object bean, Object value) {
+            try {
+                field.set(bean, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.agentic.core.executor;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.util.TypeUtils;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 节点输出的深拷贝策略。
+ * <p>
+ * {@link NodeOutputStore} 在发布时用它拷贝无法冻结的可变对象（普通 Java Bean、数组），
+ * 在按类型读取时用它把快照转换为目标类型。
+ * </p>
+ *
+ * @author baliang.smy
+ * @date 2026/10/19 10:30
+ */
+public interface DeepCopyStrategy {
+
+    /**
+     * 默认策略：Map、集合先逐层复制为可变的 JSONObject、JSONArray，再按字段映射为目标类型，不经过 JSON 字符串，
+     * 转换结果中的 List、Map 字段都是新建的可变容器，不会拿到快照里的只读容器；其余对象走一次 JSON 序列化往返。
+     */
+    DeepCopyStrategy FASTJSON = new DeepCopyStrategy() {
+        @Override
+        public <T> T copy(Object source, Type targetType) {
+            if (source instanceof Map || source instanceof Collection) {
+                return TypeUtils.cast(thaw(source), targetType, ParserConfig.getGlobalInstance());
+            }
+            return JSON.parseObject(JSON.toJSONString(source), targetType);
+        }
+
+        private Object thaw(Object value) {
+            if (value instanceof Map) {
+                Map<String, Object> copy = new LinkedHashMap<>();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    copy.put(entry.getKey() == null ? null : entry.getKey().toString(), thaw(entry.getValue()));
+                }
+                return new JSONObject(copy);
+            }
+            if (value instanceof Collection) {
+                JSONArray copy = new JSONArray(((Collection<?>) value).size());
+                for (Object element : (Collection<?>) value) {
+                    copy.add(thaw(element));
+                }
+                return copy;
+            }
+            // 快照中的 Java Bean、数组转为 JSONObject、JSONArray，映射时生成新对象而不是共享快照持有的实例
+            return JSON.toJSON(value);
+        }
+    };
+
+    /**
+     * 生成 source 的一份独立副本，类型为 targetType。
+     *
+     * @param source     源对象，非空
+     * @param targetType 目标类型
+     * @return 与 source 不共享可变状态的对象
+     */
+    <T> T copy(Object source, Type targetType);
+}
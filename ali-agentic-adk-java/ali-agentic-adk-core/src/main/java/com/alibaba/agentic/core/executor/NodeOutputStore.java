@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.agentic.core.executor;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 节点间中间结果存储，并发安全。
+ * <p>
+ * 节点输出在发布时生成不可变快照：Map、List、Set 逐层复制为只读容器，字符串、数字、枚举等不可变值直接共享，
+ * 其他可变对象（Java Bean、数组）交给 {@link DeepCopyStrategy} 拷贝一次。之后的读取不再拷贝，
+ * 并行分支拿到的是同一份快照，任何修改都会抛出 {@link UnsupportedOperationException}，
+ * 不会影响其他分支。快照中的 Java Bean 与数组由存储持有，读取方应只读使用，需要修改时请按类型读取一份副本。
+ * </p>
+ * <p>
+ * 存储本身是一个 {@code Map<String, Map<String, Object>>}，{@link #put} 等同于 {@link #publish}，
+ * {@link #get(Object)} 返回只读快照，原先把中间结果当作普通 Map 读写的代码无需修改。
+ * </p>
+ *
+ * @author baliang.smy
+ * @date 2026/10/19 10:30
+ */
+@Slf4j
+public class NodeOutputStore extends AbstractMap<String, Map<String, Object>> {
+
+    private final Map<String, Map<String, Object>> outputs = new ConcurrentHashMap<>();
+
+    private volatile DeepCopyStrategy copyStrategy = DeepCopyStrategy.FASTJSON;
+
+    public NodeOutputStore() {
+    }
+
+    public NodeOutputStore(DeepCopyStrategy copyStrategy) {
+        this.copyStrategy = copyStrategy;
+    }
+
+    /**
+     * 发布节点输出，覆盖同一键之前的快照。
+     *
+     * @param key  节点键
+     * @param data 节点输出，发布后生产方继续修改也不会影响快照
+     */
+    public void publish(String key, Map<String, Object> data) {
+        put(key, data);
+    }
+
+    /**
+     * 与 {@link #publish} 相同；data 为 null 时移除该键。
+     *
+     * @return 该键之前的快照
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> put(String key, Map<String, Object> data) {
+        if (data == null) {
+            return outputs.remove(key);
+        }
+        return outputs.put(key, (Map<String, Object>) freezeMap(data));
+    }
+
+    /**
+     * @return 节点输出的只读快照，不存在时返回 null
+     */
+    @Override
+    public Map<String, Object> get(Object key) {
+        return outputs.get(key);
+    }
+
+    /**
+     * 读取节点输出中的单个值，不拷贝。
+     */
+    public Object get(String key, String field) {
+        Map<String, Object> snapshot = outputs.get(key);
+        return snapshot == null ? null : snapshot.get(field);
+    }
+
+    /**
+     * 将节点输出读取为指定类型。快照本身是该类型（如 Map）时直接返回快照，否则按拷贝策略转换出一份新对象。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Class<T> type) {
+        Map<String, Object> snapshot = outputs.get(key);
+        if (snapshot == null) {
+            return null;
+        }
+        if (type.isInstance(snapshot)) {
+            return (T) snapshot;
+        }
+        return copyStrategy.copy(snapshot, type);
+    }
+
+    /**
+     * 将节点输出读取为指定的泛型类型，总是按拷贝策略转换。
+     */
+    public <T> T get(String key, Type type) {
+        Map<String, Object> snapshot = outputs.get(key);
+        return snapshot == null ? null : copyStrategy.copy(snapshot, type);
+    }
+
+    /**
+     * 读取节点输出中的单个值并转换为指定类型；值本身是该类型时直接返回，不拷贝。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, String field, Class<T> type) {
+        Object value = get(key, field);
+        if (value == null || type.isInstance(value)) {
+            return (T) value;
+        }
+        return copyStrategy.copy(value, type);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return outputs.containsKey(key);
+    }
+
+    @Override
+    public Map<String, Object> remove(Object key) {
+        return outputs.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        outputs.clear();
+    }
+
+    @Override
+    public int size() {
+        return outputs.size();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(outputs.keySet());
+    }
+
+    @Override
+    public Set<Entry<String, Map<String, Object>>> entrySet() {
+        return Collections.unmodifiableMap(outputs).entrySet();
+    }
+
+    public DeepCopyStrategy getCopyStrategy() {
+        return copyStrategy;
+    }
+
+    public void setCopyStrategy(DeepCopyStrategy copyStrategy) {
+        this.copyStrategy = copyStrategy;
+    }
+
+    private Map<?, ?> freezeMap(Map<?, ?> map) {
+        Map<Object, Object> copy = new LinkedHashMap<>(Math.max(16, (int) (map.size() / 0.75f) + 1));
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            copy.put(entry.getKey(), freeze(entry.getValue()));
+        }
+        if (map instanceof JSONObject) {
+            Map<String, Object> frozen = new LinkedHashMap<>();
+            copy.forEach((k, v) -> frozen.put(k == null ? null : k.toString(), v));
+            return new JSONObject(Collections.unmodifiableMap(frozen));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private Object freeze(Object value) {
+        if (value == null || isImmutable(value)) {
+            return value;
+        }
+        if (value instanceof Map) {
+            return freezeMap((Map<?, ?>) value);
+        }
+        if (value instanceof Set) {
+            Set<Object> copy = new LinkedHashSet<>();
+            for (Object element : (Set<?>) value) {
+                copy.add(freeze(element));
+            }
+            return Collections.unmodifiableSet(copy);
+        }
+        if (value instanceof Collection) {
+            List<Object> copy = new ArrayList<>(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value) {
+                copy.add(freeze(element));
+            }
+            List<Object> frozen = Collections.unmodifiableList(copy);
+            return value instanceof JSONArray ? new JSONArray(frozen) : frozen;
+        }
+        try {
+            return copyStrategy.copy(value, value.getClass());
+        } catch (RuntimeException e) {
+            // 无法拷贝的对象保留原引用，与之前直接存放结果的行为一致
+            log.warn("copy node output value of {} failed, keep the reference", value.getClass().getName(), e);
+            return value;
+        }
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof String
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof Integer
+                || value instanceof Long
+                || value instanceof Double
+                || value instanceof Float
+                || value instanceof Short
+                || value instanceof Byte
+                || value instanceof BigDecimal
+                || value instanceof BigInteger
+                || value instanceof Enum
+                || value instanceof UUID
+                || value instanceof Class
+                || value.getClass().getName().startsWith("java.time.");
+    }
+}
@@ -19,7 +19,6 @@ import io.reactivex.rxjava3.processors.FlowableProcessor;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -56,8 +55,9 @@ public class SystemContext {
     private Map<String, Object> requestParameter;
 
     /**
-     * 节点间中间结果存储，键为节点ID，值为该节点的输出结果。
+     * 节点间中间结果，键为节点ID，值为该节点的输出结果。默认是 {@link NodeOutputStore}，
+     * 值为不可变快照，可被并行分支并发读写。
      */
-    private Map<String, Map<String, Object>> interOutput = new HashMap<>();
+    private Map<String, Map<String, Object>> interOutput = new NodeOutputStore();
 
 }
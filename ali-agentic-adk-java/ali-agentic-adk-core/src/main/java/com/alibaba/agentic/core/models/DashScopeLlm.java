@@ -28,9 +28,11 @@ import com.alibaba.dashscope.common.Role;
 import com.alibaba.dashscope.exception.ApiException;
 import com.alibaba.dashscope.exception.InputRequiredException;
 import com.alibaba.dashscope.exception.NoApiKeyException;
-import io.reactivex.rxjava3.core.BackpressureStrategy;
+import io.reactivex.rxjava3.core.BackpressureOverflowStrategy;
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.functions.Function;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -49,6 +51,31 @@ public class DashScopeLlm implements BasicLlm {
 
     private String apiKey;
 
+    /**
+     * SDK 客户端不持有请求状态，所有调用共用一个。
+     */
+    private final Generation generation;
+
+    /**
+     * 流式调用时在下游来不及消费的情况下最多缓存的增量结果数，小于等于 0 表示不限制。
+     * 默认不限制：增量输出丢任何一段都会得到残缺的回答，而单次回答的分段数本身受最大输出 token 数约束。
+     */
+    private int streamBufferSize = 0;
+
+    /**
+     * 设置了 streamBufferSize 时缓存满的处理策略：ERROR 结束整个流并取消上游，
+     * DROP_OLDEST/DROP_LATEST 丢弃增量结果，拼接出的回答会缺少内容。
+     */
+    private BackpressureOverflowStrategy streamOverflowStrategy = BackpressureOverflowStrategy.ERROR;
+
+    public DashScopeLlm() {
+        this(new Generation());
+    }
+
+    protected DashScopeLlm(Generation generation) {
+        this.generation = generation;
+    }
+
     @Override
     public String model() {
         return "dashscope";
@@ -138,8 +165,7 @@ public class DashScopeLlm implements BasicLlm {
 
         return Flowable.fromCallable(() -> {
             try {
-                Generation gen = new Generation();
-                GenerationResult result = gen.call(param);
+                GenerationResult result = generation.call(param);
                 return toLlmResponse(result);
             } catch (ApiException | NoApiKeyException | InputRequiredException e) {
                 throw new RuntimeException("Qwen 调用失败: " + e.getMessage(), e);
@@ -157,24 +183,39 @@ public class DashScopeLlm implements BasicLlm {
                 .apiKey(getApiKey())
                 .messages(messages)
                 .resultFormat(GenerationParam.ResultFormat.MESSAGE)
-                .parameters((Map<? extends String, ?>) llmRequest.getExtraParams())
                 .incrementalOutput(true)
                 .build();
 
-        return Flowable.create(emitter -> {
-            try {
-                Generation gen = new Generation();
-                io.reactivex.Flowable<GenerationResult> stream = gen.streamCall(param);
-                stream.blockingForEach(r -> emitter.onNext(toLlmResponse(r)));
-                emitter.onComplete();
-            } catch (ApiException | NoApiKeyException | InputRequiredException e) {
-                log.error("Qwen 流式调用失败: {}", e.getMessage(), e);
-                emitter.onError(new RuntimeException("Qwen 流式调用失败: " + e.getMessage(), e));
-            } catch (Exception e) {
-                log.error("Qwen 流式调用失败", e);
-                emitter.onError(new RuntimeException("Qwen 流式调用失败", e));
-            }
-        }, BackpressureStrategy.BUFFER);
+        if (llmRequest.getExtraParams() != null) {
+            param.setParameters((Map<String, Object>) llmRequest.getExtraParams());
+        }
+
+        // 直接订阅 SDK 的流：不占用线程等待，下游取消会一路取消到 SDK 的 HTTP 读取
+        return bridge(Flowable.defer(() -> Flowable.fromPublisher(streamCall(param))),
+                this::toLlmResponse, streamBufferSize, streamOverflowStrategy)
+                .onErrorResumeNext(e -> {
+                    log.error("Qwen 流式调用失败: {}", e.getMessage(), e);
+                    return Flowable.error(new RuntimeException("Qwen 流式调用失败: " + e.getMessage(), e));
+                });
+    }
+
+    protected Publisher<GenerationResult> streamCall(GenerationParam param)
+            throws NoApiKeyException, InputRequiredException {
+        return generation.streamCall(param);
+    }
+
+    /**
+     * 把上游流接到缓存上，bufferSize 大于 0 时缓存满按 overflowStrategy 处理，结束或取消时释放上游。
+     */
+    static <T, R> Flowable<R> bridge(Flowable<T> upstream, Function<T, R> mapper, int bufferSize,
+                                     BackpressureOverflowStrategy overflowStrategy) {
+        if (bufferSize <= 0) {
+            return upstream.map(mapper).onBackpressureBuffer();
+        }
+        return upstream.map(mapper)
+                .onBackpressureBuffer(bufferSize,
+                        () -> log.warn("Qwen 流式结果积压超过 {} 条，策略 {}", bufferSize, overflowStrategy),
+                        overflowStrategy);
     }
 
     @Value("${ali.agentic.adk.flownode.dashscope.apiKey:**}")
@@ -182,6 +223,16 @@ public class DashScopeLlm implements BasicLlm {
         this.apiKey = apiKey;
     }
     
+    @Value("${ali.agentic.adk.flownode.dashscope.stream.bufferSize:0}")
+    public void setStreamBufferSize(int streamBufferSize) {
+        this.streamBufferSize = streamBufferSize;
+    }
+
+    @Value("${ali.agentic.adk.flownode.dashscope.stream.overflowStrategy:ERROR}")
+    public void setStreamOverflowStrategy(BackpressureOverflowStrategy streamOverflowStrategy) {
+        this.streamOverflowStrategy = streamOverflowStrategy;
+    }
+
     private String getApiKey() {
         if (apiKey == null || apiKey.isEmpty()) {
             return PropertyConstant.dashscopeApiKey;
@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.agentic.core.engine.utils;
+
+import com.alibaba.agentic.core.engine.delegation.domain.LlmRequest;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DESCRIPTION
+ *
+ * @author baliang.smy
+ * @date 2026/10/19 14:20
+ */
+public class PropertyMapperTest {
+
+    private static final PropertyMapper<LlmRequest> MAPPER = PropertyMapper.of(LlmRequest.class);
+
+    @Test
+    public void testNodePropertiesMatchJsonMapping() {
+        for (Map<String, Object> properties : representativeProperties()) {
+            LlmRequest expected = legacyGenerateAndParse(properties);
+            LlmRequest actual = MAPPER.toBean(MAPPER.toMap(MAPPER.toBean(properties)));
+            Assert.assertEquals(JSON.toJSONString(properties), expected, actual);
+        }
+    }
+
+    @Test
+    public void testParamMapsMatchToJavaObject() {
+        List<Map<String, Object>> params = new ArrayList<>();
+        for (Map<String, Object> properties : representativeProperties()) {
+            params.add(JSONObject.parseObject(JSONObject.toJSONString(legacyGenerateAndParse(properties))));
+        }
+        Map<String, Object> withBeans = new HashMap<>();
+        withBeans.put("model", "dashscope");
+        withBeans.put("maxTokens", 512L);
+        withBeans.put("temperature", 1);
+        withBeans.put("messages", Arrays.asList(new LlmRequest.Message("user", "hi")));
+        withBeans.put("extraParams", Map.of("enable_thinking", false));
+        withBeans.put("currentActivityId", "llmNode");
+        params.add(withBeans);
+
+        for (Map<String, Object> param : params) {
+            LlmRequest expected = new JSONObject(param).toJavaObject(LlmRequest.class);
+            Assert.assertEquals(JSON.toJSONString(param), expected, MAPPER.toBean(param));
+        }
+    }
+
+    @Test
+    public void testMessageListsAreCopiedOnWrite() {
+        List<LlmRequest.Message> messages = new ArrayList<>();
+        messages.add(new LlmRequest.Message("system", "you are helpful"));
+        messages.add(new LlmRequest.Message("user", "hi"));
+        LlmRequest request = new LlmRequest().setModel("dashscope").setMessages(messages);
+
+        Map<String, Object> param = MAPPER.toMap(request);
+        LlmRequest first = MAPPER.toBean(param);
+        LlmRequest second = MAPPER.toBean(param);
+        Assert.assertSame(messages.get(1), second.getMessages().get(1));
+
+        first.getMessages().add(new LlmRequest.Message("assistant", "hello"));
+        messages.remove(0);
+        Assert.assertEquals(3, first.getMessages().size());
+        Assert.assertEquals(2, second.getMessages().size());
+        Assert.assertEquals(2, ((List<?>) param.get("messages")).size());
+        Assert.assertEquals("system", second.getMessages().get(0).getRole());
+    }
+
+    @Test
+    public void testTwoHundredMessageHistory() {
+        List<LlmRequest.Message> history = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            history.add(new LlmRequest.Message(i % 2 == 0 ? "user" : "assistant",
+                    "message " + i + " about the weather in Hangzhou and what to pack for the trip"));
+        }
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("model", "dashscope");
+        properties.put("modelName", "qwen-plus");
+        properties.put("temperature", "0.7");
+        properties.put("messages", JSON.toJSONString(history));
+
+        Assert.assertEquals(legacyGenerateAndParse(properties), MAPPER.toBean(MAPPER.toMap(MAPPER.toBean(properties))));
+
+        int rounds = 200;
+        for (int i = 0; i < 20; i++) {
+            legacyGenerateAndParse(properties);
+            MAPPER.toBean(MAPPER.toMap(MAPPER.toBean(properties)));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            legacyGenerateAndParse(properties);
+        }
+        long legacyNanos = (System.nanoTime() - start) / rounds;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            MAPPER.toBean(MAPPER.toMap(MAPPER.toBean(properties)));
+        }
+        long mapperNanos = (System.nanoTime() - start) / rounds;
+
+        // the messages string itself still has to be parsed once, so also time requests that already hold messages
+        Map<String, Object> param = MAPPER.toMap(new LlmRequest().setModel("dashscope").setMessages(history));
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            new JSONObject(JSONObject.parseObject(JSONObject.toJSONString(param))).toJavaObject(LlmRequest.class);
+        }
+        long legacyParamNanos = (System.nanoTime() - start) / rounds;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            MAPPER.toBean(param);
+        }
+        long mapperParamNanos = (System.nanoTime() - start) / rounds;
+
+        // the param path shares the message list instead of walking it, so it is far below the JSON round trip
+        Assert.assertTrue(String.format("from node properties: json %dns, mapper %dns; from request param: json %dns, mapper %dns",
+                legacyNanos, mapperNanos, legacyParamNanos, mapperParamNanos), mapperParamNanos < legacyParamNanos);
+    }
+
+    private static List<Map<String, Object>> representativeProperties() {
+        List<Map<String, Object>> result = new ArrayList<>();
+
+        Map<String, Object> minimal = new HashMap<>();
+        minimal.put("model", "dashscope");
+        minimal.put("currentActivityId", "llmNode");
+        result.add(minimal);
+
+        Map<String, Object> full = new HashMap<>();
+        full.put("model", "dashscope");
+        full.put("modelName", "qwen-plus");
+        full.put("maxTokens", "1024");
+        full.put("temperature", "0.7");
+        full.put("topP", "0.9");
+        full.put("stop", "[\"Observation:\", \"\\n\\n\"]");
+        full.put("stream", "true");
+        full.put("user", "u-1");
+        full.put("messages", "[{\"role\":\"system\",\"content\":\"你是一个助手\"},{\"role\":\"user\",\"content\":\"杭州天气\"}]");
+        full.put("extraParams", "{\"enable_thinking\":false}");
+        result.add(full);
+
+        Map<String, Object> typed = new HashMap<>();
+        typed.put("model", "cerebras");
+        typed.put("maxTokens", 256);
+        typed.put("temperature", 0.2d);
+        typed.put("stop", Arrays.asList("END"));
+        typed.put("stream", false);
+        typed.put("messages", Arrays.asList(new LlmRequest.Message("user", "ping"), new LlmRequest.Message("assistant", null)));
+        result.add(typed);
+        return result;
+    }
+
+    /**
+     * DelegationLlm before the mapper: hand-written property parsing, a JSON clone, then toJavaObject in invoke.
+     */
+    @SuppressWarnings("unchecked")
+    private static LlmRequest legacyGenerateAndParse(Map<String, Object> properties) {
+        LlmRequest request = new LlmRequest();
+        request.setModelName((String) properties.get("modelName"));
+        request.setModel((String) properties.get("model"));
+        if (properties.containsKey("maxTokens")) {
+            request.setMaxTokens(Integer.valueOf(properties.get("maxTokens").toString()));
+        }
+        if (properties.containsKey("temperature")) {
+            request.setTemperature(Double.valueOf(properties.get("temperature").toString()));
+        }
+        if (properties.containsKey("topP")) {
+            request.setTopP(Double.valueOf(properties.get("topP").toString()));
+        }
+        if (properties.containsKey("stop")) {
+            Object stopValue = properties.get("stop");
+            if (stopValue instanceof List) {
+                request.setStop((List<String>) stopValue);
+            } else if (stopValue instanceof String) {
+                request.setStop(JSONArray.parseArray((String) stopValue, String.class));
+            }
+        }
+        if (properties.containsKey("stream")) {
+            request.setStream(Boolean.valueOf(properties.get("stream").toString()));
+        }
+        if (properties.containsKey("user")) {
+            request.setUser((String) properties.get("user"));
+        }
+        if (properties.containsKey("messages")) {
+            Object messagesObj = properties.get("messages");
+            if (messagesObj instanceof List) {
+                request.setMessages((List<LlmRequest.Message>) messagesObj);
+            } else if (messagesObj instanceof String) {
+                request.setMessages(JSONArray.parseArray((String) messagesObj, LlmRequest.Message.class));
+            }
+        }
+        if (properties.containsKey("extraParams")) {
+            request.setExtraParams(properties.get("extraParams"));
+        }
+        Map<String, Object> param = JSONObject.parseObject(JSONObject.toJSONString(request));
+        return new JSONObject(param).toJavaObject(LlmRequest.class);
+    }
+}
@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.agentic.core.executor;
+
+import com.alibaba.agentic.core.engine.utils.DelegationUtils;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DESCRIPTION
+ *
+ * @author baliang.smy
+ * @date 2026/10/19 10:30
+ */
+public class NodeOutputStoreTest {
+
+    @Test
+    public void testSnapshotIsolatedFromProducer() {
+        NodeOutputStore store = new NodeOutputStore();
+        List<String> tags = new ArrayList<>(Arrays.asList("a", "b"));
+        Doc doc = new Doc("1", "text", tags);
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("count", 1);
+        Map<String, Object> data = new HashMap<>();
+        data.put("tags", tags);
+        data.put("doc", doc);
+        data.put("nested", nested);
+        store.publish("node", data);
+
+        tags.add("c");
+        doc.setText("changed");
+        nested.put("count", 2);
+        data.put("extra", true);
+
+        Assert.assertEquals(Arrays.asList("a", "b"), store.get("node", "tags"));
+        Assert.assertEquals("text", store.get("node", "doc", Doc.class).getText());
+        Assert.assertEquals(1, ((Map<?, ?>) store.get("node", "nested")).get("count"));
+        Assert.assertFalse(store.get("node").containsKey("extra"));
+    }
+
+    @Test
+    public void testReadersCannotMutateSnapshot() {
+        NodeOutputStore store = new NodeOutputStore();
+        Map<String, Object> data = new HashMap<>();
+        data.put("docs", new ArrayList<>(Arrays.asList(mapOf("id", "1"), mapOf("id", "2"))));
+        store.publish("node", data);
+
+        List<?> docs = (List<?>) store.get("node", "docs");
+        Assert.assertSame(docs, store.get("node", "docs"));
+        assertUnsupported(() -> store.get("node").put("x", 1));
+        assertUnsupported(() -> docs.remove(0));
+        assertUnsupported(() -> ((Map<String, Object>) docs.get(0)).put("id", "3"));
+    }
+
+    @Test
+    public void testParallelBranchesSeeConsistentSnapshots() throws Exception {
+        NodeOutputStore store = new NodeOutputStore();
+        int branches = 8;
+        int rounds = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(branches);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int branch = 0; branch < branches; branch++) {
+            String key = "branch" + branch;
+            futures.add(executor.submit(() -> {
+                start.await();
+                Map<String, Object> data = new HashMap<>();
+                List<Integer> values = new ArrayList<>();
+                data.put("values", values);
+                for (int round = 0; round < rounds; round++) {
+                    // the producer keeps mutating its own map; each snapshot must stay as published
+                    values.add(round);
+                    data.put("round", round);
+                    store.publish(key, data);
+                    for (String other : store.keySet()) {
+                        Map<String, Object> snapshot = store.get(other);
+                        List<?> published = (List<?>) snapshot.get("values");
+                        Assert.assertEquals(((Integer) snapshot.get("round")) + 1, published.size());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Assert.assertEquals(branches, store.size());
+        Assert.assertEquals(rounds, ((List<?>) store.get("branch0", "values")).size());
+    }
+
+    @Test
+    public void testTypedAccessors() {
+        SystemContext systemContext = new SystemContext();
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", "1");
+        data.put("text", "hello");
+        data.put("tags", Arrays.asList("x", "y"));
+        DelegationUtils.saveInterOutput("node", systemContext, Result.success(data));
+
+        Doc doc = DelegationUtils.getResultOfNode(systemContext, "node", Doc.class);
+        Assert.assertEquals("hello", doc.getText());
+        Assert.assertEquals(Arrays.asList("x", "y"), doc.getTags());
+        Map<String, Object> map = DelegationUtils.getResultOfNode(systemContext, "node", new TypeReference<Map<String, Object>>() {});
+        Assert.assertEquals("1", map.get("id"));
+        Assert.assertSame(systemContext.getInterOutput().get("out_node"), DelegationUtils.getResultOfNode(systemContext, "node", Map.class));
+        Assert.assertEquals("hello", DelegationUtils.getResultOfNode(systemContext, "node", "text"));
+    }
+
+    @Test
+    public void testTypedReadsReturnMutableCopies() {
+        NodeOutputStore store = new NodeOutputStore();
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", "1");
+        data.put("tags", new ArrayList<>(Arrays.asList("x", "y")));
+        data.put("nested", mapOf("docs", Arrays.asList(mapOf("id", "2"))));
+        store.publish("node", data);
+
+        Doc doc = store.get("node", Doc.class);
+        doc.getTags().add("z");
+        Map<String, Object> map = store.get("node", new TypeReference<Map<String, Object>>() {}.getType());
+        map.put("extra", true);
+        ((List<Object>) ((Map<String, Object>) map.get("nested")).get("docs")).add("more");
+
+        Assert.assertEquals(Arrays.asList("x", "y"), store.get("node", "tags"));
+        Assert.assertFalse(store.get("node").containsKey("extra"));
+        Assert.assertEquals(1, ((List<?>) ((Map<?, ?>) store.get("node", "nested")).get("docs")).size());
+        Assert.assertEquals(Arrays.asList("x", "y", "z"), doc.getTags());
+    }
+
+    @Test
+    public void testMapCompatibleInterOutput() {
+        SystemContext systemContext = new SystemContext();
+        Map<String, Object> data = new HashMap<>();
+        data.put("text", "hello");
+        systemContext.getInterOutput().put("out_node", data);
+        data.put("text", "changed");
+
+        Assert.assertEquals("hello", systemContext.getInterOutput().get("out_node").get("text"));
+        Assert.assertEquals("hello", DelegationUtils.getResultOfNode(systemContext, "node", "text"));
+        Assert.assertTrue(systemContext.getInterOutput().containsKey("out_node"));
+        Assert.assertEquals(1, systemContext.getInterOutput().entrySet().size());
+
+        // 调用方换成自己的普通 Map 时仍按原来的方式存取
+        Map<String, Map<String, Object>> legacy = new HashMap<>();
+        systemContext.setInterOutput(legacy);
+        DelegationUtils.saveInterOutput("node", systemContext, Result.success(mapOf("text", "plain")));
+        Assert.assertEquals("plain", legacy.get("out_node").get("text"));
+        Assert.assertEquals("plain", DelegationUtils.getResultOfNode(systemContext, "node", Doc.class).getText());
+        Assert.assertEquals("plain", DelegationUtils.getResultOfNode(systemContext, "node", "text"));
+    }
+
+    @Test
+    public void testPluggableCopyStrategy() {
+        List<Class<?>> copied = new ArrayList<>();
+        NodeOutputStore store = new NodeOutputStore(new DeepCopyStrategy() {
+            @Override
+            public <T> T copy(Object source, java.lang.reflect.Type targetType) {
+                copied.add(source.getClass());
+                return DeepCopyStrategy.FASTJSON.copy(source, targetType);
+            }
+        });
+        Map<String, Object> data = new HashMap<>();
+        data.put("text", "immutable values are shared");
+        data.put("doc", new Doc("1", "text", new ArrayList<>()));
+        store.publish("node", data);
+        Assert.assertEquals(Arrays.asList(Doc.class), copied);
+    }
+
+    @Test
+    public void testBenchmarkReadOneMegabyteResult() {
+        List<Map<String, Object>> docs = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1000) {
+            text.append("lorem ipsum dolor sit amet ");
+        }
+        for (int i = 0; i < 1000; i++) {
+            Map<String, Object> doc = new HashMap<>();
+            doc.put("id", String.valueOf(i));
+            doc.put("score", i / 1000d);
+            doc.put("content", text.toString());
+            docs.add(doc);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("documents", docs);
+        NodeOutputStore store = new NodeOutputStore();
+        store.publish("node", data);
+
+        int reads = 50;
+        for (int i = 0; i < 5; i++) {
+            JSON.parseObject(JSON.toJSONString(data), Map.class);
+            store.get("node", Map.class);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            JSON.parseObject(JSON.toJSONString(data), Map.class);
+        }
+        long jsonNanos = (System.nanoTime() - start) / reads;
+        start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            Assert.assertEquals(1000, ((List<?>) store.get("node", Map.class).get("documents")).size());
+        }
+        long storeNanos = (System.nanoTime() - start) / reads;
+        Assert.assertTrue("json round trip " + jsonNanos + "ns, snapshot " + storeNanos + "ns", storeNanos < jsonNanos);
+    }
+
+    private static Map<String, Object> mapOf(String key, Object value) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(key, value);
+        return map;
+    }
+
+    private static void assertUnsupported(Runnable mutation) {
+        try {
+            mutation.run();
+            Assert.fail("snapshot should be read-only");
+        } catch (UnsupportedOperationException expected) {
+            // expected
+        }
+    }
+
+    public static class Doc {
+
+        private String id;
+
+        private String text;
+
+        private List<String> tags;
+
+        public Doc() {
+        }
+
+        public Doc(String id, String text, List<String> tags) {
+            this.id = id;
+            this.text = text;
+            this.tags = tags;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+}
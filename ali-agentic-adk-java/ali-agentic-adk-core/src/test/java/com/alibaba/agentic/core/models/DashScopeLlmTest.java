@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.agentic.core.models;
+
+import com.alibaba.agentic.core.engine.delegation.domain.LlmRequest;
+import com.alibaba.agentic.core.engine.delegation.domain.LlmResponse;
+import com.alibaba.dashscope.aigc.generation.GenerationParam;
+import com.alibaba.dashscope.aigc.generation.GenerationResult;
+import com.alibaba.dashscope.common.DashScopeResult;
+import com.google.gson.JsonObject;
+import io.reactivex.rxjava3.core.BackpressureOverflowStrategy;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.exceptions.MissingBackpressureException;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DESCRIPTION
+ *
+ * @author baliang.smy
+ * @date 2026/10/19 14:20
+ */
+public class DashScopeLlmTest {
+
+    @Test
+    public void testCancelReachesUpstream() {
+        AtomicInteger cancelled = new AtomicInteger();
+        DashScopeLlm llm = new StreamingLlm(Flowable.<GenerationResult>never()
+                .doOnCancel(cancelled::incrementAndGet));
+
+        Disposable disposable = llm.invokeStream(request()).subscribe();
+        Assert.assertEquals(0, cancelled.get());
+        disposable.dispose();
+        Assert.assertEquals(1, cancelled.get());
+    }
+
+    @Test
+    public void testSubscribeDoesNotBlockCaller() {
+        int streams = 200;
+        AtomicInteger subscribed = new AtomicInteger();
+        DashScopeLlm llm = new StreamingLlm(Flowable.<GenerationResult>never()
+                .doOnSubscribe(s -> subscribed.incrementAndGet()));
+
+        int threadsBefore = Thread.activeCount();
+        List<Disposable> disposables = new ArrayList<>();
+        for (int i = 0; i < streams; i++) {
+            disposables.add(llm.invokeStream(request()).subscribe());
+        }
+
+        // 订阅在调用线程上立即返回，200 个未结束的流不占用任何额外线程
+        Assert.assertEquals(streams, subscribed.get());
+        Assert.assertTrue(Thread.activeCount() - threadsBefore < 4);
+        disposables.forEach(Disposable::dispose);
+    }
+
+    @Test
+    public void testSlowSubscriberWithDropOldestKeepsBoundedBuffer() {
+        int bufferSize = 16;
+        AtomicLong produced = new AtomicLong();
+        Flowable<Integer> upstream = Flowable.range(0, 10_000).doOnNext(i -> produced.incrementAndGet());
+
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>(4);
+        DashScopeLlm.bridge(upstream, i -> i, bufferSize, BackpressureOverflowStrategy.DROP_OLDEST)
+                .subscribe(subscriber);
+
+        // 上游一次性推完，下游只请求了 4 条，最多再缓存 bufferSize 条
+        Assert.assertEquals(10_000, produced.get());
+        subscriber.assertValues(0, 1, 2, 3);
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.assertComplete();
+        Assert.assertEquals(4 + bufferSize, subscriber.values().size());
+        Assert.assertEquals(Integer.valueOf(9_999), subscriber.values().get(subscriber.values().size() - 1));
+    }
+
+    @Test
+    public void testSlowSubscriberWithErrorStopsUpstream() {
+        int bufferSize = 16;
+        AtomicInteger cancelled = new AtomicInteger();
+        Flowable<Integer> upstream = Flowable.range(0, 10_000).doOnCancel(cancelled::incrementAndGet);
+
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>(0);
+        DashScopeLlm.bridge(upstream, i -> i, bufferSize, BackpressureOverflowStrategy.ERROR)
+                .subscribe(subscriber);
+
+        // 溢出时立即取消上游并报错，已缓存的结果也一并丢弃
+        Assert.assertEquals(1, cancelled.get());
+        subscriber.assertError(MissingBackpressureException.class);
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.assertNoValues();
+    }
+
+    @Test
+    public void testDefaultBufferKeepsEveryChunk() {
+        int chunks = 10_000;
+        AtomicInteger cancelled = new AtomicInteger();
+        DashScopeLlm llm = new StreamingLlm(Flowable.range(0, chunks)
+                .map(i -> chunk("request-" + i))
+                .doOnCancel(cancelled::incrementAndGet));
+
+        // 下游一条都没请求时上游已推完，默认不限制缓存，增量结果一段都不丢、也不报错
+        TestSubscriber<LlmResponse> subscriber = new TestSubscriber<>(0);
+        llm.invokeStream(request()).subscribe(subscriber);
+        subscriber.assertNoErrors();
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.assertComplete();
+        subscriber.assertValueCount(chunks);
+        Assert.assertEquals(0, cancelled.get());
+    }
+
+    @Test
+    public void testUpstreamErrorIsWrapped() {
+        DashScopeLlm llm = new StreamingLlm(Flowable.error(new IllegalStateException("boom")));
+
+        TestSubscriber<LlmResponse> subscriber = llm.invokeStream(request()).test();
+        subscriber.assertError(e -> e instanceof RuntimeException
+                && e.getMessage().equals("Qwen 流式调用失败: boom")
+                && e.getCause() instanceof IllegalStateException);
+    }
+
+    private static LlmRequest request() {
+        LlmRequest.Message message = new LlmRequest.Message();
+        message.setRole("user");
+        message.setContent("hello");
+        LlmRequest request = new LlmRequest();
+        request.setModelName("qwen-plus");
+        request.setMessages(Collections.singletonList(message));
+        return request;
+    }
+
+    private static GenerationResult chunk(String requestId) {
+        DashScopeResult result = new DashScopeResult();
+        result.setRequestId(requestId);
+        result.setOutput(new JsonObject());
+        return GenerationResult.fromDashScopeResult(result);
+    }
+
+    /**
+     * 用给定的流代替 SDK 的 streamCall
+     */
+    private static class StreamingLlm extends DashScopeLlm {
+
+        private final Publisher<GenerationResult> stream;
+
+        StreamingLlm(Publisher<GenerationResult> stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        protected Publisher<GenerationResult> streamCall(GenerationParam param) {
+            return stream;
+        }
+    }
+}
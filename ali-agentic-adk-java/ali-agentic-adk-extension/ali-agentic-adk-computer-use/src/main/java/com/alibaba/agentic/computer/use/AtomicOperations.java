@@ -19,9 +19,16 @@ package com.alibaba.agentic.computer.use;
 import com.alibaba.agentic.computer.use.domain.BrowserUseRequest;
 import com.alibaba.agentic.computer.use.domain.BrowserUseResponse;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface AtomicOperations {
 
     String doScriptUpload(String scriptStr, String savePath);
 
     BrowserUseResponse doScriptExecute(BrowserUseRequest request);
+
+    /**
+     * 下发脚本并异步等待执行结果，等待期间不占用调用线程
+     */
+    CompletableFuture<BrowserUseResponse> doScriptExecuteAsync(BrowserUseRequest request);
 }
@@ -20,9 +20,9 @@ import com.alibaba.agentic.computer.use.domain.BrowserUseRequest;
 import com.alibaba.agentic.computer.use.domain.BrowserUseResponse;
 import com.alibaba.agentic.computer.use.enums.ScriptExecuteStatusEnum;
 import com.alibaba.agentic.computer.use.service.EcdCommandService;
+import com.alibaba.agentic.computer.use.service.InvocationPoller;
 import com.alibaba.agentic.computer.use.service.dto.DesktopCommandResponse;
 import com.alibaba.fastjson.JSONObject;
-import com.aliyun.ecd20200930.models.DescribeInvocationsRequest;
 import com.aliyun.ecd20200930.models.RunCommandRequest;
 import com.aliyun.tea.utils.StringUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -31,7 +31,8 @@ import org.springframework.stereotype.Component;
 
 import java.util.Base64;
 import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Component("atomicOperations")
@@ -45,6 +46,9 @@ public class AtomicOperationsImpl implements AtomicOperations{
     @Autowired
     private AdkBrowserUseProperties aliAdkProperties;
 
+    @Autowired
+    private InvocationPoller invocationPoller;
+
     @Override
     public String doScriptUpload(String scriptStr, String savePath) {
         return null;
@@ -52,6 +56,20 @@ public class AtomicOperationsImpl implements AtomicOperations{
 
     @Override
     public BrowserUseResponse doScriptExecute(BrowserUseRequest request) {
+        try {
+            return doScriptExecuteAsync(request).join();
+        } catch (CompletionException e) {
+            // 查询异常原样抛给同步调用方，和改为异步轮询之前的行为一致
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<BrowserUseResponse> doScriptExecuteAsync(BrowserUseRequest request) {
         log.info("atomicOperations doScriptExecute in, request: {}", JSONObject.toJSONString(request));
         RunCommandRequest runCommandRequest = new RunCommandRequest();
         int timeout = request.getTimeout() == null ? DEFAULT_TIMEOUT_SECONDS : request.getTimeout();
@@ -68,28 +86,20 @@ public class AtomicOperationsImpl implements AtomicOperations{
         runCommandRequest.setCommandContent(encodedContent);
         String invokeId = ecdCommandService.runCommand(runCommandRequest, endpoint);
 
-        long startClock = System.currentTimeMillis();
-        DescribeInvocationsRequest describeInvocationsRequest = new DescribeInvocationsRequest();
-        describeInvocationsRequest.setRegionId(regionId);
-        describeInvocationsRequest.setInvokeId(invokeId);
-        while (System.currentTimeMillis() - startClock < timeout * 1000L) {
-            List<DesktopCommandResponse> response = ecdCommandService.getCommandResult(describeInvocationsRequest, endpoint);
-            String currentStatus = response.get(0).getInvocationStatus();
-            if (ScriptExecuteStatusEnum.SUCCESS.getMessage().equals(currentStatus)) {
-                String originalOutput = response.get(0).getOutput();
-                String output = StringUtils.isEmpty(originalOutput) ? "" : new String(Base64.getDecoder().decode(originalOutput));
-                Integer dropped = response.get(0).getDropped();
-                return new BrowserUseResponse(true, currentStatus, output, dropped);
-            }
-            if (ScriptExecuteStatusEnum.FAILED.getMessage().equals(currentStatus)) {
-                return new BrowserUseResponse(false, currentStatus);
-            }
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                log.error("atomicOperations doScriptExecute sleep error", e);
-            }
+        return invocationPoller.poll(invokeId, regionId, endpoint, timeout * 1000L)
+                .thenApply(AtomicOperationsImpl::toBrowserUseResponse);
+    }
+
+    private static BrowserUseResponse toBrowserUseResponse(DesktopCommandResponse response) {
+        if (response == null) {
+            return new BrowserUseResponse(false, ScriptExecuteStatusEnum.FAILED.getMessage());
+        }
+        String currentStatus = response.getInvocationStatus();
+        if (ScriptExecuteStatusEnum.SUCCESS.getMessage().equals(currentStatus)) {
+            String originalOutput = response.getOutput();
+            String output = StringUtils.isEmpty(originalOutput) ? "" : new String(Base64.getDecoder().decode(originalOutput));
+            return new BrowserUseResponse(true, currentStatus, output, response.getDropped());
         }
-        return new BrowserUseResponse(false, ScriptExecuteStatusEnum.TIMEOUT.getMessage());
+        return new BrowserUseResponse(false, currentStatus);
     }
 }
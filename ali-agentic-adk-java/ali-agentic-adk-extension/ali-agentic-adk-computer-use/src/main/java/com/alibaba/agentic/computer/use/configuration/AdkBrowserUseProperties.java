@@ -58,6 +58,11 @@ public class AdkBrowserUseProperties {
 
     private String instanceGroupId;
 
+    /**
+     * BrowserUseTool 等待脚本下发结果的最长时间（秒），为空时 60 秒，小于等于 0 时一直等待
+     */
+    private Integer commandTimeoutSeconds;
+
     public String getComputerResourceId() {
         return computerResourceId;
     }
@@ -185,4 +190,12 @@ public class AdkBrowserUseProperties {
     public void setMobileResourceId(String mobileResourceId) {
         this.mobileResourceId = mobileResourceId;
     }
-}
+
+    public Integer getCommandTimeoutSeconds() {
+        return commandTimeoutSeconds;
+    }
+
+    public void setCommandTimeoutSeconds(Integer commandTimeoutSeconds) {
+        this.commandTimeoutSeconds = commandTimeoutSeconds;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,275 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.agentic.computer.use.service;
+
+import com.alibaba.agentic.computer.use.enums.ScriptExecuteStatusEnum;
+import com.alibaba.agentic.computer.use.service.dto.DesktopCommandResponse;
+import com.aliyun.ecd20200930.models.DescribeInvocationsRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 云电脑命令执行结果的共享轮询器
+ *
+ * 所有在途的 invokeId 由同一个调度线程按到期时间触发查询，查询在一个小的固定线程池里执行，
+ * 每个 endpoint 同时在途的 DescribeInvocations 请求数受限。轮询间隔从 initialDelayMillis 开始，
+ * 每次未完成时翻倍，直到 maxDelayMillis。调用方拿到的是 CompletableFuture，不再各自占用线程 sleep。
+ *
+ * DescribeInvocations 的结果只按单个 invokeId 解析，因此这里不做跨调用的批量查询，只做限流。
+ */
+@Slf4j
+@Component
+public class InvocationPoller implements DisposableBean {
+
+    public static final int DEFAULT_QUERY_THREADS = 4;
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_PER_ENDPOINT = 4;
+
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 100L;
+
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 2000L;
+
+    /**
+     * endpoint 限流未拿到许可时的重试间隔
+     */
+    private static final long THROTTLE_RETRY_MILLIS = 20L;
+
+    private static final String DEFAULT_ENDPOINT_KEY = "__default__";
+
+    @Autowired(required = false)
+    private EcdCommandService ecdCommandService;
+
+    private final int maxInFlightPerEndpoint;
+
+    private final long initialDelayMillis;
+
+    private final long maxDelayMillis;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ExecutorService queryExecutor;
+
+    private final Map<String, PendingInvocation> pending = new ConcurrentHashMap<>();
+
+    private final Map<String, Semaphore> endpointPermits = new ConcurrentHashMap<>();
+
+    public InvocationPoller() {
+        this(null, DEFAULT_QUERY_THREADS, DEFAULT_MAX_IN_FLIGHT_PER_ENDPOINT,
+                DEFAULT_INITIAL_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public InvocationPoller(EcdCommandService ecdCommandService, int queryThreads, int maxInFlightPerEndpoint,
+                            long initialDelayMillis, long maxDelayMillis) {
+        if (queryThreads <= 0 || maxInFlightPerEndpoint <= 0) {
+            throw new IllegalArgumentException("queryThreads and maxInFlightPerEndpoint must be positive");
+        }
+        if (initialDelayMillis <= 0 || maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException("require 0 < initialDelayMillis <= maxDelayMillis");
+        }
+        this.ecdCommandService = ecdCommandService;
+        this.maxInFlightPerEndpoint = maxInFlightPerEndpoint;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("invocation-poller-scheduler"));
+        this.queryExecutor = Executors.newFixedThreadPool(queryThreads, daemonThreadFactory("invocation-poller-query"));
+    }
+
+    /**
+     * 登记一个 invokeId，返回在命令进入终态、超时或查询失败时完成的 future。
+     *
+     * future 的结果：终态时为最后一次查询到的结果；超时时 invocationStatus 为 Timeout；
+     * 查询返回空（命令下发失败）时为 null；查询抛出异常时 future 以该异常异常完成，
+     * 不会被当成命令执行失败。同一个 invokeId 重复登记共享同一个 future。
+     *
+     * @param invokeId      runCommand 返回的 invokeId，为空时直接返回 null 结果
+     * @param regionId      查询使用的 regionId，可为空
+     * @param endpoint      查询使用的 endpoint，为空时走默认 client
+     * @param timeoutMillis 从登记开始计算的超时时间，Long.MAX_VALUE 表示一直等到终态
+     */
+    public CompletableFuture<DesktopCommandResponse> poll(String invokeId, String regionId, String endpoint, long timeoutMillis) {
+        if (StringUtils.isEmpty(invokeId)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long now = System.currentTimeMillis();
+        // timeoutMillis 可以传 Long.MAX_VALUE 表示不设超时，这里避免溢出
+        long deadline = timeoutMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeoutMillis;
+        PendingInvocation created = new PendingInvocation(invokeId, regionId, endpoint, deadline, initialDelayMillis);
+        PendingInvocation existing = pending.putIfAbsent(invokeId, created);
+        if (existing != null) {
+            return existing.future;
+        }
+        // 调用方取消时不再继续查询
+        created.future.whenComplete((r, e) -> pending.remove(invokeId, created));
+        schedule(created, 0L);
+        return created.future;
+    }
+
+    public CompletableFuture<DesktopCommandResponse> poll(String invokeId, long timeoutMillis) {
+        return poll(invokeId, null, null, timeoutMillis);
+    }
+
+    /**
+     * 当前在途的 invokeId 数量
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        queryExecutor.shutdownNow();
+        for (PendingInvocation invocation : pending.values()) {
+            invocation.future.completeExceptionally(new CancellationException("invocation poller shut down"));
+        }
+        pending.clear();
+    }
+
+    private void schedule(PendingInvocation invocation, long delayMillis) {
+        try {
+            scheduler.schedule(() -> dispatch(invocation), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            invocation.future.completeExceptionally(new CancellationException("invocation poller shut down"));
+        }
+    }
+
+    /**
+     * 在调度线程上执行，只做超时判断和限流，真正的查询交给 queryExecutor
+     */
+    private void dispatch(PendingInvocation invocation) {
+        if (invocation.future.isDone()) {
+            return;
+        }
+        if (System.currentTimeMillis() >= invocation.deadline) {
+            invocation.future.complete(timeoutResponse());
+            return;
+        }
+        Semaphore permits = endpointPermits.computeIfAbsent(endpointKey(invocation.endpoint),
+                key -> new Semaphore(maxInFlightPerEndpoint));
+        if (!permits.tryAcquire()) {
+            schedule(invocation, THROTTLE_RETRY_MILLIS);
+            return;
+        }
+        try {
+            queryExecutor.execute(() -> {
+                try {
+                    query(invocation);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            invocation.future.completeExceptionally(new CancellationException("invocation poller shut down"));
+        }
+    }
+
+    private void query(PendingInvocation invocation) {
+        if (invocation.future.isDone()) {
+            return;
+        }
+        DesktopCommandResponse response;
+        try {
+            DescribeInvocationsRequest request = new DescribeInvocationsRequest();
+            request.setRegionId(invocation.regionId);
+            request.setInvokeId(invocation.invokeId);
+            List<DesktopCommandResponse> responses = StringUtils.isEmpty(invocation.endpoint)
+                    ? ecdCommandService.getCommandResult(request)
+                    : ecdCommandService.getCommandResult(request, invocation.endpoint);
+            response = responses == null || responses.isEmpty() ? null : responses.get(0);
+        } catch (Throwable e) {
+            log.error("InvocationPoller query error, invokeId: {}", invocation.invokeId, e);
+            invocation.future.completeExceptionally(e);
+            return;
+        }
+        if (response == null || isTerminal(response.getInvocationStatus())) {
+            invocation.future.complete(response);
+            return;
+        }
+        long delay = invocation.nextDelayMillis;
+        invocation.nextDelayMillis = Math.min(delay * 2, maxDelayMillis);
+        long remaining = invocation.deadline - System.currentTimeMillis();
+        schedule(invocation, Math.max(0L, Math.min(delay, remaining)));
+    }
+
+    static boolean isTerminal(String status) {
+        return !StringUtils.equalsIgnoreCase(status, "Pending")
+                && !StringUtils.equalsIgnoreCase(status, "Running")
+                && !StringUtils.equalsIgnoreCase(status, "Stopping");
+    }
+
+    private static DesktopCommandResponse timeoutResponse() {
+        DesktopCommandResponse response = new DesktopCommandResponse();
+        response.setInvocationStatus(ScriptExecuteStatusEnum.TIMEOUT.getMessage());
+        return response;
+    }
+
+    private static String endpointKey(String endpoint) {
+        return StringUtils.isEmpty(endpoint) ? DEFAULT_ENDPOINT_KEY : endpoint;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class PendingInvocation {
+
+        private final String invokeId;
+
+        private final String regionId;
+
+        private final String endpoint;
+
+        private final long deadline;
+
+        private final CompletableFuture<DesktopCommandResponse> future = new CompletableFuture<>();
+
+        /**
+         * 只在查询线程里读写，前后两次查询之间由调度器的 happens-before 保证可见性
+         */
+        private long nextDelayMillis;
+
+        private PendingInvocation(String invokeId, String regionId, String endpoint, long deadline, long nextDelayMillis) {
+            this.invokeId = invokeId;
+            this.regionId = regionId;
+            this.endpoint = endpoint;
+            this.deadline = deadline;
+            this.nextDelayMillis = nextDelayMillis;
+        }
+    }
+}
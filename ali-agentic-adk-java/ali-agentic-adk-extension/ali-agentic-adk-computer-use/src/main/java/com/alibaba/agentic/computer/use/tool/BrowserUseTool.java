@@ -16,21 +16,22 @@
 package com.alibaba.agentic.computer.use.tool;
 
 
+import com.alibaba.agentic.computer.use.AtomicOperationsImpl;
 import com.alibaba.agentic.computer.use.configuration.AdkBrowserUseProperties;
 import com.alibaba.agentic.computer.use.service.BrowserUseServiceCaller;
 import com.alibaba.agentic.computer.use.service.EcdCommandService;
+import com.alibaba.agentic.computer.use.service.InvocationPoller;
 import com.alibaba.agentic.computer.use.service.dto.DesktopCommandResponse;
 import com.alibaba.agentic.computer.use.utils.CodeToBatConverter;
 import com.alibaba.agentic.computer.use.utils.StringBasedLetterSnowflake;
 import com.alibaba.agentic.core.utils.ApplicationContextUtil;
-import com.aliyun.ecd20200930.models.DescribeInvocationsRequest;
 import com.aliyun.ecd20200930.models.RunCommandRequest;
 import com.google.adk.tools.Annotations;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 public class BrowserUseTool {
@@ -84,18 +85,25 @@ public class BrowserUseTool {
 
         String invokeId = createPythonFile(pythonScript, fileName);
 
-        DesktopCommandResponse response = getCommandResult(invokeId);
+        InvocationPoller invocationPoller = (InvocationPoller) ApplicationContextUtil.getBean(InvocationPoller.class);
+        AdkBrowserUseProperties adkBrowserUseProperties = (AdkBrowserUseProperties) ApplicationContextUtil.getBean(AdkBrowserUseProperties.class);
+        // 工具接口是同步的，这里阻塞等待轮询结果；commandTimeoutSeconds <= 0 时不设上限
+        Integer timeoutSeconds = adkBrowserUseProperties.getCommandTimeoutSeconds();
+        long timeoutMillis = timeoutSeconds == null ? AtomicOperationsImpl.DEFAULT_TIMEOUT_SECONDS * 1000L
+                : timeoutSeconds <= 0 ? Long.MAX_VALUE : timeoutSeconds * 1000L;
+        DesktopCommandResponse response;
+        try {
+            response = invocationPoller.poll(invokeId, timeoutMillis).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
         if(Objects.isNull(response)) {
             return Map.of("result", "任务下发失败，任务id: " + invokeId);
         }
-        while (StringUtils.equalsIgnoreCase(response.getInvocationStatus(), "Pending")
-                || StringUtils.equalsIgnoreCase(response.getInvocationStatus(), "Running")) {
-            response = getCommandResult(invokeId);
-            if(Objects.isNull(response)) {
-                return Map.of("result", "任务下发失败，任务id: " + invokeId);
-            }
-        }
-
 
         if(!StringUtils.equalsIgnoreCase(response.getInvocationStatus(), "Success")) {
             return Map.of("result", "任务下发失败，output: " + response.getOutput());
@@ -103,21 +111,6 @@ public class BrowserUseTool {
         return Map.of("result", runScript(fileName));
     }
 
-    //脚本下发的执行结果查询
-    public static DesktopCommandResponse getCommandResult(String invokeId) {
-        EcdCommandService  ecdCommandService = (EcdCommandService) ApplicationContextUtil.getBean(EcdCommandService.class);
-
-        DescribeInvocationsRequest request = new DescribeInvocationsRequest();
-        request.setInvokeId(invokeId);
-
-        List<DesktopCommandResponse> response = ecdCommandService.getCommandResult(request);
-        if(CollectionUtils.isNotEmpty(response)) {
-            return response.get(0);
-        }
-        return null;
-    }
-
-
     //创建一个浏览器任务
     public static Map<String, String> startBrowserMission() {
         return Map.of(
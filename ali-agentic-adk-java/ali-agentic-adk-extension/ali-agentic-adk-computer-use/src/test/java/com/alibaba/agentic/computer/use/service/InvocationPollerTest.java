@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.agentic.computer.use.service;
+
+import com.alibaba.agentic.computer.use.enums.ScriptExecuteStatusEnum;
+import com.alibaba.agentic.computer.use.service.dto.DesktopCommandResponse;
+import com.aliyun.ecd20200930.models.DescribeInvocationsRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InvocationPollerTest {
+
+    private InvocationPoller poller;
+
+    @After
+    public void tearDown() {
+        if (poller != null) {
+            poller.destroy();
+        }
+    }
+
+    @Test
+    public void testTerminalStatuses() throws Exception {
+        FakeEcdCommandService service = new FakeEcdCommandService();
+        service.script("ok", 120, "Success");
+        service.script("bad", 30, "Failed");
+        poller = new InvocationPoller(service, 2, 2, 20, 200);
+
+        DesktopCommandResponse ok = poller.poll("ok", 5000).get(5, TimeUnit.SECONDS);
+        DesktopCommandResponse bad = poller.poll("bad", 5000).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals("Success", ok.getInvocationStatus());
+        Assert.assertEquals("out-ok", ok.getOutput());
+        Assert.assertEquals("Failed", bad.getInvocationStatus());
+        Assert.assertTrue(service.calls("ok") > 1);
+        Assert.assertEquals(0, poller.pendingCount());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        FakeEcdCommandService service = new FakeEcdCommandService();
+        service.script("slow", 60_000, "Success");
+        poller = new InvocationPoller(service, 2, 2, 20, 200);
+
+        DesktopCommandResponse response = poller.poll("slow", 200).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(ScriptExecuteStatusEnum.TIMEOUT.getMessage(), response.getInvocationStatus());
+        Assert.assertEquals(0, poller.pendingCount());
+    }
+
+    @Test
+    public void testMissingInvocation() throws Exception {
+        poller = new InvocationPoller(new FakeEcdCommandService(), 2, 2, 20, 200);
+
+        Assert.assertNull(poller.poll("missing", 5000).get(5, TimeUnit.SECONDS));
+        Assert.assertNull(poller.poll(null, 5000).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testQueryErrorCompletesExceptionally() throws Exception {
+        FakeEcdCommandService service = new FakeEcdCommandService();
+        service.script("broken", 0, "Success");
+        service.failing.put("broken", Boolean.TRUE);
+        poller = new InvocationPoller(service, 2, 2, 20, 200);
+
+        CompletableFuture<DesktopCommandResponse> future = poller.poll("broken", 5000);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("query error should not be reported as a result");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals(0, poller.pendingCount());
+    }
+
+    @Test
+    public void testUnboundedTimeout() throws Exception {
+        FakeEcdCommandService service = new FakeEcdCommandService();
+        service.script("ok", 50, "Success");
+        poller = new InvocationPoller(service, 2, 2, 20, 200);
+
+        DesktopCommandResponse response = poller.poll("ok", Long.MAX_VALUE).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals("Success", response.getInvocationStatus());
+    }
+
+    @Test
+    public void testDuplicateRegistrationSharesFuture() {
+        FakeEcdCommandService service = new FakeEcdCommandService();
+        service.script("dup", 60_000, "Success");
+        poller = new InvocationPoller(service, 2, 2, 20, 200);
+
+        CompletableFuture<DesktopCommandResponse> first = poller.poll("dup", 5000);
+        Assert.assertSame(first, poller.poll("dup", 5000));
+        Assert.assertEquals(1, poller.pendingCount());
+
+        first.cancel(false);
+        Assert.assertEquals(0, poller.pendingCount());
+    }
+
+    @Test
+    public void testDestroyCancelsPending() {
+        FakeEcdCommandService service = new FakeEcdCommandService();
+        service.script("slow", 60_000, "Success");
+        poller = new InvocationPoller(service, 2, 2, 20, 200);
+
+        CompletableFuture<DesktopCommandResponse> future = poller.poll("slow", 60_000);
+        poller.destroy();
+
+        Assert.assertTrue(future.isCompletedExceptionally());
+        Assert.assertEquals(0, poller.pendingCount());
+    }
+
+    /**
+     * 500 个并发命令在 3 秒内陆续完成，4 个查询线程、每个 endpoint 最多 4 个在途查询
+     */
+    @Test
+    public void testManyConcurrentInvocations() {
+        FakeEcdCommandService service = new FakeEcdCommandService();
+        poller = new InvocationPoller(service, 4, 4, 100, 2000);
+        Random random = new Random(20240601);
+        List<CompletableFuture<DesktopCommandResponse>> futures = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 500; i++) {
+            service.script("op" + i, random.nextInt(3000), "Success");
+            futures.add(poller.poll("op" + i, 60_000));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        long elapsed = System.currentTimeMillis() - start;
+
+        for (CompletableFuture<DesktopCommandResponse> future : futures) {
+            Assert.assertEquals("Success", future.join().getInvocationStatus());
+        }
+        Assert.assertTrue("maxInFlight " + service.maxInFlight.get(), service.maxInFlight.get() <= 4);
+        // 每个命令最多比完成时间晚一个最大轮询间隔
+        Assert.assertTrue("elapsed " + elapsed, elapsed < 3000 + 2000 + 5000);
+        // 指数退避下每个命令的查询次数有上界，不会按固定间隔空转
+        Assert.assertTrue("queries " + service.totalCalls.get(), service.totalCalls.get() < 500 * 10);
+        Assert.assertEquals(0, poller.pendingCount());
+    }
+
+    /**
+     * 按脚本返回结果的 EcdCommandService，invokeId 到期前返回 Running，到期后返回脚本里的终态
+     */
+    private static class FakeEcdCommandService extends EcdCommandServiceImpl {
+
+        private final Map<String, Long> doneAt = new ConcurrentHashMap<>();
+
+        private final Map<String, String> finalStatus = new ConcurrentHashMap<>();
+
+        private final Map<String, Boolean> failing = new ConcurrentHashMap<>();
+
+        private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+        private final AtomicInteger totalCalls = new AtomicInteger();
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        void script(String invokeId, long afterMillis, String status) {
+            doneAt.put(invokeId, System.currentTimeMillis() + afterMillis);
+            finalStatus.put(invokeId, status);
+        }
+
+        int calls(String invokeId) {
+            AtomicInteger count = calls.get(invokeId);
+            return count == null ? 0 : count.get();
+        }
+
+        @Override
+        public List<DesktopCommandResponse> getCommandResult(DescribeInvocationsRequest request) {
+            return getCommandResult(request, null);
+        }
+
+        @Override
+        public List<DesktopCommandResponse> getCommandResult(DescribeInvocationsRequest request, String endpoint) {
+            String invokeId = request.getInvokeId();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            totalCalls.incrementAndGet();
+            calls.computeIfAbsent(invokeId, key -> new AtomicInteger()).incrementAndGet();
+            try {
+                Thread.sleep(5);
+                if (failing.containsKey(invokeId)) {
+                    throw new IllegalStateException("describeInvocations failed");
+                }
+                Long at = doneAt.get(invokeId);
+                if (at == null) {
+                    return Collections.emptyList();
+                }
+                DesktopCommandResponse response = new DesktopCommandResponse();
+                response.setInvocationStatus(System.currentTimeMillis() >= at ? finalStatus.get(invokeId) : "Running");
+                response.setOutput("out-" + invokeId);
+                return Collections.singletonList(response);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Collections.emptyList();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,597 @@
+/*
+ * Copyright 2024 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.langengine.cxxexecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed, size-bounded cache of compiled artifacts (native executables or WASI modules).
+ * <p>
+ * Artifacts are stored in a flat directory, one file per key, where the key is the SHA-256 of everything
+ * that determines the compiler output: the backend, the compiler identity (resolved path and
+ * {@code --version} output), the full compile command including flags and sysroot, the compile
+ * environment and the source code.
+ * <ul>
+ * <li>New artifacts are written to a temporary file and published with an atomic rename, so readers
+ * never observe a partially written artifact.</li>
+ * <li>Concurrent requests for the same key are single-flighted: one caller compiles, the others wait
+ * for its result, including its compile errors.</li>
+ * <li>The total size is bounded; least recently used artifacts are evicted first.</li>
+ * <li>Callers never run the cached file itself. They receive a read-only copy in their own working
+ * directory, so a sandboxed program cannot tamper with the artifact other executions reuse.</li>
+ * <li>The SHA-256 of every artifact is recorded next to it ({@code <key>.sha256}) when it is published
+ * and held in memory from then on; a copy whose digest does not match is discarded and recompiled
+ * instead of being executed.</li>
+ * <li>On POSIX file systems the directory is created with mode 0700, and opening a directory that is
+ * not owned by the current user or is accessible to group or others fails.</li>
+ * </ul>
+ * Instances are shared per directory within the JVM, see {@link #forDirectory(Path, long)}.
+ */
+class CompileCache {
+
+    /**
+     * Compiles the source into the target artifact path.
+     */
+    interface Compiler {
+        ProcessUtils.ExecOut compile() throws Exception;
+    }
+
+    /**
+     * The outcome of {@link #compile(String, Path, Compiler)}.
+     */
+    static class Lookup {
+        final ProcessUtils.ExecOut out;
+        final boolean hit;
+
+        Lookup(ProcessUtils.ExecOut out, boolean hit) {
+            this.out = out;
+            this.hit = hit;
+        }
+    }
+
+    /**
+     * An indexed artifact: its size and the SHA-256 recorded when it was published.
+     */
+    private static class Entry {
+        final long size;
+        final String digest;
+
+        Entry(long size, String digest) {
+            this.size = size;
+            this.digest = digest;
+        }
+    }
+
+    private static final String TMP_PREFIX = ".tmp-";
+    private static final String DIGEST_SUFFIX = ".sha256";
+    private static final ProcessUtils.ExecOut HIT = new ProcessUtils.ExecOut(0, "", "", false, false, 0);
+    private static final Map<Path, CompileCache> INSTANCES = new ConcurrentHashMap<>();
+    private static final Map<String, String> COMPILER_IDENTITIES = new ConcurrentHashMap<>();
+
+    private final Path dir;
+    private final Map<String, CompletableFuture<ProcessUtils.ExecOut>> inflight = new ConcurrentHashMap<>();
+    /**
+     * Entries in access order; guarded by {@code lock}'s write lock for structural changes and by
+     * synchronizing on the map for access-order updates under the read lock.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long maxBytes;
+    private long totalBytes;
+
+    private CompileCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        createPrivateDirectory(dir);
+        checkPrivate(dir);
+        load();
+    }
+
+    /**
+     * Returns the cache for the given directory, creating it on first use. If the instance already
+     * exists with a different size limit, the new limit applies from now on.
+     *
+     * @param dir      The cache directory.
+     * @param maxBytes The maximum total size of the cached artifacts in bytes.
+     * @return The shared cache instance for the directory.
+     * @throws IOException if the directory cannot be created or read, or is not private to the current user.
+     */
+    static CompileCache forDirectory(Path dir, long maxBytes) throws IOException {
+        Path key = dir.toAbsolutePath().normalize();
+        CompileCache cache = INSTANCES.get(key);
+        if (cache == null) {
+            synchronized (INSTANCES) {
+                cache = INSTANCES.get(key);
+                if (cache == null) {
+                    cache = new CompileCache(key, maxBytes);
+                    INSTANCES.put(key, cache);
+                    return cache;
+                }
+            }
+        }
+        cache.setMaxBytes(maxBytes);
+        return cache;
+    }
+
+    /**
+     * Computes the cache key of a compilation.
+     *
+     * @param backend        The backend the artifact is built for.
+     * @param compileCommand The full compile command; its first element is the compiler.
+     * @param env            The environment of the compiler process, or {@code null}.
+     * @param source         The source code.
+     * @return The hex-encoded SHA-256 key.
+     */
+    static String key(Backend backend, List<String> compileCommand, Map<String, String> env, String source) {
+        MessageDigest md = sha256();
+        update(md, "backend", backend.name());
+        update(md, "compiler", compilerIdentity(compileCommand.get(0)));
+        for (String arg : compileCommand) {
+            update(md, "arg", arg);
+        }
+        if (env != null) {
+            for (Map.Entry<String, String> e : new TreeMap<>(env).entrySet()) {
+                update(md, "env", e.getKey() + "=" + e.getValue());
+            }
+        }
+        update(md, "source", source);
+        return hex(md.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Looks up the artifact for the key and copies it to {@code target}; on a miss, compiles it with
+     * {@code compiler} (which must write {@code target}) and publishes the result.
+     *
+     * @param key      The cache key, see {@link #key(Backend, List, Map, String)}.
+     * @param target   The artifact path in the caller's working directory.
+     * @param compiler Compiles the source into {@code target}.
+     * @return The compiler output ({@link Lookup#hit} is {@code true} if nothing was compiled for this call).
+     * @throws Exception if compilation fails with an exception (e.g. a timeout) or the artifact cannot be copied.
+     */
+    Lookup compile(String key, Path target, Compiler compiler) throws Exception {
+        while (true) {
+            if (materialize(key, target)) {
+                return new Lookup(HIT, true);
+            }
+            CompletableFuture<ProcessUtils.ExecOut> mine = new CompletableFuture<>();
+            CompletableFuture<ProcessUtils.ExecOut> running = inflight.putIfAbsent(key, mine);
+            if (running != null) {
+                ProcessUtils.ExecOut out = await(running);
+                if (out.code != 0) {
+                    return new Lookup(out, false);
+                }
+                // Otherwise loop: the artifact is normally published by now, or was evicted in between.
+                continue;
+            }
+            try {
+                // Another caller may have published between our lookup and taking over the key.
+                if (materialize(key, target)) {
+                    mine.complete(HIT);
+                    return new Lookup(HIT, true);
+                }
+                ProcessUtils.ExecOut out = compiler.compile();
+                if (out.code == 0 && Files.isRegularFile(target)) {
+                    publish(key, target);
+                    makeReadOnly(target);
+                }
+                mine.complete(out);
+                return new Lookup(out, false);
+            } catch (Exception e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inflight.remove(key, mine);
+            }
+        }
+    }
+
+    /**
+     * Checks whether an artifact is cached for the key.
+     *
+     * @param key The cache key.
+     * @return {@code true} if the artifact is cached.
+     */
+    boolean contains(String key) {
+        lock.readLock().lock();
+        try {
+            synchronized (entries) {
+                return entries.containsKey(key);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Changes the size limit, evicting least recently used artifacts if the cache no longer fits.
+     *
+     * @param maxBytes The maximum total size of the cached artifacts in bytes.
+     */
+    void setMaxBytes(long maxBytes) {
+        lock.writeLock().lock();
+        try {
+            if (this.maxBytes != maxBytes) {
+                this.maxBytes = maxBytes;
+                evict(null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the total size of the cached artifacts.
+     *
+     * @return The size in bytes.
+     */
+    long sizeBytes() {
+        lock.readLock().lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean materialize(String key, Path target) throws IOException {
+        Entry entry;
+        lock.readLock().lock();
+        try {
+            synchronized (entries) {
+                entry = entries.get(key);
+                if (entry == null) {
+                    return false;
+                }
+            }
+            Path artifact = dir.resolve(key);
+            String digest;
+            try {
+                Files.deleteIfExists(target);
+                digest = copy(artifact, target);
+            } catch (NoSuchFileException e) {
+                // Removed from outside the cache; recompiling republishes it and fixes the index.
+                return false;
+            }
+            if (digest.equals(entry.digest)) {
+                makeReadOnly(target);
+                try {
+                    // Persist the access order for the next start.
+                    Files.setLastModifiedTime(artifact, FileTime.fromMillis(System.currentTimeMillis()));
+                } catch (IOException ignored) {
+                    // Ignored.
+                }
+                return true;
+            }
+            Files.deleteIfExists(target);
+        } finally {
+            lock.readLock().unlock();
+        }
+        // The artifact changed on disk after it was published; never run it, drop it and recompile.
+        discard(key, entry);
+        return false;
+    }
+
+    private void discard(String key, Entry entry) {
+        lock.writeLock().lock();
+        try {
+            if (entries.get(key) == entry) {
+                remove(key);
+                deleteFiles(key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void publish(String key, Path artifact) throws IOException {
+        Path tmp = dir.resolve(TMP_PREFIX + UUID.randomUUID());
+        Path tmpDigest = dir.resolve(TMP_PREFIX + UUID.randomUUID() + DIGEST_SUFFIX);
+        try {
+            String digest = copy(artifact, tmp);
+            makeReadOnly(tmp);
+            Files.writeString(tmpDigest, digest, StandardCharsets.US_ASCII);
+            long size = Files.size(tmp);
+            lock.writeLock().lock();
+            try {
+                // The digest goes first: on restart an artifact without a digest file is dropped.
+                move(tmpDigest, dir.resolve(key + DIGEST_SUFFIX));
+                move(tmp, dir.resolve(key));
+                remove(key);
+                entries.put(key, new Entry(size, digest));
+                totalBytes += size;
+                evict(key);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+            Files.deleteIfExists(tmpDigest);
+        }
+    }
+
+    /**
+     * Removes least recently used artifacts until the cache fits its size limit. Must hold the write lock.
+     *
+     * @param keep The key that was just published; it is only evicted if it alone exceeds the limit.
+     */
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getKey().equals(keep) && entries.size() > 1) {
+                continue;
+            }
+            deleteFiles(e.getKey());
+            totalBytes -= e.getValue().size;
+            it.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.size;
+        }
+    }
+
+    private void deleteFiles(String key) {
+        try {
+            Files.deleteIfExists(dir.resolve(key));
+            Files.deleteIfExists(dir.resolve(key + DIGEST_SUFFIX));
+        } catch (IOException ignored) {
+            // Ignored; the entry is dropped from the index either way.
+        }
+    }
+
+    /**
+     * Rebuilds the index from the directory, oldest modification time first, and drops leftover temporary files,
+     * artifacts without a valid digest file and digest files without an artifact.
+     */
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(CompileCache::lastModified));
+        for (Path p : files) {
+            String name = p.getFileName().toString();
+            if (name.startsWith(TMP_PREFIX)) {
+                Files.deleteIfExists(p);
+            } else if (name.endsWith(DIGEST_SUFFIX)) {
+                if (!Files.isRegularFile(dir.resolve(name.substring(0, name.length() - DIGEST_SUFFIX.length())))) {
+                    Files.deleteIfExists(p);
+                }
+            } else if (Files.isRegularFile(p)) {
+                String digest = readDigest(dir.resolve(name + DIGEST_SUFFIX));
+                if (digest == null) {
+                    deleteFiles(name);
+                    continue;
+                }
+                long size = Files.size(p);
+                entries.put(name, new Entry(size, digest));
+                totalBytes += size;
+            }
+        }
+        evict(null);
+    }
+
+    private static String readDigest(Path p) {
+        try {
+            String digest = Files.readString(p, StandardCharsets.US_ASCII).trim();
+            return digest.matches("[0-9a-f]{64}") ? digest : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Copies {@code source} to {@code target} and returns the hex-encoded SHA-256 of the bytes written.
+     */
+    private static String copy(Path source, Path target) throws IOException {
+        MessageDigest md = sha256();
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW)) {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+                out.write(buf, 0, n);
+            }
+        }
+        return hex(md.digest());
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void createPrivateDirectory(Path dir) throws IOException {
+        if (Files.isDirectory(dir)) {
+            return;
+        }
+        Files.createDirectories(dir.getParent());
+        try {
+            Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createDirectory(dir);
+        } catch (FileAlreadyExistsException ignored) {
+            // Created concurrently; checked below like any existing directory.
+        }
+    }
+
+    /**
+     * Refuses directories that another user could write to: the directory must be owned by the user that
+     * creates files in it and must not grant any permission to group or others.
+     */
+    private static void checkPrivate(Path dir) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(dir, PosixFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        PosixFileAttributes attributes = view.readAttributes();
+        Path probe = Files.createTempFile(dir, TMP_PREFIX, ".owner");
+        UserPrincipal self;
+        try {
+            self = Files.getOwner(probe);
+        } finally {
+            Files.deleteIfExists(probe);
+        }
+        if (!attributes.owner().equals(self)) {
+            throw new IOException("Compile cache directory " + dir + " is owned by " + attributes.owner().getName()
+                    + ", not by the current user " + self.getName());
+        }
+        Set<PosixFilePermission> permissions = attributes.permissions();
+        for (PosixFilePermission permission : permissions) {
+            if (permission.name().startsWith("GROUP_") || permission.name().startsWith("OTHERS_")) {
+                throw new IOException("Compile cache directory " + dir + " must not be accessible to group or others ("
+                        + PosixFilePermissions.toString(permissions) + ")");
+            }
+        }
+    }
+
+    private static long lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void makeReadOnly(Path p) {
+        try {
+            Files.setPosixFilePermissions(p, PosixFilePermissions.fromString("r-xr-xr-x"));
+        } catch (UnsupportedOperationException | IOException e) {
+            p.toFile().setWritable(false, false);
+        }
+    }
+
+    private static ProcessUtils.ExecOut await(CompletableFuture<ProcessUtils.ExecOut> running) throws Exception {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static void update(MessageDigest md, String tag, String value) {
+        byte[] bytes = (tag + ":" + value.length() + ":" + value).getBytes(StandardCharsets.UTF_8);
+        md.update(bytes);
+        md.update((byte) 0);
+    }
+
+    /**
+     * Identifies the compiler by its resolved path, size and modification time, plus its {@code --version} output,
+     * so that upgrading the compiler in place invalidates the cached artifacts.
+     */
+    static String compilerIdentity(String compiler) {
+        Path resolved = resolveExecutable(compiler);
+        String fingerprint = compiler;
+        if (resolved != null) {
+            try {
+                Path real = resolved.toRealPath();
+                fingerprint = real + "|" + Files.size(real) + "|" + Files.getLastModifiedTime(real).toMillis();
+            } catch (IOException ignored) {
+                // Fall back to the configured name.
+            }
+        }
+        return COMPILER_IDENTITIES.computeIfAbsent(fingerprint, f -> {
+            try {
+                ProcessUtils.ExecOut out = ProcessUtils.exec(List.of(compiler, "--version"),
+                        Paths.get(System.getProperty("java.io.tmpdir")), null, null, 5000, 16 * 1024, 16 * 1024, 100);
+                return f + "|" + out.out.trim();
+            } catch (Exception e) {
+                return f;
+            }
+        });
+    }
+
+    private static Path resolveExecutable(String name) {
+        if (name.contains("/")) {
+            Path p = Paths.get(name);
+            return Files.exists(p) ? p : null;
+        }
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String d : path.split(java.io.File.pathSeparator)) {
+            Path p = Paths.get(d, name);
+            if (Files.isExecutable(p)) {
+                return p;
+            }
+        }
+        return null;
+    }
+}
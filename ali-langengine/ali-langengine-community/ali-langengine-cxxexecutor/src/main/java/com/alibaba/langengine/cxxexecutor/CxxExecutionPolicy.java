@@ -59,6 +59,11 @@ public class CxxExecutionPolicy {
     // WASI-specific Runtime Configuration
     private Integer maxWasmStackBytes = 262144; // 256 KiB
 
+    // Compile Artifact Cache
+    private boolean compileCacheEnabled = false;
+    private String compileCacheDir = ""; // Empty means "<workDir>/cache-<user.name>".
+    private long compileCacheMaxBytes = 256L * 1024 * 1024;
+
     /**
      * Gets the execution backend.
      *
@@ -351,4 +356,61 @@ public class CxxExecutionPolicy {
     public void setMaxWasmStackBytes(Integer maxWasmStackBytes) {
         this.maxWasmStackBytes = maxWasmStackBytes;
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks whether compiled artifacts are cached and reused across executions. Disabled by default.
+     *
+     * @return {@code true} if the compile cache is enabled.
+     */
+    public boolean isCompileCacheEnabled() {
+        return compileCacheEnabled;
+    }
+
+    /**
+     * Sets whether compiled artifacts are cached and reused across executions.
+     *
+     * @param compileCacheEnabled {@code true} to enable the compile cache.
+     */
+    public void setCompileCacheEnabled(boolean compileCacheEnabled) {
+        this.compileCacheEnabled = compileCacheEnabled;
+    }
+
+    /**
+     * Gets the directory of the compile cache. An empty value means {@code <workDir>/cache-<user.name>}.
+     *
+     * @return The compile cache directory.
+     */
+    public String getCompileCacheDir() {
+        return compileCacheDir;
+    }
+
+    /**
+     * Sets the directory of the compile cache. An empty value means {@code <workDir>/cache-<user.name>}.
+     * The directory is created with mode 0700 and must be owned by the current user and not accessible
+     * to group or others; otherwise executions fail instead of running artifacts from it.
+     *
+     * @param compileCacheDir The compile cache directory.
+     */
+    public void setCompileCacheDir(String compileCacheDir) {
+        this.compileCacheDir = compileCacheDir;
+    }
+
+    /**
+     * Gets the maximum total size of the cached artifacts in bytes.
+     *
+     * @return The compile cache size limit in bytes.
+     */
+    public long getCompileCacheMaxBytes() {
+        return compileCacheMaxBytes;
+    }
+
+    /**
+     * Sets the maximum total size of the cached artifacts in bytes. Least recently used
+     * artifacts are evicted when the limit is exceeded.
+     *
+     * @param compileCacheMaxBytes The compile cache size limit in bytes.
+     */
+    public void setCompileCacheMaxBytes(long compileCacheMaxBytes) {
+        this.compileCacheMaxBytes = compileCacheMaxBytes;
+    }
+}
@@ -34,6 +34,7 @@ public class CxxExecutionResult {
     private final String phase;
     private final long compileMillis;
     private final long runMillis;
+    private final boolean compileCached;
 
     /**
      * Private constructor to be used by the {@link Builder}.
@@ -50,6 +51,7 @@ public class CxxExecutionResult {
         this.phase = builder.phase;
         this.compileMillis = builder.compileMillis;
         this.runMillis = builder.runMillis;
+        this.compileCached = builder.compileCached;
     }
 
     /**
@@ -133,6 +135,15 @@ public class CxxExecutionResult {
         return runMillis;
     }
 
+    /**
+     * Checks whether the compiled artifact was taken from the compile cache instead of being compiled.
+     *
+     * @return {@code true} if compilation was skipped because of a cache hit.
+     */
+    public boolean isCompileCached() {
+        return compileCached;
+    }
+
     /**
      * Creates a new builder for {@link CxxExecutionResult}.
      *
@@ -190,6 +201,36 @@ public class CxxExecutionResult {
                 .build();
     }
 
+    /**
+     * Creates a result for a successful or failed run, recording whether compilation was served by the cache.
+     *
+     * @param out           The standard output.
+     * @param outTrunc      Whether the standard output was truncated.
+     * @param err           The standard error.
+     * @param errTrunc      Whether the standard error was truncated.
+     * @param code          The exit code.
+     * @param compileMs     The compilation time in milliseconds.
+     * @param runMs         The execution time in milliseconds.
+     * @param compileCached Whether the compiled artifact came from the compile cache.
+     * @return A new {@link CxxExecutionResult} instance.
+     */
+    public static CxxExecutionResult success(String out, boolean outTrunc,
+                                             String err, boolean errTrunc,
+                                             int code, long compileMs, long runMs, boolean compileCached) {
+        return new Builder()
+                .ok(code == 0)
+                .exitCode(code)
+                .stdout(out)
+                .stderr(err)
+                .stdoutTruncated(outTrunc)
+                .stderrTruncated(errTrunc)
+                .phase("run")
+                .compileMillis(compileMs)
+                .runMillis(runMs)
+                .compileCached(compileCached)
+                .build();
+    }
+
     /**
      * Creates a result for an internal error within the executor.
      *
@@ -218,6 +259,7 @@ public class CxxExecutionResult {
         private String phase;
         private long compileMillis;
         private long runMillis;
+        private boolean compileCached;
 
         private Builder() {}
 
@@ -320,6 +362,17 @@ public class CxxExecutionResult {
             return this;
         }
 
+        /**
+         * Sets whether the compiled artifact came from the compile cache.
+         *
+         * @param compileCached {@code true} on a cache hit.
+         * @return This builder instance.
+         */
+        public Builder compileCached(boolean compileCached) {
+            this.compileCached = compileCached;
+            return this;
+        }
+
         /**
          * Builds the {@link CxxExecutionResult}.
          *
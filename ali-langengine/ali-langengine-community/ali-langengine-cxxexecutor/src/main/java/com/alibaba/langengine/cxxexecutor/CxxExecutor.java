@@ -23,6 +23,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.TimeoutException;
@@ -38,8 +39,9 @@ public class CxxExecutor {
      * This method orchestrates the entire lifecycle of a code execution, including:
      * 1. Pre-flight checks (e.g., include guards).
      * 2. Setting up a temporary working directory.
-     * 3. Compiling the source code using the specified backend (WASI or NsJail).
-     * 4. Running the compiled artifact in a sandboxed environment.
+     * 3. Compiling the source code using the specified backend (WASI or NsJail), or reusing the
+     *    artifact of an identical earlier compilation from the compile cache.
+     * 4. Running (a read-only copy of) the compiled artifact in a sandboxed environment.
      * 5. Cleaning up the temporary directory.
      *
      * @param opt The {@link CxxExecutionOptions} containing the source code and execution policy.
@@ -72,21 +74,32 @@ public class CxxExecutor {
             Path srcPath = workDir.resolve(filename);
             Files.writeString(srcPath, code, StandardCharsets.UTF_8);
 
-            // 1) Compilation Phase
+            // 1) Compilation Phase (served from the compile cache when the same program was built before)
+            boolean wasi = policy.getBackend() == Backend.WASI;
+            String srcFile = srcPath.getFileName().toString();
+            List<String> compileCommand = wasi
+                    ? WasmToolchain.compileWasiCmd(policy.getClangPath(), policy.getWasiSysroot(), srcFile,
+                    policy.getExtraCompileFlags())
+                    : NsjailSandbox.compileNativeCmd(policy, srcFile);
+            Map<String, String> compileEnv = wasi ? null : opt.getEnv();
+            Path compileDir = workDir;
+            CompileCache.Compiler compiler = () -> ProcessUtils.exec(compileCommand, compileDir, null, compileEnv,
+                    policy.getCompileTimeoutMs(), policy.getMaxStdoutBytes(), policy.getMaxStderrBytes(),
+                    policy.getHardKillGraceMs());
+
             ProcessUtils.ExecOut compileOutput;
-            long compileMs;
-            if (policy.getBackend() == Backend.WASI) {
-                compileOutput = WasmToolchain.compileWasi(
-                        workDir, policy.getClangPath(), policy.getWasiSysroot(),
-                        opt.isCpp(), srcPath.getFileName().toString(), policy.getExtraCompileFlags(),
-                        policy.getCompileTimeoutMs(), policy.getMaxStdoutBytes(), policy.getMaxStderrBytes(),
-                        policy.getHardKillGraceMs());
+            boolean compileCached = false;
+            CompileCache cache = compileCache(policy, baseDir);
+            if (cache == null) {
+                compileOutput = compiler.compile();
             } else {
-                List<String> compileCommand = NsjailSandbox.compileNativeCmd(policy, srcPath.getFileName().toString());
-                compileOutput = ProcessUtils.exec(compileCommand, workDir, null, opt.getEnv(), policy.getCompileTimeoutMs(),
-                        policy.getMaxStdoutBytes(), policy.getMaxStderrBytes(), policy.getHardKillGraceMs());
+                Path artifact = workDir.resolve(wasi ? WasmToolchain.ARTIFACT : NsjailSandbox.ARTIFACT);
+                CompileCache.Lookup lookup = cache.compile(
+                        CompileCache.key(policy.getBackend(), compileCommand, compileEnv, code), artifact, compiler);
+                compileOutput = lookup.out;
+                compileCached = lookup.hit;
             }
-            compileMs = compileOutput.millis;
+            long compileMs = compileOutput.millis;
             if (compileOutput.code != 0) {
                 return CxxExecutionResult.compileError(compileOutput.err, compileOutput.errTrunc, compileMs);
             }
@@ -106,7 +119,9 @@ public class CxxExecutor {
                         policy.getMaxWasmStackBytes()
                 );
             } else {
-                List<String> runCommand = NsjailSandbox.wrapRun(policy, workDir, "/work/a.out");
+                List<String> runCommand = cache == null
+                        ? NsjailSandbox.wrapRun(policy, workDir, "/work/" + NsjailSandbox.ARTIFACT)
+                        : NsjailSandbox.wrapRunReadOnly(policy, workDir);
                 runOutput = ProcessUtils.exec(runCommand, workDir, opt.getStdin(), opt.getEnv(), policy.getRunTimeoutMs(),
                         policy.getMaxStdoutBytes(), policy.getMaxStderrBytes(), policy.getHardKillGraceMs());
             }
@@ -114,7 +129,7 @@ public class CxxExecutor {
             return CxxExecutionResult.success(
                     runOutput.out, runOutput.outTrunc,
                     runOutput.err, runOutput.errTrunc,
-                    runOutput.code, compileMs, runOutput.millis
+                    runOutput.code, compileMs, runOutput.millis, compileCached
             );
         } catch (TimeoutException te) {
             return CxxExecutionResult.internalError("Execution timed out: " + te.getMessage());
@@ -131,6 +146,24 @@ public class CxxExecutor {
         }
     }
 
+    /**
+     * Resolves the compile cache configured by the policy.
+     *
+     * @param policy  The execution policy.
+     * @param baseDir The working directory root, used when no cache directory is configured.
+     * @return The compile cache, or {@code null} if caching is disabled.
+     * @throws IOException if the cache directory cannot be created or is not private to the current user.
+     */
+    static CompileCache compileCache(CxxExecutionPolicy policy, Path baseDir) throws IOException {
+        if (!policy.isCompileCacheEnabled()) {
+            return null;
+        }
+        String dir = policy.getCompileCacheDir();
+        Path cacheDir = (dir == null || dir.isBlank())
+                ? baseDir.resolve("cache-" + System.getProperty("user.name")) : Paths.get(dir);
+        return CompileCache.forDirectory(cacheDir, policy.getCompileCacheMaxBytes());
+    }
+
     /**
      * Recursively deletes a directory and its contents.
      *
@@ -33,6 +33,11 @@ import java.util.List;
  */
 class NsjailSandbox {
 
+    /**
+     * The file name of the compiled executable in the working directory.
+     */
+    static final String ARTIFACT = "a.out";
+
     /**
      * Constructs the command-line arguments for compiling native C/C++ code.
      *
@@ -53,7 +58,7 @@ class NsjailSandbox {
             }
         }
         cc.add("-o");
-        cc.add("a.out");
+        cc.add(ARTIFACT);
         cc.add(srcFile);
         return cc;
     }
@@ -135,4 +140,25 @@ class NsjailSandbox {
         cmd.add(exe);
         return cmd;
     }
+
+    /**
+     * Wraps the compiled executable of {@code workDir} for sandboxed execution, additionally mounting it
+     * read-only over its own path so the sandboxed program cannot modify or replace its binary.
+     * <p>
+     * The final command structure will be:
+     * {@code nsjail -Mo --config <tmp.cfg> --cwd /work --bindmount {workDir}:/work
+     * --bindmount_ro {workDir}/a.out:/work/a.out -- /work/a.out}
+     *
+     * @param p       The execution policy.
+     * @param workDir The host directory to be mounted as the sandbox's working directory.
+     * @return A list of strings representing the full NsJail command.
+     */
+    static List<String> wrapRunReadOnly(CxxExecutionPolicy p, Path workDir) {
+        String exe = "/work/" + ARTIFACT;
+        List<String> cmd = wrapRun(p, workDir, exe);
+        int sep = cmd.indexOf("--");
+        cmd.add(sep, workDir.resolve(ARTIFACT) + ":" + exe);
+        cmd.add(sep, "--bindmount_ro");
+        return cmd;
+    }
 }
\ No newline at end of file
@@ -30,6 +30,11 @@ import java.util.Map;
  */
 class WasmToolchain {
 
+    /**
+     * The file name of the compiled module in the working directory.
+     */
+    static final String ARTIFACT = "prog.wasm";
+
     /**
      * Compiles C/C++ source code into a WebAssembly module using a WASI-compatible clang.
      *
@@ -50,6 +55,20 @@ class WasmToolchain {
                                             boolean isCpp, String srcFile, String[] extraFlags,
                                             int timeoutMs, long maxOut, long maxErr, long grace)
             throws Exception {
+        List<String> cc = compileWasiCmd(clang, sysroot, srcFile, extraFlags);
+        return ProcessUtils.exec(cc, work, null, null, timeoutMs, maxOut, maxErr, grace);
+    }
+
+    /**
+     * Constructs the command-line arguments for compiling C/C++ code into {@value #ARTIFACT}.
+     *
+     * @param clang      The path to the clang/clang++ executable (typically from the WASI SDK).
+     * @param sysroot    The path to the WASI sysroot.
+     * @param srcFile    The name of the source file to compile.
+     * @param extraFlags Additional command-line flags for the compiler.
+     * @return A list of strings representing the compiler command and its arguments.
+     */
+    static List<String> compileWasiCmd(String clang, String sysroot, String srcFile, String[] extraFlags) {
         List<String> cc = new ArrayList<>();
         // Use the clang/clang++ from the WASI SDK, which includes its own sysroot.
         cc.add(clang);
@@ -62,10 +81,9 @@ class WasmToolchain {
             cc.addAll(Arrays.asList(extraFlags));
         }
         cc.add("-o");
-        cc.add("prog.wasm");
+        cc.add(ARTIFACT);
         cc.add(srcFile);
-
-        return ProcessUtils.exec(cc, work, null, null, timeoutMs, maxOut, maxErr, grace);
+        return cc;
     }
 
     /**
@@ -112,7 +130,7 @@ class WasmToolchain {
         run.add("--dir=.");
 
         // The path to the WASM module must be specified last.
-        run.add("prog.wasm");
+        run.add(ARTIFACT);
 
         return ProcessUtils.exec(run, work, stdin, null, timeoutMs, maxOut, maxErr, grace);
     }
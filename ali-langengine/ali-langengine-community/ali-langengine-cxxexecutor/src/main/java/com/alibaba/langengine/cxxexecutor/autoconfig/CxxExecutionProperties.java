@@ -66,6 +66,11 @@ public class CxxExecutionProperties {
     // WASI-specific Configuration
     private Integer maxWasmStackBytes = 262144;
 
+    // Compile Artifact Cache
+    private boolean compileCacheEnabled = false;
+    private String compileCacheDir = "";
+    private long compileCacheMaxBytes = 256L * 1024 * 1024;
+
     // Health Check Configuration
     private Health health = new Health();
 
@@ -365,4 +370,53 @@ public class CxxExecutionProperties {
     public void setHealth(Health health) {
         this.health = health;
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks whether compiled artifacts are cached and reused across executions. Disabled by default.
+     * @return {@code true} if the compile cache is enabled.
+     */
+    public boolean isCompileCacheEnabled() {
+        return compileCacheEnabled;
+    }
+
+    /**
+     * Sets whether compiled artifacts are cached and reused across executions.
+     * @param compileCacheEnabled {@code true} to enable the compile cache.
+     */
+    public void setCompileCacheEnabled(boolean compileCacheEnabled) {
+        this.compileCacheEnabled = compileCacheEnabled;
+    }
+
+    /**
+     * Gets the compile cache directory. An empty value means {@code <workDir>/cache-<user.name>}.
+     * @return The compile cache directory.
+     */
+    public String getCompileCacheDir() {
+        return compileCacheDir;
+    }
+
+    /**
+     * Sets the compile cache directory. An empty value means {@code <workDir>/cache-<user.name>}.
+     * The directory must be private to the current user (mode 0700).
+     * @param compileCacheDir The compile cache directory.
+     */
+    public void setCompileCacheDir(String compileCacheDir) {
+        this.compileCacheDir = compileCacheDir;
+    }
+
+    /**
+     * Gets the maximum total size of the cached artifacts in bytes.
+     * @return The compile cache size limit.
+     */
+    public long getCompileCacheMaxBytes() {
+        return compileCacheMaxBytes;
+    }
+
+    /**
+     * Sets the maximum total size of the cached artifacts in bytes.
+     * @param compileCacheMaxBytes The compile cache size limit.
+     */
+    public void setCompileCacheMaxBytes(long compileCacheMaxBytes) {
+        this.compileCacheMaxBytes = compileCacheMaxBytes;
+    }
+}
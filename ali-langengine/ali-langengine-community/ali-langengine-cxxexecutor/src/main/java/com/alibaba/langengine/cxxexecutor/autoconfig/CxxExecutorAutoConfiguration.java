@@ -112,6 +112,13 @@ public class CxxExecutorAutoConfiguration {
             policy.setMaxWasmStackBytes(props.getMaxWasmStackBytes());
         }
 
+        // Configure the compile artifact cache.
+        policy.setCompileCacheEnabled(props.isCompileCacheEnabled());
+        if (props.getCompileCacheDir() != null) {
+            policy.setCompileCacheDir(props.getCompileCacheDir());
+        }
+        policy.setCompileCacheMaxBytes(props.getCompileCacheMaxBytes());
+
         return policy;
     }
 
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2024 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.langengine.cxxexecutor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Contains unit tests for {@link CompileCache}, compiling native programs with the system {@code g++}/{@code clang++}.
+ */
+public class CompileCacheTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "#include <iostream>",
+            "int main(){ int x; std::cin >> x; std::cout << x * 2 << std::endl; return 0; }");
+
+    private Path root;
+    private CxxExecutionPolicy policy;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String compiler = findCompiler();
+        Assumptions.assumeTrue(compiler != null, "Neither g++ nor clang++ found, skipping test.");
+        root = Files.createTempDirectory("cxx_cache_test_");
+        policy = new CxxExecutionPolicy();
+        policy.setBackend(Backend.NSJAIL);
+        policy.setClangPath(compiler);
+        policy.setExtraCompileFlags(new String[]{"-O0"});
+        policy.setCompileTimeoutMs(30_000);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (root == null) {
+            return;
+        }
+        try (var files = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /**
+     * Tests that the first compilation misses, the second hits, and both produce a working, read-only artifact.
+     */
+    @Test
+    void hit_after_miss() throws Exception {
+        CompileCache cache = CompileCache.forDirectory(root.resolve("cache"), 64L * 1024 * 1024);
+
+        Path first = root.resolve("w1");
+        CompileCache.Lookup miss = compile(cache, policy, PROGRAM, first, null);
+        assertFalse(miss.hit);
+        assertEquals(0, miss.out.code, miss.out.err);
+
+        Path second = root.resolve("w2");
+        CompileCache.Lookup hit = compile(cache, policy, PROGRAM, second, null);
+        assertTrue(hit.hit);
+        assertEquals(0, hit.out.code);
+
+        Path artifact = second.resolve(NsjailSandbox.ARTIFACT);
+        assertFalse(Files.getPosixFilePermissions(artifact).contains(PosixFilePermission.OWNER_WRITE));
+        assertEquals("100", run(artifact, "50"));
+        assertEquals("42", run(first.resolve(NsjailSandbox.ARTIFACT), "21"));
+    }
+
+    /**
+     * Tests that the key covers flags, source, environment and backend.
+     */
+    @Test
+    void key_is_sensitive_to_flags_source_and_target() throws Exception {
+        List<String> o0 = NsjailSandbox.compileNativeCmd(policy, "main.cpp");
+        String base = CompileCache.key(Backend.NSJAIL, o0, null, PROGRAM);
+        assertEquals(base, CompileCache.key(Backend.NSJAIL, o0, null, PROGRAM));
+
+        policy.setExtraCompileFlags(new String[]{"-O1"});
+        List<String> o1 = NsjailSandbox.compileNativeCmd(policy, "main.cpp");
+        assertNotEquals(base, CompileCache.key(Backend.NSJAIL, o1, null, PROGRAM));
+        assertNotEquals(base, CompileCache.key(Backend.NSJAIL, o0, null, PROGRAM + "\n"));
+        assertNotEquals(base, CompileCache.key(Backend.NSJAIL, o0, java.util.Map.of("CPATH", "/x"), PROGRAM));
+        assertNotEquals(base, CompileCache.key(Backend.WASI, o0, null, PROGRAM));
+
+        // Changing flags must compile again rather than reuse the -O0 artifact.
+        CompileCache cache = CompileCache.forDirectory(root.resolve("cache"), 64L * 1024 * 1024);
+        policy.setExtraCompileFlags(new String[]{"-O0"});
+        assertFalse(compile(cache, policy, PROGRAM, root.resolve("w1"), null).hit);
+        policy.setExtraCompileFlags(new String[]{"-O1"});
+        assertFalse(compile(cache, policy, PROGRAM, root.resolve("w2"), null).hit);
+        assertTrue(compile(cache, policy, PROGRAM, root.resolve("w3"), null).hit);
+    }
+
+    /**
+     * Tests that compile errors are reported and not cached.
+     */
+    @Test
+    void compile_error_is_not_cached() throws Exception {
+        CompileCache cache = CompileCache.forDirectory(root.resolve("cache"), 64L * 1024 * 1024);
+        CompileCache.Lookup first = compile(cache, policy, "int main(){ BROKEN }", root.resolve("w1"), null);
+        assertNotEquals(0, first.out.code);
+        assertFalse(first.hit);
+        assertEquals(0, cache.sizeBytes());
+        assertFalse(compile(cache, policy, "int main(){ BROKEN }", root.resolve("w2"), null).hit);
+    }
+
+    /**
+     * Tests that the least recently used artifact is evicted once the size limit is exceeded.
+     */
+    @Test
+    void lru_eviction() throws Exception {
+        // Measure one artifact to size the cache for two of them.
+        CompileCache probe = CompileCache.forDirectory(root.resolve("probe"), Long.MAX_VALUE);
+        compile(probe, policy, program(0), root.resolve("p"), null);
+        long one = probe.sizeBytes();
+        assertTrue(one > 0);
+
+        Path dir = root.resolve("cache");
+        CompileCache cache = CompileCache.forDirectory(dir, one * 5 / 2);
+        compile(cache, policy, program(1), root.resolve("w1"), null);
+        compile(cache, policy, program(2), root.resolve("w2"), null);
+        // Touch 1 so that 2 becomes the least recently used.
+        assertTrue(compile(cache, policy, program(1), root.resolve("w3"), null).hit);
+        compile(cache, policy, program(3), root.resolve("w4"), null);
+
+        assertTrue(cache.contains(key(policy, program(1))));
+        assertFalse(cache.contains(key(policy, program(2))));
+        assertTrue(cache.contains(key(policy, program(3))));
+        assertTrue(cache.sizeBytes() <= one * 5 / 2);
+        assertFalse(Files.exists(dir.resolve(key(policy, program(2)))));
+        try (var files = Files.list(dir)) {
+            // Two artifacts and their digest files.
+            assertEquals(4, files.count());
+        }
+    }
+
+    /**
+     * Tests that asking for an existing cache with a smaller limit applies the new limit.
+     */
+    @Test
+    void size_limit_applies_to_existing_instance() throws Exception {
+        Path dir = root.resolve("cache");
+        CompileCache cache = CompileCache.forDirectory(dir, 64L * 1024 * 1024);
+        compile(cache, policy, program(1), root.resolve("w1"), null);
+        compile(cache, policy, program(2), root.resolve("w2"), null);
+        long two = cache.sizeBytes();
+
+        assertSame(cache, CompileCache.forDirectory(dir, two - 1));
+        assertTrue(cache.sizeBytes() < two);
+        assertFalse(cache.contains(key(policy, program(1))));
+        assertTrue(cache.contains(key(policy, program(2))));
+    }
+
+    /**
+     * Tests that an artifact modified after it was published is recompiled instead of being executed.
+     */
+    @Test
+    void tampered_artifact_is_not_executed() throws Exception {
+        Path dir = root.resolve("cache");
+        CompileCache cache = CompileCache.forDirectory(dir, 64L * 1024 * 1024);
+        compile(cache, policy, PROGRAM, root.resolve("w1"), null);
+
+        String key = key(policy, PROGRAM);
+        Files.delete(dir.resolve(key));
+        Files.writeString(dir.resolve(key), "#!/bin/sh\necho tampered\n");
+        Files.setPosixFilePermissions(dir.resolve(key), PosixFilePermissions.fromString("rwx------"));
+
+        AtomicInteger compilations = new AtomicInteger();
+        CompileCache.Lookup lookup = compile(cache, policy, PROGRAM, root.resolve("w2"), compilations);
+        assertFalse(lookup.hit);
+        assertEquals(1, compilations.get());
+        assertEquals("8", run(root.resolve("w2").resolve(NsjailSandbox.ARTIFACT), "4"));
+        assertTrue(compile(cache, policy, PROGRAM, root.resolve("w3"), null).hit);
+    }
+
+    /**
+     * Tests that a cache directory other users can access is refused, and that new directories are private.
+     */
+    @Test
+    void shared_directory_is_refused() throws Exception {
+        Path shared = root.resolve("shared");
+        Files.createDirectories(shared);
+        Files.setPosixFilePermissions(shared, PosixFilePermissions.fromString("rwxrwxrwx"));
+        assertThrows(IOException.class, () -> CompileCache.forDirectory(shared, 64L * 1024 * 1024));
+
+        Path created = root.resolve("created");
+        CompileCache.forDirectory(created, 64L * 1024 * 1024);
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(created)));
+    }
+
+    /**
+     * Tests that concurrent requests for the same program compile it only once.
+     */
+    @Test
+    void concurrent_compiles_are_deduplicated() throws Exception {
+        CompileCache cache = CompileCache.forDirectory(root.resolve("cache"), 64L * 1024 * 1024);
+        AtomicInteger compilations = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CompileCache.Lookup>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Path work = root.resolve("w" + i);
+                futures.add(es.submit(() -> {
+                    start.await();
+                    return compile(cache, policy, PROGRAM, work, compilations);
+                }));
+            }
+            start.countDown();
+            int hits = 0;
+            for (Future<CompileCache.Lookup> f : futures) {
+                CompileCache.Lookup lookup = f.get(60, TimeUnit.SECONDS);
+                assertEquals(0, lookup.out.code, lookup.out.err);
+                hits += lookup.hit ? 1 : 0;
+            }
+            assertEquals(1, compilations.get());
+            assertEquals(threads - 1, hits);
+            for (int i = 0; i < threads; i++) {
+                assertEquals("8", run(root.resolve("w" + i).resolve(NsjailSandbox.ARTIFACT), "4"));
+            }
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a new cache instance picks up artifacts published earlier to the same directory.
+     */
+    @Test
+    void index_is_rebuilt_from_disk() throws Exception {
+        Path dir = root.resolve("cache");
+        CompileCache cache = CompileCache.forDirectory(dir, 64L * 1024 * 1024);
+        compile(cache, policy, PROGRAM, root.resolve("w1"), null);
+
+        // Another path spelling of the same directory must share the instance.
+        assertSame(cache, CompileCache.forDirectory(root.resolve("x").resolve("..").resolve("cache"), 64L * 1024 * 1024));
+
+        // Simulate a restart by opening a copy of the directory, which has no instance yet.
+        Path copy = root.resolve("cache-copy");
+        Files.createDirectory(copy, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        String key = key(policy, PROGRAM);
+        Files.copy(dir.resolve(key), copy.resolve(key));
+        Files.copy(dir.resolve(key + ".sha256"), copy.resolve(key + ".sha256"));
+        Files.writeString(copy.resolve(".tmp-leftover"), "partial");
+        // An artifact without a digest file is dropped rather than trusted.
+        String other = key(policy, program(1));
+        Files.copy(dir.resolve(key), copy.resolve(other));
+        CompileCache restarted = CompileCache.forDirectory(copy, 64L * 1024 * 1024);
+        assertTrue(restarted.contains(key));
+        assertFalse(restarted.contains(other));
+        assertFalse(Files.exists(copy.resolve(other)));
+        assertFalse(Files.exists(copy.resolve(".tmp-leftover")));
+        assertTrue(compile(restarted, policy, PROGRAM, root.resolve("w2"), null).hit);
+    }
+
+    private static String program(int n) {
+        return PROGRAM.replace("x * 2", "x * 2 + " + n);
+    }
+
+    private static String key(CxxExecutionPolicy policy, String code) {
+        return CompileCache.key(Backend.NSJAIL, NsjailSandbox.compileNativeCmd(policy, "main.cpp"), null, code);
+    }
+
+    private static CompileCache.Lookup compile(CompileCache cache, CxxExecutionPolicy policy, String code, Path work,
+                                               AtomicInteger counter) throws Exception {
+        Files.createDirectories(work);
+        Files.writeString(work.resolve("main.cpp"), code, StandardCharsets.UTF_8);
+        List<String> cmd = NsjailSandbox.compileNativeCmd(policy, "main.cpp");
+        return cache.compile(CompileCache.key(Backend.NSJAIL, cmd, null, code), work.resolve(NsjailSandbox.ARTIFACT),
+                () -> {
+                    if (counter != null) {
+                        counter.incrementAndGet();
+                    }
+                    return ProcessUtils.exec(cmd, work, null, null, policy.getCompileTimeoutMs(),
+                            policy.getMaxStdoutBytes(), policy.getMaxStderrBytes(), policy.getHardKillGraceMs());
+                });
+    }
+
+    private static String run(Path artifact, String stdin) throws Exception {
+        ProcessUtils.ExecOut out = ProcessUtils.exec(List.of(artifact.toString()), artifact.getParent(), stdin, null,
+                5000, 4096, 4096, 100);
+        assertEquals(0, out.code, out.err);
+        return out.out.trim();
+    }
+
+    private static String findCompiler() {
+        for (String c : new String[]{"g++", "clang++"}) {
+            String path = System.getenv("PATH");
+            if (path == null) {
+                continue;
+            }
+            for (String d : path.split(java.io.File.pathSeparator)) {
+                if (Files.isExecutable(Paths.get(d, c))) {
+                    return c;
+                }
+            }
+        }
+        return null;
+    }
+}
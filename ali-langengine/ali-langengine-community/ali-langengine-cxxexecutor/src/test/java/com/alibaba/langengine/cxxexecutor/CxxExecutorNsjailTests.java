@@ -18,6 +18,7 @@ package com.alibaba.langengine.cxxexecutor;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -253,4 +254,27 @@ public class CxxExecutorNsjailTests {
         Assertions.assertTrue(result.getStdout().length() < 100_000);
         Assertions.assertTrue(result.getStdout().length() <= 1025);
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that retrying the same program with different stdin reuses the cached artifact.
+     */
+    @Test
+    void nsjail_retry_with_new_stdin_hits_compile_cache(@TempDir java.nio.file.Path cacheDir) {
+        CxxExecutionPolicy policy = TestSupport.nsjailPolicyOrSkip();
+        policy.setCompileCacheEnabled(true);
+        policy.setCompileCacheDir(cacheDir.toString());
+        String code = String.join("\n",
+                "#include <stdio.h>",
+                "int main(){ int x; if(scanf(\"%d\", &x)!=1) return 2; printf(\"%d\\n\", x * 2); return 0; }");
+        var first = createExecutor().executeOnce(CxxExecutionOptions.builder()
+                .code(code).isCpp(false).stdin("21").policy(policy).build());
+        var second = createExecutor().executeOnce(CxxExecutionOptions.builder()
+                .code(code).isCpp(false).stdin("50").policy(policy).build());
+        assertTrue(first.isOk());
+        assertFalse(first.isCompileCached());
+        assertTrue(first.getStdout().contains("42"));
+        assertTrue(second.isOk());
+        assertTrue(second.isCompileCached());
+        assertTrue(second.getStdout().contains("100"));
+    }
+}
@@ -21,13 +21,23 @@ import com.alibaba.dashscope.exception.NoApiKeyException;
 import com.alibaba.dashscope.tokenizers.Tokenization;
 import com.alibaba.dashscope.tokenizers.TokenizationResult;
 import com.alibaba.langengine.core.jtokkit.api.EncodingType;
+import com.alibaba.langengine.core.tokenizers.QwenTokenizer;
 import com.alibaba.langengine.core.tokenizers.Tokenizer;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
 
 import static com.alibaba.langengine.dashscope.DashScopeConfiguration.DASHSCOPE_API_KEY;
 import static com.alibaba.langengine.dashscope.DashScopeModelName.QWEN_PLUS;
 import static com.alibaba.langengine.dashscope.Utils.getOrDefault;
 
+/**
+ * DashScope tokenizer
+ * 默认使用本地qwen.tiktoken词表计数, 不发起网络请求;
+ * remoteVerification打开后同时调用DashScope tokenizer接口, 以接口结果为准并记录与本地结果的差异
+ */
+@Slf4j
 @Data
 public class DashScopeTokenizer extends Tokenizer {
 
@@ -35,6 +45,13 @@ public class DashScopeTokenizer extends Tokenizer {
     private String modelName;
     private Tokenization tokenizer;
 
+    /**
+     * 是否调用远程接口校验本地计数
+     */
+    private boolean remoteVerification = false;
+
+    private QwenTokenizer localTokenizer = new QwenTokenizer();
+
     public DashScopeTokenizer(String modelName) {
         this.modelName = getOrDefault(modelName, QWEN_PLUS);
         this.tokenizer = new Tokenization();
@@ -46,8 +63,36 @@ public class DashScopeTokenizer extends Tokenizer {
         this.tokenizer = new Tokenization();
     }
 
+    @Override
+    public List<Integer> encode(String text) {
+        return localTokenizer.encode(text);
+    }
+
+    @Override
+    public String decode(List<Integer> encodes) {
+        return localTokenizer.decode(encodes);
+    }
+
     @Override
     public int getTokenCount(String text) {
+        int localCount = localTokenizer.getTokenCount(text);
+        if (!remoteVerification) {
+            return localCount;
+        }
+        int remoteCount = getRemoteTokenCount(text);
+        if (remoteCount != localCount) {
+            log.warn("DashScope token count mismatch, model:{}, local:{}, remote:{}", modelName, localCount, remoteCount);
+        }
+        return remoteCount;
+    }
+
+    /**
+     * 调用DashScope tokenizer接口计数
+     *
+     * @param text
+     * @return
+     */
+    public int getRemoteTokenCount(String text) {
         try {
             QwenParam param = QwenParam.builder()
                     .apiKey(apiKey)
@@ -64,7 +109,7 @@ public class DashScopeTokenizer extends Tokenizer {
 
     @Override
     public EncodingType getEncoding() {
-        return null;
+        return EncodingType.QWEN;
     }
 
 //    @Override
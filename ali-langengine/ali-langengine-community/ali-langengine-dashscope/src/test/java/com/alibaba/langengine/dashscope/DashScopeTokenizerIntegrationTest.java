@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.dashscope;
+
+import com.alibaba.langengine.dashscope.tokenizers.DashScopeTokenizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 调用DashScope tokenizer接口, 只在设置了DASHSCOPE_API_KEY时运行
+ */
+@EnabledIfEnvironmentVariable(named = "DASHSCOPE_API_KEY", matches = ".+")
+public class DashScopeTokenizerIntegrationTest {
+
+    private final DashScopeTokenizer tokenizer =
+            new DashScopeTokenizer(System.getenv("DASHSCOPE_API_KEY"), DashScopeModelName.QWEN_TURBO);
+
+    @Test
+    public void test_remoteCountsMatchCorpus() throws Exception {
+        for (String[] golden : DashScopeTokenizerTest.loadGoldenCorpus()) {
+            assertEquals(Integer.parseInt(golden[0]), tokenizer.getRemoteTokenCount(golden[1]), golden[1]);
+        }
+    }
+
+    @Test
+    public void test_localVsRemoteThroughput() throws Exception {
+        List<String[]> corpus = DashScopeTokenizerTest.loadGoldenCorpus();
+        int rounds = 20;
+        // 预热, 排除词表加载耗时
+        tokenizer.getTokenCount(corpus.get(0)[1]);
+
+        long localStart = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (String[] golden : corpus) {
+                tokenizer.getTokenCount(golden[1]);
+            }
+        }
+        long localNanos = System.nanoTime() - localStart;
+
+        long remoteStart = System.nanoTime();
+        for (String[] golden : corpus) {
+            tokenizer.getRemoteTokenCount(golden[1]);
+        }
+        long remoteNanos = System.nanoTime() - remoteStart;
+
+        System.out.printf("local: %d us/op, remote: %d us/op%n",
+                localNanos / 1000 / (rounds * corpus.size()), remoteNanos / 1000 / corpus.size());
+    }
+}
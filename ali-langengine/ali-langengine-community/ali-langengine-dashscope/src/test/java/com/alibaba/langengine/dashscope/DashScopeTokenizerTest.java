@@ -22,7 +22,17 @@ import com.alibaba.langengine.core.tokenizers.Tokenizer;
 import com.alibaba.langengine.dashscope.tokenizers.DashScopeTokenizer;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class DashScopeTokenizerTest {
 
@@ -47,4 +57,73 @@ public class DashScopeTokenizerTest {
         List<Document> documents = textSplitter.createDocuments(text);
         System.out.println(JSON.toJSONString(documents));
     }
+
+    @Test
+    public void test_localTokenCount() throws Exception {
+        // 本地计数不需要apiKey, 也不发起网络请求
+        DashScopeTokenizer tokenizer = new DashScopeTokenizer(null, DashScopeModelName.QWEN_TURBO);
+        for (String[] golden : loadGoldenCorpus()) {
+            String text = golden[1];
+            int expected = Integer.parseInt(golden[0]);
+            assertEquals(expected, tokenizer.getTokenCount(text), text);
+            List<Integer> tokens = tokenizer.encode(text);
+            assertEquals(expected, tokens.size(), text);
+            assertEquals(text, tokenizer.decode(tokens));
+        }
+        assertEquals(0, tokenizer.getTokenCount(""));
+    }
+
+    @Test
+    public void test_specialTokens() {
+        DashScopeTokenizer tokenizer = new DashScopeTokenizer(null, DashScopeModelName.QWEN_TURBO);
+        // qwen词表中特殊token的固定id
+        assertEquals(Collections.singletonList(151643), tokenizer.encode("<|endoftext|>"));
+        assertEquals(Collections.singletonList(151644), tokenizer.encode("<|im_start|>"));
+        assertEquals(Collections.singletonList(151645), tokenizer.encode("<|im_end|>"));
+    }
+
+    @Test
+    public void test_remoteVerification() throws Exception {
+        // 替换远程计数, 不发起网络请求
+        AtomicInteger remoteCalls = new AtomicInteger();
+        DashScopeTokenizer tokenizer = new DashScopeTokenizer("sk-stub", DashScopeModelName.QWEN_TURBO) {
+            @Override
+            public int getRemoteTokenCount(String text) {
+                remoteCalls.incrementAndGet();
+                return 10;
+            }
+        };
+        String text = loadGoldenCorpus().get(1)[1];
+        int localCount = tokenizer.getTokenCount(text);
+        assertEquals(0, remoteCalls.get());
+
+        tokenizer.setRemoteVerification(true);
+        assertEquals(10, tokenizer.getTokenCount(text));
+        assertEquals(1, remoteCalls.get());
+        assertTrue(localCount != 10);
+    }
+
+    /**
+     * 多语种语料及DashScope SDK自带tokenizer给出的qwen token数, 每行: count\ttext, 文本中的\n与\t已转义
+     */
+    static List<String[]> loadGoldenCorpus() throws Exception {
+        List<String[]> corpus = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                DashScopeTokenizerTest.class.getClassLoader().getResourceAsStream("qwen_token_counts.tsv"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                String text = line.substring(tab + 1)
+                        .replace("\\n", "\n")
+                        .replace("\\t", "\t");
+                corpus.add(new String[] { line.substring(0, tab), text });
+            }
+        }
+        assertNotNull(corpus);
+        assertTrue(corpus.size() > 0);
+        return corpus;
+    }
 }
@@ -16,13 +16,14 @@
 package com.alibaba.langengine.djl.embeddings;
 
 import ai.djl.huggingface.translator.TextEmbeddingTranslatorFactory;
-import ai.djl.inference.Predictor;
 import ai.djl.repository.zoo.Criteria;
 import ai.djl.repository.zoo.ZooModel;
 import ai.djl.training.util.ProgressBar;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.langengine.core.embeddings.Embeddings;
 import com.alibaba.langengine.core.indexes.Document;
+import com.alibaba.langengine.djl.predictor.DynamicBatcher;
+import com.alibaba.langengine.djl.predictor.PredictorPool;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
@@ -30,6 +31,8 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 /**
@@ -42,6 +45,15 @@ import java.util.stream.Collectors;
 public class SentenceTransformerEmbeddings extends Embeddings {
 
     public SentenceTransformerEmbeddings(String modelIdOrPath, Boolean remote) {
+        this(modelIdOrPath, remote, PredictorPool.DEFAULT_SIZE, DynamicBatcher.DEFAULT_MAX_BATCH_SIZE, DynamicBatcher.DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * @param poolSize      同一模型上的predictor数量, 即最大并行推理数
+     * @param maxBatchSize  合并并发请求后单次batchPredict的最大条数
+     * @param maxWaitMillis 凑批的最长等待时间
+     */
+    public SentenceTransformerEmbeddings(String modelIdOrPath, Boolean remote, int poolSize, int maxBatchSize, long maxWaitMillis) {
         Criteria.Builder<String, float[]> builder = Criteria.builder()
                 .setTypes(String.class, float[].class);
 
@@ -57,7 +69,7 @@ public class SentenceTransformerEmbeddings extends Embeddings {
                 .build();
         try {
             model = criteria.loadModel();
-            predictor = model.newPredictor();
+            batcher = new DynamicBatcher<>(PredictorPool.of(model, poolSize), maxBatchSize, maxWaitMillis);
         } catch (Throwable e) {
             throw new RuntimeException(e);
         }
@@ -65,7 +77,7 @@ public class SentenceTransformerEmbeddings extends Embeddings {
 
     private ZooModel<String, float[]> model;
 
-    private Predictor<String, float[]> predictor;
+    private DynamicBatcher<String, float[]> batcher;
 
     @Override
     public String getModelType() {
@@ -87,20 +99,22 @@ public class SentenceTransformerEmbeddings extends Embeddings {
     }
 
     private List<Document> getLenSafeEmbeddings(List<Document> documents, String textType) {
-        for (Document document : documents) {
+        // 每个文档单独成功或失败, 出错的文档不设置embedding
+        List<CompletableFuture<float[]>> futures = batcher.submitEach(documents.stream().map(Document::getPageContent).collect(Collectors.toList()));
+        for (int i = 0; i < futures.size(); i++) {
             try {
-//                URL url = model.getArtifact("config.json");
-//                String configString = IOUtils.toString(url);
-                String questionText = document.getPageContent();
-                float[] floatArray = predictor.predict(questionText);
+                float[] floatArray = futures.get(i).get();
                 List<Double> doubleList = new ArrayList<>();
                 for (float floatValue : floatArray) {
                     doubleList.add((double) floatValue);
                 }
-                document.setEmbedding(doubleList);
-//                log.info(getModelType() + " embeddings answer:" + JSON.toJSONString(doubleList));
+                documents.get(i).setEmbedding(doubleList);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("getLenSafeEmbeddings interrupted", e);
+                break;
             } catch (Throwable e) {
-                log.error("getLenSafeEmbeddings error", e);
+                log.error("getLenSafeEmbeddings error", e instanceof ExecutionException ? e.getCause() : e);
             }
         }
         return documents;
@@ -108,9 +122,9 @@ public class SentenceTransformerEmbeddings extends Embeddings {
 
     public void close() {
         log.warn("finalize...");
-        if(predictor != null) {
-            predictor.close();
-            predictor = null;
+        if(batcher != null) {
+            batcher.close();
+            batcher = null;
         }
         if(model != null) {
             model.close();
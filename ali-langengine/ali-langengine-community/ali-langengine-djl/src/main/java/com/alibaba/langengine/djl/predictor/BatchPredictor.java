@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.djl.predictor;
+
+import java.util.List;
+
+/**
+ * 可批量推理的predictor, 单个实例不要求线程安全, 由PredictorPool保证同一时刻只被一个线程使用
+ *
+ * @param <I> 输入类型
+ * @param <O> 输出类型
+ */
+public interface BatchPredictor<I, O> extends AutoCloseable {
+
+    List<O> batchPredict(List<I> inputs) throws Exception;
+
+    @Override
+    void close();
+}
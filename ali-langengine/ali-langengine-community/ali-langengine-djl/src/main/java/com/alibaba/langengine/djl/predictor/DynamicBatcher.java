@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.djl.predictor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 动态批处理: 把并发调用方的推理请求合并, 凑满maxBatchSize或等待maxWaitMillis后执行一次batchPredict,
+ * 再把结果按顺序分发回各调用方. 工作线程数与PredictorPool大小一致.
+ * 合并后的批次失败时逐条重试, 只有出错的那条输入收到异常, 不会牵连同批的其他调用方
+ *
+ * @param <I> 输入类型
+ * @param <O> 输出类型
+ */
+@Slf4j
+public class DynamicBatcher<I, O> implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 32;
+
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 2;
+
+    private final PredictorPool<I, O> pool;
+
+    private final int maxBatchSize;
+
+    private final long maxWaitNanos;
+
+    private final LinkedBlockingQueue<Item<I, O>> queue = new LinkedBlockingQueue<>();
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    public DynamicBatcher(PredictorPool<I, O> pool) {
+        this(pool, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    public DynamicBatcher(PredictorPool<I, O> pool, int maxBatchSize, long maxWaitMillis) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.pool = pool;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        for (int i = 0; i < pool.size(); i++) {
+            Thread worker = new Thread(this::runWorker, "djl-batcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * 提交一组输入, 结果顺序与输入一致, 任一输入失败则整体失败
+     */
+    public CompletableFuture<List<O>> submit(List<I> inputs) {
+        List<CompletableFuture<O>> futures = submitEach(inputs);
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<O> outputs = new ArrayList<>(futures.size());
+            for (CompletableFuture<O> future : futures) {
+                outputs.add(future.join());
+            }
+            return outputs;
+        });
+    }
+
+    /**
+     * 提交一组输入, 每条输入一个future, 顺序与输入一致, 各自成功或失败
+     */
+    public List<CompletableFuture<O>> submitEach(List<I> inputs) {
+        List<CompletableFuture<O>> futures = new ArrayList<>(inputs.size());
+        if (closed) {
+            for (int i = 0; i < inputs.size(); i++) {
+                CompletableFuture<O> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IllegalStateException("batcher is closed"));
+                futures.add(failed);
+            }
+            return futures;
+        }
+        for (I input : inputs) {
+            Item<I, O> item = new Item<>(input);
+            futures.add(item.future);
+            queue.add(item);
+        }
+        if (closed) {
+            failPending();
+        }
+        return futures;
+    }
+
+    /**
+     * 同步推理, 阻塞到本次输入全部完成
+     */
+    public List<O> predict(List<I> inputs) throws Exception {
+        try {
+            return submit(inputs).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    private void runWorker() {
+        List<Item<I, O>> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            try {
+                Item<I, O> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    // 还有空闲worker时直接执行, 只有所有predictor都忙时才值得等待凑批
+                    if (batch.size() >= maxBatchSize || remaining <= 0 || running.get() + 1 < workers.size()) {
+                        break;
+                    }
+                    Item<I, O> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                running.incrementAndGet();
+                try {
+                    runBatch(batch);
+                } finally {
+                    running.decrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                for (Item<I, O> item : batch) {
+                    item.future.completeExceptionally(new IllegalStateException("batcher is closed"));
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void runBatch(List<Item<I, O>> batch) throws InterruptedException {
+        List<I> inputs = new ArrayList<>(batch.size());
+        for (Item<I, O> item : batch) {
+            inputs.add(item.input);
+        }
+        try {
+            List<O> outputs = predictChecked(inputs);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(outputs.get(i));
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Throwable e) {
+            if (batch.size() == 1) {
+                log.error("batchPredict error", e);
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            // 批次里可能混有其他调用方的输入, 逐条重试找出出错的那条
+            log.warn("batchPredict error, retrying one by one, batchSize:" + batch.size(), e);
+            for (Item<I, O> item : batch) {
+                try {
+                    item.future.complete(predictChecked(Collections.singletonList(item.input)).get(0));
+                } catch (InterruptedException ie) {
+                    throw ie;
+                } catch (Throwable single) {
+                    log.error("batchPredict error", single);
+                    item.future.completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private List<O> predictChecked(List<I> inputs) throws Exception {
+        List<O> outputs = pool.batchPredict(inputs);
+        if (outputs.size() != inputs.size()) {
+            throw new IllegalStateException("batchPredict returned " + outputs.size() + " outputs for " + inputs.size() + " inputs");
+        }
+        return outputs;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        failPending();
+        // join超时后仍在推理的worker, 其predictor由pool在归还时关闭
+        pool.close();
+    }
+
+    private void failPending() {
+        Item<I, O> item;
+        while ((item = queue.poll()) != null) {
+            item.future.completeExceptionally(new IllegalStateException("batcher is closed"));
+        }
+    }
+
+    private static class Item<I, O> {
+
+        private final I input;
+
+        private final CompletableFuture<O> future = new CompletableFuture<>();
+
+        private Item(I input) {
+            this.input = input;
+        }
+    }
+}
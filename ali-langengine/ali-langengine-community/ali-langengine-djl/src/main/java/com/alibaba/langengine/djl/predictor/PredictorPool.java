@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.djl.predictor;
+
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.ZooModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * DJL Predictor不是线程安全的, 同一个模型创建多个predictor放入池中, 每次推理独占一个
+ *
+ * @param <I> 输入类型
+ * @param <O> 输出类型
+ */
+public class PredictorPool<I, O> implements AutoCloseable {
+
+    public static final int DEFAULT_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    private final List<BatchPredictor<I, O>> predictors;
+
+    private final BlockingQueue<BatchPredictor<I, O>> idle;
+
+    private static final long POLL_MILLIS = 100;
+
+    private volatile boolean closed;
+
+    public PredictorPool(Supplier<BatchPredictor<I, O>> factory, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        this.predictors = new ArrayList<>(size);
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            BatchPredictor<I, O> predictor = factory.get();
+            predictors.add(predictor);
+            idle.add(predictor);
+        }
+    }
+
+    /**
+     * 基于已加载的模型创建size个predictor, 共享同一份模型权重
+     */
+    public static <I, O> PredictorPool<I, O> of(ZooModel<I, O> model, int size) {
+        return new PredictorPool<>(() -> {
+            Predictor<I, O> predictor = model.newPredictor();
+            return new BatchPredictor<I, O>() {
+                @Override
+                public List<O> batchPredict(List<I> inputs) throws Exception {
+                    return predictor.batchPredict(inputs);
+                }
+
+                @Override
+                public void close() {
+                    predictor.close();
+                }
+            };
+        }, size);
+    }
+
+    /**
+     * 借出一个空闲predictor执行批量推理, 没有空闲时阻塞等待
+     */
+    public List<O> batchPredict(List<I> inputs) throws Exception {
+        BatchPredictor<I, O> predictor = null;
+        while (predictor == null) {
+            if (closed) {
+                throw new IllegalStateException("predictor pool is closed");
+            }
+            predictor = idle.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        try {
+            if (closed) {
+                throw new IllegalStateException("predictor pool is closed");
+            }
+            return predictor.batchPredict(inputs);
+        } finally {
+            giveBack(predictor);
+        }
+    }
+
+    public int size() {
+        return predictors.size();
+    }
+
+    /**
+     * 关闭空闲的predictor, 正在推理的predictor在归还时关闭, 不会在native推理过程中被释放
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        BatchPredictor<I, O> predictor;
+        while ((predictor = idle.poll()) != null) {
+            predictor.close();
+        }
+    }
+
+    private void giveBack(BatchPredictor<I, O> predictor) {
+        idle.add(predictor);
+        // close可能在归还前已经清空了空闲队列, 谁从队列中取走谁负责关闭
+        if (closed && idle.remove(predictor)) {
+            predictor.close();
+        }
+    }
+}
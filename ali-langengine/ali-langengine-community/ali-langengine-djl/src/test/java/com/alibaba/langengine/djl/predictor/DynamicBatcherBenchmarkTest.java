@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.djl.predictor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对比共享单个predictor串行调用与PredictorPool+DynamicBatcher的吞吐, 只打印结果不做断言.
+ * 依赖机器负载, 不在单元测试中运行, 用-Ddjl.benchmark.enabled=true开启
+ */
+@EnabledIfSystemProperty(named = "djl.benchmark.enabled", matches = "true")
+public class DynamicBatcherBenchmarkTest {
+
+    @Test
+    public void test_throughput() throws Exception {
+        int requestsPerCaller = 40;
+        for (int callers : new int[] { 1, 8, 32 }) {
+            // 原实现: 共享一个predictor, 调用方自行串行化
+            FakeEmbeddingPredictor shared = new FakeEmbeddingPredictor(new AtomicInteger());
+            double serialized = run(callers, requestsPerCaller, text -> {
+                synchronized (shared) {
+                    return shared.batchPredict(Collections.singletonList(text)).get(0);
+                }
+            });
+
+            PredictorPool<String, float[]> pool = new PredictorPool<>(() -> new FakeEmbeddingPredictor(new AtomicInteger()), 2);
+            double batched;
+            try (DynamicBatcher<String, float[]> batcher = new DynamicBatcher<>(pool)) {
+                batched = run(callers, requestsPerCaller, text -> batcher.predict(Collections.singletonList(text)).get(0));
+            }
+            System.out.printf("callers=%d serialized=%.0f req/s pooled+batched=%.0f req/s%n", callers, serialized, batched);
+        }
+    }
+
+    private double run(int callers, int requestsPerCaller, Embed embed) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < callers; c++) {
+            int caller = c;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < requestsPerCaller; i++) {
+                    embed.apply("text-" + caller + "-" + i);
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return callers * requestsPerCaller / (elapsed / 1e9);
+    }
+
+    private interface Embed {
+        float[] apply(String text) throws Exception;
+    }
+}
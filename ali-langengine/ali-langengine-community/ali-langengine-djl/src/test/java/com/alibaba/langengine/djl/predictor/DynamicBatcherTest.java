@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.djl.predictor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DynamicBatcherTest {
+
+    @Test
+    public void test_concurrentRequestsAreCoalesced() throws Exception {
+        AtomicInteger maxBatch = new AtomicInteger();
+        PredictorPool<String, float[]> pool = new PredictorPool<>(() -> new FakeEmbeddingPredictor(maxBatch), 2);
+        try (DynamicBatcher<String, float[]> batcher = new DynamicBatcher<>(pool, 16, 5)) {
+            int callers = 32;
+            ExecutorService executor = Executors.newFixedThreadPool(callers);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < callers; c++) {
+                int caller = c;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<String> texts = Arrays.asList("caller-" + caller + "-a", "caller-" + caller + "-b", "阿里巴巴" + caller);
+                    List<float[]> vectors = batcher.predict(texts);
+                    assertEquals(texts.size(), vectors.size());
+                    for (int i = 0; i < texts.size(); i++) {
+                        assertArrayEquals(FakeEmbeddingPredictor.embed(texts.get(i)), vectors.get(i));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+        }
+        assertTrue(maxBatch.get() > 3, "requests from different callers should share a batch");
+        assertTrue(maxBatch.get() <= 16);
+    }
+
+    @Test
+    public void test_errorIsReturnedToCaller() throws Exception {
+        PredictorPool<String, float[]> pool = new PredictorPool<>(() -> new FakeEmbeddingPredictor(new AtomicInteger()), 1);
+        try (DynamicBatcher<String, float[]> batcher = new DynamicBatcher<>(pool)) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> batcher.predict(Collections.singletonList("boom")));
+            assertEquals("boom", e.getMessage());
+            assertArrayEquals(FakeEmbeddingPredictor.embed("ok"), batcher.predict(Collections.singletonList("ok")).get(0));
+        }
+    }
+
+    @Test
+    public void test_failingInputDoesNotFailItsBatch() throws Exception {
+        AtomicInteger maxBatch = new AtomicInteger();
+        PredictorPool<String, float[]> pool = new PredictorPool<>(() -> new FakeEmbeddingPredictor(maxBatch), 1);
+        try (DynamicBatcher<String, float[]> batcher = new DynamicBatcher<>(pool, 16, 50)) {
+            List<String> texts = Arrays.asList("a", "b", "boom", "c", "d");
+            List<CompletableFuture<float[]>> futures = batcher.submitEach(texts);
+            for (int i = 0; i < texts.size(); i++) {
+                if ("boom".equals(texts.get(i))) {
+                    ExecutionException e = assertThrows(ExecutionException.class, futures.get(i)::get);
+                    assertTrue(e.getCause() instanceof IllegalArgumentException);
+                } else {
+                    assertArrayEquals(FakeEmbeddingPredictor.embed(texts.get(i)), futures.get(i).get(5, TimeUnit.SECONDS));
+                }
+            }
+        }
+        assertTrue(maxBatch.get() > 1, "inputs should have been predicted as one batch first");
+    }
+
+    @Test
+    public void test_closeDoesNotReleaseBusyPredictor() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        AtomicBoolean busy = new AtomicBoolean();
+        AtomicBoolean closedWhileBusy = new AtomicBoolean();
+        PredictorPool<String, float[]> pool = new PredictorPool<>(() -> new BatchPredictor<String, float[]>() {
+            @Override
+            public List<float[]> batchPredict(List<String> inputs) {
+                busy.set(true);
+                entered.countDown();
+                // 模拟不响应中断的native推理
+                while (release.getCount() > 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                }
+                busy.set(false);
+                return Collections.singletonList(FakeEmbeddingPredictor.embed(inputs.get(0)));
+            }
+
+            @Override
+            public void close() {
+                closedWhileBusy.compareAndSet(false, busy.get());
+                closed.countDown();
+            }
+        }, 1);
+        DynamicBatcher<String, float[]> batcher = new DynamicBatcher<>(pool, 1, 0);
+        batcher.submitEach(Collections.singletonList("slow"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        batcher.close();
+        assertEquals(1, closed.getCount(), "predictor closed while its batch was still running");
+        release.countDown();
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertFalse(closedWhileBusy.get());
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.djl.predictor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 确定性的假embedding模型: 每次调用有固定开销, 每条输入再有少量开销, 与真实模型的批处理收益特征一致.
+ * 不允许并发调用, 用于验证PredictorPool的独占语义
+ */
+class FakeEmbeddingPredictor implements BatchPredictor<String, float[]> {
+
+    private final AtomicBoolean inUse = new AtomicBoolean();
+
+    private final AtomicInteger maxBatch;
+
+    FakeEmbeddingPredictor(AtomicInteger maxBatch) {
+        this.maxBatch = maxBatch;
+    }
+
+    static float[] embed(String text) {
+        float[] vector = new float[8];
+        int hash = text.hashCode();
+        for (int i = 0; i < vector.length; i++) {
+            hash = hash * 31 + i;
+            vector[i] = (hash % 1000) / 1000f;
+        }
+        return vector;
+    }
+
+    @Override
+    public List<float[]> batchPredict(List<String> inputs) {
+        if (!inUse.compareAndSet(false, true)) {
+            throw new IllegalStateException("predictor used concurrently");
+        }
+        try {
+            maxBatch.accumulateAndGet(inputs.size(), Math::max);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2) + inputs.size() * TimeUnit.MICROSECONDS.toNanos(50));
+            List<float[]> outputs = new ArrayList<>(inputs.size());
+            for (String input : inputs) {
+                if ("boom".equals(input)) {
+                    throw new IllegalArgumentException("boom");
+                }
+                outputs.add(embed(input));
+            }
+            return outputs;
+        } finally {
+            inUse.set(false);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
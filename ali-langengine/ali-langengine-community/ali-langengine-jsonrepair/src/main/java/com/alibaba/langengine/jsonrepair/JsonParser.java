@@ -100,7 +100,7 @@ public class JsonParser {
                 return new LinkedHashMap<>();
             }
             // Otherwise return what we've parsed so far
-            return jsonStr.substring(0, index);
+            return jsonStr.substring(0, Math.min(index, jsonStr.length()));
         }
     }
 
@@ -423,7 +423,7 @@ public class JsonParser {
                                 hexCode += hexChar;
                             }
 
-                            // Convert hex to character and append
+                            // Convert hex to character and append; an escape truncated by the end of input is dropped
                             if (hexCode.length() == 4) {
                                 try {
                                     int codePoint = Integer.parseInt(hexCode, 16);
@@ -432,9 +432,6 @@ public class JsonParser {
                                     // If parsing fails, just append the original sequence
                                     stringAcc.append("\\u").append(hexCode);
                                 }
-                            } else {
-                                // Incomplete Unicode escape, append as is
-                                stringAcc.append("\\u").append(hexCode);
                             }
                         } catch (Exception e) {
                             // If any error occurs, just append 'u'
@@ -478,7 +475,7 @@ public class JsonParser {
         }
 
         // Handle missing closing quote
-        if (ch != rStringDelimiter) {
+        if (ch == null || ch != rStringDelimiter) {
             if (!streamStable) {
                 // Trim trailing whitespace for missing quotes
                 while (stringAcc.length() > 0 && Character.isWhitespace(stringAcc.charAt(stringAcc.length() - 1))) {
@@ -682,7 +679,11 @@ public class JsonParser {
                         break;
                     }
                 }
+                return;
             }
+
+            // Not a comment (e.g. a truncated "//"), skip the slash so parsing can progress
+            index++;
         }
     }
 
@@ -35,7 +35,7 @@ public class JsonRepair {
      */
     public static String repairJson(String jsonStr) {
         if (jsonStr == null || jsonStr.trim().isEmpty()) {
-            log.warn("Empty or null JSON string provided for repair");
+            log.debug("Empty or null JSON string provided for repair");
             return "{}";
         }
         return String.valueOf(repairJson(jsonStr, false, false));
@@ -58,17 +58,18 @@ public class JsonRepair {
         Object parsedJson;
 
         if (skipJsonParse) {
-            log.info("Skipping FastJSON parse, using custom parser directly");
+            log.debug("Skipping FastJSON parse, using custom parser directly");
             parsedJson = parser.parse();
         } else {
             try {
                 // Try parsing with FastJSON first
-                log.info("Attempting to parse with FastJSON");
+                log.debug("Attempting to parse with FastJSON");
                 parsedJson = JSON.parse(jsonStr);
-                log.info("Successfully parsed with FastJSON");
-            } catch (JSONException e) {
-                // If FastJSON fails, use our custom parser
-                log.info("FastJSON parse failed: " + e.getMessage() + ", using custom parser");
+                log.debug("Successfully parsed with FastJSON");
+            } catch (JSONException | NumberFormatException | IndexOutOfBoundsException e) {
+                // If FastJSON fails, use our custom parser; fastjson 1.x reports some malformed input,
+                // e.g. a truncated unicode escape, with NumberFormatException instead of JSONException
+                log.debug("FastJSON parse failed: {}, using custom parser", e.getMessage());
                 parsedJson = parser.parse();
             }
         }
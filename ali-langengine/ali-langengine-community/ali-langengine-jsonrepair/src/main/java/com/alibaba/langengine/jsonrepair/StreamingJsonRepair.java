@@ -0,0 +1,523 @@
+package com.alibaba.langengine.jsonrepair;
+
+import com.alibaba.fastjson.JSON;
+
+import java.util.Arrays;
+
+/**
+ * StreamingJsonRepair - An incremental JSON repairer for partially generated LLM output
+ * <p>
+ * {@link JsonRepair#repairJson(String)} only works on complete strings, so a streaming agent that wants to
+ * act on partially generated tool arguments has to re-repair the whole growing buffer on every chunk.
+ * This class instead consumes chunks with {@link #append(CharSequence)} and keeps the parser state between
+ * them: the open-container stack, the string/escape state, the pending key and the partially read token.
+ * Each chunk is processed in O(chunk) time and {@link #snapshot()} renders a best-effort closed JSON document
+ * from that state at any point:
+ * <ul>
+ * <li>open objects and arrays are closed</li>
+ * <li>a partial string value is closed (a dangling escape sequence is cut off)</li>
+ * <li>a partial number is trimmed to its longest valid prefix, a partial literal is completed</li>
+ * <li>a member whose key or value has not started yet is dropped, as is a dangling comma</li>
+ * </ul>
+ * Besides strict JSON the incremental path tolerates trailing commas and raw control characters inside
+ * strings. Any other malformation (unquoted keys, single quotes, comments, text around the document, ...)
+ * switches the instance to fallback mode, where snapshots are produced by the batch repairer.
+ * <p>
+ * {@link #finish()} returns the same string as {@link JsonRepair#repairJson(String)} on the concatenated input.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class StreamingJsonRepair {
+
+    // 容器内的期待状态
+    private static final byte EXPECT_KEY = 0;
+    private static final byte EXPECT_COLON = 1;
+    private static final byte EXPECT_VALUE = 2;
+    private static final byte EXPECT_COMMA = 3;
+
+    // 当前未完成的token类型
+    private static final byte TOKEN_NONE = 0;
+    private static final byte TOKEN_STRING = 1;
+    private static final byte TOKEN_NUMBER = 2;
+    private static final byte TOKEN_LITERAL = 3;
+
+    /**
+     * All input received so far, kept for fallback mode and {@link #finish()}
+     */
+    private final StringBuilder raw = new StringBuilder();
+
+    /**
+     * Compact output made of complete members and open containers only; always closable by appending closers
+     */
+    private final StringBuilder out = new StringBuilder();
+
+    /**
+     * Separator and key of the member being read, committed to {@link #out} once its value completes
+     */
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * The token being read (string content including escapes, number or literal characters)
+     */
+    private final StringBuilder token = new StringBuilder();
+
+    private char[] containers = new char[16];
+    private byte[] expects = new byte[16];
+    private int depth;
+
+    private byte tokenType = TOKEN_NONE;
+    private boolean tokenIsKey;
+    private boolean escape;
+    private int unicodeDigits = -1;
+
+    /**
+     * Last snapshot the batch repairer produced in fallback mode, returned when it fails on a later prefix
+     */
+    private String lastFallbackSnapshot = "{}";
+
+    private boolean started;
+    private boolean complete;
+    private boolean repaired;
+    private boolean fallback;
+
+    /**
+     * Appends the next chunk of the stream
+     *
+     * @param chunk The chunk to append
+     * @return This instance
+     */
+    public StreamingJsonRepair append(CharSequence chunk) {
+        if (chunk == null || chunk.length() == 0) {
+            return this;
+        }
+        raw.append(chunk);
+        for (int i = 0, n = chunk.length(); i < n && !fallback; i++) {
+            consume(chunk.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Renders a best-effort closed JSON document of the input received so far
+     *
+     * @return A JSON string; "{}" before any container has started. In fallback mode, if the batch repairer
+     * fails on the current prefix, the previous snapshot is returned
+     */
+    public String snapshot() {
+        if (fallback) {
+            try {
+                lastFallbackSnapshot = JsonRepair.repairJson(raw.toString());
+            } catch (RuntimeException e) {
+                // 截断在任意位置的前缀都可能让批量修复失败, 此时返回上一个成功的快照
+            }
+            return lastFallbackSnapshot;
+        }
+        if (!started) {
+            return "{}";
+        }
+        StringBuilder sb = new StringBuilder(out.length() + pending.length() + token.length() + depth + 8);
+        sb.append(out);
+        if (depth > 0 && tokenType != TOKEN_NONE && !tokenIsKey) {
+            int mark = sb.length();
+            sb.append(pending);
+            if (!renderPartialValue(sb)) {
+                sb.setLength(mark);
+            }
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            sb.append(containers[i] == '{' ? '}' : ']');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Finishes the stream and returns the repaired JSON
+     * <p>
+     * The result equals {@link JsonRepair#repairJson(String)} applied to the whole input. When the input was a
+     * complete, well-formed document it is derived from the incremental state without re-parsing leniently.
+     *
+     * @return The repaired JSON string
+     */
+    public String finish() {
+        if (complete && !fallback && !repaired) {
+            return JSON.toJSONString(JSON.parse(out.toString()));
+        }
+        return JsonRepair.repairJson(raw.toString());
+    }
+
+    /**
+     * Checks whether the root container has been closed
+     *
+     * @return true if a complete document has been read
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Checks whether the input needed a repair the incremental path cannot express, so that snapshots are
+     * produced by the batch repairer
+     *
+     * @return true in fallback mode
+     */
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    /**
+     * Gets the number of characters received so far
+     *
+     * @return The input length
+     */
+    public int length() {
+        return raw.length();
+    }
+
+    private void consume(char c) {
+        switch (tokenType) {
+            case TOKEN_STRING:
+                consumeString(c);
+                return;
+            case TOKEN_NUMBER:
+                if (isNumberChar(c)) {
+                    token.append(c);
+                    return;
+                }
+                if (!endNumber()) {
+                    return;
+                }
+                break;
+            case TOKEN_LITERAL:
+                if (c >= 'a' && c <= 'z') {
+                    token.append(c);
+                    return;
+                }
+                if (!endLiteral()) {
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        consumeStructural(c);
+    }
+
+    private void consumeStructural(char c) {
+        if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            return;
+        }
+        if (complete) {
+            // 文档结束后还有非空白内容
+            switchToFallback();
+            return;
+        }
+        if (!started) {
+            if (c == '{' || c == '[') {
+                started = true;
+                open(c);
+            } else {
+                switchToFallback();
+            }
+            return;
+        }
+        char container = containers[depth - 1];
+        byte expect = expects[depth - 1];
+        switch (c) {
+            case '"':
+                if (container == '{' && expect == EXPECT_KEY) {
+                    startToken(TOKEN_STRING, true);
+                } else if (isValuePosition(expect)) {
+                    startToken(TOKEN_STRING, false);
+                } else {
+                    switchToFallback();
+                }
+                return;
+            case ':':
+                if (container == '{' && expect == EXPECT_COLON) {
+                    pending.append(':');
+                    expects[depth - 1] = EXPECT_VALUE;
+                } else {
+                    switchToFallback();
+                }
+                return;
+            case ',':
+                if (expect == EXPECT_COMMA) {
+                    pending.setLength(0);
+                    pending.append(',');
+                    expects[depth - 1] = container == '{' ? EXPECT_KEY : EXPECT_VALUE;
+                } else {
+                    switchToFallback();
+                }
+                return;
+            case '}':
+            case ']':
+                close(c, container, expect);
+                return;
+            case '{':
+            case '[':
+                if (isValuePosition(expect)) {
+                    out.append(pending);
+                    pending.setLength(0);
+                    expects[depth - 1] = EXPECT_COMMA;
+                    open(c);
+                } else {
+                    switchToFallback();
+                }
+                return;
+            default:
+                if (!isValuePosition(expect)) {
+                    switchToFallback();
+                } else if (c == '-' || (c >= '0' && c <= '9')) {
+                    startToken(TOKEN_NUMBER, false);
+                    token.append(c);
+                } else if (c == 't' || c == 'f' || c == 'n') {
+                    startToken(TOKEN_LITERAL, false);
+                    token.append(c);
+                } else {
+                    switchToFallback();
+                }
+        }
+    }
+
+    private void consumeString(char c) {
+        if (unicodeDigits >= 0) {
+            if (Character.digit(c, 16) < 0) {
+                switchToFallback();
+                return;
+            }
+            token.append(c);
+            unicodeDigits = unicodeDigits == 3 ? -1 : unicodeDigits + 1;
+            return;
+        }
+        if (escape) {
+            escape = false;
+            if (c == 'u') {
+                unicodeDigits = 0;
+            } else if ("\"\\/bfnrt".indexOf(c) < 0) {
+                switchToFallback();
+                return;
+            }
+            token.append(c);
+            return;
+        }
+        if (c == '\\') {
+            escape = true;
+            token.append(c);
+        } else if (c == '"') {
+            endString();
+        } else if (c < 0x20) {
+            // 字符串中的原始控制字符, 转义后保留
+            repaired = true;
+            appendControl(token, c);
+        } else {
+            token.append(c);
+        }
+    }
+
+    private void endString() {
+        tokenType = TOKEN_NONE;
+        if (tokenIsKey) {
+            pending.append('"').append(token).append('"');
+            expects[depth - 1] = EXPECT_COLON;
+        } else {
+            out.append(pending).append('"').append(token).append('"');
+            pending.setLength(0);
+            expects[depth - 1] = EXPECT_COMMA;
+        }
+        token.setLength(0);
+    }
+
+    private boolean endNumber() {
+        tokenType = TOKEN_NONE;
+        if (!isValidNumber(token, token.length())) {
+            switchToFallback();
+            return false;
+        }
+        commitValue(token);
+        return true;
+    }
+
+    private boolean endLiteral() {
+        tokenType = TOKEN_NONE;
+        String literal = token.toString();
+        if (!"true".equals(literal) && !"false".equals(literal) && !"null".equals(literal)) {
+            switchToFallback();
+            return false;
+        }
+        commitValue(literal);
+        return true;
+    }
+
+    private void commitValue(CharSequence value) {
+        out.append(pending).append(value);
+        pending.setLength(0);
+        token.setLength(0);
+        expects[depth - 1] = EXPECT_COMMA;
+    }
+
+    private void close(char closer, char container, byte expect) {
+        if ((closer == '}') != (container == '{')) {
+            switchToFallback();
+            return;
+        }
+        if (expect != EXPECT_COMMA) {
+            boolean empty = pending.length() == 0 && out.charAt(out.length() - 1) == container;
+            if ((container == '{' && expect == EXPECT_KEY) || (container == '[' && expect == EXPECT_VALUE)) {
+                // 空容器, 或者尾随逗号
+                if (!empty) {
+                    repaired = true;
+                }
+            } else {
+                // 有key没有value
+                switchToFallback();
+                return;
+            }
+        }
+        pending.setLength(0);
+        out.append(closer);
+        depth--;
+        if (depth == 0) {
+            complete = true;
+        }
+    }
+
+    private void open(char c) {
+        if (depth == containers.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            expects = Arrays.copyOf(expects, depth * 2);
+        }
+        containers[depth] = c;
+        expects[depth] = c == '{' ? EXPECT_KEY : EXPECT_VALUE;
+        depth++;
+        out.append(c);
+    }
+
+    private void startToken(byte type, boolean key) {
+        tokenType = type;
+        tokenIsKey = key;
+        escape = false;
+        unicodeDigits = -1;
+        token.setLength(0);
+    }
+
+    /**
+     * Renders the value being read; returns false if nothing meaningful has been read yet
+     */
+    private boolean renderPartialValue(StringBuilder sb) {
+        switch (tokenType) {
+            case TOKEN_STRING: {
+                int end = token.length();
+                if (unicodeDigits >= 0) {
+                    end -= unicodeDigits + 2;
+                } else if (escape) {
+                    end--;
+                }
+                sb.append('"').append(token, 0, end).append('"');
+                return true;
+            }
+            case TOKEN_NUMBER: {
+                int end = token.length();
+                while (end > 0 && !isValidNumber(token, end)) {
+                    end--;
+                }
+                if (end == 0) {
+                    return false;
+                }
+                sb.append(token, 0, end);
+                return true;
+            }
+            case TOKEN_LITERAL: {
+                String prefix = token.toString();
+                for (String literal : new String[]{"true", "false", "null"}) {
+                    if (literal.startsWith(prefix)) {
+                        sb.append(literal);
+                        return true;
+                    }
+                }
+                return false;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private void switchToFallback() {
+        fallback = true;
+    }
+
+    private static boolean isValuePosition(byte expect) {
+        return expect == EXPECT_VALUE;
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
+    /**
+     * Checks the JSON number grammar: -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+     */
+    private static boolean isValidNumber(CharSequence s, int end) {
+        int i = 0;
+        if (i < end && s.charAt(i) == '-') {
+            i++;
+        }
+        if (i >= end) {
+            return false;
+        }
+        if (s.charAt(i) == '0') {
+            i++;
+        } else if (s.charAt(i) >= '1' && s.charAt(i) <= '9') {
+            while (i < end && Character.isDigit(s.charAt(i))) {
+                i++;
+            }
+        } else {
+            return false;
+        }
+        if (i < end && s.charAt(i) == '.') {
+            i++;
+            int digits = i;
+            while (i < end && Character.isDigit(s.charAt(i))) {
+                i++;
+            }
+            if (i == digits) {
+                return false;
+            }
+        }
+        if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                i++;
+            }
+            int digits = i;
+            while (i < end && Character.isDigit(s.charAt(i))) {
+                i++;
+            }
+            if (i == digits) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    private static void appendControl(StringBuilder sb, char c) {
+        switch (c) {
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            case '\b':
+                sb.append("\\b");
+                break;
+            case '\f':
+                sb.append("\\f");
+                break;
+            default:
+                sb.append(String.format("\\u%04x", (int) c));
+        }
+    }
+}
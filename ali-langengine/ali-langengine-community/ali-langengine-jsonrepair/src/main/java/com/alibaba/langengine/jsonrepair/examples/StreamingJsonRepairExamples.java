@@ -0,0 +1,186 @@
+package com.alibaba.langengine.jsonrepair.examples;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.langengine.jsonrepair.JsonRepair;
+import com.alibaba.langengine.jsonrepair.StreamingJsonRepair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * StreamingJsonRepairExamples - Examples for StreamingJsonRepair
+ * <p>
+ * Shows how to repair streamed LLM output chunk by chunk, and compares the cost of repairing incrementally
+ * with re-running {@link JsonRepair#repairJson(String)} over the growing buffer on a long streamed output.
+ * <p>
+ * Usage: {@code StreamingJsonRepairExamples [benchmarkBytes]}
+ */
+public class StreamingJsonRepairExamples {
+
+    public static void main(String[] args) {
+        int benchmarkBytes = args.length > 0 ? Integer.parseInt(args[0]) : 16 * 1024;
+
+        streamingToolArguments();
+        benchmark(new Random(20240603), benchmarkBytes);
+    }
+
+    /**
+     * Example: act on partially generated tool arguments
+     */
+    public static void streamingToolArguments() {
+        System.out.println("=== Streaming tool arguments ===");
+        String[] chunks = {"{\"city\": \"Hang", "zhou\", \"days\": [1, 2", ", 3], \"unit\": \"cel", "sius\"}"};
+        StreamingJsonRepair repair = new StreamingJsonRepair();
+        for (String chunk : chunks) {
+            repair.append(chunk);
+            System.out.println("chunk " + JSON.toJSONString(chunk) + " -> " + repair.snapshot());
+        }
+        System.out.println("final: " + repair.finish());
+        System.out.println();
+    }
+
+    /**
+     * Benchmark: repair a long streamed output after every chunk, incrementally versus re-repairing the buffer
+     */
+    public static void benchmark(Random random, int bytes) {
+        System.out.println("=== Benchmark ===");
+        StringBuilder sb = new StringBuilder("{\"items\": [");
+        while (sb.length() < bytes) {
+            if (sb.charAt(sb.length() - 1) != '[') {
+                sb.append(", ");
+            }
+            sb.append(randomDocument(random, 2));
+        }
+        String doc = sb.append("]}").toString();
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < doc.length(); i += 16) {
+            chunks.add(doc.substring(i, Math.min(doc.length(), i + 16)));
+        }
+
+        long start = System.nanoTime();
+        StreamingJsonRepair repair = new StreamingJsonRepair();
+        for (String chunk : chunks) {
+            repair.append(chunk);
+            repair.snapshot();
+        }
+        String incremental = repair.finish();
+        long incrementalMs = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        StringBuilder buffer = new StringBuilder();
+        String batch = null;
+        for (String chunk : chunks) {
+            buffer.append(chunk);
+            batch = JsonRepair.repairJson(buffer.toString());
+        }
+        long batchMs = (System.nanoTime() - start) / 1_000_000;
+
+        check(incremental.equals(batch), "benchmark results differ", "");
+        System.out.printf("%d bytes in %d chunks: incremental %d ms, re-repair per chunk %d ms%n",
+                doc.length(), chunks.size(), incrementalMs, batchMs);
+    }
+
+    private static void check(boolean condition, String message, String input) {
+        if (!condition) {
+            throw new IllegalStateException(message + ": " + input);
+        }
+    }
+
+    /**
+     * Random well-formed document with whitespace, escapes, unicode, numbers with fractions and exponents
+     */
+    private static String randomDocument(Random random, int depth) {
+        StringBuilder sb = new StringBuilder();
+        appendContainer(sb, random, depth);
+        return sb.toString();
+    }
+
+    private static void appendContainer(StringBuilder sb, Random random, int depth) {
+        boolean object = random.nextBoolean();
+        sb.append(object ? '{' : '[');
+        int n = random.nextInt(5);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendWhitespace(sb, random);
+            if (object) {
+                appendString(sb, random);
+                appendWhitespace(sb, random);
+                sb.append(':');
+                appendWhitespace(sb, random);
+            }
+            appendValue(sb, random, depth - 1);
+            appendWhitespace(sb, random);
+        }
+        sb.append(object ? '}' : ']');
+    }
+
+    private static void appendValue(StringBuilder sb, Random random, int depth) {
+        switch (random.nextInt(depth > 0 ? 7 : 5)) {
+            case 0:
+            case 1:
+                appendString(sb, random);
+                break;
+            case 2:
+                appendNumber(sb, random);
+                break;
+            case 3:
+                sb.append(new String[]{"true", "false", "null"}[random.nextInt(3)]);
+                break;
+            case 4:
+                sb.append(random.nextInt(1000));
+                break;
+            default:
+                appendContainer(sb, random, depth);
+        }
+    }
+
+    private static void appendString(StringBuilder sb, Random random) {
+        sb.append('"');
+        int n = random.nextInt(12);
+        for (int i = 0; i < n; i++) {
+            switch (random.nextInt(12)) {
+                case 0:
+                    sb.append(new String[]{"\\\"", "\\\\", "\\/", "\\n", "\\t", "\\r", "\\b", "\\f"}[random.nextInt(8)]);
+                    break;
+                case 1:
+                    sb.append(String.format("\\u%04x", 0x4E00 + random.nextInt(500)));
+                    break;
+                case 2:
+                    sb.appendCodePoint(0x4E00 + random.nextInt(500));
+                    break;
+                case 3:
+                    sb.append(' ');
+                    break;
+                default:
+                    sb.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void appendNumber(StringBuilder sb, Random random) {
+        if (random.nextBoolean()) {
+            sb.append('-');
+        }
+        sb.append(random.nextInt(10) == 0 ? "0" : String.valueOf(1 + random.nextInt(99999)));
+        if (random.nextBoolean()) {
+            sb.append('.').append(random.nextInt(1000));
+        }
+        if (random.nextInt(4) == 0) {
+            sb.append(random.nextBoolean() ? 'e' : 'E');
+            if (random.nextBoolean()) {
+                sb.append(random.nextBoolean() ? '+' : '-');
+            }
+            sb.append(random.nextInt(20));
+        }
+    }
+
+    private static void appendWhitespace(StringBuilder sb, Random random) {
+        if (random.nextInt(3) == 0) {
+            sb.append(new String[]{" ", "\n", "  ", "\t", "\r\n  "}[random.nextInt(5)]);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.alibaba.langengine.jsonrepair;
+
+import com.alibaba.fastjson.JSON;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingJsonRepairTest {
+
+    private static final String[] MALFORMED_INPUTS = {
+            "{\"a\": [1, 2, 3,], \"b\": {\"c\": 1,},}",
+            "{\"text\": \"line1\nline2\"}",
+            "{name: 'John', age: 30}",
+            "```json\n{\"a\": 1}\n```",
+            "{\"a\": 1 // comment\n}",
+            "{\"a\": 1} trailing",
+            "{\"a\": [1, 2",
+            "{\"a\": \"unterminated",
+            "[{\"a\": 1}, {\"b\": tru",
+            "{\"a\": }",
+            "{name: \"\\u4f60\\u597d\", city: \"\\u676d\\u5dde\"}",
+    };
+
+    @Test
+    public void test_randomChunkingsOfWellFormedDocuments() {
+        Random random = new Random(20240601);
+        for (int d = 0; d < 200; d++) {
+            String doc = randomDocument(random, 4);
+            String expected = JsonRepair.repairJson(doc);
+            for (int round = 0; round < 5; round++) {
+                StreamingJsonRepair repair = new StreamingJsonRepair();
+                for (String chunk : randomChunks(random, doc)) {
+                    repair.append(chunk);
+                    // 每个中间快照都必须是合法JSON
+                    assertValidJson(repair.snapshot(), doc);
+                }
+                assertFalse(repair.isFallback(), doc);
+                assertTrue(repair.isComplete(), doc);
+                assertEquals(expected, JSON.toJSONString(JSON.parse(repair.snapshot())), doc);
+                assertEquals(expected, repair.finish(), doc);
+            }
+        }
+    }
+
+    @Test
+    public void test_malformedInputsFinishWithBatchResult() {
+        Random random = new Random(20240602);
+        for (String input : MALFORMED_INPUTS) {
+            String expected = JsonRepair.repairJson(input);
+            for (int round = 0; round < 20; round++) {
+                StreamingJsonRepair repair = new StreamingJsonRepair();
+                for (String chunk : randomChunks(random, input)) {
+                    repair.append(chunk);
+                    assertValidJson(repair.snapshot(), input);
+                }
+                assertEquals(expected, repair.finish(), input);
+            }
+        }
+    }
+
+    @Test
+    public void test_everyPrefixSnapshotIsValid() {
+        for (String input : MALFORMED_INPUTS) {
+            StreamingJsonRepair repair = new StreamingJsonRepair();
+            for (int i = 0; i < input.length(); i++) {
+                repair.append(input.substring(i, i + 1));
+                assertValidJson(repair.snapshot(), input.substring(0, i + 1));
+            }
+        }
+    }
+
+    @Test
+    public void test_truncatedUnicodeEscape() {
+        assertEquals("{\"name\":\"\"}", JsonRepair.repairJson("{name: \"\\u4f"));
+        assertEquals("{\"name\":\"\"}", JsonRepair.repairJson("{\"name\": \"\\u4f"));
+        assertEquals("{\"a\":\"x\"}", JsonRepair.repairJson("{\"a\":\"x\\u"));
+        assertEquals("{\"name\":\"你\"}", JsonRepair.repairJson("{name: \"\\u4f60\\u59"));
+
+        StreamingJsonRepair repair = new StreamingJsonRepair().append("{name: \"\\u4f");
+        assertTrue(repair.isFallback());
+        assertEquals("{\"name\":\"\"}", repair.snapshot());
+        assertEquals("{\"name\":\"\"}", repair.finish());
+    }
+
+    @Test
+    public void test_longStreamMatchesRepairPerChunk() {
+        Random random = new Random(20240603);
+        StringBuilder sb = new StringBuilder("{\"items\": [");
+        while (sb.length() < 4 * 1024) {
+            if (sb.charAt(sb.length() - 1) != '[') {
+                sb.append(", ");
+            }
+            sb.append(randomDocument(random, 2));
+        }
+        String doc = sb.append("]}").toString();
+
+        StreamingJsonRepair repair = new StreamingJsonRepair();
+        for (int i = 0; i < doc.length(); i += 16) {
+            String prefix = doc.substring(0, Math.min(doc.length(), i + 16));
+            repair.append(doc.substring(i, prefix.length()));
+            assertValidJson(repair.snapshot(), prefix);
+            // 批量修复在任意截断位置上也不能抛异常
+            assertValidJson(JsonRepair.repairJson(prefix), prefix);
+        }
+        assertEquals(JsonRepair.repairJson(doc), repair.finish());
+    }
+
+    private static void assertValidJson(String json, String input) {
+        try {
+            JSON.parse(json);
+        } catch (RuntimeException e) {
+            fail("invalid JSON " + json + " for input " + input, e);
+        }
+    }
+
+    static List<String> randomChunks(Random random, String text) {
+        List<String> chunks = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int n = 1 + random.nextInt(random.nextBoolean() ? 4 : 40);
+            chunks.add(text.substring(i, Math.min(text.length(), i + n)));
+            i += n;
+        }
+        return chunks;
+    }
+
+    /**
+     * Random well-formed document with whitespace, escapes, unicode, numbers with fractions and exponents
+     */
+    static String randomDocument(Random random, int depth) {
+        StringBuilder sb = new StringBuilder();
+        appendContainer(sb, random, depth);
+        return sb.toString();
+    }
+
+    private static void appendContainer(StringBuilder sb, Random random, int depth) {
+        boolean object = random.nextBoolean();
+        sb.append(object ? '{' : '[');
+        int n = random.nextInt(5);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendWhitespace(sb, random);
+            if (object) {
+                appendString(sb, random);
+                appendWhitespace(sb, random);
+                sb.append(':');
+                appendWhitespace(sb, random);
+            }
+            appendValue(sb, random, depth - 1);
+            appendWhitespace(sb, random);
+        }
+        sb.append(object ? '}' : ']');
+    }
+
+    private static void appendValue(StringBuilder sb, Random random, int depth) {
+        switch (random.nextInt(depth > 0 ? 7 : 5)) {
+            case 0:
+            case 1:
+                appendString(sb, random);
+                break;
+            case 2:
+                appendNumber(sb, random);
+                break;
+            case 3:
+                sb.append(new String[]{"true", "false", "null"}[random.nextInt(3)]);
+                break;
+            case 4:
+                sb.append(random.nextInt(1000));
+                break;
+            default:
+                appendContainer(sb, random, depth);
+        }
+    }
+
+    private static void appendString(StringBuilder sb, Random random) {
+        sb.append('"');
+        int n = random.nextInt(12);
+        for (int i = 0; i < n; i++) {
+            switch (random.nextInt(12)) {
+                case 0:
+                    sb.append(new String[]{"\\\"", "\\\\", "\\/", "\\n", "\\t", "\\r", "\\b", "\\f"}[random.nextInt(8)]);
+                    break;
+                case 1:
+                    sb.append(String.format("\\u%04x", 0x4E00 + random.nextInt(500)));
+                    break;
+                case 2:
+                    sb.appendCodePoint(0x4E00 + random.nextInt(500));
+                    break;
+                case 3:
+                    sb.append(' ');
+                    break;
+                default:
+                    sb.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void appendNumber(StringBuilder sb, Random random) {
+        if (random.nextBoolean()) {
+            sb.append('-');
+        }
+        sb.append(random.nextInt(10) == 0 ? "0" : String.valueOf(1 + random.nextInt(99999)));
+        if (random.nextBoolean()) {
+            sb.append('.').append(random.nextInt(1000));
+        }
+        if (random.nextInt(4) == 0) {
+            sb.append(random.nextBoolean() ? 'e' : 'E');
+            if (random.nextBoolean()) {
+                sb.append(random.nextBoolean() ? '+' : '-');
+            }
+            sb.append(random.nextInt(20));
+        }
+    }
+
+    private static void appendWhitespace(StringBuilder sb, Random random) {
+        if (random.nextInt(3) == 0) {
+            sb.append(new String[]{" ", "\n", "  ", "\t", "\r\n  "}[random.nextInt(5)]);
+        }
+    }
+}
@@ -17,17 +17,30 @@ package com.alibaba.langengine.metagpt;
 
 import com.alibaba.langengine.metagpt.memory.Memory;
 import com.alibaba.langengine.metagpt.roles.Role;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 环境，承载一批角色，角色可以向环境发布消息，可以被其他角色观察到
  * Environment, hosting a batch of roles, roles can publish messages to the environment, and can be observed by other roles
  *
+ * 每轮只调度有未读订阅消息的角色。parallelism为1时角色按加入顺序逐个执行并立即发布消息，后面的角色在同一轮内就能看到；
+ * parallelism大于1时这些角色基于本轮开始时的环境消息并发执行，产生的消息在本轮结束后按角色加入顺序统一发布，
+ * 结果与具体的parallelism和线程调度无关，但流水线中的每个角色需要一轮
+ *
  * @author xiaoxuan.lp
  */
 @Data
@@ -40,7 +53,30 @@ public class Environment {
 
     private Map<String, Role> roles = new LinkedHashMap<>();
     private Memory memory = new Memory();
-    private String history = "";
+
+    /**
+     * 每轮并发执行的角色数上限，1表示在调用线程上依次执行，与原有行为一致
+     */
+    private int parallelism = 1;
+
+    /**
+     * 可选的外部线程池，parallelism大于1时使用；为空时run按parallelism创建有界线程池并在结束时关闭
+     */
+    private ExecutorService executor;
+
+    /**
+     * 消息历史，按条追加，getHistory时再拼接，避免字符串反复拼接
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final List<String> history = new ArrayList<>();
+
+    /**
+     * 调度执行中角色发布的消息，暂存到本轮结束
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final ThreadLocal<List<Message>> deferred = new ThreadLocal<>();
 
     public void addRole(Role role) {
         role.setEnv(this);
@@ -54,17 +90,53 @@ public class Environment {
     }
 
     public void publishMessage(Message message) {
+        List<Message> pending = deferred.get();
+        if (pending != null) {
+            pending.add(message);
+            return;
+        }
         memory.add(message);
-        history += "\n" + message.toString();
+        history.add(message.toString());
+    }
+
+    public String getHistory() {
+        StringBuilder sb = new StringBuilder();
+        for (String line : history) {
+            sb.append("\n").append(line);
+        }
+        return sb.toString();
     }
 
-    public List<Message> run(int k){
+    public List<Message> run(int k) {
         List<Message> messages = new ArrayList<>();
-        for (int i = 0; i < k; i++) {
-            for (Map.Entry<String, Role> entry : roles.entrySet()) {
-                Role role = entry.getValue();
-                Message message = role.run();
-                messages.add(message);
+        if (parallelism <= 1) {
+            for (int i = 0; i < k; i++) {
+                if (!runSequentialRound(messages)) {
+                    break;
+                }
+            }
+            return messages;
+        }
+        ExecutorService pool = executor;
+        if (pool == null && roles.size() > 1) {
+            pool = newPool(Math.min(parallelism, roles.size()));
+        }
+        try {
+            for (int i = 0; i < k; i++) {
+                List<Role> ready = new ArrayList<>();
+                for (Role role : roles.values()) {
+                    if (role.hasNews()) {
+                        ready.add(role);
+                    }
+                }
+                if (ready.isEmpty()) {
+                    break;
+                }
+                runRound(ready, pool, messages);
+            }
+        } finally {
+            if (pool != null && pool != executor) {
+                pool.shutdown();
             }
         }
         return messages;
@@ -73,4 +145,99 @@ public class Environment {
     public Role getRole(String name) {
         return roles.getOrDefault(name, null);
     }
+
+    /**
+     * 逐个执行有新消息的角色，结果立即发布，同一轮中后面的角色可以看到
+     *
+     * @return 本轮是否有角色执行
+     */
+    private boolean runSequentialRound(List<Message> messages) {
+        boolean ran = false;
+        for (Role role : roles.values()) {
+            if (!role.hasNews()) {
+                continue;
+            }
+            ran = true;
+            Message rsp = role.run();
+            if (rsp != null) {
+                messages.add(rsp);
+            }
+        }
+        return ran;
+    }
+
+    private void runRound(List<Role> ready, ExecutorService pool, List<Message> messages) {
+        List<List<Message>> published = new ArrayList<>();
+        List<Future<Message>> futures = new ArrayList<>();
+        for (Role role : ready) {
+            List<Message> pending = new ArrayList<>();
+            published.add(pending);
+            if (pool == null || ready.size() == 1) {
+                // 逐个执行时同样先收集结果和异常，与并发执行的发布、报错行为保持一致
+                CompletableFuture<Message> future = new CompletableFuture<>();
+                try {
+                    future.complete(step(role, pending));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+                futures.add(future);
+            } else {
+                futures.add(pool.submit(() -> step(role, pending)));
+            }
+        }
+        // 等所有角色执行完再发布，执行期间环境消息保持不变
+        List<Message> responses = new ArrayList<>();
+        Throwable failure = null;
+        for (Future<Message> future : futures) {
+            try {
+                responses.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+                break;
+            }
+        }
+        // 按角色顺序发布，出错时只发布出错角色之前的结果，与逐个执行一致
+        for (int i = 0; i < responses.size(); i++) {
+            for (Message message : published.get(i)) {
+                publishMessage(message);
+            }
+            Message rsp = responses.get(i);
+            if (rsp != null) {
+                publishMessage(rsp);
+                messages.add(rsp);
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    private Message step(Role role, List<Message> pending) {
+        deferred.set(pending);
+        try {
+            return role.step();
+        } finally {
+            deferred.remove();
+        }
+    }
+
+    private static ExecutorService newPool(int threads) {
+        AtomicInteger seq = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "metagpt-env-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
 }
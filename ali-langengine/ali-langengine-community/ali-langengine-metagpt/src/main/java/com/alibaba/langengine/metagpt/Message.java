@@ -20,6 +20,7 @@ import lombok.Data;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 @Data
 public class Message {
@@ -32,6 +33,33 @@ public class Message {
     private String sendTo = "";
     private String restrictedTo = "";
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Message)) {
+            return false;
+        }
+        Message other = (Message) o;
+        return Objects.equals(content, other.content)
+                && Objects.equals(instructContent, other.instructContent)
+                && Objects.equals(role, other.role)
+                && Objects.equals(causeBy, other.causeBy)
+                && Objects.equals(sentFrom, other.sentFrom)
+                && Objects.equals(sendTo, other.sendTo)
+                && Objects.equals(restrictedTo, other.restrictedTo);
+    }
+
+    /**
+     * 不包含instructContent：角色会在消息存入Memory后再补充instructContent（见Engineer.afterAct），
+     * 哈希值需保持不变，Memory的去重集合才能找到它
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(content, role, causeBy, sentFrom, sendTo, restrictedTo);
+    }
+
     @Override
     public String toString() {
         return role + ": " + content;
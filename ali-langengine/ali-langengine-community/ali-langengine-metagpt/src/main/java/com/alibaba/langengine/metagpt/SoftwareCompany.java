@@ -62,7 +62,8 @@ public class SoftwareCompany {
     private List<Message> runCompany(int nRound) {
         if (nRound > 0) {
             log.info("nRound=" + nRound);
-            List<Message> messages = environment.run(1);
+            // parallelism大于1时角色只能看到上一轮发布的消息，流水线中的每个角色需要一轮；逐个执行时没有新消息会提前结束
+            List<Message> messages = environment.run(nRound);
             return messages;
         } else {
             // TODO ...
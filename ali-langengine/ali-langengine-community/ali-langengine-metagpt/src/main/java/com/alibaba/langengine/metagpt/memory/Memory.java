@@ -20,13 +20,17 @@ import com.alibaba.langengine.metagpt.actions.Action;
 import lombok.Data;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * The most basic memory: super-memory
+ * 消息按加入顺序保存在storage中，同时维护去重集合以及按causeBy、role的索引，去重和检索都不再线性扫描
  *
  * @author xiaoxuan.lp
  */
@@ -35,16 +39,27 @@ public class Memory {
 
     private List<Message> storage = new ArrayList<>();
 
+    /**
+     * 与storage内容一致的集合，用于O(1)去重
+     */
+    private Set<Message> messageSet = new HashSet<>();
+
     private Map<Class<? extends Action>, List<Message>> index = new HashMap<>();
 
+    /**
+     * 按消息role的索引
+     */
+    private Map<String, List<Message>> roleIndex = new HashMap<>();
+
     public void add(Message message) {
-        if (storage.contains(message)) {
+        if (!messageSet.add(message)) {
             return;
         }
         storage.add(message);
         if (message.getCauseBy() != null) {
             index.computeIfAbsent(message.getCauseBy(), k -> new ArrayList<>()).add(message);
         }
+        roleIndex.computeIfAbsent(message.getRole(), k -> new ArrayList<>()).add(message);
     }
 
     public void addBatch(Iterable<Message> messages) {
@@ -53,10 +68,18 @@ public class Memory {
         }
     }
 
+    public void setStorage(List<Message> storage) {
+        List<Message> messages = new ArrayList<>(storage);
+        clear();
+        addBatch(messages);
+    }
+
+    public boolean contains(Message message) {
+        return messageSet.contains(message);
+    }
+
     public List<Message> getByRole(String role) {
-        return storage.stream()
-                .filter(message -> message.getRole().equals(role))
-                .collect(Collectors.toList());
+        return new ArrayList<>(roleIndex.getOrDefault(role, Collections.emptyList()));
     }
 
     public List<Message> getByContent(String content) {
@@ -66,15 +89,21 @@ public class Memory {
     }
 
     public void delete(Message message) {
+        if (!messageSet.remove(message)) {
+            return;
+        }
         storage.remove(message);
         if (message.getCauseBy() != null) {
-            index.get(message.getCauseBy()).remove(message);
+            removeFromIndex(index, message.getCauseBy(), message);
         }
+        removeFromIndex(roleIndex, message.getRole(), message);
     }
 
     public void clear() {
         storage.clear();
+        messageSet.clear();
         index.clear();
+        roleIndex.clear();
     }
 
     public int count() {
@@ -96,7 +125,7 @@ public class Memory {
     }
 
     public List<Message> findNews(List<Message> observed, int k) {
-        List<Message> alreadyObserved = get(k);
+        Set<Message> alreadyObserved = k == 0 ? messageSet : new HashSet<>(get(k));
         List<Message> news = new ArrayList<>();
         for (Message message : observed) {
             if (alreadyObserved.contains(message)) {
@@ -121,4 +150,11 @@ public class Memory {
         }
         return rsp;
     }
+
+    private static <K> void removeFromIndex(Map<K, List<Message>> index, K key, Message message) {
+        List<Message> messages = index.get(key);
+        if (messages != null) {
+            messages.remove(message);
+        }
+    }
 }
@@ -75,6 +75,10 @@ public class Role {
     private BaseLanguageModel llm;
 
     public Role(String name, String profile, String goal, String constraints, String desc) {
+        this(name, profile, goal, constraints, desc, null);
+    }
+
+    public Role(String name, String profile, String goal, String constraints, String desc, BaseLanguageModel llm) {
         setSetting(new RoleSetting(name, profile, goal, constraints, desc));
 
         setRoleId(getSetting().toString());
@@ -84,21 +88,17 @@ public class Role {
 
         setRc(new RoleContext());
 
-        ChatOpenAI llm = new ChatOpenAI();
-        llm.setModel(OpenAIModelConstants.GPT_4);
+        if (llm == null) {
+            ChatOpenAI openAI = new ChatOpenAI();
+            openAI.setModel(OpenAIModelConstants.GPT_4);
+            llm = openAI;
+        }
         setLlm(llm);
 
 //        FakeAI llm = new FakeAI();
 //        setLlm(llm);
     }
 
-    public Role(String name, String profile, String goal, String constraints, String desc, BaseLanguageModel llm) {
-        this(name, profile, goal, constraints, desc);
-        if (llm != null) {
-            setLlm(llm);
-        }
-    }
-
     /**
      * 重置状态和行为
      */
@@ -249,12 +249,29 @@ public class Role {
     }
 
     public void recv(Message message) {
-        if (rc.getMemory().get(0).contains(message)) {
+        if (rc.getMemory().contains(message)) {
             return;
         }
         rc.getMemory().add(message);
     }
 
+    /**
+     * 环境中是否有订阅动作产生、但尚未被本角色接收的消息，供Environment调度时跳过空闲角色
+     *
+     * @return
+     */
+    public boolean hasNews() {
+        if (rc.getEnv() == null) {
+            return false;
+        }
+        for (Message message : rc.getEnv().getMemory().getByActions(rc.getWatch())) {
+            if (!rc.getMemory().contains(message)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public Message handle(Message message) {
         recv(message);
         return react();
@@ -266,13 +283,25 @@ public class Role {
      * @return
      */
     public Message run() {
+        Message rsp = step();
+        if (rsp != null) {
+            publishMessage(rsp);
+        }
+        return rsp;
+    }
+
+    /**
+     * Observe, think and act, without publishing the result to the environment
+     * 由Environment调度器在一轮结束后按角色顺序统一发布
+     *
+     * @return
+     */
+    public Message step() {
         if (observe() == 0) {
             System.out.println(setting + ": no news. waiting.");
             return null;
         }
-        Message rsp = react();
-        publishMessage(rsp);
-        return rsp;
+        return react();
     }
 
     private Message react() {
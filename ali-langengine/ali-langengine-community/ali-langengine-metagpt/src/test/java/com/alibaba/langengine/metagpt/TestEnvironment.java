@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.metagpt;
+
+import com.alibaba.langengine.core.model.FakeAI;
+import com.alibaba.langengine.metagpt.actions.Action;
+import com.alibaba.langengine.metagpt.actions.ActionOutput;
+import com.alibaba.langengine.metagpt.actions.BossRequirement;
+import com.alibaba.langengine.metagpt.memory.Memory;
+import com.alibaba.langengine.metagpt.roles.Role;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Environment调度与Memory索引的测试，角色使用脚本化的Action代替LLM
+ */
+public class TestEnvironment {
+
+    private static final Map<String, AtomicInteger> INVOCATIONS = new ConcurrentHashMap<>();
+
+    private static volatile long latencyMs = 0;
+
+    @Test
+    public void testConcurrentRunIsDeterministic() {
+        latencyMs = 2;
+        Environment narrow = pipeline(2, 8);
+        Environment wide = pipeline(8, 8);
+
+        List<Message> expected = narrow.run(10);
+        List<Message> actual = wide.run(10);
+
+        assertFalse(expected.isEmpty());
+        assertEquals(describe(expected), describe(actual));
+        assertEquals(describe(narrow.getMemory().get(0)), describe(wide.getMemory().get(0)));
+        assertEquals(narrow.getHistory(), wide.getHistory());
+    }
+
+    @Test
+    public void testSequentialRunSeesMessagesOfTheSameRound() {
+        latencyMs = 0;
+        Environment sequential = pipeline(1, 2);
+        Environment concurrent = pipeline(4, 2);
+
+        // 逐个执行时一轮就能走完 P -> R -> D，并发执行时一轮只有P有新消息
+        List<Message> messages = sequential.run(1);
+        assertEquals(6, messages.size());
+        assertEquals(1, INVOCATIONS.get(key(sequential, "D1")).get());
+        assertEquals(2, concurrent.run(1).size());
+        assertNull(INVOCATIONS.get(key(concurrent, "R0")));
+    }
+
+    @Test
+    public void testOnlyRolesWithNewsAreScheduled() {
+        latencyMs = 0;
+        Environment env = pipeline(4, 4);
+        env.addRole(new ScriptedRole("Idle", Draft.class, Collections.singletonList(Unused.class)));
+
+        env.run(10);
+
+        assertNull(INVOCATIONS.get(key(env, "Idle")));
+        assertEquals(1, INVOCATIONS.get(key(env, "P0")).get());
+
+        // 没有角色再有新消息后提前结束
+        Environment single = new Environment();
+        single.addRole(new ScriptedRole("Solo", Draft.class, Collections.singletonList(BossRequirement.class)));
+        single.publishMessage(message("BOSS", "idea", BossRequirement.class));
+        assertEquals(1, single.run(10).size());
+        assertTrue(single.run(10).isEmpty());
+    }
+
+    @Test
+    public void testHistoryKeepsFormat() {
+        Environment env = new Environment();
+        env.publishMessage(message("BOSS", "idea", BossRequirement.class));
+        env.publishMessage(message("PM", "prd", Draft.class));
+        assertEquals("\nBOSS: idea\nPM: prd", env.getHistory());
+    }
+
+    @Test
+    public void testMemoryIndexes() {
+        Memory memory = new Memory();
+        Message a = message("PM", "prd", Draft.class);
+        Message b = message("Architect", "design", Review.class);
+        memory.add(a);
+        memory.add(message("PM", "prd", Draft.class));
+        memory.add(b);
+
+        assertEquals(2, memory.count());
+        assertEquals(Collections.singletonList(a), memory.getByRole("PM"));
+        assertEquals(Collections.singletonList(b), memory.getByAction(Review.class));
+        assertEquals(Arrays.asList(a, b), memory.getByActions(Arrays.asList(Draft.class, Review.class)));
+
+        // 存入后再补充instructContent（Engineer.afterAct），仍能被去重找到
+        Map<String, Object> instruct = new HashMap<>();
+        instruct.put("files", Collections.singletonList("main.py"));
+        a.setInstructContent(instruct);
+        assertTrue(memory.contains(a));
+        memory.add(a);
+        assertEquals(2, memory.count());
+
+        memory.delete(a);
+        assertFalse(memory.contains(a));
+        assertTrue(memory.getByRole("PM").isEmpty());
+        assertTrue(memory.getByAction(Draft.class).isEmpty());
+        assertEquals(Collections.singletonList(a), memory.findNews(Arrays.asList(a, b), 0));
+    }
+
+    /**
+     * 依赖机器性能，默认不跑：-Dmetagpt.benchmark.enabled=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "metagpt.benchmark.enabled", matches = "true")
+    public void testBenchmark20RolesAnd1kMessages() {
+        latencyMs = 5;
+        int roles = 20;
+        int seeds = 1000;
+
+        Environment sequential = crowd(1, roles, seeds);
+        long start = System.nanoTime();
+        List<Message> expected = sequential.run(3);
+        long sequentialMs = (System.nanoTime() - start) / 1_000_000;
+
+        Environment concurrent = crowd(8, roles, seeds);
+        start = System.nanoTime();
+        List<Message> actual = concurrent.run(3);
+        long concurrentMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertFalse(expected.isEmpty());
+        assertFalse(actual.isEmpty());
+        assertTrue(concurrentMs < sequentialMs, String.format("%d roles x %d messages, %d rounds: sequential %d ms, parallelism 8 %d ms",
+                roles, seeds, 3, sequentialMs, concurrentMs));
+    }
+
+    /**
+     * 一个BOSS需求扇出给多条流水线：Draft -> Review -> Draft ...，部分角色在afterAct中额外发布消息
+     */
+    private static Environment pipeline(int parallelism, int lanes) {
+        Environment env = new Environment();
+        env.setParallelism(parallelism);
+        for (int i = 0; i < lanes; i++) {
+            env.addRole(new ScriptedRole("P" + i, Draft.class, Collections.singletonList(BossRequirement.class)));
+            ScriptedRole reviewer = new ScriptedRole("R" + i, Review.class, Collections.singletonList(Draft.class));
+            reviewer.notify = i % 2 == 0;
+            env.addRole(reviewer);
+            env.addRole(new ScriptedRole("D" + i, Draft.class, Arrays.asList(Review.class, Notice.class)));
+        }
+        env.publishMessage(message("BOSS", "build a todo app", BossRequirement.class));
+        return env;
+    }
+
+    private static Environment crowd(int parallelism, int roles, int seeds) {
+        Environment env = new Environment();
+        env.setParallelism(parallelism);
+        for (int i = 0; i < roles; i++) {
+            Class<? extends Action> action = i % 2 == 0 ? Draft.class : Review.class;
+            env.addRole(new ScriptedRole("C" + i, action, Arrays.asList(BossRequirement.class, action)));
+        }
+        for (int i = 0; i < seeds; i++) {
+            env.publishMessage(message("BOSS", "requirement " + i, BossRequirement.class));
+        }
+        return env;
+    }
+
+    private static Message message(String role, String content, Class<? extends Action> causeBy) {
+        Message message = new Message();
+        message.setRole(role);
+        message.setContent(content);
+        message.setCauseBy(causeBy);
+        return message;
+    }
+
+    private static List<String> describe(List<Message> messages) {
+        return messages.stream()
+                .map(m -> m.getCauseBy().getSimpleName() + "|" + m)
+                .collect(Collectors.toList());
+    }
+
+    private static String key(Environment env, String profile) {
+        return System.identityHashCode(env) + "/" + profile;
+    }
+
+    public static class ScriptedRole extends Role {
+
+        private boolean notify;
+
+        public ScriptedRole(String profile, Class<? extends Action> action, List<Class<? extends Action>> watch) {
+            super(profile, profile, "", "", "", new FakeAI());
+            initActions(Collections.singletonList(action));
+            watch(new ArrayList<>(watch));
+        }
+
+        @Override
+        public Message act() {
+            INVOCATIONS.computeIfAbsent(key(getRc().getEnv(), getProfile()), k -> new AtomicInteger()).incrementAndGet();
+            return super.act();
+        }
+
+        @Override
+        protected void afterAct(Message msg) {
+            if (notify) {
+                publishMessage(message(getProfile(), "notify " + msg.getContent(), Notice.class));
+            }
+        }
+    }
+
+    /**
+     * 脚本化的LLM：输出只取决于输入消息，模拟调用耗时
+     */
+    public abstract static class ScriptedAction extends Action {
+
+        public ScriptedAction() {
+            super("", "", null);
+        }
+
+        @Override
+        public ActionOutput run(List<Message> messages) {
+            if (latencyMs > 0) {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int digest = 0;
+            for (Message message : messages) {
+                digest += message.getContent().hashCode();
+            }
+            ActionOutput output = new ActionOutput();
+            output.setContent(getClass().getSimpleName() + " by " + getProfile() + " on " + messages.size() + "/" + digest);
+            return output;
+        }
+    }
+
+    public static class Draft extends ScriptedAction {
+    }
+
+    public static class Review extends ScriptedAction {
+    }
+
+    public static class Notice extends ScriptedAction {
+    }
+
+    public static class Unused extends ScriptedAction {
+    }
+}
@@ -15,10 +15,7 @@
  */
 package com.alibaba.langengine.minimax.model.service;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.net.Proxy;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
@@ -41,6 +38,7 @@ import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.OkHttpClient;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 
@@ -118,35 +116,50 @@ public class MinimaxService extends RetrofitInitService<MiniMaxApi> {
             });
     }
 
-    private Flowable<Minimax55Result> convertResponseBodyToFlowableOfMiniMaxResult(ResponseBody responseBody) {
+    /**
+     * 未设置use_standard_sse时每行一个"data: {...}"，行之间没有空行；设置后是以空行分隔的标准SSE。
+     * 两种格式的data都只有一行，因此按行读取，两种都能解析
+     */
+    static Flowable<Minimax55Result> convertResponseBodyToFlowableOfMiniMaxResult(ResponseBody responseBody) {
         return Flowable.create(emitter -> {
-            try {
-                BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(responseBody.byteStream(), StandardCharsets.UTF_8));
+            try (ResponseBody body = responseBody) {
+                // okio按整行解码UTF-8，多字节字符被拆在两个网络包之间也不会乱码
+                BufferedSource source = body.source();
                 String line;
-                //Gson gson = new Gson(); // 使用Gson来处理JSON字符串
-
-                while (!emitter.isCancelled() && (line = reader.readLine()) != null) {
-                    try {
-                        // 假设每一行都是一个完整的JSON对象
-                        String jsonData = line;
-                        if (line.contains("data: ")) {
-                            jsonData = line.substring("data: ".length());
-                        }
-
-                        Minimax55Result result = JSON.parseObject(jsonData, Minimax55Result.class);
-                        emitter.onNext(result);
-                    } catch (Exception e) {
-                        emitter.onError(e); // 如果JSON解析失败，则发送错误
+                while (!emitter.isCancelled() && (line = source.readUtf8Line()) != null) {
+                    String jsonData = toJsonData(line);
+                    if (jsonData == null) {
+                        continue;
+                    }
+                    if ("[DONE]".equals(jsonData)) {
+                        break;
                     }
+                    emitter.onNext(JSON.parseObject(jsonData, Minimax55Result.class));
                 }
                 emitter.onComplete(); // 完成流的发送
-            } finally {
-                responseBody.close(); // 确保ResponseBody被关闭
+            } catch (Exception e) {
+                emitter.onError(e); // 读取或JSON解析失败，则发送错误
             }
         }, BackpressureStrategy.BUFFER); // 使用BUFFER策略来应对背压
     }
 
+    /**
+     * 取出一行中的JSON；空行、注释以及event/id/retry字段返回null，没有"data:"前缀的行按原样当作JSON
+     */
+    static String toJsonData(String line) {
+        if (line.isEmpty() || line.startsWith(":")) {
+            return null;
+        }
+        if (line.startsWith("data:")) {
+            String data = line.substring("data:".length());
+            return data.startsWith(" ") ? data.substring(1) : data;
+        }
+        if (line.startsWith("event:") || line.startsWith("id:") || line.startsWith("retry:")) {
+            return null;
+        }
+        return line;
+    }
+
     private Flowable<String> parseSseEvent(String sseLine) {
         // 这里的解析逻辑取决于SSE事件的具体格式，以下是一个基本的例子
         if (sseLine.contains("data: ")) {
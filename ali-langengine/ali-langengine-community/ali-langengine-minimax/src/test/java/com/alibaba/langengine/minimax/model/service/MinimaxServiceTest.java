@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.minimax.model.service;
+
+import java.util.List;
+
+import com.alibaba.langengine.minimax.model.model.Minimax55Result;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * chatcompletion流式返回的解析，数据按接口文档中两种流格式构造
+ */
+public class MinimaxServiceTest {
+
+    private static final String CHUNK_1 = "{\"created\":1704163200,\"model\":\"abab5.5-chat\",\"reply\":\"\","
+        + "\"choices\":[{\"delta\":\"你好，\"}],\"id\":\"01b5c3e1\"}";
+
+    private static final String CHUNK_2 = "{\"created\":1704163200,\"model\":\"abab5.5-chat\",\"reply\":\"\","
+        + "\"choices\":[{\"delta\":\"我是专家。\"}],\"id\":\"01b5c3e1\"}";
+
+    private static final String LAST = "{\"created\":1704163200,\"model\":\"abab5.5-chat\",\"reply\":\"你好，我是专家。\","
+        + "\"choices\":[{\"delta\":\"\",\"finish_reason\":\"stop\"}],\"usage\":{\"total_tokens\":42},"
+        + "\"id\":\"01b5c3e1\",\"base_resp\":{\"status_code\":0,\"status_msg\":\"\"}}";
+
+    @Test
+    public void testDefaultLineDelimitedStream() {
+        // 未设置use_standard_sse: 每行一个data，行之间没有空行
+        String stream = "data: " + CHUNK_1 + "\n"
+            + "data: " + CHUNK_2 + "\n"
+            + "data: " + LAST + "\n";
+
+        assertChunks(parse(stream));
+    }
+
+    @Test
+    public void testStandardSseStream() {
+        String stream = "data: " + CHUNK_1 + "\r\n\r\n"
+            + ": keep-alive\r\n\r\n"
+            + "data:" + CHUNK_2 + "\r\n\r\n"
+            + "event: message\r\ndata: " + LAST + "\r\n\r\n"
+            + "data: [DONE]\r\n\r\n";
+
+        assertChunks(parse(stream));
+    }
+
+    @Test
+    public void testBareJsonLines() {
+        String stream = CHUNK_1 + "\n" + CHUNK_2 + "\n" + LAST;
+
+        assertChunks(parse(stream));
+    }
+
+    @Test
+    public void testToJsonData() {
+        assertEquals("{}", MinimaxService.toJsonData("data: {}"));
+        assertEquals("{}", MinimaxService.toJsonData("data:{}"));
+        assertEquals("{}", MinimaxService.toJsonData("{}"));
+        assertNull(MinimaxService.toJsonData(""));
+        assertNull(MinimaxService.toJsonData(": ping"));
+        assertNull(MinimaxService.toJsonData("id: 1"));
+    }
+
+    private static List<Minimax55Result> parse(String stream) {
+        ResponseBody body = ResponseBody.create(stream, MediaType.get("text/event-stream"));
+        return MinimaxService.convertResponseBodyToFlowableOfMiniMaxResult(body).toList().blockingGet();
+    }
+
+    private static void assertChunks(List<Minimax55Result> results) {
+        assertEquals(3, results.size());
+        assertEquals("你好，", results.get(0).getChoices().get(0).getDelta());
+        assertEquals("我是专家。", results.get(1).getChoices().get(0).getDelta());
+        assertEquals("你好，我是专家。", results.get(2).getReply());
+        assertEquals("stop", results.get(2).getChoices().get(0).getFinishReason());
+    }
+}
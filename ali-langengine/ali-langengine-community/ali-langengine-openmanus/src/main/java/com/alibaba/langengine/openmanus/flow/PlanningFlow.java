@@ -31,6 +31,12 @@ import com.alibaba.langengine.openmanus.tool.PlanningTool;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -228,11 +234,17 @@ public class PlanningFlow extends BaseFlow {
             "- We build on successful interactions to tackle increasingly complex challenges"
             ;
 
+    private static final Pattern STEP_TYPE_PATTERN = Pattern.compile("\\[([A-Z_]+)\\]");
+
     private BaseChatModel llm;
     private PlanningTool planningTool;
     private List<String> executorKeys;
     private String activePlanId;
     private Integer currentStepIndex;
+    /**
+     * 存在步骤依赖时，同时执行的最大步骤数
+     */
+    private int maxParallelSteps = 4;
 
     public PlanningFlow(Map<String, BaseAgent> agents, Map<String, Object> data) {
         super(agents, data);
@@ -255,7 +267,15 @@ public class PlanningFlow extends BaseFlow {
             this.planningTool = (PlanningTool) data.get("planning_tool");
         }
 
-        llm = OpenManusConfiguration.getPlanningChatModel();
+        if (data.containsKey("max_parallel_steps")) {
+            maxParallelSteps = Math.max(1, ((Number) data.remove("max_parallel_steps")).intValue());
+        }
+
+        if (data.containsKey("planning_llm")) {
+            llm = (BaseChatModel) data.remove("planning_llm");
+        } else {
+            llm = OpenManusConfiguration.getPlanningChatModel();
+        }
 
         if (executorKeys.isEmpty()) {
             executorKeys.addAll(agents.keySet());
@@ -287,6 +307,10 @@ public class PlanningFlow extends BaseFlow {
                 }
             }
 
+            if (hasStepDependencies()) {
+                return executeDependentSteps();
+            }
+
             StringBuilder result = new StringBuilder();
             while (true) {
                 Map.Entry<Integer, Map<String, String>> stepInfoEntry = getCurrentStepInfo();
@@ -402,14 +426,7 @@ public class PlanningFlow extends BaseFlow {
                 }
 
                 if (PlanStepStatus.getActiveStatuses().contains(status)) {
-                    Map<String, String> stepInfo = new HashMap<>();
-                    stepInfo.put("text", steps.get(i));
-
-                    Pattern pattern = Pattern.compile("\\[([A-Z_]+)\\]");
-                    Matcher matcher = pattern.matcher(steps.get(i));
-                    if (matcher.find()) {
-                        stepInfo.put("type", matcher.group(1).toLowerCase());
-                    }
+                    Map<String, String> stepInfo = parseStepInfo(steps.get(i));
 
                     try {
                         final int index = i;
@@ -447,13 +464,7 @@ public class PlanningFlow extends BaseFlow {
 
     public String executeStep(BaseAgent executor, Map<String, String> stepInfo) {
         try {
-            String planStatus = getPlanText();
-            String stepText = stepInfo.getOrDefault("text", "Step " + currentStepIndex);
-
-            String stepPrompt = String.format(
-                    "CURRENT PLAN STATUS:\n%s\n\nYOUR CURRENT TASK:\nYou are now working on step %d: \"%s\"\n\nPlease execute this step using the appropriate tools. When you're done, provide a summary of what you accomplished.",
-                    planStatus, currentStepIndex, stepText
-            );
+            String stepPrompt = buildStepPrompt(currentStepIndex, stepInfo);
 
             try {
                 String stepResult = executor.run(stepPrompt);
@@ -471,6 +482,190 @@ public class PlanningFlow extends BaseFlow {
         }
     }
 
+    /**
+     * 按步骤依赖并发执行：依赖均已完成、且分配到的agent空闲的步骤即可开始，同一agent上的步骤依次执行。
+     * 任一步骤失败时将其标记为blocked，取消其余执行中的步骤（恢复为not_started）并停止调度。
+     * 没有步骤可调度时若仍有未完成的步骤（例如依赖了已blocked的步骤），这些步骤标记为blocked并按失败返回
+     *
+     * @return 按步骤顺序拼接的执行结果，全部步骤完成时附带计划总结
+     */
+    public String executeDependentSteps() {
+        Map<String, Object> planData = planningTool.getPlans().get(activePlanId);
+        List<String> steps = new ArrayList<>((List<String>) planData.get("steps"));
+        List<List<Integer>> dependencies = (List<List<Integer>>) planData.get("step_dependencies");
+        int total = steps.size();
+        if (total == 0) {
+            return finalizePlan();
+        }
+
+        String[] results = new String[total];
+        Throwable[] errors = new Throwable[total];
+        Map<Integer, Future<?>> running = new LinkedHashMap<>();
+        Map<Integer, BaseAgent> assigned = new HashMap<>();
+        Set<BaseAgent> busyAgents = Collections.newSetFromMap(new IdentityHashMap<>());
+        BlockingQueue<Integer> finished = new LinkedBlockingQueue<>();
+        String failure = null;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(maxParallelSteps, total), r -> {
+            Thread thread = new Thread(r, "planning-flow-" + activePlanId + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            while (true) {
+                for (int i = 0; i < total && running.size() < maxParallelSteps; i++) {
+                    if (running.containsKey(i) || !isStepReady(planData, dependencies, i)) {
+                        continue;
+                    }
+                    Map<String, String> stepInfo = parseStepInfo(steps.get(i));
+                    BaseAgent executor = getExecutor(stepInfo.get("type"));
+                    if (busyAgents.contains(executor)) {
+                        continue;
+                    }
+                    busyAgents.add(executor);
+                    assigned.put(i, executor);
+                    markStep(i, PlanStepStatus.IN_PROGRESS, null);
+
+                    final int index = i;
+                    final String stepPrompt = buildStepPrompt(i, stepInfo);
+                    running.put(i, pool.submit(() -> {
+                        try {
+                            results[index] = executor.run(stepPrompt);
+                        } catch (Throwable e) {
+                            errors[index] = e;
+                        } finally {
+                            finished.add(index);
+                        }
+                    }));
+                }
+
+                if (running.isEmpty()) {
+                    failure = blockUnreachableSteps(planData, dependencies, total);
+                    break;
+                }
+
+                int index = finished.take();
+                running.remove(index);
+                busyAgents.remove(assigned.remove(index));
+                if (errors[index] != null) {
+                    failure = "Error executing step " + index + ": " + errors[index].getMessage();
+                    log.error(failure);
+                    markStep(index, PlanStepStatus.BLOCKED, failure);
+                    cancelSteps(running, "Cancelled after step " + index + " failed");
+                    break;
+                }
+                markStep(index, PlanStepStatus.COMPLETED, null);
+                log.info("Marked step " + index + " as completed in plan " + activePlanId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = "Interrupted while executing plan " + activePlanId;
+            cancelSteps(running, "Cancelled");
+        } finally {
+            pool.shutdownNow();
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (String stepResult : results) {
+            if (stepResult != null) {
+                result.append(stepResult).append("\n");
+            }
+        }
+        if (failure != null) {
+            return result.append("Execution failed: ").append(failure).toString();
+        }
+        return result.append(finalizePlan()).toString();
+    }
+
+    private boolean hasStepDependencies() {
+        Map<String, Object> planData = planningTool.getPlans().get(activePlanId);
+        return planData != null && planData.get("step_dependencies") != null;
+    }
+
+    private boolean isStepReady(Map<String, Object> planData, List<List<Integer>> dependencies, int index) {
+        List<String> stepStatuses = (List<String>) planData.get("step_statuses");
+        if (!PlanStepStatus.getActiveStatuses().contains(stepStatuses.get(index))) {
+            return false;
+        }
+        for (Integer dependency : dependencies.get(index)) {
+            if (!PlanStepStatus.COMPLETED.getValue().equals(stepStatuses.get(dependency))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把无法再执行的步骤标记为blocked，并在备注中记录它等待的未完成依赖
+     *
+     * @return 有未完成步骤时返回失败原因，否则返回null
+     */
+    private String blockUnreachableSteps(Map<String, Object> planData, List<List<Integer>> dependencies, int total) {
+        List<String> stepStatuses = (List<String>) planData.get("step_statuses");
+        List<Integer> unfinished = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            String status = stepStatuses.get(i);
+            if (PlanStepStatus.COMPLETED.getValue().equals(status)) {
+                continue;
+            }
+            unfinished.add(i);
+            if (!PlanStepStatus.getActiveStatuses().contains(status)) {
+                continue;
+            }
+            List<Integer> waitingFor = new ArrayList<>();
+            for (Integer dependency : dependencies.get(i)) {
+                if (!PlanStepStatus.COMPLETED.getValue().equals(stepStatuses.get(dependency))) {
+                    waitingFor.add(dependency);
+                }
+            }
+            markStep(i, PlanStepStatus.BLOCKED, "Unreachable: depends on unfinished steps " + waitingFor);
+        }
+        if (unfinished.isEmpty()) {
+            return null;
+        }
+        String failure = "Steps " + unfinished + " of plan " + activePlanId + " were not completed";
+        log.error(failure);
+        return failure;
+    }
+
+    private void cancelSteps(Map<Integer, Future<?>> running, String notes) {
+        for (Map.Entry<Integer, Future<?>> entry : running.entrySet()) {
+            entry.getValue().cancel(true);
+            markStep(entry.getKey(), PlanStepStatus.NOT_STARTED, notes);
+        }
+        running.clear();
+    }
+
+    private void markStep(int index, PlanStepStatus status, String notes) {
+        try {
+            planningTool.markStep(activePlanId, index, status.getValue(), notes);
+        } catch (Exception e) {
+            log.error("Failed to mark step " + index + " as " + status + ": " + e.getMessage());
+        }
+    }
+
+    private Map<String, String> parseStepInfo(String step) {
+        Map<String, String> stepInfo = new HashMap<>();
+        stepInfo.put("text", step);
+
+        Matcher matcher = STEP_TYPE_PATTERN.matcher(step);
+        if (matcher.find()) {
+            stepInfo.put("type", matcher.group(1).toLowerCase());
+        }
+        return stepInfo;
+    }
+
+    private String buildStepPrompt(Integer stepIndex, Map<String, String> stepInfo) {
+        String planStatus = getPlanText();
+        String stepText = stepInfo.getOrDefault("text", "Step " + stepIndex);
+
+        return String.format(
+                "CURRENT PLAN STATUS:\n%s\n\nYOUR CURRENT TASK:\nYou are now working on step %d: \"%s\"\n\nPlease execute this step using the appropriate tools. When you're done, provide a summary of what you accomplished.",
+                planStatus, stepIndex, stepText
+        );
+    }
+
     public void markStepCompleted() {
         if (currentStepIndex == null) {
             return;
@@ -617,6 +812,14 @@ public class PlanningFlow extends BaseFlow {
         this.activePlanId = activePlanId;
     }
 
+    public int getMaxParallelSteps() {
+        return maxParallelSteps;
+    }
+
+    public void setMaxParallelSteps(int maxParallelSteps) {
+        this.maxParallelSteps = Math.max(1, maxParallelSteps);
+    }
+
     public Integer getCurrentStepIndex() {
         return currentStepIndex;
     }
@@ -23,6 +23,7 @@ import com.alibaba.langengine.core.tool.ToolExecuteResult;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 public class PlanningTool extends BaseTool {
@@ -58,6 +59,16 @@ public class PlanningTool extends BaseTool {
             "\t\t\t\t\"type\": \"string\"\n" +
             "\t\t\t}\n" +
             "\t\t},\n" +
+            "\t\t\"step_dependencies\": {\n" +
+            "\t\t\t\"description\": \"Optional. For each step, the 0-based indices of the steps it depends on. Steps whose dependencies are completed can run in parallel. Omit to run the steps in order. Used with create and update commands.\",\n" +
+            "\t\t\t\"type\": \"array\",\n" +
+            "\t\t\t\"items\": {\n" +
+            "\t\t\t\t\"type\": \"array\",\n" +
+            "\t\t\t\t\"items\": {\n" +
+            "\t\t\t\t\t\"type\": \"integer\"\n" +
+            "\t\t\t\t}\n" +
+            "\t\t\t}\n" +
+            "\t\t},\n" +
             "\t\t\"step_index\": {\n" +
             "\t\t\t\"description\": \"Index of the step to update (0-based). Required for mark_step command.\",\n" +
             "\t\t\t\"type\": \"integer\"\n" +
@@ -109,6 +120,10 @@ public class PlanningTool extends BaseTool {
             if(toolInputMap.get("steps") != null) {
                 steps = (List<String>) toolInputMap.get("steps");
             }
+            List<List<Integer>> stepDependencies = null;
+            if (toolInputMap.get("step_dependencies") != null) {
+                stepDependencies = parseDependencies(toolInputMap.get("step_dependencies"));
+            }
             Integer stepIndex = null;
             if(toolInputMap.get("step_index") != null) {
                 stepIndex = (Integer) toolInputMap.get("step_index");
@@ -124,9 +139,9 @@ public class PlanningTool extends BaseTool {
 
             switch (command) {
                 case "create":
-                    return createPlan(planId, title, steps);
+                    return createPlan(planId, title, steps, stepDependencies);
                 case "update":
-                    return updatePlan(planId, title, steps);
+                    return updatePlan(planId, title, steps, stepDependencies);
                 case "list":
                     return listPlans();
                 case "get":
@@ -146,6 +161,10 @@ public class PlanningTool extends BaseTool {
     }
 
     public ToolExecuteResult createPlan(String planId, String title, List<String> steps) {
+        return createPlan(planId, title, steps, null);
+    }
+
+    public synchronized ToolExecuteResult createPlan(String planId, String title, List<String> steps, List<List<Integer>> stepDependencies) {
         if (planId == null || planId.isEmpty()) {
             throw new RuntimeException("Parameter `plan_id` is required for command: create");
         }
@@ -162,12 +181,17 @@ public class PlanningTool extends BaseTool {
             throw new RuntimeException("Parameter `steps` must be a non-empty list of strings for command: create");
         }
 
+        validateDependencies(steps.size(), stepDependencies);
+
         Map<String, Object> plan = new HashMap<>();
         plan.put("plan_id", planId);
         plan.put("title", title);
         plan.put("steps", steps);
         plan.put("step_statuses", new ArrayList<>(Collections.nCopies(steps.size(), "not_started")));
         plan.put("step_notes", new ArrayList<>(Collections.nCopies(steps.size(), "")));
+        if (stepDependencies != null) {
+            plan.put("step_dependencies", stepDependencies);
+        }
 
         plans.put(planId, plan);
         this.currentPlanId = planId;  // Set as active plan
@@ -176,6 +200,10 @@ public class PlanningTool extends BaseTool {
     }
 
     public ToolExecuteResult updatePlan(String planId, String title, List<String> steps) {
+        return updatePlan(planId, title, steps, null);
+    }
+
+    public synchronized ToolExecuteResult updatePlan(String planId, String title, List<String> steps, List<List<Integer>> stepDependencies) {
         if (planId == null || planId.isEmpty()) {
             throw new RuntimeException("Parameter `plan_id` is required for command: update");
         }
@@ -186,6 +214,10 @@ public class PlanningTool extends BaseTool {
 
         Map<String, Object> plan = plans.get(planId);
 
+        if (stepDependencies != null) {
+            validateDependencies(steps != null ? steps.size() : ((List<String>) plan.get("steps")).size(), stepDependencies);
+        }
+
         if (title != null && !title.isEmpty()) {
             plan.put("title", title);
         }
@@ -216,12 +248,20 @@ public class PlanningTool extends BaseTool {
             plan.put("steps", steps);
             plan.put("step_statuses", newStatuses);
             plan.put("step_notes", newNotes);
+            if (stepDependencies == null) {
+                // 步骤变化后原有的依赖下标不再可靠
+                plan.remove("step_dependencies");
+            }
+        }
+
+        if (stepDependencies != null) {
+            plan.put("step_dependencies", stepDependencies);
         }
 
         return new ToolExecuteResult("Plan updated successfully: " + planId + "\n\n" + formatPlan(plan));
     }
 
-    public ToolExecuteResult listPlans() {
+    public synchronized ToolExecuteResult listPlans() {
         if (plans.isEmpty()) {
             return new ToolExecuteResult("No plans available. Create a plan with the 'create' command.");
         }
@@ -240,7 +280,7 @@ public class PlanningTool extends BaseTool {
         return new ToolExecuteResult(output.toString());
     }
 
-    public ToolExecuteResult getPlan(String planId) {
+    public synchronized ToolExecuteResult getPlan(String planId) {
         if (planId == null || planId.isEmpty()) {
             if (currentPlanId == null) {
                 throw new RuntimeException("No active plan. Please specify a plan_id or set an active plan.");
@@ -256,7 +296,7 @@ public class PlanningTool extends BaseTool {
         return new ToolExecuteResult(formatPlan(plan));
     }
 
-    public ToolExecuteResult setActivePlan(String planId) {
+    public synchronized ToolExecuteResult setActivePlan(String planId) {
         if (planId == null || planId.isEmpty()) {
             throw new RuntimeException("Parameter `plan_id` is required for command: set_active");
         }
@@ -269,7 +309,7 @@ public class PlanningTool extends BaseTool {
         return new ToolExecuteResult("Plan '" + planId + "' is now the active plan.\n\n" + formatPlan(plans.get(planId)));
     }
 
-    public ToolExecuteResult markStep(String planId, Integer stepIndex, String stepStatus, String stepNotes) {
+    public synchronized ToolExecuteResult markStep(String planId, Integer stepIndex, String stepStatus, String stepNotes) {
         if (planId == null || planId.isEmpty()) {
             if (currentPlanId == null) {
                 throw new RuntimeException("No active plan. Please specify a plan_id or set an active plan.");
@@ -312,7 +352,7 @@ public class PlanningTool extends BaseTool {
         return new ToolExecuteResult(result);
     }
 
-    public ToolExecuteResult deletePlan(String planId) {
+    public synchronized ToolExecuteResult deletePlan(String planId) {
         if (planId == null || planId.isEmpty()) {
             throw new RuntimeException("Parameter `plan_id` is required for command: delete");
         }
@@ -342,6 +382,7 @@ public class PlanningTool extends BaseTool {
         List<String> steps = (List<String>) plan.get("steps");
         List<String> stepStatuses = (List<String>) plan.get("step_statuses");
         List<String> stepNotes = (List<String>) plan.get("step_notes");
+        List<List<Integer>> stepDependencies = (List<List<Integer>>) plan.get("step_dependencies");
 
         int totalSteps = steps.size();
         long completed = stepStatuses.stream().filter(status -> "completed".equals(status)).count();
@@ -385,6 +426,9 @@ public class PlanningTool extends BaseTool {
             }
 
             output.append(i).append(". ").append(statusSymbol).append(" ").append(step).append("\n");
+            if (stepDependencies != null && !stepDependencies.get(i).isEmpty()) {
+                output.append("   Depends on: ").append(stepDependencies.get(i).stream().map(String::valueOf).collect(Collectors.joining(", "))).append("\n");
+            }
             if (notes != null && !notes.isEmpty()) {
                 output.append("   Notes: ").append(notes).append("\n");
             }
@@ -393,6 +437,73 @@ public class PlanningTool extends BaseTool {
         return output.toString();
     }
 
+    private List<List<Integer>> parseDependencies(Object value) {
+        if (!(value instanceof List)) {
+            throw new RuntimeException("Parameter `step_dependencies` must be a list of lists of step indices");
+        }
+        List<List<Integer>> dependencies = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            List<Integer> stepDependencies = new ArrayList<>();
+            if (item instanceof List) {
+                for (Object index : (List<?>) item) {
+                    if (!(index instanceof Number)) {
+                        throw new RuntimeException("Parameter `step_dependencies` must contain integer step indices, got: " + index);
+                    }
+                    stepDependencies.add(((Number) index).intValue());
+                }
+            } else if (item != null) {
+                throw new RuntimeException("Parameter `step_dependencies` must be a list of lists of step indices");
+            }
+            dependencies.add(stepDependencies);
+        }
+        return dependencies;
+    }
+
+    /**
+     * 校验依赖：每个步骤一项、下标合法且不能形成环
+     */
+    private void validateDependencies(int stepCount, List<List<Integer>> stepDependencies) {
+        if (stepDependencies == null) {
+            return;
+        }
+        if (stepDependencies.size() != stepCount) {
+            throw new RuntimeException("Parameter `step_dependencies` must have one entry per step: expected " + stepCount + ", got " + stepDependencies.size());
+        }
+        int[] remaining = new int[stepCount];
+        List<List<Integer>> dependents = new ArrayList<>();
+        for (int i = 0; i < stepCount; i++) {
+            dependents.add(new ArrayList<>());
+        }
+        for (int i = 0; i < stepCount; i++) {
+            for (Integer dependency : stepDependencies.get(i)) {
+                if (dependency == null || dependency < 0 || dependency >= stepCount || dependency == i) {
+                    throw new RuntimeException("Invalid dependency " + dependency + " for step " + i + ". Valid indices range from 0 to " + (stepCount - 1) + ", excluding the step itself.");
+                }
+                remaining[i]++;
+                dependents.get(dependency).add(i);
+            }
+        }
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < stepCount; i++) {
+            if (remaining[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            int step = ready.poll();
+            visited++;
+            for (int dependent : dependents.get(step)) {
+                if (--remaining[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (visited != stepCount) {
+            throw new RuntimeException("Parameter `step_dependencies` contains a cycle");
+        }
+    }
+
     private String repeatString(String str, int times) {
         StringBuilder repeated = new StringBuilder();
         for (int i = 0; i < times; i++) {
@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.openmanus.flow;
+
+import com.alibaba.langengine.core.chatmodel.FakeChatModel;
+import com.alibaba.langengine.core.memory.impl.ConversationBufferMemory;
+import com.alibaba.langengine.openmanus.agent.BaseAgent;
+import com.alibaba.langengine.openmanus.domain.AgentState;
+import com.alibaba.langengine.openmanus.tool.PlanningTool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PlanningFlow按步骤依赖并发执行的测试，agent以固定耗时模拟LLM调用
+ */
+public class PlanningFlowTest {
+
+    private static final Pattern STEP_INDEX = Pattern.compile("working on step (\\d+)");
+
+    private final Map<Integer, long[]> timings = new ConcurrentHashMap<>();
+
+    // 0、1、2互相独立，3依赖0和1，4依赖2和3
+    private static final List<String> DIAMOND_STEPS = Arrays.asList("[A] fetch", "[B] fetch", "[C] fetch", "[A] merge", "[B] report");
+
+    private static final List<List<Integer>> DIAMOND_DEPENDENCIES = Arrays.asList(
+            Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+            Arrays.asList(0, 1), Arrays.asList(2, 3));
+
+    @Test
+    public void testStepsStartAfterTheirDependencies() {
+        PlanningFlow flow = flow(agents(20, -1), DIAMOND_STEPS, DIAMOND_DEPENDENCIES, 4);
+        String result = flow.execute(null);
+
+        assertTrue(result.contains("Plan completed"), result);
+        assertEquals(Collections.nCopies(5, "completed"), statuses(flow));
+        for (int i = 0; i < DIAMOND_STEPS.size(); i++) {
+            assertTrue(result.contains("done " + i), result);
+            for (Integer dependency : DIAMOND_DEPENDENCIES.get(i)) {
+                assertTrue(timings.get(dependency)[1] <= timings.get(i)[0], "step " + i + " started before " + dependency);
+            }
+        }
+    }
+
+    /**
+     * 依赖机器性能，默认不跑：-Dopenmanus.benchmark.enabled=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "openmanus.benchmark.enabled", matches = "true")
+    public void testIndependentStepsRunInParallel() {
+        long start = System.nanoTime();
+        flow(agents(100, -1), DIAMOND_STEPS, DIAMOND_DEPENDENCIES, 4).execute(null);
+        long parallelMs = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        flow(agents(100, -1), DIAMOND_STEPS, null, 4).execute(null);
+        long linearMs = (System.nanoTime() - start) / 1_000_000;
+
+        // 关键路径为3个步骤
+        String timing = "5 steps x 100 ms: linear " + linearMs + " ms, dependency-aware " + parallelMs + " ms";
+        assertTrue(parallelMs < 450, timing);
+        assertTrue(parallelMs < linearMs, timing);
+    }
+
+    @Test
+    public void testEmptyPlanIsFinalized() {
+        PlanningFlow flow = flow(agents(10, -1), Collections.singletonList("[A] only"), null, 4);
+        Map<String, Object> plan = flow.getPlanningTool().getPlans().get(flow.getActivePlanId());
+        plan.put("steps", new ArrayList<String>());
+        plan.put("step_statuses", new ArrayList<String>());
+        plan.put("step_notes", new ArrayList<String>());
+        plan.put("step_dependencies", new ArrayList<List<Integer>>());
+
+        String result = flow.executeDependentSteps();
+        assertTrue(result.startsWith("Plan completed"), result);
+    }
+
+    @Test
+    public void testSameAgentStepsAreSerialized() {
+        List<String> steps = Arrays.asList("[A] one", "[A] two", "[A] three");
+        List<List<Integer>> dependencies = Arrays.asList(
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+        PlanningFlow flow = flow(agents(30, -1), steps, dependencies, 4);
+        flow.execute(null);
+
+        assertEquals(Collections.nCopies(3, "completed"), statuses(flow));
+        List<long[]> spans = new ArrayList<>(timings.values());
+        spans.sort((x, y) -> Long.compare(x[0], y[0]));
+        for (int i = 1; i < spans.size(); i++) {
+            assertTrue(spans.get(i - 1)[1] <= spans.get(i)[0]);
+        }
+    }
+
+    @Test
+    public void testFailureCancelsRunningSteps() {
+        // 步骤1很快失败，并发执行中的步骤0被取消，依赖它们的步骤2不再调度
+        List<String> steps = Arrays.asList("[A] slow", "[B] broken", "[C] after");
+        List<List<Integer>> dependencies = Arrays.asList(
+                Collections.emptyList(), Collections.emptyList(), Arrays.asList(0, 1));
+
+        long start = System.nanoTime();
+        PlanningFlow flow = flow(agents(2000, 1), steps, dependencies, 4);
+        String result = flow.execute(null);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(result.contains("Execution failed: Error executing step 1"), result);
+        assertFalse(result.contains("Plan completed"), result);
+        assertTrue(elapsedMs < 1500, "failure took " + elapsedMs + " ms");
+        assertEquals(Arrays.asList("not_started", "blocked", "not_started"), statuses(flow));
+        List<String> notes = (List<String>) flow.getPlanningTool().getPlans().get(flow.getActivePlanId()).get("step_notes");
+        assertEquals("Cancelled after step 1 failed", notes.get(0));
+        assertNull(timings.get(2));
+    }
+
+    @Test
+    public void testStepsBehindBlockedStepAreReportedAsFailed() {
+        // 步骤0已被标记为blocked，依赖它的步骤1永远不会就绪，步骤3又依赖步骤1；只有步骤2能执行
+        List<String> steps = Arrays.asList("[A] login", "[B] fetch", "[C] other", "[A] report");
+        List<List<Integer>> dependencies = Arrays.asList(
+                Collections.emptyList(), Collections.singletonList(0), Collections.emptyList(), Arrays.asList(1, 2));
+
+        PlanningFlow flow = flow(agents(10, -1), steps, dependencies, 4);
+        flow.getPlanningTool().markStep("plan_test", 0, "blocked", "needs credentials");
+        String result = flow.execute(null);
+
+        assertTrue(result.contains("done 2"), result);
+        assertTrue(result.contains("Execution failed: Steps [0, 1, 3]"), result);
+        assertFalse(result.contains("Plan completed"), result);
+        assertEquals(Arrays.asList("blocked", "blocked", "completed", "blocked"), statuses(flow));
+        List<String> notes = (List<String>) flow.getPlanningTool().getPlans().get(flow.getActivePlanId()).get("step_notes");
+        assertEquals("needs credentials", notes.get(0));
+        assertEquals("Unreachable: depends on unfinished steps [0]", notes.get(1));
+        assertEquals("Unreachable: depends on unfinished steps [1]", notes.get(3));
+        assertNull(timings.get(1));
+        assertNull(timings.get(3));
+    }
+
+    @Test
+    public void testInvalidDependenciesAreRejected() {
+        PlanningTool tool = new PlanningTool();
+        List<String> steps = Arrays.asList("a", "b", "c");
+        assertThrows(RuntimeException.class, () -> tool.createPlan("p", "t", steps,
+                Arrays.asList(Collections.singletonList(2), Collections.singletonList(0), Collections.singletonList(1))));
+        assertThrows(RuntimeException.class, () -> tool.createPlan("p", "t", steps,
+                Arrays.asList(Collections.emptyList(), Collections.singletonList(1), Collections.emptyList())));
+        assertThrows(RuntimeException.class, () -> tool.createPlan("p", "t", steps,
+                Arrays.asList(Collections.emptyList(), Collections.singletonList(3), Collections.emptyList())));
+        assertThrows(RuntimeException.class, () -> tool.createPlan("p", "t", steps,
+                Collections.singletonList(Collections.emptyList())));
+        assertFalse(tool.getPlans().containsKey("p"));
+
+        tool.createPlan("p", "t", steps, Arrays.asList(Collections.emptyList(), Collections.singletonList(0), Arrays.asList(0, 1)));
+        assertTrue(tool.getPlan("p").getOutput().contains("Depends on: 0, 1"));
+    }
+
+    private PlanningFlow flow(Map<String, BaseAgent> agents, List<String> steps, List<List<Integer>> dependencies,
+                              int maxParallelSteps) {
+        PlanningTool tool = new PlanningTool();
+        tool.createPlan("plan_test", "test", steps, dependencies);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("planning_tool", tool);
+        data.put("plan_id", "plan_test");
+        data.put("planning_llm", new FakeChatModel("summary"));
+        data.put("max_parallel_steps", maxParallelSteps);
+        return new PlanningFlow(agents, data);
+    }
+
+    private List<String> statuses(PlanningFlow flow) {
+        return (List<String>) flow.getPlanningTool().getPlans().get(flow.getActivePlanId()).get("step_statuses");
+    }
+
+    private Map<String, BaseAgent> agents(long latencyMs, int failingStep) {
+        Map<String, BaseAgent> agents = new LinkedHashMap<>();
+        for (String key : new String[]{"a", "b", "c"}) {
+            agents.put(key, new LatencyAgent(key, latencyMs, failingStep));
+        }
+        return agents;
+    }
+
+    private class LatencyAgent extends BaseAgent {
+
+        private final long latencyMs;
+        private final int failingStep;
+        private final AtomicInteger active = new AtomicInteger();
+        private String request;
+
+        LatencyAgent(String name, long latencyMs, int failingStep) {
+            setName(name);
+            setMemory(new ConversationBufferMemory());
+            this.latencyMs = latencyMs;
+            this.failingStep = failingStep;
+        }
+
+        @Override
+        public String run(String request) {
+            this.request = request;
+            return super.run(request);
+        }
+
+        @Override
+        protected String step() {
+            assertEquals(1, active.incrementAndGet(), "agent " + getName() + " runs two steps at once");
+            try {
+                Matcher matcher = STEP_INDEX.matcher(request);
+                assertTrue(matcher.find());
+                int index = Integer.parseInt(matcher.group(1));
+                if (index == failingStep) {
+                    throw new IllegalStateException("boom");
+                }
+                long start = System.nanoTime();
+                Thread.sleep(latencyMs);
+                timings.put(index, new long[]{start, System.nanoTime()});
+                setState(AgentState.FINISHED);
+                return "done " + index;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                setState(AgentState.FINISHED);
+                return "interrupted";
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+}
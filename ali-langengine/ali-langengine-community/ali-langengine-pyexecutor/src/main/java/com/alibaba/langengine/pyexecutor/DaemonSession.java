@@ -17,6 +17,7 @@
 package com.alibaba.langengine.pyexecutor;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 
 import java.io.*;
@@ -45,7 +46,12 @@ public class DaemonSession {
 
     private Path cwd;
     private volatile long lastUsedEpochMs;
-    private final long creationEpochMs;
+    private volatile long creationEpochMs;
+
+    private volatile String owner;
+    private int executionCount;
+    private long baselineRssBytes;
+    private long lastRssBytes;
 
     /**
      * Constructs a new DaemonSession, capturing its creation timestamp for hard TTL management.
@@ -152,6 +158,7 @@ public class DaemonSession {
         }
 
         this.lastUsedEpochMs = System.currentTimeMillis();
+        this.executionCount++;
 
         Path runCwd = this.cwd;
         if (opts != null && opts.getWorkingDirRelative() != null) {
@@ -271,6 +278,114 @@ public class DaemonSession {
         );
     }
 
+    /**
+     * Executes code on behalf of the given session. A pooled daemon may have been released and leased to
+     * another session since the caller obtained it; in that case the call is rejected instead of running
+     * in the other session's namespace.
+     *
+     * @param expectedOwner The session ID the caller obtained this daemon for.
+     * @throws IllegalStateException if the daemon is now bound to a different session.
+     */
+    synchronized PyExecutionResult exec(String expectedOwner, String code, PyExecutionOptions opts, PyExecutionPolicy policy) throws Exception {
+        if (!Objects.equals(owner, expectedOwner)) {
+            throw new IllegalStateException("python daemon session was released: " + expectedOwner);
+        }
+        return exec(code, opts, policy);
+    }
+
+    /**
+     * Binds a (possibly pre-warmed) daemon to a session: sets its working directory and owner and restarts
+     * its TTL clocks, since idle time spent in the pool does not count against the session.
+     *
+     * @param sessionId  The owning session ID.
+     * @param sessionCwd The working directory of the session.
+     * @throws IOException if the working directory cannot be created.
+     */
+    public synchronized void bind(String sessionId, Path sessionCwd) throws IOException {
+        Files.createDirectories(sessionCwd);
+        this.owner = sessionId;
+        this.cwd = sessionCwd.toAbsolutePath();
+        this.creationEpochMs = System.currentTimeMillis();
+        this.lastUsedEpochMs = this.creationEpochMs;
+    }
+
+    /**
+     * Imports the given modules into the daemon without touching the user namespace, so that later
+     * imports of them are cheap. The import policy still applies when user code imports them.
+     *
+     * @param modules The module names to import.
+     * @param policy  The execution policy (used for the timeout).
+     * @throws Exception if the daemon is not running or does not answer in time.
+     */
+    public synchronized void preload(List<String> modules, PyExecutionPolicy policy) throws Exception {
+        Map<String, Object> msg = new LinkedHashMap<>();
+        msg.put("op", "preload");
+        msg.put("modules", modules);
+        lastRssBytes = rssOf(control(msg, policy));
+        baselineRssBytes = lastRssBytes;
+    }
+
+    /**
+     * Resets the interpreter state left by the session (namespace, modules imported during the lease,
+     * {@code os.environ}, builtins) and moves it back to the given directory, detaching it from its session.
+     *
+     * @param poolCwd The directory to return to.
+     * @param policy  The execution policy (used for the timeout).
+     * @return The resident set size of the daemon in bytes, or 0 if unknown.
+     * @throws IllegalStateException if the session left threads running or files open, so the daemon must not be
+     *                               reused.
+     * @throws Exception             if the daemon is not running or does not answer in time.
+     */
+    public synchronized long reset(Path poolCwd, PyExecutionPolicy policy) throws Exception {
+        this.owner = null;
+        Map<String, Object> msg = new LinkedHashMap<>();
+        msg.put("op", "reset");
+        msg.put("opt", Collections.singletonMap("cwd", poolCwd.toAbsolutePath().toString()));
+        JSONObject done = control(msg, policy);
+        JSONArray dirty = done.getJSONArray("dirty");
+        if (dirty != null && !dirty.isEmpty()) {
+            throw new IllegalStateException("python daemon cannot be reused, session left " + String.join(", ", dirty.toJavaList(String.class)));
+        }
+        lastRssBytes = rssOf(done);
+        if (baselineRssBytes == 0) {
+            baselineRssBytes = lastRssBytes;
+        }
+        this.cwd = poolCwd.toAbsolutePath();
+        return lastRssBytes;
+    }
+
+    private static long rssOf(JSONObject done) {
+        Long rss = done.getLong("rss");
+        return rss == null ? 0L : rss;
+    }
+
+    private JSONObject control(Map<String, Object> msg, PyExecutionPolicy policy) throws Exception {
+        if (process == null || !process.isAlive()) {
+            throw new IllegalStateException("python daemon not running");
+        }
+        in.println(JSON.toJSONString(msg));
+        in.flush();
+        long deadline = System.nanoTime() + policy.getTimeout().toNanos();
+        while (System.nanoTime() < deadline) {
+            String raw = readLineNonBlocking(out, 20);
+            if (raw == null) {
+                if (!process.isAlive()) break;
+                continue;
+            }
+            String line = raw.trim();
+            if (line.startsWith(PROTO_PREFIX)) {
+                try {
+                    JSONObject obj = JSON.parseObject(line.substring(PROTO_PREFIX.length()));
+                    if ("_done".equals(obj.getString("type"))) {
+                        return obj;
+                    }
+                } catch (Exception ignore) {
+                }
+            }
+        }
+        throw new java.util.concurrent.TimeoutException("python daemon did not answer " + msg.get("op"));
+    }
+
     /**
      * Shuts down the daemon process and cleans up resources.
      * This method attempts to terminate the process gracefully before forcing it.
@@ -375,7 +490,43 @@ public class DaemonSession {
     }
 
     /**
-     * Gets the creation timestamp of this session.
+     * Gets the session ID this daemon is currently bound to.
+     *
+     * @return The owning session ID, or null if the daemon is not leased.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Gets the number of executions this daemon has served across all of its leases.
+     *
+     * @return The execution count.
+     */
+    public synchronized int getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * Gets the resident set size reported right after the daemon started (and preloaded modules).
+     *
+     * @return The baseline RSS in bytes, or 0 if unknown.
+     */
+    public synchronized long getBaselineRssBytes() {
+        return baselineRssBytes;
+    }
+
+    /**
+     * Gets the resident set size reported by the last preload or reset.
+     *
+     * @return The RSS in bytes, or 0 if unknown.
+     */
+    public synchronized long getLastRssBytes() {
+        return lastRssBytes;
+    }
+
+    /**
+     * Gets the creation timestamp of this session, i.e. when the daemon was started or last bound to a session.
      *
      * @return Milliseconds since epoch of the session creation.
      */
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2024 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.langengine.pyexecutor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of Python daemon processes that supplies {@link DaemonSession} instances to {@link SessionManager}.
+ * <p>
+ * Starting an interpreter (and importing its modules) is the dominant part of the first call of a session.
+ * The pool moves that cost off the caller's path:
+ * <ul>
+ * <li><b>Pre-warming:</b> {@link SessionConfig#getPrewarmCount()} daemons are kept started in the background,
+ * optionally with {@link SessionConfig#getPreloadModules()} already imported.</li>
+ * <li><b>Recycling:</b> when {@link SessionConfig#getMaxExecutionsPerDaemon()} is positive, the daemon of a closed
+ * session has its namespace cleared and goes back to the pool, until it reaches the execution limit or its
+ * memory grows by more than {@link SessionConfig#getMaxRssGrowthBytes()}. Otherwise it is shut down.</li>
+ * <li><b>Health checks:</b> dead daemons are discarded instead of being handed out.</li>
+ * <li><b>Bounded waiting:</b> when {@code maxCount} is positive, at most {@code maxCount + prewarmCount} daemons
+ * exist at a time. When all of them are in use, {@link #acquire(String, Path)} waits up to
+ * {@link SessionConfig#getAcquireTimeout()} and then fails with a {@link TimeoutException}. A {@code maxCount}
+ * of zero or less means no limit.</li>
+ * </ul>
+ * <p>
+ * Isolation between leases of a recycled daemon is best effort. A reset clears the namespace, unloads modules
+ * imported during the lease, restores {@code os.environ}, the builtins and the working directory, and the daemon
+ * is retired instead of recycled if the lease left threads running or files open. Changes made to modules that
+ * were loaded before the lease (the interpreter's own and the preloaded ones) cannot be undone, so recycling
+ * should only be enabled when consecutive sessions may trust each other.
+ */
+public class DaemonSessionPool implements AutoCloseable {
+
+    private static final long POLL_SLICE_MS = 50;
+
+    private final PyExecutionPolicy policy;
+    private final SessionConfig config;
+    private final Path poolHome;
+    private final BlockingQueue<DaemonSession> idle = new LinkedBlockingQueue<>();
+    /**
+     * Bounds the number of live daemons; {@code null} when {@link SessionConfig#getMaxCount()} is not positive,
+     * which means no limit, as in {@link SessionManager}.
+     */
+    private final Semaphore capacity;
+    private final AtomicInteger warming = new AtomicInteger();
+    private final ExecutorService warmer;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new pool and starts pre-warming daemons in the background.
+     *
+     * @param policy The execution policy every daemon is started with.
+     * @param config The session configuration holding the pool settings.
+     */
+    public DaemonSessionPool(PyExecutionPolicy policy, SessionConfig config) {
+        this.policy = policy;
+        this.config = config;
+        this.poolHome = Paths.get(config.getWorkspaceRoot()).resolve(".pool");
+        this.capacity = config.getMaxCount() > 0
+                ? new Semaphore(config.getMaxCount() + Math.max(0, config.getPrewarmCount()))
+                : null;
+        this.warmer = Executors.newFixedThreadPool(Math.max(1, Math.min(4, config.getPrewarmCount())), r -> {
+            Thread t = new Thread(r, "pyexecutor-prewarm");
+            t.setDaemon(true);
+            return t;
+        });
+        replenish();
+    }
+
+    /**
+     * Leases a running daemon and binds it to the given session.
+     * <p>
+     * An idle pre-warmed daemon is used if available; otherwise a daemon is started on the calling thread
+     * if capacity allows, or the call waits for one to become available.
+     *
+     * @param sessionId  The session the daemon is leased to.
+     * @param sessionCwd The working directory of the session.
+     * @return A running daemon bound to the session.
+     * @throws TimeoutException if no daemon becomes available within the acquire timeout.
+     * @throws Exception        if a daemon fails to start.
+     */
+    public DaemonSession acquire(String sessionId, Path sessionCwd) throws Exception {
+        if (closed) {
+            throw new IllegalStateException("pool closed");
+        }
+        long deadline = System.nanoTime() + config.getAcquireTimeout().toNanos();
+        while (true) {
+            DaemonSession s = idle.poll();
+            if (s == null && tryAcquireSlot()) {
+                try {
+                    s = startDaemon();
+                } catch (Exception e) {
+                    releaseSlot();
+                    throw e;
+                }
+            }
+            if (s != null) {
+                if (!s.isAlive()) {
+                    discard(s);
+                    continue;
+                }
+                s.bind(sessionId, sessionCwd);
+                replenish();
+                return s;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException("no python daemon available within " + config.getAcquireTimeout());
+            }
+            s = idle.poll(Math.min(TimeUnit.NANOSECONDS.toMillis(remaining) + 1, POLL_SLICE_MS), TimeUnit.MILLISECONDS);
+            if (s != null) {
+                // Put it back at the head of the loop so it gets the same health check.
+                idle.offer(s);
+            }
+        }
+    }
+
+    /**
+     * Returns a daemon whose session has ended. It is reset and kept if recycling is enabled and it is still
+     * within its execution and memory limits; otherwise it is shut down.
+     *
+     * @param s The daemon to return.
+     */
+    public void release(DaemonSession s) {
+        if (s == null) {
+            return;
+        }
+        int maxExecutions = config.getMaxExecutionsPerDaemon();
+        if (closed || maxExecutions <= 0 || s.getExecutionCount() >= maxExecutions || !s.isAlive()) {
+            discard(s);
+            return;
+        }
+        try {
+            long rss = s.reset(poolHome, policy);
+            long maxGrowth = config.getMaxRssGrowthBytes();
+            if (maxGrowth > 0 && rss - s.getBaselineRssBytes() > maxGrowth) {
+                discard(s);
+                return;
+            }
+        } catch (Exception e) {
+            discard(s);
+            return;
+        }
+        idle.offer(s);
+    }
+
+    /**
+     * Shuts down a daemon and frees its slot in the pool, then starts a replacement if the pre-warm count
+     * is no longer covered.
+     *
+     * @param s The daemon to discard.
+     */
+    public void discard(DaemonSession s) {
+        retire(s);
+        replenish();
+    }
+
+    /**
+     * Shuts down a daemon and frees its slot in the pool without starting a replacement, for use when the
+     * owner is shutting down.
+     *
+     * @param s The daemon to retire.
+     */
+    public void retire(DaemonSession s) {
+        try {
+            s.shutdown();
+        } catch (Exception ignore) {
+        }
+        releaseSlot();
+    }
+
+    /**
+     * Shuts down all idle daemons. Leased daemons are not affected.
+     */
+    public void clear() {
+        DaemonSession s;
+        while ((s = idle.poll()) != null) {
+            retire(s);
+        }
+    }
+
+    /**
+     * Stops pre-warming and shuts down all idle daemons. Daemons still starting are shut down as soon as they
+     * come up; leased daemons are shut down when they are released or discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        warmer.shutdownNow();
+        clear();
+    }
+
+    /**
+     * Gets the number of started daemons waiting in the pool.
+     *
+     * @return The number of idle daemons.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Starts daemons in the background until the idle and starting daemons cover the pre-warm count.
+     */
+    private void replenish() {
+        int target = config.getPrewarmCount();
+        while (!closed && idle.size() + warming.get() < target && tryAcquireSlot()) {
+            warming.incrementAndGet();
+            try {
+                warmer.execute(() -> {
+                    try {
+                        DaemonSession s = startDaemon();
+                        idle.offer(s);
+                        // close() may have drained the queue between the start and the offer.
+                        if (closed && idle.remove(s)) {
+                            retire(s);
+                        }
+                    } catch (Exception e) {
+                        releaseSlot();
+                    } finally {
+                        warming.decrementAndGet();
+                    }
+                });
+            } catch (Exception e) {
+                warming.decrementAndGet();
+                releaseSlot();
+                return;
+            }
+        }
+    }
+
+    private boolean tryAcquireSlot() {
+        return capacity == null || capacity.tryAcquire();
+    }
+
+    private void releaseSlot() {
+        if (capacity != null) {
+            capacity.release();
+        }
+    }
+
+    private DaemonSession startDaemon() throws Exception {
+        Files.createDirectories(poolHome);
+        DaemonSession s = new DaemonSession();
+        s.start(policy, poolHome);
+        boolean hasModules = config.getPreloadModules() != null && !config.getPreloadModules().isEmpty();
+        // A preload call also records the memory baseline used by the growth check.
+        if (hasModules || config.getMaxRssGrowthBytes() > 0) {
+            try {
+                s.preload(hasModules ? config.getPreloadModules() : Collections.emptyList(), policy);
+            } catch (Exception e) {
+                s.shutdown();
+                throw e;
+            }
+        }
+        return s;
+    }
+}
@@ -28,6 +28,9 @@ package com.alibaba.langengine.pyexecutor;
  * <li>Executing the code within a persistent namespace ({@code NS}), preserving state across calls.</li>
  * <li>Reporting results and errors back to Java using the standard JSON protocol on stdout.</li>
  * <li>Handling exceptions during execution and gracefully restarting its state for the next command.</li>
+ * <li>Pre-importing modules ({@code preload}) and resetting the interpreter between pooled leases ({@code reset}):
+ * the namespace is cleared, modules imported since startup or preload are unloaded, and {@code os.environ} and
+ * the builtins are restored. Threads or open files left behind are reported as {@code dirty}.</li>
  * </ul>
  */
 public final class PreludeBuilderDaemon {
@@ -42,7 +45,7 @@ public final class PreludeBuilderDaemon {
      */
     public static String render(PyExecutionPolicy p) {
         return ""
-                + "import sys, os, json, builtins, ast\n"
+                + "import sys, os, json, builtins, ast, gc\n"
                 + "PROTO='[[PYEXEC]]'\n"
                 + "print(PROTO+json.dumps({\"type\":\"_meta\",\"event\":\"ready\"})); sys.stdout.flush()\n"
                 + "\n"
@@ -90,6 +93,7 @@ public final class PreludeBuilderDaemon {
                 + "  return real_import(name,globals,locals,fromlist,level)\n"
                 + "builtins.__import__=guarded_import\n"
                 + "\n"
+                + "_statm_open=open\n"
                 + "if OPEN_MODE=='1':\n"
                 + "  builtins.open=None\n"
                 + "elif OPEN_MODE=='RO':\n"
@@ -104,6 +108,31 @@ public final class PreludeBuilderDaemon {
                 + "  builtins.open=ro_open\n"
                 + "\n"
                 + "NS={}\n"
+                + "def _fd_count():\n"
+                + "  try: return len(os.listdir('/proc/self/fd'))\n"
+                + "  except Exception: return -1\n"
+                + "def _capture_baseline():\n"
+                + "  global BASE_MODULES, BASE_ENV, BASE_BUILTINS, BASE_FDS\n"
+                + "  BASE_MODULES=set(sys.modules); BASE_ENV=dict(os.environ); BASE_BUILTINS=dict(vars(builtins)); BASE_FDS=_fd_count()\n"
+                + "def _reset_state():\n"
+                + "  NS.clear(); gc.collect()\n"
+                + "  dirty=[]\n"
+                + "  _th=sys.modules.get('threading')\n"
+                + "  if _th is not None and _th.active_count()>1: dirty.append('threads')\n"
+                + "  if BASE_FDS>=0 and _fd_count()>BASE_FDS: dirty.append('open files')\n"
+                + "  for m in [m for m in sys.modules if m not in BASE_MODULES]: sys.modules.pop(m,None)\n"
+                + "  os.environ.clear(); os.environ.update(BASE_ENV)\n"
+                + "  _b=vars(builtins)\n"
+                + "  for k in [k for k in _b if k not in BASE_BUILTINS]: del _b[k]\n"
+                + "  for k,v in BASE_BUILTINS.items():\n"
+                + "    if _b.get(k) is not v: _b[k]=v\n"
+                + "  return dirty\n"
+                + "def _rss():\n"
+                + "  try:\n"
+                + "    with _statm_open('/proc/self/statm') as f: return int(f.read().split()[1])*os.sysconf('SC_PAGE_SIZE')\n"
+                + "  except Exception: pass\n"
+                + "  try: return resource.getrusage(resource.RUSAGE_SELF).ru_maxrss*1024 if resource else 0\n"
+                + "  except Exception: return 0\n"
                 + "def run_code_ast(src, print_last=True):\n"
                 + "  try:\n"
                 + "    tree = ast.parse(src, '<cell>', 'exec')\n"
@@ -135,6 +164,7 @@ public final class PreludeBuilderDaemon {
                 + "      if 'signal' in globals(): globals()['signal'].alarm(0)\n"
                 + "    except Exception: pass\n"
                 + "\n"
+                + "_capture_baseline()\n"
                 + "for line in sys.stdin:\n"
                 + "  line=line.strip()\n"
                 + "  if not line: continue\n"
@@ -159,6 +189,17 @@ public final class PreludeBuilderDaemon {
                 + "      print(PROTO+json.dumps({\"type\":\"_done\",\"exit\":1})); sys.stdout.flush()\n"
                 + "      sys.exit(1)\n"
                 + "    print(PROTO+json.dumps({\"type\":\"_done\",\"exit\":0})); sys.stdout.flush()\n"
+                + "  elif op=='preload':\n"
+                + "    for m in msg.get('modules') or []:\n"
+                + "      try: real_import(m)\n"
+                + "      except Exception as e: print(PROTO+json.dumps({\"type\":\"error\",\"error\":f\"preload {m}: {e}\"}))\n"
+                + "    _capture_baseline()\n"
+                + "    print(PROTO+json.dumps({\"type\":\"_done\",\"exit\":0,\"rss\":_rss()})); sys.stdout.flush()\n"
+                + "  elif op=='reset':\n"
+                + "    dirty=_reset_state()\n"
+                + "    try: os.chdir(opt.get('cwd') or os.getcwd())\n"
+                + "    except Exception: pass\n"
+                + "    print(PROTO+json.dumps({\"type\":\"_done\",\"exit\":0,\"rss\":_rss(),\"dirty\":dirty})); sys.stdout.flush()\n"
                 + "  else:\n"
                 + "    print(PROTO+json.dumps({\"type\":\"error\",\"error\":\"unknown op\"})); print(PROTO+json.dumps({\"type\":\"_done\"})); sys.stdout.flush()\n";
     }
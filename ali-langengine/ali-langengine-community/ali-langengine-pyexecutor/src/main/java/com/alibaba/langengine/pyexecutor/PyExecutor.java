@@ -314,8 +314,8 @@ public class PyExecutor {
             opts.setPrintLastExpression(policy.isPrintLastExpression());
         }
 
-        // Delegate the execution to the daemon session.
-        return s.exec(code, opts, policy);
+        // Delegate the execution to the daemon session; rejected if the daemon was recycled in the meantime.
+        return s.exec(sessionId, code, opts, policy);
     }
 
 
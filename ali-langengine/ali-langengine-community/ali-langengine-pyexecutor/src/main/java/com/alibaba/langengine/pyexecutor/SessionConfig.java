@@ -17,12 +17,16 @@
 package com.alibaba.langengine.pyexecutor;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Configuration for the session management feature.
  * <p>
  * This class holds settings related to whether sessions are enabled, their maximum
- * count, idle and hard time-to-live (TTL), and the root directory for session workspaces.
+ * count, idle and hard time-to-live (TTL), and the root directory for session workspaces,
+ * as well as the {@link DaemonSessionPool} that supplies daemons to sessions (pre-warming,
+ * recycling and bounded waiting) and the lock striping of {@link SessionManager}.
  * It uses a fluent builder pattern for easy configuration.
  */
 public class SessionConfig {
@@ -32,6 +36,12 @@ public class SessionConfig {
     private Duration idleTtl = Duration.ofMinutes(10);
     private Duration hardTtl = Duration.ofHours(1);
     private String workspaceRoot = System.getProperty("java.io.tmpdir");
+    private int prewarmCount = 0;
+    private List<String> preloadModules = new ArrayList<>();
+    private int maxExecutionsPerDaemon = 0;
+    private long maxRssGrowthBytes = 0;
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+    private int lockStripes = 64;
 
     // =================================================================
     // Getters and Setters
@@ -138,4 +148,127 @@ public class SessionConfig {
         this.workspaceRoot = workspaceRoot;
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the number of idle daemons kept started and ready to be bound to new sessions.
+     *
+     * @return The number of pre-warmed daemons; 0 disables pre-warming.
+     */
+    public int getPrewarmCount() {
+        return prewarmCount;
+    }
+
+    /**
+     * Sets the number of idle daemons kept started and ready to be bound to new sessions.
+     *
+     * @param prewarmCount The number of pre-warmed daemons; 0 disables pre-warming.
+     * @return this {@code SessionConfig} instance for chaining.
+     */
+    public SessionConfig setPrewarmCount(int prewarmCount) {
+        this.prewarmCount = prewarmCount;
+        return this;
+    }
+
+    /**
+     * Gets the modules imported into every daemon when it is started, before it serves a session.
+     *
+     * @return The module names.
+     */
+    public List<String> getPreloadModules() {
+        return preloadModules;
+    }
+
+    /**
+     * Sets the modules imported into every daemon when it is started. Pre-imported modules are still
+     * subject to the import policy when user code imports them.
+     *
+     * @param preloadModules The module names.
+     * @return this {@code SessionConfig} instance for chaining.
+     */
+    public SessionConfig setPreloadModules(List<String> preloadModules) {
+        this.preloadModules = preloadModules;
+        return this;
+    }
+
+    /**
+     * Gets the number of executions after which a daemon is retired instead of being reset and reused.
+     *
+     * @return The execution limit; 0 means daemons are never reused across sessions.
+     */
+    public int getMaxExecutionsPerDaemon() {
+        return maxExecutionsPerDaemon;
+    }
+
+    /**
+     * Sets the number of executions after which a daemon is retired. When greater than 0, the daemon of a
+     * closed or expired session has its namespace cleared and is returned to the pool until the limit is reached.
+     *
+     * @param maxExecutionsPerDaemon The execution limit; 0 means daemons are never reused across sessions.
+     * @return this {@code SessionConfig} instance for chaining.
+     */
+    public SessionConfig setMaxExecutionsPerDaemon(int maxExecutionsPerDaemon) {
+        this.maxExecutionsPerDaemon = maxExecutionsPerDaemon;
+        return this;
+    }
+
+    /**
+     * Gets the allowed growth of a daemon's resident memory over its start-up value before it is retired.
+     *
+     * @return The growth limit in bytes; 0 disables the check.
+     */
+    public long getMaxRssGrowthBytes() {
+        return maxRssGrowthBytes;
+    }
+
+    /**
+     * Sets the allowed growth of a daemon's resident memory over its start-up value before it is retired.
+     *
+     * @param maxRssGrowthBytes The growth limit in bytes; 0 disables the check.
+     * @return this {@code SessionConfig} instance for chaining.
+     */
+    public SessionConfig setMaxRssGrowthBytes(long maxRssGrowthBytes) {
+        this.maxRssGrowthBytes = maxRssGrowthBytes;
+        return this;
+    }
+
+    /**
+     * Gets how long a caller waits for a daemon when the pool is exhausted.
+     *
+     * @return The acquire timeout.
+     */
+    public Duration getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * Sets how long a caller waits for a daemon when the pool is exhausted before a
+     * {@link java.util.concurrent.TimeoutException} is thrown.
+     *
+     * @param acquireTimeout The acquire timeout.
+     * @return this {@code SessionConfig} instance for chaining.
+     */
+    public SessionConfig setAcquireTimeout(Duration acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+        return this;
+    }
+
+    /**
+     * Gets the number of locks session IDs are striped over.
+     *
+     * @return The number of lock stripes.
+     */
+    public int getLockStripes() {
+        return lockStripes;
+    }
+
+    /**
+     * Sets the number of locks session IDs are striped over. Rounded up to a power of two.
+     *
+     * @param lockStripes The number of lock stripes.
+     * @return this {@code SessionConfig} instance for chaining.
+     */
+    public SessionConfig setLockStripes(int lockStripes) {
+        this.lockStripes = lockStripes;
+        return this;
+    }
+}
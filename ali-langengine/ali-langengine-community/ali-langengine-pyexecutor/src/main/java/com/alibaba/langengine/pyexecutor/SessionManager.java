@@ -18,22 +18,30 @@ package com.alibaba.langengine.pyexecutor;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manages the lifecycle of Python daemon sessions.
  * <p>
  * This class is responsible for creating, reusing, evicting (based on TTL and count),
  * and closing {@link DaemonSession} instances. It ensures that sessions are managed
- * efficiently and according to the configured policies. All operations that modify
- * the session map are synchronized to ensure thread safety.
+ * efficiently and according to the configured policies. Daemons are leased from a
+ * {@link DaemonSessionPool} and returned to it when a session ends. Operations on a
+ * session are serialized by a lock striped on the session ID, so starting the daemon
+ * of one session does not block callers of unrelated sessions.
  */
 public class SessionManager {
 
     private final Map<String, DaemonSession> sessions = new ConcurrentHashMap<>();
     private final SessionConfig config;
     private final PyExecutionPolicy policy;
+    private final DaemonSessionPool pool;
+    private final ReentrantLock[] stripes;
+    private final ReentrantLock evictionLock = new ReentrantLock();
 
     /**
      * Constructs a new SessionManager.
@@ -45,126 +53,170 @@ public class SessionManager {
     public SessionManager(PyExecutionPolicy policy, SessionConfig config) {
         this.policy = policy;
         this.config = (config == null ? new SessionConfig() : config);
+        int n = 1;
+        while (n < this.config.getLockStripes()) {
+            n <<= 1;
+        }
+        this.stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.pool = new DaemonSessionPool(policy, this.config);
     }
 
     /**
      * Retrieves an existing session or creates a new one if it doesn't exist.
      * <p>
      * A session will be recreated if the underlying process is dead, or if its
-     * idle or hard time-to-live (TTL) has expired. This method is synchronized
-     * to prevent race conditions during session creation and validation.
+     * idle or hard time-to-live (TTL) has expired. Only callers of the same session
+     * (or of sessions sharing its lock stripe) wait for each other.
      *
      * @param sessionId The unique identifier for the session.
      * @return A valid, running {@link DaemonSession}.
+     * @throws java.util.concurrent.TimeoutException if the pool is exhausted for longer than the acquire timeout.
      * @throws Exception if a new session fails to start.
      */
-    public synchronized DaemonSession getOrCreate(String sessionId) throws Exception {
-        DaemonSession s = sessions.get(sessionId);
-        long now = System.currentTimeMillis();
-
-        if (s != null) {
-            boolean dead = !s.isAlive();
-
-            // Check for idle timeout.
-            boolean idleExpired = false;
-            if (config.getIdleTtl() != null && s.getLastUsedEpochMs() > 0) {
-                // Use >= for robustness.
-                idleExpired = (now - s.getLastUsedEpochMs()) >= config.getIdleTtl().toMillis();
-            }
+    public DaemonSession getOrCreate(String sessionId) throws Exception {
+        ReentrantLock lock = stripeFor(sessionId);
+        lock.lock();
+        try {
+            DaemonSession s = sessions.get(sessionId);
+            long now = System.currentTimeMillis();
+
+            if (s != null) {
+                boolean dead = !s.isAlive();
+
+                // Check for idle timeout.
+                boolean idleExpired = false;
+                if (config.getIdleTtl() != null && s.getLastUsedEpochMs() > 0) {
+                    // Use >= for robustness.
+                    idleExpired = (now - s.getLastUsedEpochMs()) >= config.getIdleTtl().toMillis();
+                }
 
-            // Check for hard timeout (absolute lifetime).
-            boolean hardExpired = false;
-            if (config.getHardTtl() != null) {
-                hardExpired = (now - s.getCreationEpochMs()) >= config.getHardTtl().toMillis();
-            }
+                // Check for hard timeout (absolute lifetime).
+                boolean hardExpired = false;
+                if (config.getHardTtl() != null) {
+                    hardExpired = (now - s.getCreationEpochMs()) >= config.getHardTtl().toMillis();
+                }
 
-            // If the session is dead or has expired, shut it down and remove it.
-            if (dead || idleExpired || hardExpired) {
-                try {
-                    s.shutdown();
-                } catch (Exception ignore) {
+                // If the session is dead or has expired, hand its daemon back and remove it.
+                if (dead || idleExpired || hardExpired) {
+                    sessions.remove(sessionId);
+                    if (dead) {
+                        pool.discard(s);
+                    } else {
+                        pool.release(s);
+                    }
+                    s = null;
                 }
-                sessions.remove(sessionId);
-                s = null;
             }
-        }
 
-        // If no valid session exists, create a new one.
-        if (s == null) {
-            Path sessionCwd = Paths.get(config.getWorkspaceRoot()).resolve(sessionId);
-            evictIfNeeded(); // Make space if the session limit is reached.
-            DaemonSession ns = new DaemonSession();
-            ns.start(policy, sessionCwd);
-            sessions.put(sessionId, ns);
-            s = ns;
+            // If no valid session exists, lease a daemon for it.
+            if (s == null) {
+                Path sessionCwd = Paths.get(config.getWorkspaceRoot()).resolve(sessionId);
+                evictIfNeeded(); // Make space if the session limit is reached.
+                s = pool.acquire(sessionId, sessionCwd);
+                sessions.put(sessionId, s);
+            }
+            return s;
+        } finally {
+            lock.unlock();
         }
-        return s;
     }
 
     /**
-     * Closes and terminates a specific session by its ID.
-     * This method is synchronized to ensure safe removal from the session map.
+     * Closes a specific session by its ID and returns its daemon to the pool.
      *
      * @param sessionId The ID of the session to close.
      */
-    public synchronized void close(String sessionId) {
-        DaemonSession s = sessions.remove(sessionId);
-        if (s != null) {
-            try {
-                s.shutdown();
-            } catch (Exception ignore) {
+    public void close(String sessionId) {
+        ReentrantLock lock = stripeFor(sessionId);
+        lock.lock();
+        try {
+            DaemonSession s = sessions.remove(sessionId);
+            if (s != null) {
+                pool.release(s);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
     /**
-     * Closes and terminates all active sessions managed by this manager.
-     * This method is synchronized.
+     * Closes and terminates all active sessions managed by this manager and shuts the
+     * pool down, so no replacement daemons are pre-warmed. The manager cannot create
+     * sessions afterwards.
      */
-    public synchronized void closeAll() {
-        for (Map.Entry<String, DaemonSession> e : sessions.entrySet()) {
+    public void closeAll() {
+        pool.close();
+        for (String sessionId : sessions.keySet()) {
+            ReentrantLock lock = stripeFor(sessionId);
+            lock.lock();
             try {
-                e.getValue().shutdown();
-            } catch (Exception ignore) {
+                DaemonSession s = sessions.remove(sessionId);
+                if (s != null) {
+                    pool.retire(s);
+                }
+            } finally {
+                lock.unlock();
             }
         }
-        sessions.clear();
     }
 
     /**
      * Evicts sessions if the number of active sessions exceeds the configured maximum.
      * The eviction strategy is Least Recently Used (LRU), based on the `lastUsedEpochMs`
      * timestamp of each session. This method should be called before creating a new session.
+     * A victim whose lock stripe is busy is skipped rather than waited for, so two callers
+     * evicting each other's sessions cannot deadlock.
      */
     private void evictIfNeeded() {
         Integer max = config.getMaxCount();
         if (max == null || max <= 0) {
             return; // No limit.
         }
-        while (sessions.size() >= max) {
-            // Find the least recently used session to evict.
-            String victimId = null;
-            long oldest = Long.MAX_VALUE;
-            for (Map.Entry<String, DaemonSession> e : sessions.entrySet()) {
-                long ts = e.getValue().getLastUsedEpochMs();
-                if (ts < oldest) {
-                    oldest = ts;
-                    victimId = e.getKey();
+        evictionLock.lock();
+        try {
+            Set<String> busy = new HashSet<>();
+            while (sessions.size() >= max) {
+                // Find the least recently used session to evict.
+                String victimId = null;
+                long oldest = Long.MAX_VALUE;
+                for (Map.Entry<String, DaemonSession> e : sessions.entrySet()) {
+                    long ts = e.getValue().getLastUsedEpochMs();
+                    if (ts < oldest && !busy.contains(e.getKey())) {
+                        oldest = ts;
+                        victimId = e.getKey();
+                    }
+                }
+                if (victimId == null) {
+                    break; // Every remaining session is in use; the pool bounds the daemon count.
+                }
+                ReentrantLock victimLock = stripeFor(victimId);
+                if (!victimLock.tryLock()) {
+                    busy.add(victimId);
+                    continue;
                 }
-            }
-            if (victimId == null) {
-                break; // Should not happen in a non-empty map.
-            }
-            DaemonSession v = sessions.remove(victimId);
-            if (v != null) {
                 try {
-                    v.shutdown();
-                } catch (Exception ignore) {
+                    DaemonSession v = sessions.remove(victimId);
+                    if (v != null) {
+                        pool.release(v);
+                    }
+                } finally {
+                    victimLock.unlock();
                 }
             }
+        } finally {
+            evictionLock.unlock();
         }
     }
 
+    private ReentrantLock stripeFor(String sessionId) {
+        int h = sessionId.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+
     // =================================================================
     // Getters
     // =================================================================
@@ -186,4 +238,13 @@ public class SessionManager {
     public PyExecutionPolicy getPolicy() {
         return policy;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the daemon pool backing this session manager.
+     *
+     * @return The {@link DaemonSessionPool} instance.
+     */
+    public DaemonSessionPool getPool() {
+        return pool;
+    }
+}
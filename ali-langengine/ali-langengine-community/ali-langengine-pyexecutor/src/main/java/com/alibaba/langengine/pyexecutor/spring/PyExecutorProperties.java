@@ -20,7 +20,9 @@ import com.alibaba.langengine.pyexecutor.*;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -58,6 +60,12 @@ public class PyExecutorProperties {
     private Duration sessionIdleTtl = Duration.ofMinutes(10);
     private Duration sessionHardTtl = Duration.ofHours(1);
     private String workspaceRoot = System.getProperty("java.io.tmpdir");
+    private int sessionPrewarmCount = 0;
+    private List<String> sessionPreloadModules = new ArrayList<>();
+    private int sessionMaxExecutionsPerDaemon = 0;
+    private long sessionMaxRssGrowthBytes = 0;
+    private Duration sessionAcquireTimeout = Duration.ofSeconds(30);
+    private int sessionLockStripes = 64;
 
     /**
      * Converts the loaded properties into a {@link PyExecutionPolicy} object.
@@ -98,7 +106,13 @@ public class PyExecutorProperties {
                 .setMaxCount(sessionMaxCount)
                 .setIdleTtl(sessionIdleTtl)
                 .setHardTtl(sessionHardTtl)
-                .setWorkspaceRoot(workspaceRoot);
+                .setWorkspaceRoot(workspaceRoot)
+                .setPrewarmCount(sessionPrewarmCount)
+                .setPreloadModules(sessionPreloadModules)
+                .setMaxExecutionsPerDaemon(sessionMaxExecutionsPerDaemon)
+                .setMaxRssGrowthBytes(sessionMaxRssGrowthBytes)
+                .setAcquireTimeout(sessionAcquireTimeout)
+                .setLockStripes(sessionLockStripes);
     }
 
     // =================================================================
@@ -272,4 +286,52 @@ public class PyExecutorProperties {
     public void setWorkspaceRoot(String workspaceRoot) {
         this.workspaceRoot = workspaceRoot;
     }
-}
\ No newline at end of file
+
+    public int getSessionPrewarmCount() {
+        return sessionPrewarmCount;
+    }
+
+    public void setSessionPrewarmCount(int sessionPrewarmCount) {
+        this.sessionPrewarmCount = sessionPrewarmCount;
+    }
+
+    public List<String> getSessionPreloadModules() {
+        return sessionPreloadModules;
+    }
+
+    public void setSessionPreloadModules(List<String> sessionPreloadModules) {
+        this.sessionPreloadModules = sessionPreloadModules;
+    }
+
+    public int getSessionMaxExecutionsPerDaemon() {
+        return sessionMaxExecutionsPerDaemon;
+    }
+
+    public void setSessionMaxExecutionsPerDaemon(int sessionMaxExecutionsPerDaemon) {
+        this.sessionMaxExecutionsPerDaemon = sessionMaxExecutionsPerDaemon;
+    }
+
+    public long getSessionMaxRssGrowthBytes() {
+        return sessionMaxRssGrowthBytes;
+    }
+
+    public void setSessionMaxRssGrowthBytes(long sessionMaxRssGrowthBytes) {
+        this.sessionMaxRssGrowthBytes = sessionMaxRssGrowthBytes;
+    }
+
+    public Duration getSessionAcquireTimeout() {
+        return sessionAcquireTimeout;
+    }
+
+    public void setSessionAcquireTimeout(Duration sessionAcquireTimeout) {
+        this.sessionAcquireTimeout = sessionAcquireTimeout;
+    }
+
+    public int getSessionLockStripes() {
+        return sessionLockStripes;
+    }
+
+    public void setSessionLockStripes(int sessionLockStripes) {
+        this.sessionLockStripes = sessionLockStripes;
+    }
+}
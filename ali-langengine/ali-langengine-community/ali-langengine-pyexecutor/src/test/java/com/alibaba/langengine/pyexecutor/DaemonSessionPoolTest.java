@@ -0,0 +1,336 @@
+/*
+ * Copyright 2024 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.langengine.pyexecutor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link DaemonSessionPool} and the pooled {@link SessionManager}, using the local {@code python3}.
+ * - Isolation: a recycled daemon must not expose the namespace, imported modules, environment or builtins of its
+ * previous lease, and a daemon with leftover threads is retired.
+ * - Unlimited: a non-positive maxCount does not bound the pool.
+ * - Recycling: daemons are retired after the configured number of executions.
+ * - Bounded waiting: an exhausted pool fails with a timeout instead of starting more daemons.
+ * - Benchmark: p50/p99 acquire latency of cold starts versus pre-warmed daemons under concurrent load.
+ */
+public class DaemonSessionPoolTest {
+
+    private Path tempWorkspace;
+    private final List<AutoCloseable> toClose = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tempWorkspace = Files.createTempDirectory("pyexecutor_pool_ws_");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable c : toClose) {
+            c.close();
+        }
+        if (tempWorkspace != null) {
+            Files.walk(tempWorkspace)
+                    .sorted(java.util.Comparator.reverseOrder())
+                    .forEach(path -> {
+                        try {
+                            Files.delete(path);
+                        } catch (Exception e) {
+                            // Ignore exceptions during cleanup
+                        }
+                    });
+        }
+    }
+
+    private SessionConfig config() {
+        return new SessionConfig().setWorkspaceRoot(tempWorkspace.toString());
+    }
+
+    private PyExecutor executor(SessionConfig config) {
+        PyExecutor executor = new PyExecutor(new PyExecutionPolicy(), config);
+        toClose.add(executor::closeAll);
+        return executor;
+    }
+
+    /**
+     * The whitelist also applies to the imports of allowed modules, so stdlib modules with private dependencies
+     * are exercised in blacklist mode.
+     */
+    private static PyExecutionPolicy blacklistPolicy() {
+        PyExecutionPolicy policy = new PyExecutionPolicy();
+        policy.setUseImportWhitelist(false);
+        policy.getBannedImports().clear();
+        return policy;
+    }
+
+    private static String pid(PyExecutor executor, String sessionId) throws Exception {
+        PyExecutionResult r = executor.execute(sessionId, "import os\nos.getpid()", null);
+        assertEquals(0, r.getExitCode(), r.getStderr());
+        return r.getLastValueRepr();
+    }
+
+    @Test
+    void testPrewarm_IdleDaemonsAreStartedInBackground() throws Exception {
+        DaemonSessionPool pool = new DaemonSessionPool(new PyExecutionPolicy(),
+                config().setPrewarmCount(2).setPreloadModules(Arrays.asList("json", "math")));
+        toClose.add(pool);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pool.getIdleCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, pool.getIdleCount());
+
+        DaemonSession s = pool.acquire("s1", tempWorkspace.resolve("s1"));
+        assertTrue(s.isAlive());
+        assertEquals("s1", s.getOwner());
+        assertTrue(s.getBaselineRssBytes() > 0);
+        pool.discard(s);
+    }
+
+    @Test
+    void testPrewarm_CloseAllDoesNotStartReplacements() throws Exception {
+        SessionManager manager = new SessionManager(new PyExecutionPolicy(), config().setPrewarmCount(2));
+        toClose.add(manager::closeAll);
+        DaemonSession leased = manager.getOrCreate("s1");
+
+        manager.closeAll();
+        assertFalse(leased.isAlive());
+        // Warmers that were already starting a daemon shut it down instead of parking it.
+        Thread.sleep(2_000);
+        assertEquals(0, manager.getPool().getIdleCount());
+        assertThrows(IllegalStateException.class, () -> manager.getOrCreate("s2"));
+    }
+
+    @Test
+    void testIsolation_RecycledDaemonStartsWithEmptyNamespace() throws Exception {
+        PyExecutor executor = executor(config().setMaxCount(1).setMaxExecutionsPerDaemon(100));
+
+        String pidA = pid(executor, "lease-a");
+        executor.execute("lease-a", "secret = 42", null);
+        assertEquals("42", executor.execute("lease-a", "secret", null).getLastValueRepr());
+        executor.closeSession("lease-a");
+
+        // With a single slot the same process must serve the next session, but without its variables.
+        String pidB = pid(executor, "lease-b");
+        assertEquals(pidA, pidB);
+        assertEquals("False", executor.execute("lease-b", "'secret' in globals()", null).getLastValueRepr());
+        assertTrue(Files.isDirectory(tempWorkspace.resolve("lease-b")));
+    }
+
+    @Test
+    void testIsolation_ModulesEnvironmentAndBuiltinsAreRestored() throws Exception {
+        PyExecutor executor = new PyExecutor(blacklistPolicy(), config().setMaxCount(1).setMaxExecutionsPerDaemon(100));
+        toClose.add(executor::closeAll);
+
+        String pidA = pid(executor, "lease-a");
+        PyExecutionResult r = executor.execute("lease-a", "import os, fractions\n"
+                + "os.environ['PYEXEC_LEAK'] = '1'\n"
+                + "fractions.LEAK = 1\n"
+                + "__builtins__['leak'] = 1", null);
+        assertEquals(0, r.getExitCode(), r.getStderr());
+        executor.closeSession("lease-a");
+
+        assertEquals(pidA, pid(executor, "lease-b"));
+        assertEquals("False", executor.execute("lease-b", "'PYEXEC_LEAK' in os.environ", null).getLastValueRepr());
+        assertEquals("False", executor.execute("lease-b", "import fractions\nhasattr(fractions, 'LEAK')", null)
+                .getLastValueRepr());
+        assertEquals("False", executor.execute("lease-b", "'leak' in __builtins__", null).getLastValueRepr());
+    }
+
+    @Test
+    void testIsolation_DaemonWithLeftoverThreadIsRetired() throws Exception {
+        PyExecutor executor = new PyExecutor(blacklistPolicy(), config().setMaxCount(1).setMaxExecutionsPerDaemon(100));
+        toClose.add(executor::closeAll);
+
+        String pidA = pid(executor, "lease-a");
+        PyExecutionResult r = executor.execute("lease-a", "import threading, time\n"
+                + "threading.Thread(target=time.sleep, args=(30,), daemon=True).start()", null);
+        assertEquals(0, r.getExitCode(), r.getStderr());
+        executor.closeSession("lease-a");
+
+        assertNotEquals(pidA, pid(executor, "lease-b"));
+    }
+
+    @Test
+    void testUnlimited_NonPositiveMaxCountDoesNotBoundThePool() throws Exception {
+        DaemonSessionPool pool = new DaemonSessionPool(new PyExecutionPolicy(),
+                config().setMaxCount(0).setAcquireTimeout(Duration.ofMillis(300)));
+        toClose.add(pool);
+
+        List<DaemonSession> held = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            held.add(pool.acquire("s" + i, tempWorkspace.resolve("s" + i)));
+        }
+        for (DaemonSession s : held) {
+            assertTrue(s.isAlive());
+            pool.discard(s);
+        }
+    }
+
+    @Test
+    void testIsolation_StaleHandleIsRejectedAfterRelease() throws Exception {
+        SessionManager manager = new SessionManager(new PyExecutionPolicy(),
+                config().setMaxCount(1).setMaxExecutionsPerDaemon(100));
+        toClose.add(manager::closeAll);
+
+        DaemonSession a = manager.getOrCreate("lease-a");
+        manager.close("lease-a");
+        DaemonSession b = manager.getOrCreate("lease-b");
+        assertSame(a, b);
+        PyExecutionOptions opts = new PyExecutionOptions();
+        assertThrows(IllegalStateException.class, () -> a.exec("lease-a", "1", opts, manager.getPolicy()));
+        assertEquals("1", b.exec("lease-b", "1", opts, manager.getPolicy()).getLastValueRepr());
+    }
+
+    @Test
+    void testRecycling_DaemonRetiredAfterMaxExecutions() throws Exception {
+        PyExecutor executor = executor(config().setMaxCount(1).setMaxExecutionsPerDaemon(3));
+
+        String first = pid(executor, "s1");
+        executor.closeSession("s1");
+        assertEquals(first, pid(executor, "s2"));
+        executor.execute("s2", "1 + 1", null);
+        executor.closeSession("s2");
+
+        // Three executions reached: the daemon is shut down instead of being reused.
+        assertNotEquals(first, pid(executor, "s3"));
+    }
+
+    @Test
+    void testRecycling_DaemonRetiredOnMemoryGrowth() throws Exception {
+        PyExecutionPolicy policy = new PyExecutionPolicy();
+        policy.setAddressSpaceBytes(null);
+        PyExecutor executor = new PyExecutor(policy,
+                config().setMaxCount(1).setMaxExecutionsPerDaemon(100).setMaxRssGrowthBytes(16L * 1024 * 1024));
+        toClose.add(executor::closeAll);
+
+        String first = pid(executor, "s1");
+        // Memory kept alive outside the session namespace survives the reset.
+        PyExecutionResult r = executor.execute("s1",
+                "import os\nos._leak = bytearray(64 * 1024 * 1024)\nos._leak[::4096] = b'x' * len(os._leak[::4096])", null);
+        assertEquals(0, r.getExitCode(), r.getStderr());
+        executor.closeSession("s1");
+        assertNotEquals(first, pid(executor, "s2"));
+    }
+
+    @Test
+    void testRecycling_CrashedDaemonIsReplaced() throws Exception {
+        PyExecutor executor = executor(config().setMaxCount(1).setMaxExecutionsPerDaemon(100));
+
+        String first = pid(executor, "s1");
+        // Any exception terminates the daemon.
+        assertNotEquals(0, executor.execute("s1", "1 / 0", null).getExitCode());
+        assertNotEquals(first, pid(executor, "s1"));
+    }
+
+    @Test
+    void testBoundedWait_TimesOutWhenExhausted() throws Exception {
+        DaemonSessionPool pool = new DaemonSessionPool(new PyExecutionPolicy(),
+                config().setMaxCount(1).setAcquireTimeout(Duration.ofMillis(300)));
+        toClose.add(pool);
+
+        DaemonSession held = pool.acquire("s1", tempWorkspace.resolve("s1"));
+        long start = System.nanoTime();
+        assertThrows(TimeoutException.class, () -> pool.acquire("s2", tempWorkspace.resolve("s2")));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMs >= 250 && waitedMs < 2_000, "waited " + waitedMs + " ms");
+
+        // A waiter is served as soon as a slot frees up.
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        try {
+            Future<DaemonSession> waiter = es.submit(() -> pool.acquire("s3", tempWorkspace.resolve("s3")));
+            Thread.sleep(50);
+            pool.discard(held);
+            DaemonSession s3 = waiter.get(5, TimeUnit.SECONDS);
+            assertEquals("s3", s3.getOwner());
+            pool.discard(s3);
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    void testBenchmark_AcquireLatencyColdVersusPrewarmed() throws Exception {
+        int threads = 8;
+        int perThread = 6;
+
+        long[] cold = measureAcquire(config().setMaxCount(threads), threads, perThread);
+        long[] warm = measureAcquire(config().setMaxCount(threads).setPrewarmCount(threads)
+                .setMaxExecutionsPerDaemon(1_000), threads, perThread);
+
+        assertTrue(percentile(warm, 50) < percentile(cold, 50),
+                "prewarmed p50 " + percentile(warm, 50) + " ms, cold p50 " + percentile(cold, 50) + " ms");
+    }
+
+    private long[] measureAcquire(SessionConfig config, int threads, int perThread) throws Exception {
+        SessionManager manager = new SessionManager(new PyExecutionPolicy(), config);
+        try {
+            // Let pre-warming finish before measuring.
+            long deadline = System.currentTimeMillis() + 15_000;
+            while (manager.getPool().getIdleCount() < config.getPrewarmCount() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            ExecutorService es = Executors.newFixedThreadPool(threads);
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int worker = t;
+                futures.add(es.submit(() -> {
+                    List<Long> samples = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        String sessionId = "bench-" + worker + "-" + i;
+                        long start = System.nanoTime();
+                        manager.getOrCreate(sessionId);
+                        samples.add(System.nanoTime() - start);
+                        manager.close(sessionId);
+                    }
+                    return samples;
+                }));
+            }
+            List<Long> all = new ArrayList<>();
+            for (Future<List<Long>> f : futures) {
+                all.addAll(f.get(120, TimeUnit.SECONDS));
+            }
+            es.shutdown();
+            Collections.sort(all);
+            return all.stream().mapToLong(Long::longValue).toArray();
+        } finally {
+            manager.closeAll();
+            manager.getPool().close();
+        }
+    }
+
+    private static double percentile(long[] sortedNanos, int p) {
+        int idx = (int) Math.ceil(p / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, idx))] / 1_000_000.0;
+    }
+}
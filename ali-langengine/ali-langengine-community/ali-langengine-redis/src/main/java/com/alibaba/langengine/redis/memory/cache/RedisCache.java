@@ -76,6 +76,16 @@ public class RedisCache extends BaseCache {
         }
     }
 
+    @Override
+    public void remove(String prompt, String llmString) {
+        String cacheKey = getCacheKey(prompt, llmString);
+        try {
+            aiRedisTemplate.delete(cacheKey);
+        } catch (Exception e) {
+            log.warn("delete redis error#cacheKey = " + cacheKey, e);
+        }
+    }
+
     @Override
     public void clear() {
 
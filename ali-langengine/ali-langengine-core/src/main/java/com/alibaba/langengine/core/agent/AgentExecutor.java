@@ -30,7 +30,9 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.alibaba.langengine.core.util.Constants.CALLBACK_ERROR_KEY;
@@ -84,6 +86,28 @@ public class AgentExecutor extends Chain {
     private boolean handleParsingErrors = false;
     private boolean isCH = false;
 
+    /**
+     * 同一轮模型返回多个工具调用时的最大并发数，小于等于1时按顺序执行
+     */
+    private int maxParallelToolCalls = 1;
+
+    /**
+     * 单个工具的执行超时时间（毫秒），为空表示不限制
+     */
+    private Long toolTimeoutMillis;
+
+    /**
+     * 执行工具的线程池，为空时使用默认线程池
+     */
+    @JsonIgnore
+    private transient ExecutorService toolExecutor;
+
+    @JsonIgnore
+    private transient ToolNameIndex toolNameIndex;
+
+    @JsonIgnore
+    private transient ParallelToolInvoker toolInvoker;
+
     @Override
     public void setCallbackManager(BaseCallbackManager callbackManager) {
         super.setCallbackManager(callbackManager);
@@ -136,6 +160,7 @@ public class AgentExecutor extends Chain {
             if(executionContext != null) {
                 executionContext.setExecutionType(null);
                 executionContext.setChildExecutionType(null);
+                executionContext.setIterationLatencies(new ArrayList<>());
             }
             onChainStart(this, inputs, executionContext);
 
@@ -187,7 +212,11 @@ public class AgentExecutor extends Chain {
                             (Agent) agent);
                 }
 
-                intermediateSteps.add(nextAction);
+                if(!CollectionUtils.isEmpty(nextAction.getActions())) {
+                    intermediateSteps.addAll(nextAction.getActions());
+                } else {
+                    intermediateSteps.add(nextAction);
+                }
                 iterations += 1;
                 timeElapsed = System.currentTimeMillis() / 1000.0 - startTime;
             }
@@ -273,7 +302,9 @@ public class AgentExecutor extends Chain {
                                ExecutionContext executionContext,
                                Map<String, Object> extraAttributes) {
         // Call the LLM to see what to do.
+        long llmStart = System.currentTimeMillis();
         Object output = agent.plan(intermediateSteps, inputs, consumer, executionContext, extraAttributes);
+        long llmMillis = System.currentTimeMillis() - llmStart;
         if(output == null) {
             return null;
         }
@@ -283,6 +314,7 @@ public class AgentExecutor extends Chain {
 //            if(getMemory() != null) {
 //                getMemory().clear();
 //            }
+            recordIterationLatency(executionContext, llmMillis, 0L, 0);
 
             if(FORCE_STOPPING_METHOD.equals(earlyStoppingMethod)) {
                 Map<String, Object> returnValues = new HashMap<>();
@@ -295,7 +327,16 @@ public class AgentExecutor extends Chain {
         }
         List<AgentAction> actions = new ArrayList<>();
         if(output instanceof AgentAction) {
-            actions.add((AgentAction) output);
+            AgentAction agentAction = (AgentAction) output;
+            if(!CollectionUtils.isEmpty(agentAction.getActions())) {
+                actions.addAll(agentAction.getActions());
+            } else {
+                actions.add(agentAction);
+            }
+        }
+        recordIterationLatency(executionContext, llmMillis, 0L, 0);
+        if(actions.size() > 1) {
+            return takeMultiActionStep((AgentAction) output, actions, nameToToolMap, intermediateSteps, executionContext, llmMillis);
         }
         for (AgentAction agentAction : actions) {
             onAgentAction(this, agentAction, executionContext);
@@ -308,7 +349,10 @@ public class AgentExecutor extends Chain {
                 if(executionContext != null) {
                     executionContext.setChildExecutionType("tool-" + intermediateSteps.size());
                 }
-                ToolExecuteResult toolExecuteResult = tool.run(agentAction.getToolInput(), executionContext);
+                long toolStart = System.currentTimeMillis();
+                ToolExecuteResult toolExecuteResult = toolInvoker().invoke(toolName,
+                        () -> tool.run(agentAction.getToolInput(), executionContext));
+                recordIterationLatency(executionContext, llmMillis, System.currentTimeMillis() - toolStart, 1);
                 if(toolExecuteResult == null) {
                     return null;
                 }
@@ -338,6 +382,115 @@ public class AgentExecutor extends Chain {
         return null;
     }
 
+    /**
+     * 执行同一轮的多个工具调用，允许并发时并发执行，观察结果按模型返回的顺序写回各个action
+     */
+    private Object takeMultiActionStep(AgentAction output,
+                                    List<AgentAction> actions,
+                                    Map<String, BaseTool> nameToToolMap,
+                                    List<AgentAction> intermediateSteps,
+                                    ExecutionContext executionContext,
+                                    long llmMillis) {
+        List<String> toolNames = new ArrayList<>(actions.size());
+        List<Supplier<ToolExecuteResult>> calls = new ArrayList<>(actions.size());
+        for (int i = 0; i < actions.size(); i++) {
+            AgentAction agentAction = actions.get(i);
+            onAgentAction(this, agentAction, executionContext);
+
+            String toolName = containActionName(nameToToolMap, agentAction.getTool());
+            if(StringUtils.isEmpty(toolName)) {
+                return null;
+            }
+            BaseTool tool = nameToToolMap.get(toolName);
+            // 每个工具使用独立的上下文快照，避免并发修改同一个ExecutionContext
+            ExecutionContext toolContext = executionContext != null ? executionContext.snapshot() : null;
+            if(toolContext != null) {
+                toolContext.setChildExecutionType("tool-" + (intermediateSteps.size() + i));
+            }
+            toolNames.add(toolName);
+            calls.add(() -> tool.run(agentAction.getToolInput(), toolContext));
+        }
+
+        long toolStart = System.currentTimeMillis();
+        ParallelToolInvoker invoker = toolInvoker();
+        List<ToolExecuteResult> results;
+        if(ParallelToolInvoker.runsInParallel(actions.size(), maxParallelToolCalls)) {
+            results = invoker.invokeAll(toolNames, calls);
+        } else {
+            results = new ArrayList<>(actions.size());
+            for (int i = 0; i < actions.size(); i++) {
+                ToolExecuteResult toolExecuteResult = invoker.invoke(toolNames.get(i), calls.get(i));
+                results.add(toolExecuteResult);
+                if(toolExecuteResult == null || toolExecuteResult.isInterrupted()) {
+                    break;
+                }
+            }
+        }
+        recordIterationLatency(executionContext, llmMillis, System.currentTimeMillis() - toolStart, results.size());
+
+        for (int i = 0; i < results.size(); i++) {
+            AgentAction agentAction = actions.get(i);
+            ToolExecuteResult toolExecuteResult = results.get(i);
+            if(toolExecuteResult == null) {
+                return null;
+            }
+
+            //对于工具返回结果也增加记忆
+            if(getMemory() != null) {
+                BaseChatMemory chatMemory = (BaseChatMemory) getMemory();
+                chatMemory.getChatMemory().addToolMessage(toolExecuteResult.getOutput());
+            }
+
+            if(toolExecuteResult.isInterrupted()) {
+                Map<String, Object> returnValues = new HashMap<>();
+                returnValues.put("output", toolExecuteResult.getOutput());
+                AgentFinish agentFinish = new AgentFinish();
+                agentFinish.setReturnValues(returnValues);
+                agentFinish.setLog(toolExecuteResult.getOutput());
+                return agentFinish;
+            }
+
+            if(!CollectionUtils.isEmpty(toolExecuteResult.getNextTools())) {
+                agentAction.setNextTools(toolExecuteResult.getNextTools());
+                if(CollectionUtils.isEmpty(output.getNextTools())) {
+                    output.setNextTools(toolExecuteResult.getNextTools());
+                }
+            }
+            agentAction.setObservation(toolExecuteResult.getOutput());
+        }
+        return output;
+    }
+
+    /**
+     * 按当前配置取工具执行器，并发名额在同一配置的多轮之间共享
+     */
+    private ParallelToolInvoker toolInvoker() {
+        ParallelToolInvoker invoker = toolInvoker;
+        if(invoker == null || !invoker.isConfiguredWith(toolExecutor, maxParallelToolCalls, toolTimeoutMillis)) {
+            invoker = new ParallelToolInvoker(toolExecutor, maxParallelToolCalls, toolTimeoutMillis);
+            toolInvoker = invoker;
+        }
+        return invoker;
+    }
+
+    /**
+     * 记录当前迭代的耗时拆分，同一轮重复记录时覆盖
+     */
+    private void recordIterationLatency(ExecutionContext executionContext, long llmMillis, long toolMillis, int toolCount) {
+        if(executionContext == null || executionContext.getIterationLatencies() == null) {
+            return;
+        }
+        List<AgentIterationLatency> latencies = executionContext.getIterationLatencies();
+        int iteration = latencies.size();
+        if(toolCount > 0 && iteration > 0) {
+            // 工具执行完成，替换本轮只包含LLM耗时的记录
+            iteration -= 1;
+            latencies.set(iteration, new AgentIterationLatency(iteration, llmMillis, toolMillis, toolCount));
+            return;
+        }
+        latencies.add(new AgentIterationLatency(iteration, llmMillis, toolMillis, toolCount));
+    }
+
     /**
      * 模糊匹配
      *
@@ -346,6 +499,18 @@ public class AgentExecutor extends Chain {
      * @return
      */
     private String containActionName(Map<String, BaseTool> nameToToolMap, String toolName) {
+        if(toolName == null) {
+            return null;
+        }
+        ToolNameIndex index = toolNameIndex;
+        if(index == null || !index.isIndexOf(nameToToolMap)) {
+            index = new ToolNameIndex(nameToToolMap);
+            toolNameIndex = index;
+        }
+        String indexedKey = index.resolve(toolName);
+        if(indexedKey != null) {
+            return indexedKey;
+        }
         for (Map.Entry<String, BaseTool> nameToToolEntry : nameToToolMap.entrySet()) {
             String key = nameToToolEntry.getKey();
             if(toolName.indexOf(key) >= 0) {
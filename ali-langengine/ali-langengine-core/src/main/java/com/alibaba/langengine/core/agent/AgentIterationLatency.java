@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.agent;
+
+import lombok.Data;
+
+/**
+ * Agent单轮迭代的耗时拆分
+ *
+ * @author xiaoxuan.lp
+ */
+@Data
+public class AgentIterationLatency {
+
+    /**
+     * 迭代序号，从0开始
+     */
+    private int iteration;
+
+    /**
+     * 本轮调用模型（plan）的耗时
+     */
+    private long llmMillis;
+
+    /**
+     * 本轮执行工具的耗时，并行执行时为整体墙钟耗时
+     */
+    private long toolMillis;
+
+    /**
+     * 本轮执行的工具数量
+     */
+    private int toolCount;
+
+    public AgentIterationLatency() {
+    }
+
+    public AgentIterationLatency(int iteration, long llmMillis, long toolMillis, int toolCount) {
+        this.iteration = iteration;
+        this.llmMillis = llmMillis;
+        this.toolMillis = toolMillis;
+        this.toolCount = toolCount;
+    }
+}
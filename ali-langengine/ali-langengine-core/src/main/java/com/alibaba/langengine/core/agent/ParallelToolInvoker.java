@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.agent;
+
+import com.alibaba.langengine.core.callback.BaseCallbackHandler;
+import com.alibaba.langengine.core.callback.ExecutionContext;
+import com.alibaba.langengine.core.runnables.CancellationToken;
+import com.alibaba.langengine.core.tool.ToolExecuteResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 并发执行同一轮模型返回的多个工具调用，结果按调用顺序返回
+ *
+ * 并发名额由实例持有，工具真正结束后才归还。超时的工具会被中断，但忽略中断的工具会一直占着名额，
+ * 因此同一个实例上实际运行的工具数不会超过maxParallel；拿不到名额的调用等待一个超时周期后按超时处理。
+ * 工具在线程池中执行时会带上调用线程的traceId、ExecutionContext和CancellationToken
+ *
+ * @author xiaoxuan.lp
+ */
+public class ParallelToolInvoker {
+
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+    private static volatile ExecutorService defaultExecutor;
+
+    private static volatile ScheduledExecutorService timer;
+
+    private final ExecutorService executor;
+
+    private final int maxParallel;
+
+    private final Long timeoutMillis;
+
+    private final Semaphore permits;
+
+    /**
+     * @param executor 线程池，为空时使用默认线程池
+     * @param maxParallel 最大并发数
+     * @param timeoutMillis 单个工具的超时时间，为空表示不限制
+     */
+    public ParallelToolInvoker(ExecutorService executor, int maxParallel, Long timeoutMillis) {
+        this.executor = executor;
+        this.maxParallel = Math.max(1, maxParallel);
+        this.timeoutMillis = timeoutMillis;
+        this.permits = new Semaphore(this.maxParallel);
+    }
+
+    /**
+     * 同一轮的工具调用是否走并发路径；单个调用或者最大并发数不超过1时按原来的顺序执行
+     */
+    public static boolean runsInParallel(int actionCount, int maxParallel) {
+        return actionCount > 1 && maxParallel > 1;
+    }
+
+    /**
+     * 当前实例是否按给定配置创建，配置变化后调用方应创建新实例
+     */
+    public boolean isConfiguredWith(ExecutorService executor, int maxParallel, Long timeoutMillis) {
+        return this.executor == executor && this.maxParallel == Math.max(1, maxParallel)
+                && Objects.equals(this.timeoutMillis, timeoutMillis);
+    }
+
+    /**
+     * 执行单个工具调用；没有超时时间时直接在当前线程执行
+     *
+     * @param toolName 工具名称，用于超时提示
+     * @param call 工具调用
+     * @return 执行结果
+     */
+    public ToolExecuteResult invoke(String toolName, Supplier<ToolExecuteResult> call) {
+        if (!isTimed()) {
+            return call.get();
+        }
+        return invokeAll(Collections.singletonList(toolName), Collections.singletonList(call)).get(0);
+    }
+
+    /**
+     * 执行工具调用
+     *
+     * @param toolNames 工具名称，用于超时提示
+     * @param calls 工具调用
+     * @return 与calls顺序一致的执行结果，超时的工具以提示信息作为观察结果
+     */
+    public List<ToolExecuteResult> invokeAll(List<String> toolNames, List<Supplier<ToolExecuteResult>> calls) {
+        ExecutorService actualExecutor = executor != null ? executor : getDefaultExecutor();
+        boolean timed = isTimed();
+        String traceId = BaseCallbackHandler.getContext();
+        ExecutionContext executionContext = BaseCallbackHandler.getExecutionContext();
+        CancellationToken cancellationToken = CancellationToken.current();
+        List<CompletableFuture<ToolExecuteResult>> futures = new ArrayList<>(calls.size());
+        List<Future<?>> tasks = new ArrayList<>(calls.size());
+        try {
+            for (Supplier<ToolExecuteResult> call : calls) {
+                CompletableFuture<ToolExecuteResult> future = new CompletableFuture<>();
+                futures.add(future);
+                if (timed) {
+                    if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                        // 名额都被仍在运行的工具占着，本次调用不再执行
+                        future.completeExceptionally(new TimeoutException());
+                        continue;
+                    }
+                } else {
+                    permits.acquire();
+                }
+                // 任务开始执行或者在开始前被取消，二者只会发生一个，名额由发生的一方归还
+                AtomicBoolean claimed = new AtomicBoolean();
+                Future<?> task;
+                try {
+                    task = actualExecutor.submit(() -> {
+                        if (!claimed.compareAndSet(false, true)) {
+                            return;
+                        }
+                        try {
+                            future.complete(runWithContext(call, traceId, executionContext, cancellationToken));
+                        } catch (Throwable e) {
+                            future.completeExceptionally(e);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+                tasks.add(task);
+                if (timed) {
+                    ScheduledFuture<?> timeout = getTimer().schedule(() -> {
+                        if (future.completeExceptionally(new TimeoutException())) {
+                            // 中断仍在运行的工具，它结束后才归还名额
+                            task.cancel(true);
+                            if (claimed.compareAndSet(false, true)) {
+                                permits.release();
+                            }
+                        }
+                    }, timeoutMillis, TimeUnit.MILLISECONDS);
+                    future.whenComplete((result, error) -> timeout.cancel(false));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tasks.forEach(task -> task.cancel(true));
+            throw new RuntimeException("interrupted while submitting tool calls", e);
+        }
+
+        List<ToolExecuteResult> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tasks.forEach(task -> task.cancel(true));
+                throw new RuntimeException("interrupted while waiting for tool calls", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof TimeoutException) {
+                    results.add(new ToolExecuteResult(String.format("Tool %s timed out after %d ms.", toolNames.get(i), timeoutMillis)));
+                    continue;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new CompletionException(cause);
+            }
+        }
+        return results;
+    }
+
+    private boolean isTimed() {
+        return timeoutMillis != null && timeoutMillis > 0;
+    }
+
+    /**
+     * 在线程池线程上恢复调用线程的回调上下文，执行完后还原
+     */
+    private static ToolExecuteResult runWithContext(Supplier<ToolExecuteResult> call,
+                                                    String traceId,
+                                                    ExecutionContext executionContext,
+                                                    CancellationToken cancellationToken) {
+        String previousTraceId = BaseCallbackHandler.getContext();
+        ExecutionContext previousExecutionContext = BaseCallbackHandler.getExecutionContext();
+        BaseCallbackHandler.setContext(traceId);
+        BaseCallbackHandler.setExecutionContext(executionContext);
+        try (CancellationToken.Registration ignored = CancellationToken.bind(cancellationToken)) {
+            return call.get();
+        } finally {
+            if (previousTraceId == null) {
+                BaseCallbackHandler.removeContext(false);
+            } else {
+                BaseCallbackHandler.setContext(previousTraceId);
+            }
+            if (previousExecutionContext == null) {
+                BaseCallbackHandler.removeExecutionContext(false);
+            } else {
+                BaseCallbackHandler.setExecutionContext(previousExecutionContext);
+            }
+        }
+    }
+
+    private static ScheduledExecutorService getTimer() {
+        if (timer == null) {
+            synchronized (ParallelToolInvoker.class) {
+                if (timer == null) {
+                    timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "langengine-agent-tool-timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return timer;
+    }
+
+    private static ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            synchronized (ParallelToolInvoker.class) {
+                if (defaultExecutor == null) {
+                    defaultExecutor = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable, "langengine-agent-tool-" + THREAD_INDEX.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return defaultExecutor;
+    }
+}
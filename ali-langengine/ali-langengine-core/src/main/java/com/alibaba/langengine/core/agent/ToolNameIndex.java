@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.agent;
+
+import com.alibaba.langengine.core.tool.BaseTool;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 工具名称索引，预先计算精确名称和归一化名称（忽略大小写和非字母数字字符）到工具key的映射，
+ * 避免每次工具调用都线性扫描全部工具做模糊匹配
+ *
+ * @author xiaoxuan.lp
+ */
+public class ToolNameIndex {
+
+    private final Map<String, BaseTool> source;
+
+    private final int sourceSize;
+
+    private final Map<String, String> normalizedToKey = new HashMap<>();
+
+    public ToolNameIndex(Map<String, BaseTool> nameToToolMap) {
+        this.source = nameToToolMap;
+        this.sourceSize = nameToToolMap.size();
+        for (String key : nameToToolMap.keySet()) {
+            normalizedToKey.putIfAbsent(normalize(key), key);
+        }
+    }
+
+    /**
+     * 按精确名称、归一化名称的顺序查找工具key，都未命中时返回null
+     *
+     * @param toolName
+     * @return
+     */
+    public String resolve(String toolName) {
+        if (toolName == null) {
+            return null;
+        }
+        if (source.containsKey(toolName)) {
+            return toolName;
+        }
+        return normalizedToKey.get(normalize(toolName));
+    }
+
+    /**
+     * 索引是否仍然对应该工具映射
+     *
+     * @param nameToToolMap
+     * @return
+     */
+    public boolean isIndexOf(Map<String, BaseTool> nameToToolMap) {
+        return source == nameToToolMap && sourceSize == nameToToolMap.size();
+    }
+
+    public static String normalize(String toolName) {
+        StringBuilder builder = new StringBuilder(toolName.length());
+        for (int i = 0; i < toolName.length(); i++) {
+            char c = toolName.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -18,6 +18,7 @@ package com.alibaba.langengine.core.caches;
 import com.alibaba.langengine.core.callback.ExecutionContext;
 import com.alibaba.langengine.core.outputs.Generation;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -47,6 +48,21 @@ public abstract class BaseCache {
      */
     public abstract List<Generation> get(String prompt, String llmString);
 
+    /**
+     * 批量查询，结果与 prompts 一一对应，未命中的位置为 null
+     *
+     * @param prompts
+     * @param llmString
+     * @return
+     */
+    public List<List<Generation>> get(List<String> prompts, String llmString) {
+        List<List<Generation>> result = new ArrayList<>(prompts.size());
+        for (String prompt : prompts) {
+            result.add(get(prompt, llmString));
+        }
+        return result;
+    }
+
     /**
      * 通过LLM做一些特殊的业务逻辑
      *
@@ -80,6 +96,16 @@ public abstract class BaseCache {
      */
     public abstract void update(String prompt, String llmString, List<Generation> returnVal);
 
+    /**
+     * Remove the entry of prompt and llm_string, no-op if the storage does not support it.
+     *
+     * @param prompt
+     * @param llmString
+     */
+    public void remove(String prompt, String llmString) {
+
+    }
+
     /**
      * Clear cache that can take additional keyword arguments.
      */
@@ -18,14 +18,29 @@ package com.alibaba.langengine.core.caches;
 import com.alibaba.langengine.core.embeddings.Embeddings;
 import com.alibaba.langengine.core.indexes.Document;
 import com.alibaba.langengine.core.outputs.Generation;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
 
 /**
  * 通过相似度来命中问答缓存，类似python的GPTCache(https://github.com/zilliztech/GPTCache)
  *
+ * 查询先按 prompt + llmString 精确匹配，未命中再到向量库做相似度检索；两者命中后都从基础缓存取值，本地只保存条目的过期时间与文档信息。
+ * 同一个 prompt 在向量库中只保存一份文档，条目过期或按 LRU 淘汰时从向量库和基础缓存中一并删除。
+ *
  * @author xiaoxuan.lp
  */
 @Data
@@ -46,29 +61,259 @@ public class GPTCache extends BaseCache {
      */
     private Double similarityThreshold = 0.8;
 
+    /**
+     * 条目存活时间，单位毫秒，不大于0表示不过期
+     */
+    private long ttlMillis = 0;
+
+    /**
+     * 最多缓存的条目数，超过后淘汰最久未访问的条目，不大于0表示不限制
+     */
+    private int maxEntries = 0;
+
+    /**
+     * 当前时间，单位毫秒
+     */
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private final GPTCacheMetrics metrics = new GPTCacheMetrics();
+
+    /**
+     * 精确匹配层，key为getCacheKey(prompt, llmString)，按访问顺序排列，不保存结果本身
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * prompt在向量库中对应的文档
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final Map<String, IndexedPrompt> indexedPrompts = new HashMap<>();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private long nextSweepAt;
 
     @Override
     public List<Generation> get(String prompt, String llmString) {
-        List<Document> documents = cacheManager.getVectorStore().similaritySearch(prompt, 1, similarityThreshold);
-        if(documents == null || documents.size() == 0) {
-            return null;
+        return get(Collections.singletonList(prompt), llmString).get(0);
+    }
+
+    /**
+     * 精确匹配未命中的prompt合并为一次批量相似度检索
+     */
+    @Override
+    public List<List<Generation>> get(List<String> prompts, String llmString) {
+        long now = clock.getAsLong();
+        List<List<Generation>> result = new ArrayList<>(Collections.nCopies(prompts.size(), null));
+        List<CacheEntry> expired = new ArrayList<>();
+        List<Integer> hitIndexes = new ArrayList<>();
+        List<Integer> missIndexes = new ArrayList<>();
+        synchronized (entries) {
+            for (int i = 0; i < prompts.size(); i++) {
+                if (lookup(getCacheKey(prompts.get(i), llmString), now, expired) != null) {
+                    hitIndexes.add(i);
+                } else {
+                    missIndexes.add(i);
+                }
+            }
         }
-        Document document = documents.get(0);
-        return cacheManager.getCacheStorage().get(document.getPageContent(), llmString);
+        for (Integer index : hitIndexes) {
+            List<Generation> value = cacheManager.getCacheStorage().get(prompts.get(index), llmString);
+            if (value != null) {
+                result.set(index, value);
+                metrics.recordExactHit();
+            } else {
+                // 基础缓存已自行淘汰，按未命中处理
+                missIndexes.add(index);
+            }
+        }
+        Collections.sort(missIndexes);
+
+        if (!missIndexes.isEmpty()) {
+            List<String> queries = new ArrayList<>(missIndexes.size());
+            for (Integer index : missIndexes) {
+                queries.add(prompts.get(index));
+            }
+            List<List<Document>> documents = cacheManager.getVectorStore().batchSimilaritySearch(queries, 1, similarityThreshold);
+            for (int i = 0; i < missIndexes.size(); i++) {
+                List<Document> hits = documents.get(i);
+                List<Generation> value = null;
+                if (hits != null && hits.size() > 0) {
+                    value = resolve(hits.get(0).getPageContent(), llmString, now, expired);
+                }
+                if (value != null) {
+                    result.set(missIndexes.get(i), value);
+                    metrics.recordSemanticHit();
+                } else {
+                    metrics.recordMiss();
+                }
+            }
+        }
+
+        remove(expired);
+        return result;
     }
 
     @Override
     public void update(String prompt, String llmString, List<Generation> returnVal) {
-        List<Document> documents = new ArrayList<>();
-        Document document = new Document();
-        document.setPageContent(prompt);
-        documents.add(document);
-        cacheManager.getVectorStore().addDocuments(documents);
+        long now = clock.getAsLong();
+        String documentId = null;
+        List<CacheEntry> evicted = new ArrayList<>();
+        synchronized (entries) {
+            CacheEntry entry = new CacheEntry(prompt, llmString, ttlMillis > 0 ? now + ttlMillis : Long.MAX_VALUE);
+            if (entries.put(getCacheKey(prompt, llmString), entry) == null) {
+                IndexedPrompt indexed = indexedPrompts.get(prompt);
+                if (indexed == null) {
+                    indexed = new IndexedPrompt(UUID.randomUUID().toString());
+                    indexedPrompts.put(prompt, indexed);
+                    documentId = indexed.documentId;
+                }
+                indexed.references++;
+            }
+            if (ttlMillis > 0 && now >= nextSweepAt) {
+                Iterator<CacheEntry> iterator = entries.values().iterator();
+                while (iterator.hasNext()) {
+                    CacheEntry candidate = iterator.next();
+                    if (candidate.expireAt <= now) {
+                        iterator.remove();
+                        evicted.add(candidate);
+                    }
+                }
+                nextSweepAt = now + ttlMillis;
+            }
+            if (maxEntries > 0) {
+                Iterator<CacheEntry> iterator = entries.values().iterator();
+                while (entries.size() > maxEntries && iterator.hasNext()) {
+                    evicted.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+        }
+
+        if (documentId != null) {
+            List<Document> documents = new ArrayList<>();
+            Document document = new Document();
+            document.setUniqueId(documentId);
+            document.setPageContent(prompt);
+            documents.add(document);
+            cacheManager.getVectorStore().addDocuments(documents);
+        }
         cacheManager.getCacheStorage().update(prompt, llmString, returnVal);
+        remove(evicted);
     }
 
+    /**
+     * 删除本实例写入的全部条目
+     */
     @Override
     public void clear() {
+        List<CacheEntry> removed;
+        List<String> documentIds = new ArrayList<>();
+        synchronized (entries) {
+            removed = new ArrayList<>(entries.values());
+            for (IndexedPrompt indexed : indexedPrompts.values()) {
+                documentIds.add(indexed.documentId);
+            }
+            entries.clear();
+            indexedPrompts.clear();
+        }
+        for (CacheEntry entry : removed) {
+            cacheManager.getCacheStorage().remove(entry.prompt, entry.llmString);
+        }
+        if (!documentIds.isEmpty()) {
+            cacheManager.getVectorStore().removeDocuments(documentIds);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 相似度命中的prompt先确认精确匹配层中的条目仍然有效，再从基础缓存取值；
+     * 不是本实例写入的prompt（例如向量库与基础缓存是持久化的）直接读基础缓存
+     */
+    private List<Generation> resolve(String matchedPrompt, String llmString, long now, List<CacheEntry> expired) {
+        synchronized (entries) {
+            if (lookup(getCacheKey(matchedPrompt, llmString), now, expired) == null
+                    && indexedPrompts.containsKey(matchedPrompt)) {
+                return null;
+            }
+        }
+        return cacheManager.getCacheStorage().get(matchedPrompt, llmString);
+    }
+
+    private CacheEntry lookup(String key, long now, List<CacheEntry> expired) {
+        CacheEntry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt <= now) {
+            entries.remove(key);
+            expired.add(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 已经从精确匹配层移除的条目，再从基础缓存删除；prompt不再被引用时从向量库删除对应文档
+     */
+    private void remove(List<CacheEntry> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        List<String> documentIds = new ArrayList<>();
+        synchronized (entries) {
+            for (CacheEntry entry : removed) {
+                IndexedPrompt indexed = indexedPrompts.get(entry.prompt);
+                if (indexed != null && --indexed.references == 0) {
+                    indexedPrompts.remove(entry.prompt);
+                    documentIds.add(indexed.documentId);
+                }
+            }
+        }
+        for (CacheEntry entry : removed) {
+            cacheManager.getCacheStorage().remove(entry.prompt, entry.llmString);
+        }
+        if (!documentIds.isEmpty()) {
+            cacheManager.getVectorStore().removeDocuments(documentIds);
+        }
+        metrics.recordEvictions(removed.size());
+    }
+
+    private static final class CacheEntry {
+
+        private final String prompt;
+
+        private final String llmString;
 
+        private final long expireAt;
+
+        private CacheEntry(String prompt, String llmString, long expireAt) {
+            this.prompt = prompt;
+            this.llmString = llmString;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private static final class IndexedPrompt {
+
+        private final String documentId;
+
+        private int references;
+
+        private IndexedPrompt(String documentId) {
+            this.documentId = documentId;
+        }
     }
 }
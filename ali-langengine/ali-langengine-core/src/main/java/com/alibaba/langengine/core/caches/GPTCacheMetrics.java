@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.caches;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GPTCache命中指标，精确命中与相似度命中分开统计
+ *
+ * @author xiaoxuan.lp
+ */
+public class GPTCacheMetrics {
+
+    private final LongAdder exactHits = new LongAdder();
+
+    private final LongAdder semanticHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    void recordExactHit() {
+        exactHits.increment();
+    }
+
+    void recordSemanticHit() {
+        semanticHits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordEvictions(int count) {
+        evictions.add(count);
+    }
+
+    public long getExactHitCount() {
+        return exactHits.sum();
+    }
+
+    public long getSemanticHitCount() {
+        return semanticHits.sum();
+    }
+
+    public long getHitCount() {
+        return getExactHitCount() + getSemanticHitCount();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        if (total == 0) {
+            return 0d;
+        }
+        return hits / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return "GPTCacheMetrics{exactHits=" + getExactHitCount()
+                + ", semanticHits=" + getSemanticHitCount()
+                + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount()
+                + "}";
+    }
+}
@@ -48,6 +48,11 @@ public class InMemoryCache extends BaseCache {
         cache.put(cacheKey, returnVal);
     }
 
+    @Override
+    public void remove(String prompt, String llmString) {
+        cache.remove(getCacheKey(prompt, llmString));
+    }
+
     @Override
     public void clear() {
         cache.clear();
@@ -15,11 +15,13 @@
  */
 package com.alibaba.langengine.core.callback;
 
+import com.alibaba.langengine.core.callback.async.CallbackEvent;
 import com.alibaba.langengine.core.util.JacksonUtils;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import lombok.Data;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -213,4 +215,22 @@ public abstract class BaseCallbackHandler implements Serializable {
     public void onRetrieverError(ExecutionContext executionContext) {
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Run when a batch of async callback events is delivered by the dispatcher.
+     * 默认逐个还原跟踪上下文后回调对应方法，批量写日志等场景可以覆盖此方法
+     *
+     * @param events
+     */
+    public void onCallbackEvents(List<CallbackEvent> events) {
+        for (CallbackEvent event : events) {
+            if (event.getTraceId() != null) {
+                setContext(event.getTraceId());
+            } else {
+                removeContext(false);
+            }
+            setExecutionContext(event.getExecutionContext());
+            event.getStage().dispatch(this, event.getExecutionContext());
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.alibaba.langengine.core.callback;
 
+import com.alibaba.langengine.core.callback.async.AsyncCallbackDispatcher;
 import com.alibaba.langengine.core.util.JacksonUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
@@ -46,6 +47,12 @@ public abstract class BaseCallbackManager implements Serializable {
     @JsonIgnore
     private RunManager runManager = new RunManager();
 
+    /**
+     * 异步分发器，为空时在请求线程上同步回调
+     */
+    @JsonIgnore
+    private transient AsyncCallbackDispatcher asyncDispatcher;
+
     public void addHandler(BaseCallbackHandler handler) {
         handlers.add(handler);
     }
@@ -15,6 +15,7 @@
  */
 package com.alibaba.langengine.core.callback;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import lombok.Data;
@@ -59,4 +60,17 @@ public class BizExecutionContext extends ExecutionContext {
      * 通过会话Id，把生成的结果和会话关联起来
      */
     private String sessionId;
+
+    @Override
+    public ExecutionContext snapshot() {
+        BizExecutionContext copy = new BizExecutionContext();
+        copyTo(copy);
+        copy.setUserId(userId);
+        copy.setBizId(bizId);
+        copy.setBizType(bizType);
+        copy.setBizContext(bizContext != null ? new HashMap<>(bizContext) : null);
+        copy.setUtBizParams(utBizParams != null ? new HashMap<>(utBizParams) : null);
+        copy.setSessionId(sessionId);
+        return copy;
+    }
 }
@@ -15,6 +15,8 @@
  */
 package com.alibaba.langengine.core.callback;
 
+import com.alibaba.langengine.core.callback.async.AsyncCallbackDispatcher;
+import com.alibaba.langengine.core.callback.async.CallbackStage;
 import lombok.Data;
 
 import java.util.List;
@@ -36,85 +38,100 @@ public class CallbackManager extends BaseCallbackManager {
         getRunManager().setMetadata(metadata);
     }
 
+    public CallbackManager(List<BaseCallbackHandler> handlers, Map<String, Object> metadata, AsyncCallbackDispatcher asyncDispatcher) {
+        this(handlers, metadata);
+        setAsyncDispatcher(asyncDispatcher);
+    }
+
     @Override
     public BaseCallbackManager getChild() {
         CallbackManager manager = new CallbackManager();
         manager.setHandlers(getHandlers());
         manager.setRunManager(getRunManager().getChild());
+        manager.setAsyncDispatcher(getAsyncDispatcher());
         return manager;
     }
 
     @Override
     public void onChainStart(ExecutionContext executionContext) {
         getRunManager().onStart();
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onChainStart(executionContext));
+        dispatch(CallbackStage.CHAIN_START, executionContext);
     }
 
     @Override
     public void onChainEnd(ExecutionContext executionContext) {
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onChainEnd(executionContext));
+        dispatch(CallbackStage.CHAIN_END, executionContext);
     }
 
     @Override
     public void onChainError(ExecutionContext executionContext) {
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onChainError(executionContext));
+        dispatch(CallbackStage.CHAIN_ERROR, executionContext);
     }
 
     @Override
     public void onLlmStart(ExecutionContext executionContext) {
         getRunManager().onStart();
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onLlmStart(executionContext));
+        dispatch(CallbackStage.LLM_START, executionContext);
     }
 
     @Override
     public void onLlmEnd(ExecutionContext executionContext) {
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onLlmEnd(executionContext));
+        dispatch(CallbackStage.LLM_END, executionContext);
     }
 
     @Override
     public void onLlmError(ExecutionContext executionContext) {
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onLlmError(executionContext));
+        dispatch(CallbackStage.LLM_ERROR, executionContext);
     }
 
     @Override
     public void onToolStart(ExecutionContext executionContext) {
         getRunManager().onStart();
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onToolStart(executionContext));
+        dispatch(CallbackStage.TOOL_START, executionContext);
     }
 
     @Override
     public void onToolEnd(ExecutionContext executionContext) {
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onToolEnd(executionContext));
+        dispatch(CallbackStage.TOOL_END, executionContext);
     }
 
     @Override
     public void onToolError(ExecutionContext executionContext) {
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onToolError(executionContext));
+        dispatch(CallbackStage.TOOL_ERROR, executionContext);
     }
 
     @Override
     public void onAgentAction(ExecutionContext executionContext) {
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onAgentAction(executionContext));
+        dispatch(CallbackStage.AGENT_ACTION, executionContext);
     }
 
     @Override
     public void onAgentFinish(ExecutionContext executionContext) {
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onAgentFinish(executionContext));
+        dispatch(CallbackStage.AGENT_FINISH, executionContext);
     }
 
     @Override
     public void onRetrieverStart(ExecutionContext executionContext) {
         getRunManager().onStart();
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onRetrieverStart(executionContext));
+        dispatch(CallbackStage.RETRIEVER_START, executionContext);
     }
 
     @Override
     public void onRetrieverEnd(ExecutionContext executionContext) {
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onRetrieverEnd(executionContext));
+        dispatch(CallbackStage.RETRIEVER_END, executionContext);
     }
 
     @Override
     public void onRetrieverError(ExecutionContext executionContext) {
-        getHandlers().stream().forEach(baseCallbackHandler -> baseCallbackHandler.onRetrieverError(executionContext));
+        dispatch(CallbackStage.RETRIEVER_ERROR, executionContext);
+    }
+
+    private void dispatch(CallbackStage stage, ExecutionContext executionContext) {
+        AsyncCallbackDispatcher dispatcher = getAsyncDispatcher();
+        if (dispatcher != null && dispatcher.isRunning()) {
+            dispatcher.publish(stage, executionContext, getHandlers());
+            return;
+        }
+        getHandlers().stream().forEach(baseCallbackHandler -> stage.dispatch(baseCallbackHandler, executionContext));
     }
-}
\ No newline at end of file
+}
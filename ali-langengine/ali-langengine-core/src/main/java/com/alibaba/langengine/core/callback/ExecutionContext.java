@@ -17,6 +17,7 @@ package com.alibaba.langengine.core.callback;
 
 import com.alibaba.langengine.core.agent.AgentAction;
 import com.alibaba.langengine.core.agent.AgentFinish;
+import com.alibaba.langengine.core.agent.AgentIterationLatency;
 import com.alibaba.langengine.core.indexes.BaseRetriever;
 import com.alibaba.langengine.core.indexes.Document;
 import com.alibaba.langengine.core.languagemodel.BaseLanguageModel;
@@ -28,6 +29,8 @@ import com.alibaba.langengine.core.tool.BaseTool;
 import com.alibaba.langengine.core.tool.ToolExecuteResult;
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -158,6 +161,11 @@ public class ExecutionContext<T> {
     private AgentAction agentAction;
     private AgentFinish agentFinish;
 
+    /**
+     * agent各轮迭代的耗时拆分（LLM/工具），最后一项在onAgentAction时尚未包含工具耗时
+     */
+    private List<AgentIterationLatency> iterationLatencies;
+
     /** ---------- retriever start ---------- **/
 
     /**
@@ -190,4 +198,45 @@ public class ExecutionContext<T> {
     public boolean isContainTool() {
         return getChildExecutionType() != null && getChildExecutionType().startsWith("tool-");
     }
+
+    /**
+     * 浅拷贝当前上下文，集合类字段复制一层，供异步回调在请求线程之外安全读取
+     *
+     * @return
+     */
+    public ExecutionContext<T> snapshot() {
+        ExecutionContext<T> copy = new ExecutionContext<>();
+        copyTo(copy);
+        return copy;
+    }
+
+    protected void copyTo(ExecutionContext<T> target) {
+        target.setEagleEyeCtx(eagleEyeCtx);
+        target.setChainInstanceId(chainInstanceId);
+        target.setThrowable(throwable);
+        target.setChain(chain);
+        target.setInputs(inputs != null ? new HashMap<>(inputs) : null);
+        target.setOutputs(outputs != null ? new HashMap<>(outputs) : null);
+        target.setExecutionType(executionType);
+        target.setLlm(llm);
+        target.setPrompts(prompts != null ? new ArrayList<>(prompts) : null);
+        target.setLlmResult(llmResult);
+        target.setMessages(messages != null ? new ArrayList<>(messages) : null);
+        target.setFunctions(functions != null ? new ArrayList<>(functions) : null);
+        target.setChildExecutionType(childExecutionType);
+        target.setChildChain(childChain);
+        target.setChildInputs(childInputs != null ? new HashMap<>(childInputs) : null);
+        target.setChildOutputs(childOutputs != null ? new HashMap<>(childOutputs) : null);
+        target.setTool(tool);
+        target.setToolInput(toolInput);
+        target.setToolExecuteResult(toolExecuteResult);
+        target.setAgentAction(agentAction);
+        target.setAgentFinish(agentFinish);
+        target.setIterationLatencies(iterationLatencies != null ? new ArrayList<>(iterationLatencies) : null);
+        target.setRetriever(retriever);
+        target.setRetrieverInput(retrieverInput != null ? new HashMap<>(retrieverInput) : null);
+        target.setRetrieverOutput(retrieverOutput != null ? new ArrayList<>(retrieverOutput) : null);
+        target.setChunkConsumer(chunkConsumer);
+        target.setTraceData(traceData);
+    }
 }
@@ -103,6 +103,7 @@ public class LocalLogCallBackHandler extends BaseCallbackHandler {
 
         traceDTO.setAgentAction(executionContext.getAgentAction());
         traceDTO.setAgentFinish(executionContext.getAgentFinish());
+        traceDTO.setIterationLatencies(executionContext.getIterationLatencies());
 
         traceDTO.setRetrieverInput(executionContext.getRetrieverInput());
         traceDTO.setRetrieverOutput(executionContext.getRetrieverOutput());
@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.callback.async;
+
+import com.alibaba.langengine.core.callback.BaseCallbackHandler;
+import com.alibaba.langengine.core.callback.ExecutionContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步回调分发器。
+ * 请求线程只负责对ExecutionContext做快照并写入无锁环形缓冲区，
+ * 后台线程批量取出事件，按handler分组后交给{@link BaseCallbackHandler#onCallbackEvents(List)}消费。
+ *
+ * @author xiaoxuan.lp
+ */
+@Slf4j
+public class AsyncCallbackDispatcher implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+    private final CallbackRingBuffer<CallbackEvent> ringBuffer;
+
+    private final CallbackOverflowPolicy overflowPolicy;
+
+    private final int batchSize;
+
+    private final CallbackDispatchMetrics metrics = new CallbackDispatchMetrics();
+
+    private final Thread worker;
+
+    /**
+     * 已通过running检查、尚未完成写入的发布线程数，后台线程在close之后要等它们写完再退出，避免事件写入已经停止消费的缓冲区
+     */
+    private final AtomicInteger publishing = new AtomicInteger();
+
+    private volatile boolean running = true;
+
+    private volatile boolean sleeping;
+
+    public AsyncCallbackDispatcher() {
+        this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, CallbackOverflowPolicy.DROP);
+    }
+
+    public AsyncCallbackDispatcher(int capacity, int batchSize, CallbackOverflowPolicy overflowPolicy) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.ringBuffer = new CallbackRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : CallbackOverflowPolicy.DROP;
+        this.worker = new Thread(this::runLoop, "langengine-callback-dispatcher-" + THREAD_INDEX.incrementAndGet());
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 发布回调事件
+     *
+     * @return 事件是否进入缓冲区，DROP策略下缓冲区已满或分发器已关闭时返回false
+     */
+    public boolean publish(CallbackStage stage, ExecutionContext executionContext, List<BaseCallbackHandler> handlers) {
+        if (handlers == null || handlers.isEmpty()) {
+            return true;
+        }
+        CallbackEvent event = new CallbackEvent(stage,
+                executionContext != null ? executionContext.snapshot() : null,
+                new ArrayList<>(handlers),
+                BaseCallbackHandler.getContext(),
+                System.nanoTime());
+        metrics.recordPublished();
+        if (Thread.currentThread() == worker) {
+            return publishFromWorker(event);
+        }
+        publishing.incrementAndGet();
+        try {
+            if (!running) {
+                metrics.recordDropped();
+                return false;
+            }
+            if (ringBuffer.offer(event)) {
+                signal();
+                return true;
+            }
+            if (overflowPolicy == CallbackOverflowPolicy.DROP) {
+                metrics.recordDropped();
+                return false;
+            }
+            while (!ringBuffer.offer(event)) {
+                if (!running) {
+                    metrics.recordDropped();
+                    return false;
+                }
+                signal();
+                LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+            }
+            signal();
+            return true;
+        } finally {
+            publishing.decrementAndGet();
+        }
+    }
+
+    /**
+     * handler在后台线程中再次发布事件：后台线程会在退出前消费完缓冲区，因此不受close影响；
+     * 缓冲区已满时BLOCK策略直接在当前线程分发，不能等待自己消费
+     */
+    private boolean publishFromWorker(CallbackEvent event) {
+        if (ringBuffer.offer(event)) {
+            return true;
+        }
+        if (overflowPolicy == CallbackOverflowPolicy.DROP) {
+            metrics.recordDropped();
+            return false;
+        }
+        dispatchBatch(Collections.singletonList(event));
+        return true;
+    }
+
+    /**
+     * 等待已发布的事件全部被消费
+     *
+     * @return 超时前是否消费完毕
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (metrics.getDispatchedCount() + metrics.getDroppedCount() < metrics.getPublishedCount()) {
+            if (System.nanoTime() >= deadline || !worker.isAlive()) {
+                return false;
+            }
+            signal();
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+        }
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getPendingCount() {
+        return ringBuffer.size();
+    }
+
+    public CallbackOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public CallbackDispatchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 停止接收新事件，等正在发布的线程写完、消费完缓冲区中剩余的事件后退出后台线程
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void signal() {
+        if (sleeping) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void runLoop() {
+        List<CallbackEvent> batch = new ArrayList<>(batchSize);
+        while (running || publishing.get() > 0 || !ringBuffer.isEmpty()) {
+            int drained = ringBuffer.drainTo(batch, batchSize);
+            if (drained == 0) {
+                sleeping = true;
+                if (ringBuffer.isEmpty()) {
+                    LockSupport.parkNanos(this, running ? IDLE_PARK_NANOS : BLOCK_PARK_NANOS);
+                }
+                sleeping = false;
+                continue;
+            }
+            try {
+                dispatchBatch(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void dispatchBatch(List<CallbackEvent> batch) {
+        long now = System.nanoTime();
+        long lagSum = 0;
+        long lagMax = 0;
+        List<BaseCallbackHandler> handlerOrder = new ArrayList<>();
+        Map<BaseCallbackHandler, List<CallbackEvent>> eventsByHandler = new IdentityHashMap<>();
+        for (CallbackEvent event : batch) {
+            long lag = now - event.getPublishNanos();
+            lagSum += lag;
+            lagMax = Math.max(lagMax, lag);
+            for (BaseCallbackHandler handler : event.getHandlers()) {
+                List<CallbackEvent> events = eventsByHandler.get(handler);
+                if (events == null) {
+                    events = new ArrayList<>();
+                    eventsByHandler.put(handler, events);
+                    handlerOrder.add(handler);
+                }
+                events.add(event);
+            }
+        }
+        for (BaseCallbackHandler handler : handlerOrder) {
+            try {
+                handler.onCallbackEvents(eventsByHandler.get(handler));
+            } catch (Throwable e) {
+                log.error("async callback dispatch error, handler:" + handler.getClass().getName(), e);
+            }
+        }
+        BaseCallbackHandler.removeContext(false);
+        BaseCallbackHandler.removeExecutionContext(false);
+        metrics.recordBatch(batch.size(), lagSum, lagMax);
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.callback.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步回调分发指标，lag为事件从发布到被handler消费的耗时
+ *
+ * @author xiaoxuan.lp
+ */
+public class CallbackDispatchMetrics {
+
+    private final LongAdder published = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final AtomicLong dispatched = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong totalLagNanos = new AtomicLong();
+
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    void recordPublished() {
+        published.increment();
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    /**
+     * 只由消费线程调用
+     */
+    void recordBatch(int size, long lagNanosSum, long lagNanosMax) {
+        batches.incrementAndGet();
+        dispatched.addAndGet(size);
+        totalLagNanos.addAndGet(lagNanosSum);
+        if (lagNanosMax > maxLagNanos.get()) {
+            maxLagNanos.set(lagNanosMax);
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getDispatchedCount() {
+        return dispatched.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos.get();
+    }
+
+    public double getAverageLagMillis() {
+        long count = dispatched.get();
+        if (count == 0) {
+            return 0d;
+        }
+        return totalLagNanos.get() / (double) count / 1_000_000d;
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.get();
+        if (count == 0) {
+            return 0d;
+        }
+        return dispatched.get() / (double) count;
+    }
+
+    @Override
+    public String toString() {
+        return "CallbackDispatchMetrics{published=" + getPublishedCount()
+                + ", dropped=" + getDroppedCount()
+                + ", dispatched=" + getDispatchedCount()
+                + ", batches=" + getBatchCount()
+                + ", avgLagMillis=" + getAverageLagMillis()
+                + ", maxLagNanos=" + getMaxLagNanos() + "}";
+    }
+}
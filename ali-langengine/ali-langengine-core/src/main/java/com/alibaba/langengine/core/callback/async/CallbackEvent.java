@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.callback.async;
+
+import com.alibaba.langengine.core.callback.BaseCallbackHandler;
+import com.alibaba.langengine.core.callback.ExecutionContext;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 异步回调事件，发布时对ExecutionContext做快照，之后不再修改
+ *
+ * @author xiaoxuan.lp
+ */
+@Getter
+public final class CallbackEvent {
+
+    /**
+     * 回调阶段
+     */
+    private final CallbackStage stage;
+
+    /**
+     * ExecutionContext快照
+     */
+    private final ExecutionContext executionContext;
+
+    /**
+     * 发布时callback manager上的handlers
+     */
+    private final List<BaseCallbackHandler> handlers;
+
+    /**
+     * 发布线程上的跟踪id
+     */
+    private final String traceId;
+
+    /**
+     * 发布时间，System.nanoTime()
+     */
+    private final long publishNanos;
+
+    public CallbackEvent(CallbackStage stage,
+                         ExecutionContext executionContext,
+                         List<BaseCallbackHandler> handlers,
+                         String traceId,
+                         long publishNanos) {
+        this.stage = stage;
+        this.executionContext = executionContext;
+        this.handlers = handlers;
+        this.traceId = traceId;
+        this.publishNanos = publishNanos;
+    }
+}
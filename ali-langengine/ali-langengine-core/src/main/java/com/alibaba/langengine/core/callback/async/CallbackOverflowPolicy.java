@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.callback.async;
+
+/**
+ * 环形缓冲区写满时的处理策略
+ *
+ * @author xiaoxuan.lp
+ */
+public enum CallbackOverflowPolicy {
+
+    /**
+     * 直接丢弃新事件，请求线程不受影响
+     */
+    DROP,
+
+    /**
+     * 阻塞请求线程，直到缓冲区有空位
+     */
+    BLOCK
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.callback.async;
+
+import com.alibaba.langengine.core.callback.BaseCallbackHandler;
+import com.alibaba.langengine.core.callback.ExecutionContext;
+
+/**
+ * 回调阶段，负责把事件路由到handler对应的回调方法
+ *
+ * @author xiaoxuan.lp
+ */
+public enum CallbackStage {
+
+    CHAIN_START {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onChainStart(executionContext);
+        }
+    },
+    CHAIN_END {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onChainEnd(executionContext);
+        }
+    },
+    CHAIN_ERROR {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onChainError(executionContext);
+        }
+    },
+    LLM_START {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onLlmStart(executionContext);
+        }
+    },
+    LLM_END {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onLlmEnd(executionContext);
+        }
+    },
+    LLM_ERROR {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onLlmError(executionContext);
+        }
+    },
+    TOOL_START {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onToolStart(executionContext);
+        }
+    },
+    TOOL_END {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onToolEnd(executionContext);
+        }
+    },
+    TOOL_ERROR {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onToolError(executionContext);
+        }
+    },
+    AGENT_ACTION {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onAgentAction(executionContext);
+        }
+    },
+    AGENT_FINISH {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onAgentFinish(executionContext);
+        }
+    },
+    RETRIEVER_START {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onRetrieverStart(executionContext);
+        }
+    },
+    RETRIEVER_END {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onRetrieverEnd(executionContext);
+        }
+    },
+    RETRIEVER_ERROR {
+        @Override
+        public void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext) {
+            handler.onRetrieverError(executionContext);
+        }
+    };
+
+    /**
+     * 调用handler上与当前阶段对应的回调方法
+     *
+     * @param handler
+     * @param executionContext
+     */
+    public abstract void dispatch(BaseCallbackHandler handler, ExecutionContext executionContext);
+}
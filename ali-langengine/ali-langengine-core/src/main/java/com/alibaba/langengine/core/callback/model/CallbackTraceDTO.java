@@ -21,6 +21,7 @@ import java.util.Map;
 
 import com.alibaba.langengine.core.agent.AgentAction;
 import com.alibaba.langengine.core.agent.AgentFinish;
+import com.alibaba.langengine.core.agent.AgentIterationLatency;
 import com.alibaba.langengine.core.indexes.Document;
 import com.alibaba.langengine.core.outputs.LLMResult;
 import com.alibaba.langengine.core.tool.ToolExecuteResult;
@@ -168,6 +169,11 @@ public class CallbackTraceDTO {
 
     private AgentFinish agentFinish;
 
+    /**
+     * agent各轮迭代的耗时拆分
+     */
+    private List<AgentIterationLatency> iterationLatencies;
+
     /** ---------- retriever start ---------- **/
 
     /**
@@ -21,7 +21,9 @@ import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,8 +38,26 @@ public class VectorStoreRetriever extends BaseRetriever {
 
     private VectorStore vectorStore;
 
+    /**
+     * 检索方式：similarity 相似性检索，mmr 最大边际相关性，hybrid 向量与关键词检索的倒数排名融合
+     */
     private String searchType = "similarity";
 
+    /**
+     * mmr 与 hybrid 模式下每路召回的候选数
+     */
+    private int fetchK = 20;
+
+    /**
+     * mmr 模式下的相关性权重，1 为纯相关性，0 为纯多样性
+     */
+    private double mmrLambda = 0.5d;
+
+    /**
+     * hybrid 模式下倒数排名融合的平滑常数
+     */
+    private int rrfK = 60;
+
     @Override
     public List<Document> getRelevantDocuments(String query, int recommendCount, Double maxDistanceValue, ExecutionContext executionContext) {
         log.info("getRelevantDocuments query:" + query + ", recommendCount:" + recommendCount + ", maxDistanceValue:" + maxDistanceValue);
@@ -55,6 +75,13 @@ public class VectorStoreRetriever extends BaseRetriever {
             List<Document> documents = new ArrayList<>();
             if ("similarity".equals(searchType)) {
                 documents = vectorStore.similaritySearch(query, recommendCount, maxDistanceValue);
+            } else if ("mmr".equals(searchType)) {
+                documents = vectorStore.maxMarginalRelevanceSearch(query, recommendCount, fetchK, mmrLambda, maxDistanceValue);
+            } else if ("hybrid".equals(searchType)) {
+                int candidateCount = Math.max(recommendCount, fetchK);
+                List<Document> vectorResults = vectorStore.similaritySearch(query, candidateCount, maxDistanceValue);
+                List<Document> keywordResults = vectorStore.keywordSearch(query, candidateCount);
+                documents = reciprocalRankFusion(Arrays.asList(vectorResults, keywordResults), recommendCount, rrfK);
             }
 
             onRetrieverEnd(this, inputs, documents, executionContext);
@@ -66,6 +93,41 @@ public class VectorStoreRetriever extends BaseRetriever {
         }
     }
 
+    /**
+     * 倒数排名融合：文档得分为其在各路结果中 1 / (rrfK + rank) 之和，rank 从 1 开始。
+     * 文档按 uniqueId 识别，没有 uniqueId 时按内容识别；返回文档的 score 为融合得分。
+     *
+     * @param rankings 各路按相关性降序的结果
+     * @param k        返回数量
+     * @param rrfK     平滑常数
+     * @return
+     */
+    public static List<Document> reciprocalRankFusion(List<List<Document>> rankings, int k, int rrfK) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        for (List<Document> ranking : rankings) {
+            if (ranking == null) {
+                continue;
+            }
+            for (int i = 0; i < ranking.size(); i++) {
+                Document document = ranking.get(i);
+                String key = document.getUniqueId() != null ? document.getUniqueId() : document.getPageContent();
+                documents.putIfAbsent(key, document);
+                scores.merge(key, 1.0d / (rrfK + i + 1), Double::sum);
+            }
+        }
+        List<String> keys = new ArrayList<>(documents.keySet());
+        // 稳定排序，同分时保持首次出现的顺序
+        keys.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        List<Document> result = new ArrayList<>();
+        for (String key : keys.subList(0, Math.min(k, keys.size()))) {
+            Document document = documents.get(key);
+            document.setScore(scores.get(key));
+            result.add(document);
+        }
+        return result;
+    }
+
     /**
      * Add documents to vectorstore.
      *
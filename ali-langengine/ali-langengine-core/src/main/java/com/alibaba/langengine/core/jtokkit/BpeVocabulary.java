@@ -0,0 +1,499 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.jtokkit;
+
+import static com.alibaba.langengine.core.jtokkit.TokenEncoder.MAX_RANK;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A precompiled, read-only BPE vocabulary which is memory-mapped instead of parsed.
+ * <p>
+ * The {@code .tiktoken} text resources are compiled at build time into {@code .bpe} files next to them. Lookups run
+ * directly against the mapped buffer, so loading an encoding costs neither Base64 decoding nor boxed hash tables.
+ * When no precompiled file is on the classpath, the text resource is compiled once into the cache directory
+ * ({@value #CACHE_DIR_KEY}, defaults to {@code java.io.tmpdir/jtokkit-<user.name>}) and mapped from there; precompiled
+ * files inside a jar are extracted there as well. The directory must be private to the current user. Cache files are
+ * named after the SHA-256 of their source and verified against a digest file before they are mapped; if the directory
+ * cannot be used or verification fails after rewriting, the vocabulary is kept in a direct buffer instead.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * int magic, version, tokenCount, slotCount, rankCount, blobLength
+ * int[slotCount]      open addressing hash table, token index + 1 (0 = empty)
+ * int[tokenCount]     rank of each token
+ * int[tokenCount + 1] offset of each token in the blob
+ * int[rankCount]      token index + 1 of each rank (0 = unused rank)
+ * byte[blobLength]    token bytes
+ * </pre>
+ */
+final class BpeVocabulary {
+    static final String CACHE_DIR_KEY = "jtokkit.vocabulary.cacheDir";
+    static final String BINARY_SUFFIX = ".bpe";
+    static final String TEXT_SUFFIX = ".tiktoken";
+    static final String DIGEST_SUFFIX = ".sha256";
+
+    private static final int MAGIC = 0x4A544B42; // "JTKB"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int tokenCount;
+    private final int slotMask;
+    private final int rankCount;
+    private final int slotsOffset;
+    private final int ranksOffset;
+    private final int offsetsOffset;
+    private final int rankIndexOffset;
+    private final int blobOffset;
+
+    private BpeVocabulary(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not a BPE vocabulary (version " + VERSION + ")");
+        }
+        this.buffer = buffer;
+        this.tokenCount = buffer.getInt(8);
+        int slotCount = buffer.getInt(12);
+        this.slotMask = slotCount - 1;
+        this.rankCount = buffer.getInt(16);
+        int blobLength = buffer.getInt(20);
+
+        this.slotsOffset = HEADER_BYTES;
+        this.ranksOffset = slotsOffset + slotCount * Integer.BYTES;
+        this.offsetsOffset = ranksOffset + tokenCount * Integer.BYTES;
+        this.rankIndexOffset = offsetsOffset + (tokenCount + 1) * Integer.BYTES;
+        this.blobOffset = rankIndexOffset + rankCount * Integer.BYTES;
+        if ((slotCount & slotMask) != 0 || blobOffset + blobLength != buffer.capacity()) {
+            throw new IllegalStateException("Corrupt BPE vocabulary");
+        }
+    }
+
+    /**
+     * Returns the number of tokens in this vocabulary.
+     *
+     * @return the number of tokens
+     */
+    int size() {
+        return tokenCount;
+    }
+
+    /**
+     * Looks up the rank of the bytes of piece from start (inclusive) to end (exclusive) without copying them.
+     *
+     * @return the rank, or {@link TokenEncoder#MAX_RANK} if the bytes are not a token
+     */
+    int rank(ByteArrayWrapper piece, int start, int end) {
+        int length = end - start;
+        for (int slot = hash(piece, start, end) & slotMask; ; slot = (slot + 1) & slotMask) {
+            int index = buffer.getInt(slotsOffset + slot * Integer.BYTES) - 1;
+            if (index < 0) {
+                return MAX_RANK;
+            }
+            int from = tokenOffset(index);
+            if (tokenOffset(index + 1) - from == length && bytesEqual(piece, start, from, length)) {
+                return buffer.getInt(ranksOffset + index * Integer.BYTES);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the bytes of the given rank.
+     *
+     * @return the token bytes, or {@code null} if the rank is unknown
+     */
+    byte[] decode(int rank) {
+        if (rank < 0 || rank >= rankCount) {
+            return null;
+        }
+        int index = buffer.getInt(rankIndexOffset + rank * Integer.BYTES) - 1;
+        if (index < 0) {
+            return null;
+        }
+        int from = tokenOffset(index);
+        byte[] result = new byte[tokenOffset(index + 1) - from];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = buffer.get(blobOffset + from + i);
+        }
+        return result;
+    }
+
+    private int tokenOffset(int index) {
+        return buffer.getInt(offsetsOffset + index * Integer.BYTES);
+    }
+
+    private boolean bytesEqual(ByteArrayWrapper piece, int start, int from, int length) {
+        int position = blobOffset + from;
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(position + i) != piece.getByte(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(ByteArrayWrapper piece, int start, int end) {
+        int h = 0x811C9DC5;
+        for (int i = start; i < end; i++) {
+            h = (h ^ (piece.getByte(i) & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Loads the vocabulary of the given {@code .tiktoken} resource, preferring its precompiled {@code .bpe} sibling.
+     *
+     * @param textResource the classpath resource of the text vocabulary, e.g. {@code /jtokkit/qwen.tiktoken}
+     * @return the memory-mapped vocabulary
+     */
+    static BpeVocabulary load(String textResource) {
+        String baseName = textResource.endsWith(TEXT_SUFFIX)
+                ? textResource.substring(0, textResource.length() - TEXT_SUFFIX.length())
+                : textResource;
+        try {
+            URL binary = BpeVocabulary.class.getResource(baseName + BINARY_SUFFIX);
+            if (binary != null) {
+                try {
+                    return new BpeVocabulary(mapResource(binary));
+                } catch (IllegalStateException e) {
+                    // damaged precompiled file, compile the text resource instead
+                }
+            }
+            URL text = BpeVocabulary.class.getResource(textResource);
+            if (text == null) {
+                throw new IllegalStateException("Could not find " + textResource + " in resources");
+            }
+            return new BpeVocabulary(mapCompiled(textResource, text));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load " + textResource + " from resources", e);
+        }
+    }
+
+    /**
+     * Compiles the given ranks into an in-memory vocabulary.
+     *
+     * @param mergeableRanks the token bytes and their ranks
+     * @return the vocabulary, backed by a direct buffer
+     */
+    static BpeVocabulary compile(Map<byte[], Integer> mergeableRanks) {
+        return new BpeVocabulary(toBuffer(mergeableRanks, true));
+    }
+
+    private static ByteBuffer toBuffer(Map<byte[], Integer> mergeableRanks, boolean direct) {
+        int tokenCount = mergeableRanks.size();
+        int slotCount = Integer.highestOneBit(Math.max(tokenCount, 1) * 2 - 1) << 1; // load factor <= 0.5
+        int rankCount = 0;
+        long blobLength = 0;
+        for (Map.Entry<byte[], Integer> entry : mergeableRanks.entrySet()) {
+            rankCount = Math.max(rankCount, entry.getValue() + 1);
+            blobLength += entry.getKey().length;
+        }
+        long size = HEADER_BYTES + (long) (slotCount + tokenCount + tokenCount + 1 + rankCount) * Integer.BYTES + blobLength;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Vocabulary too large: " + size + " bytes");
+        }
+
+        byte[][] tokens = new byte[tokenCount][];
+        int[] ranks = new int[tokenCount];
+        int[] slots = new int[slotCount];
+        int[] rankIndex = new int[rankCount];
+        int index = 0;
+        for (Map.Entry<byte[], Integer> entry : mergeableRanks.entrySet()) {
+            byte[] token = entry.getKey();
+            ByteArrayWrapper wrapper = new ByteArrayWrapper(token);
+            int slot = hash(wrapper, 0, token.length) & (slotCount - 1);
+            while (slots[slot] != 0 && !Arrays.equals(tokens[slots[slot] - 1], token)) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            if (slots[slot] != 0) {
+                // duplicated bytes, the later rank wins as in the map based encoder
+                ranks[slots[slot] - 1] = entry.getValue();
+            } else {
+                tokens[index] = token;
+                ranks[index] = entry.getValue();
+                slots[slot] = ++index;
+            }
+            rankIndex[entry.getValue()] = slots[slot];
+        }
+        tokenCount = index;
+
+        int used = HEADER_BYTES + (slotCount + tokenCount + tokenCount + 1 + rankCount) * Integer.BYTES;
+        int blob = 0;
+        for (int i = 0; i < tokenCount; i++) {
+            blob += tokens[i].length;
+        }
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(used + blob) : ByteBuffer.allocate(used + blob);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(tokenCount).putInt(slotCount).putInt(rankCount).putInt(blob);
+        for (int slot : slots) {
+            buffer.putInt(slot);
+        }
+        for (int i = 0; i < tokenCount; i++) {
+            buffer.putInt(ranks[i]);
+        }
+        for (int i = 0, offset = 0; i <= tokenCount; i++) {
+            buffer.putInt(offset);
+            if (i < tokenCount) {
+                offset += tokens[i].length;
+            }
+        }
+        for (int i : rankIndex) {
+            buffer.putInt(i);
+        }
+        for (int i = 0; i < tokenCount; i++) {
+            buffer.put(tokens[i]);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static void write(Map<byte[], Integer> mergeableRanks, Path target) throws IOException {
+        ByteBuffer buffer = toBuffer(mergeableRanks, false);
+        writeAtomically(target, buffer.array());
+    }
+
+    private static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static ByteBuffer mapResource(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return mapFile(Paths.get(url.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        // packaged in a jar: extract once into the cache directory, then map the extracted copy
+        byte[] bytes = readAll(url);
+        String fileName = url.getPath().substring(url.getPath().lastIndexOf('/') + 1);
+        Path cached = cacheFile(fileName, sha256(ByteBuffer.wrap(bytes)));
+        ByteBuffer buffer = cached == null ? null : mapCached(cached, bytes);
+        return buffer != null ? buffer : directBuffer(bytes);
+    }
+
+    static ByteBuffer mapCompiled(String textResource, URL text) throws IOException {
+        String fileName = textResource.substring(textResource.lastIndexOf('/') + 1);
+        Path cached = cacheFile(fileName, sha256(ByteBuffer.wrap(readAll(text))));
+        if (cached != null) {
+            ByteBuffer buffer = mapVerified(cached);
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        byte[] compiled = toBuffer(EncodingFactory.loadMergeableRanks(textResource), false).array();
+        ByteBuffer buffer = cached == null ? null : mapCached(cached, compiled);
+        return buffer != null ? buffer : directBuffer(compiled);
+    }
+
+    /**
+     * Maps the cached file if it holds exactly the given content, otherwise (re)writes it first.
+     *
+     * @return the mapped file, or {@code null} if the cache directory cannot be used
+     */
+    private static ByteBuffer mapCached(Path cached, byte[] content) {
+        ByteBuffer buffer = mapVerified(cached);
+        if (buffer != null && buffer.equals(ByteBuffer.wrap(content))) {
+            return buffer;
+        }
+        try {
+            // the digest goes first: a crash in between leaves a file that fails verification, not a trusted one
+            writeAtomically(digestFile(cached), hex(sha256(ByteBuffer.wrap(content))).getBytes(StandardCharsets.US_ASCII));
+            writeAtomically(cached, content);
+        } catch (IOException e) {
+            return null;
+        }
+        return mapVerified(cached);
+    }
+
+    /**
+     * Maps the cached file if its content matches the digest written next to it and it is a well-formed vocabulary.
+     *
+     * @return the mapped file, or {@code null} if it is missing, truncated, corrupt or modified
+     */
+    private static ByteBuffer mapVerified(Path cached) {
+        try {
+            Path digest = digestFile(cached);
+            if (!Files.isRegularFile(cached) || !Files.isRegularFile(digest)) {
+                return null;
+            }
+            String expected = new String(Files.readAllBytes(digest), StandardCharsets.US_ASCII).trim();
+            ByteBuffer buffer = mapFile(cached);
+            if (!expected.equals(hex(sha256(buffer.duplicate())))) {
+                return null;
+            }
+            new BpeVocabulary(buffer);
+            return buffer;
+        } catch (IOException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cache file for the given source, named after the SHA-256 of the source content, or {@code null} if
+     * no cache directory private to the current user is available.
+     */
+    private static Path cacheFile(String fileName, byte[] sourceDigest) {
+        try {
+            String dir = System.getProperty(CACHE_DIR_KEY,
+                    System.getProperty("java.io.tmpdir") + File.separator + "jtokkit-" + System.getProperty("user.name"));
+            Path cacheDir = Paths.get(dir).toAbsolutePath();
+            createPrivateDirectory(cacheDir);
+            checkPrivate(cacheDir);
+            int dot = fileName.lastIndexOf('.');
+            String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+            return cacheDir.resolve(baseName + "-v" + VERSION + "-" + hex(sourceDigest) + BINARY_SUFFIX);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static Path digestFile(Path cached) {
+        return cached.resolveSibling(cached.getFileName() + DIGEST_SUFFIX);
+    }
+
+    private static void createPrivateDirectory(Path dir) throws IOException {
+        if (Files.isDirectory(dir)) {
+            return;
+        }
+        Files.createDirectories(dir.getParent());
+        try {
+            Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createDirectory(dir);
+        } catch (FileAlreadyExistsException ignored) {
+            // created concurrently, checked below like any existing directory
+        }
+    }
+
+    /**
+     * Refuses directories that another user could write to: the directory must be owned by the current user and
+     * must not grant any permission to group or others.
+     */
+    private static void checkPrivate(Path dir) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(dir, PosixFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        PosixFileAttributes attributes = view.readAttributes();
+        Path probe = Files.createTempFile(dir, "owner", ".tmp");
+        UserPrincipal self;
+        try {
+            self = Files.getOwner(probe);
+        } finally {
+            Files.deleteIfExists(probe);
+        }
+        if (!attributes.owner().equals(self)) {
+            throw new IOException("Vocabulary cache directory " + dir + " is not owned by " + self.getName());
+        }
+        for (PosixFilePermission permission : attributes.permissions()) {
+            if (permission.name().startsWith("GROUP_") || permission.name().startsWith("OTHERS_")) {
+                throw new IOException("Vocabulary cache directory " + dir + " is accessible to group or others");
+            }
+        }
+    }
+
+    private static byte[] readAll(URL url) throws IOException {
+        try (InputStream in = url.openStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static ByteBuffer directBuffer(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    private static byte[] sha256(ByteBuffer content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(content);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static ByteBuffer mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Build time entry point: compiles every {@code .tiktoken} file in the given directory into a {@code .bpe} file.
+     *
+     * @param args the resource directory, e.g. {@code target/classes/jtokkit}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: BpeVocabulary <vocabulary directory>");
+        }
+        File[] files = new File(args[0]).listFiles((dir, name) -> name.endsWith(TEXT_SUFFIX));
+        if (files == null) {
+            throw new IllegalArgumentException("Not a directory: " + args[0]);
+        }
+        for (File file : files) {
+            String name = file.getName();
+            Path target = file.toPath().resolveSibling(name.substring(0, name.length() - TEXT_SUFFIX.length()) + BINARY_SUFFIX);
+            if (Files.isRegularFile(target) && Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(file.toPath())) >= 0) {
+                continue;
+            }
+            write(EncodingFactory.loadMergeableRanks(file.toPath()), target);
+            System.out.println("Compiled " + name + " -> " + target.getFileName());
+        }
+    }
+}
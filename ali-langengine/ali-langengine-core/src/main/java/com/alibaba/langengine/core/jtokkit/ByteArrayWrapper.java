@@ -40,6 +40,16 @@ class ByteArrayWrapper {
         return array.length;
     }
 
+    /**
+     * Returns the byte at the given index.
+     *
+     * @param index the index of the byte
+     * @return the byte at the given index
+     */
+    byte getByte(int index) {
+        return array[index];
+    }
+
     /**
      * Returns the bytes of this array from startIndex (inclusive) to endIndex (exclusive). The returned array is a copy
      * of the original array.
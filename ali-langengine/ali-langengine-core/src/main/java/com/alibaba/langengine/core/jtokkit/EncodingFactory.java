@@ -26,6 +26,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
@@ -91,7 +93,7 @@ class EncodingFactory {
     static Encoding r50kBase() {
         return from50kParameters(
                 "r50k_base",
-                "/jtokkit/r50k_base.tiktoken",
+                loadTokenEncoder("/jtokkit/r50k_base.tiktoken"),
                 SPECIAL_TOKENS_X50K_BASE
         );
     }
@@ -104,7 +106,7 @@ class EncodingFactory {
     static Encoding p50kBase() {
         return from50kParameters(
                 "p50k_base",
-                "/jtokkit/p50k_base.tiktoken",
+                loadTokenEncoder("/jtokkit/p50k_base.tiktoken"),
                 SPECIAL_TOKENS_X50K_BASE
         );
     }
@@ -117,7 +119,7 @@ class EncodingFactory {
     static Encoding p50kEdit() {
         return from50kParameters(
                 "p50k_edit",
-                "/jtokkit/p50k_base.tiktoken",
+                loadTokenEncoder("/jtokkit/p50k_base.tiktoken"),
                 SPECIAL_TOKENS_P50K_EDIT
         );
     }
@@ -128,17 +130,21 @@ class EncodingFactory {
      * @return an {@link Encoding} instance for the cl100k_base encoding
      */
     static Encoding cl100kBase() {
+        return cl100kBase(loadTokenEncoder("/jtokkit/cl100k_base.tiktoken"));
+    }
+
+    static Encoding cl100kBase(TokenEncoder encoder) {
         // "'(?:[sdmt]|ll|ve|re)|[^\r\n\\p{L}\\p{N}]?+\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]++[\r\n]*|\\s*[\r\n]|\\s+(?!\\S)|\\s+"
-        Map<byte[], Integer> mergeableRanks = loadMergeableRanks("/jtokkit/cl100k_base.tiktoken");
-        GptBytePairEncodingParams params = new GptBytePairEncodingParams("cl100k_base", null, mergeableRanks, SPECIAL_TOKENS_CL100K_BASE);
-        return new Cl100kGptBytePairEncoding(params);
+        return new Cl100kGptBytePairEncoding("cl100k_base", null, encoder, SPECIAL_TOKENS_CL100K_BASE);
     }
 
     static Encoding qwen() {
+        return qwen(loadTokenEncoder("/jtokkit/qwen.tiktoken"));
+    }
+
+    static Encoding qwen(TokenEncoder encoder) {
         Pattern regex = compileRegex("(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+", false);
-        Map<byte[], Integer> mergeableRanks = loadMergeableRanks("/jtokkit/qwen.tiktoken");
-        GptBytePairEncodingParams params = new GptBytePairEncodingParams("qwen", regex, mergeableRanks, SPECIAL_TOKENS_QWEN);
-        return new Cl100kGptBytePairEncoding(params);
+        return new Cl100kGptBytePairEncoding("qwen", regex, encoder, SPECIAL_TOKENS_QWEN);
     }
 
     /**
@@ -151,15 +157,23 @@ class EncodingFactory {
         return new GptBytePairEncoding(parameters);
     }
 
-    private static Encoding from50kParameters(
+    static Encoding from50kParameters(
             String name,
-            String fileName,
+            TokenEncoder encoder,
             Map<String, Integer> specialTokens
     ) {
         Pattern regex = compileRegex("'(?:[sdmt]|ll|ve|re)| ?\\p{L}+| ?\\p{N}+| ?[^\\s\\p{L}\\p{N}]+|\\s+(?!\\S)|\\s+", false);
-        Map<byte[], Integer> mergeableRanks = loadMergeableRanks(fileName);
-        GptBytePairEncodingParams params = new GptBytePairEncodingParams(name, regex, mergeableRanks, specialTokens);
-        return fromParameters(params);
+        return new GptBytePairEncoding(name, regex, encoder, specialTokens);
+    }
+
+    /**
+     * Loads the precompiled, memory-mapped vocabulary of the given {@code .tiktoken} resource.
+     *
+     * @param fileName the text vocabulary resource
+     * @return a {@link TokenEncoder} backed by the binary vocabulary
+     */
+    static TokenEncoder loadTokenEncoder(String fileName) {
+        return new TokenEncoder(BpeVocabulary.load(fileName));
     }
 
     static Pattern compileRegex(String patternString, boolean caseInsensitive) {
@@ -184,29 +198,38 @@ class EncodingFactory {
             if (in == null) {
                 throw new IllegalStateException("Could not find " + fileName + " in resources");
             }
+            return readMergeableRanks(in, fileName);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load " + fileName + " from resources", e);
+        }
+    }
 
-            Map<byte[], Integer> mergeableRanks = new LinkedHashMap<>(); // keep order to optimize collisions
-            BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                int firstSpaceIndex = line.indexOf(' ');
-                assert firstSpaceIndex != -1 : "Invalid line in " + fileName + ": " + line;
+    static Map<byte[], Integer> loadMergeableRanks(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return readMergeableRanks(in, file.toString());
+        }
+    }
 
-                byte[] token = Base64.getDecoder().decode(line.substring(0, firstSpaceIndex).getBytes(UTF_8));
-                int rank = parseInt(line.substring(firstSpaceIndex + 1));
+    private static Map<byte[], Integer> readMergeableRanks(InputStream in, String fileName) throws IOException {
+        Map<byte[], Integer> mergeableRanks = new LinkedHashMap<>(); // keep order to optimize collisions
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int firstSpaceIndex = line.indexOf(' ');
+            assert firstSpaceIndex != -1 : "Invalid line in " + fileName + ": " + line;
 
-                mergeableRanks.put(token, rank);
-            }
+            byte[] token = Base64.getDecoder().decode(line.substring(0, firstSpaceIndex).getBytes(UTF_8));
+            int rank = parseInt(line.substring(firstSpaceIndex + 1));
 
-            return mergeableRanks;
-        } catch (IOException e) {
-            throw new IllegalStateException("Could not load " + fileName + " from resources", e);
+            mergeableRanks.put(token, rank);
         }
+
+        return mergeableRanks;
     }
 
     private static class Cl100kGptBytePairEncoding extends GptBytePairEncoding {
-        Cl100kGptBytePairEncoding(GptBytePairEncodingParams params) {
-            super(params);
+        Cl100kGptBytePairEncoding(String name, Pattern pattern, TokenEncoder encoder, Map<String, Integer> specialTokens) {
+            super(name, pattern, encoder, specialTokens);
         }
 
         @Override
@@ -23,6 +23,7 @@ import com.alibaba.langengine.core.jtokkit.api.IntArrayList;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
 
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,10 +43,14 @@ class GptBytePairEncoding implements Encoding {
      * @param params the parameters to use for the encoding
      */
     GptBytePairEncoding(GptBytePairEncodingParams params) {
-        this.name = params.getName();
-        this.pattern = params.getPattern();
-        this.encoder = new TokenEncoder(params.getEncoder());
-        this.specialEncoder = new SpecialEncoder(params.getSpecialTokensEncoder());
+        this(params.getName(), params.getPattern(), new TokenEncoder(params.getEncoder()), params.getSpecialTokensEncoder());
+    }
+
+    GptBytePairEncoding(String name, Pattern pattern, TokenEncoder encoder, Map<String, Integer> specialTokensEncoder) {
+        this.name = name;
+        this.pattern = pattern;
+        this.encoder = encoder;
+        this.specialEncoder = new SpecialEncoder(specialTokensEncoder);
     }
 
     @Override
@@ -32,10 +32,12 @@ final class TokenEncoder {
     private static final int DUMMY_RANK = MAX_VALUE;
     private final Map<ByteArrayWrapper, Integer>[] encoders;
     private final Map<Integer, byte[]> decoder;
+    private final BpeVocabulary vocabulary;
 
     private int VERY_LARGE_TOKENIZER_BYTE_THRESHOLD;
 
     TokenEncoder(Map<byte[], Integer> encoder) {
+        this.vocabulary = null;
         if (!encoder.isEmpty()) {
             VERY_LARGE_TOKENIZER_BYTE_THRESHOLD = parseInt(System.getProperty(Encoding.VERY_LARGE_TOKENIZER_BYTE_THRESHOLD_KEY, "500"));
             TreeMap<Integer, Map<ByteArrayWrapper, Integer>> tempEncoders = new TreeMap<>();
@@ -56,6 +58,19 @@ final class TokenEncoder {
         }
     }
 
+    /**
+     * Creates an encoder which looks up ranks directly in the given binary vocabulary, without building heap tables.
+     *
+     * @param vocabulary the precompiled vocabulary
+     */
+    TokenEncoder(BpeVocabulary vocabulary) {
+        VERY_LARGE_TOKENIZER_BYTE_THRESHOLD = parseInt(System.getProperty(Encoding.VERY_LARGE_TOKENIZER_BYTE_THRESHOLD_KEY, "500"));
+        //noinspection unchecked
+        this.encoders = new Map[0];
+        this.decoder = emptyMap();
+        this.vocabulary = vocabulary;
+    }
+
     private static int getMinRankIndex(IntArrayList ranks) {
         int minRankIndex = -1;
         int minRank = MAX_RANK;
@@ -197,6 +212,9 @@ final class TokenEncoder {
     }
 
     private int encode(ByteArrayWrapper payload) {
+        if (vocabulary != null) {
+            return vocabulary.rank(payload, 0, payload.length());
+        }
         if (payload.length() < encoders.length) {
             Map<ByteArrayWrapper, Integer> encoder = encoders[payload.length()];
             if (encoder != null) {
@@ -212,12 +230,18 @@ final class TokenEncoder {
     int encode(ByteArrayWrapper piece, int start, int end) {
         if (end > piece.length() || end - start == piece.length()) {
             return MAX_RANK;
+        } else if (vocabulary != null) {
+            return vocabulary.rank(piece, start, end);
         } else {
             return encode(piece.getBytesBetween(start, end));
         }
     }
 
     byte[] decodeToken(int token, SpecialEncoder specialEncoder) {
+        if (vocabulary != null) {
+            byte[] bytes = vocabulary.decode(token);
+            return bytes != null ? bytes : specialEncoder.decodeIfPresent(token);
+        }
         return decoder.computeIfAbsent(token, specialEncoder::decodeIfPresent);
     }
 }
\ No newline at end of file
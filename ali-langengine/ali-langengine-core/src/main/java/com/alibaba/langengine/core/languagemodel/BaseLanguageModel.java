@@ -36,6 +36,7 @@ import com.alibaba.langengine.core.outputs.LLMResult;
 import com.alibaba.langengine.core.prompt.ChatPromptValue;
 import com.alibaba.langengine.core.prompt.PromptValue;
 import com.alibaba.langengine.core.prompt.StringPromptValue;
+import com.alibaba.langengine.core.runnables.CancellationToken;
 import com.alibaba.langengine.core.runnables.Runnable;
 import com.alibaba.langengine.core.runnables.RunnableConfig;
 import com.alibaba.langengine.core.runnables.RunnableInput;
@@ -507,7 +508,12 @@ public abstract class BaseLanguageModel<T> extends Runnable<RunnableInput, Runna
         if(chunkConsumer != null) {
             consumer = t -> chunkConsumer.accept(t);
         }
-        LLMResult llmResult = generatePrompt(promptValueList, functions, stops, (config != null ? config.getExecutionContext() : null), consumer, config != null ? config.getExtraAttributes() : null);
+        // 绑定取消信号，模型内部的 HTTP 调用可以感知取消
+        List<String> finalStops = stops;
+        List<FunctionDefinition> finalFunctions = functions;
+        Consumer<T> finalConsumer = consumer;
+        LLMResult llmResult = CancellationToken.callWith(config, () -> generatePrompt(promptValueList, finalFunctions, finalStops,
+                (config != null ? config.getExecutionContext() : null), finalConsumer, config != null ? config.getExtraAttributes() : null));
         if(llmResult == null
                 || CollectionUtils.isEmpty(llmResult.getGenerations())
                 || CollectionUtils.isEmpty(llmResult.getGenerations().get(0))) {
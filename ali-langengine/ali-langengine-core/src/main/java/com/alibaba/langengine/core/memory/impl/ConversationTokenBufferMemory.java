@@ -15,8 +15,10 @@
  */
 package com.alibaba.langengine.core.memory.impl;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +30,8 @@ import com.alibaba.langengine.core.languagemodel.BaseLanguageModel;
 import com.alibaba.langengine.core.messages.BaseMessage;
 import com.alibaba.langengine.core.messages.MessageConverter;
 import com.alibaba.langengine.core.tokenizers.GPT3Tokenizer;
+import com.alibaba.langengine.core.tokenizers.Tokenizer;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import lombok.Data;
 
@@ -40,6 +44,8 @@ import lombok.Data;
 @Data
 public class ConversationTokenBufferMemory extends BaseChatMemory {
 
+    private static final Tokenizer DEFAULT_TOKENIZER = new GPT3Tokenizer();
+
     private String humanPrefix = "Human";
     private String aiPrefix = "AI";
     private BaseLanguageModel llm;
@@ -48,6 +54,24 @@ public class ConversationTokenBufferMemory extends BaseChatMemory {
 
     private BaseChatMessageHistory chatMemory = new ChatMessageHistory();
 
+    /**
+     * 计算token用的分词器，默认所有实例共享一个
+     */
+    private Tokenizer tokenizer = DEFAULT_TOKENIZER;
+
+    /**
+     * 与buffer中消息一一对应的token数缓存，每条消息只在加入时计算一次
+     */
+    @JsonIgnore
+    private final TokenWindow tokenWindow = new TokenWindow();
+
+    public void setTokenizer(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+        synchronized (tokenWindow) {
+            tokenWindow.clear();
+        }
+    }
+
     public Object getBuffer() {
 
         if (isReturnMessages()) {
@@ -84,24 +108,84 @@ public class ConversationTokenBufferMemory extends BaseChatMemory {
         return map;
     }
 
+    /**
+     * buffer的token数按每条消息的token数之和加上消息间换行符计，与整体分词的结果一致，
+     * 除非消息以空白结尾、与换行符被切成同一个token。
+     */
     @Override
     public void saveContext(Map<String, Object> inputs, Map<String, Object> outputs) {
         super.saveContext(inputs, outputs);
         List<BaseMessage> buffer = getChatMemory().getMessages();
-        GPT3Tokenizer tokenizer = new GPT3Tokenizer();
-        int currBufferLength = tokenizer.getTokenCount(
-            MessageConverter.getBufferString(buffer, getHumanPrefix(), getAiPrefix(), getSystemPrefix(), null, getToolPrefix()));
-
-        while (currBufferLength > maxTokenLimit) {
-            // Calculate the token count of the first message in the buffer
-            int firstBufferLength = tokenizer.getTokenCount(
-                MessageConverter.getBufferString(Arrays.asList(buffer.get(0)), getHumanPrefix(),
-                    getAiPrefix(), getSystemPrefix(), null, getToolPrefix()));
-            // Remove the first message in the buffer
-            buffer.remove(0);
-            // Subtract the token count of the removed message from the total count
-            currBufferLength -= firstBufferLength;
+        synchronized (tokenWindow) {
+            tokenWindow.sync(buffer);
+            int currBufferLength = tokenWindow.tokens + Math.max(0, tokenWindow.nonEmptyMessages - 1);
+
+            int removed = 0;
+            while (currBufferLength > maxTokenLimit && removed < buffer.size()) {
+                // Subtract the cached token count of the first message, the newline separators stay counted
+                currBufferLength -= tokenWindow.removeFirst();
+                removed++;
+            }
+            if (removed > 0) {
+                buffer.subList(0, removed).clear();
+            }
         }
         getChatMemory().setMessages(buffer);
     }
+
+    private int countTokens(BaseMessage message) {
+        return tokenizer.getTokenCount(MessageConverter.getBufferString(Collections.singletonList(message),
+            getHumanPrefix(), getAiPrefix(), getSystemPrefix(), null, getToolPrefix()));
+    }
+
+    private class TokenWindow {
+
+        private final ArrayDeque<BaseMessage> messages = new ArrayDeque<>();
+
+        private final ArrayDeque<Integer> counts = new ArrayDeque<>();
+
+        private int tokens;
+
+        private int nonEmptyMessages;
+
+        /**
+         * 追加buffer中新加入的消息；buffer被外部改动（清空、删除、替换）时整体重建
+         */
+        private void sync(List<BaseMessage> buffer) {
+            int cached = messages.size();
+            if (cached > buffer.size()
+                || (cached > 0 && (!messages.peekFirst().equals(buffer.get(0))
+                    || !messages.peekLast().equals(buffer.get(cached - 1))))) {
+                clear();
+                cached = 0;
+            }
+            for (int i = cached; i < buffer.size(); i++) {
+                BaseMessage message = buffer.get(i);
+                int count = countTokens(message);
+                messages.addLast(message);
+                counts.addLast(count);
+                tokens += count;
+                if (message.getContent() != null) {
+                    nonEmptyMessages++;
+                }
+            }
+        }
+
+        private int removeFirst() {
+            BaseMessage message = messages.pollFirst();
+            int count = counts.pollFirst();
+            tokens -= count;
+            if (message.getContent() != null) {
+                nonEmptyMessages--;
+            }
+            return count;
+        }
+
+        private void clear() {
+            messages.clear();
+            counts.clear();
+            tokens = 0;
+            nonEmptyMessages = 0;
+        }
+    }
 }
\ No newline at end of file
@@ -95,9 +95,10 @@ public abstract class BaseLLM<T extends ChatCompletionRequest> extends BaseLangu
                 }
 
                 if (cache != null) {
+                    List<List<Generation>> cacheVals = cache.get(prompts, llmString);
                     for (int i = 0; i < prompts.size(); i++) {
                         String prompt = prompts.get(i);
-                        List<Generation> cacheVal = cache.get(prompt, llmString);
+                        List<Generation> cacheVal = cacheVals.get(i);
                         if (CollectionUtils.isEmpty(cacheVal)) {
                             cacheVal = cache.get(executionContext, prompt, llmString);
                         }
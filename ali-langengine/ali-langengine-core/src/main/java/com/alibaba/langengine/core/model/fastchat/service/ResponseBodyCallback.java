@@ -24,11 +24,6 @@ import retrofit2.Callback;
 import retrofit2.HttpException;
 import retrofit2.Response;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-
 import com.alibaba.langengine.core.util.JacksonUtils;
 
 /**
@@ -50,9 +45,6 @@ public class ResponseBodyCallback implements Callback<ResponseBody> {
 
     @Override
     public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
-        log.info("ResponseBodyCallback onResponse");
-        BufferedReader reader = null;
-
         try {
             if (!response.isSuccessful()) {
                 HttpException e = new HttpException(response);
@@ -69,54 +61,26 @@ public class ResponseBodyCallback implements Callback<ResponseBody> {
                 }
             }
 
-            InputStream in = response.body().byteStream();
-            reader = new BufferedReader(new InputStreamReader(in));
-            String line;
-            SSE sse = null;
-
-            while (!emitter.isCancelled() && (line = reader.readLine()) != null) {
-//                log.info("stream line is {}", line);
-                if (line.startsWith("data:")) {
-                    String data = line.substring(5).trim();
-                    sse = new SSE(data);
-                } else if (line.equals("") && sse != null) {
+            try (ResponseBody body = response.body()) {
+                SSEDecoder decoder = new SSEDecoder(body.source());
+                SSE sse;
+                while (!emitter.isCancelled() && (sse = decoder.next()) != null) {
                     if (sse.isDone()) {
                         if (emitDone) {
                             emitter.onNext(sse);
                         }
                         break;
                     }
-
                     emitter.onNext(sse);
-                    sse = null;
-                }
-                else {
-                    if (line.startsWith("id:")
-                            || line.startsWith("event:")
-                            || line.startsWith("retry:")
-                            || line.startsWith(":HTTP_STATUS/200")) {
-                        continue;
-                    }
-                    throw new SSEFormatException("Invalid sse format! " + line);
                 }
             }
 
-            log.info("stream emitter onComplete");
+            log.debug("stream emitter onComplete");
             emitter.onComplete();
 
         } catch (Throwable t) {
-            log.info("stream emitter onFailure");
+            log.debug("stream emitter onFailure", t);
             onFailure(call, t);
-        } finally {
-            log.info("stream emitter finally start");
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    // do nothing
-                }
-            }
-            log.info("stream emitter finally end");
         }
     }
 
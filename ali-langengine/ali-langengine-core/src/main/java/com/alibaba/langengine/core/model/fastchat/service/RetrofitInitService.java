@@ -15,6 +15,7 @@
  */
 package com.alibaba.langengine.core.model.fastchat.service;
 
+import com.alibaba.langengine.core.runnables.CancellationToken;
 import com.alibaba.langengine.core.util.JacksonUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
@@ -39,7 +40,10 @@ import java.io.IOException;
 import java.net.Proxy;
 import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -185,8 +189,14 @@ public abstract class RetrofitInitService<T> {
     }
 
     public static Flowable<SSE> stream(Call<ResponseBody> apiCall, boolean emitDone) {
-        return Flowable.create(emitter -> apiCall.enqueue(new ResponseBodyCallback(emitter, emitDone)),
-            BackpressureStrategy.BUFFER);
+        CancellationToken token = CancellationToken.current();
+        return Flowable.create(emitter -> {
+            if (token != null) {
+                CancellationToken.Registration registration = token.onCancel(apiCall::cancel);
+                emitter.setCancellable(registration::close);
+            }
+            apiCall.enqueue(new ResponseBodyCallback(emitter, emitDone));
+        }, BackpressureStrategy.BUFFER);
     }
 
     public static <T> Flowable<T> stream(Call<ResponseBody> apiCall, Class<T> cl) {
@@ -201,7 +211,9 @@ public abstract class RetrofitInitService<T> {
 
     public static <T> T execute(Single<T> apiCall) {
         try {
-            return apiCall.blockingGet();
+            return blockingGet(apiCall);
+        } catch (CancellationException e) {
+            throw e;
         } catch (HttpException e) {
             if (e.response() == null || e.response().errorBody() == null) {
                 throw e;
@@ -221,6 +233,23 @@ public abstract class RetrofitInitService<T> {
         }
     }
 
+    /**
+     * 当前线程绑定了取消信号时，取消会释放等待并中止 HTTP 请求
+     */
+    private static <T> T blockingGet(Single<T> apiCall) throws Throwable {
+        CancellationToken token = CancellationToken.current();
+        if (token == null) {
+            return apiCall.blockingGet();
+        }
+        token.throwIfCancelled();
+        Future<T> future = apiCall.toFuture();
+        try (CancellationToken.Registration ignored = token.onCancel(() -> future.cancel(true))) {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
     public OkHttpClient defaultClient(Duration timeout, Proxy proxy) {
         OkHttpClient.Builder builder = new OkHttpClient.Builder()
                 .proxy(Proxy.NO_PROXY)
@@ -15,6 +15,8 @@
  */
 package com.alibaba.langengine.core.model.fastchat.service;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Server-Sent Events规范
  *
@@ -23,18 +25,64 @@ package com.alibaba.langengine.core.model.fastchat.service;
 public class SSE {
     private static final String DONE_DATA = "[DONE]";
 
+    private static final String DEFAULT_EVENT = "message";
+
     private final String data;
 
+    private final String event;
+
+    private final String id;
+
+    private final Long retry;
+
     public SSE(String data){
+        this(data, null, null, null);
+    }
+
+    public SSE(String data, String event, String id, Long retry){
         this.data = data;
+        this.event = event;
+        this.id = id;
+        this.retry = retry;
     }
 
     public String getData(){
         return this.data;
     }
 
+    /**
+     * 事件类型，未指定时为message
+     */
+    public String getEvent(){
+        return this.event != null ? this.event : DEFAULT_EVENT;
+    }
+
+    /**
+     * 最近一次收到的id，没有则为null
+     */
+    public String getId(){
+        return this.id;
+    }
+
+    /**
+     * 服务端建议的重连间隔，单位毫秒，没有则为null
+     */
+    public Long getRetry(){
+        return this.retry;
+    }
+
     public byte[] toBytes(){
-        return String.format("data: %s\n\n", this.data).getBytes();
+        StringBuilder builder = new StringBuilder();
+        if (this.event != null) {
+            builder.append("event: ").append(this.event).append('\n');
+        }
+        if (this.id != null) {
+            builder.append("id: ").append(this.id).append('\n');
+        }
+        for (String line : this.data.split("\n", -1)) {
+            builder.append("data: ").append(line).append('\n');
+        }
+        return builder.append('\n').toString().getBytes(StandardCharsets.UTF_8);
     }
 
     public boolean isDone(){
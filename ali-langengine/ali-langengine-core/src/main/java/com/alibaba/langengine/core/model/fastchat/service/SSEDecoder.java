@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.model.fastchat.service;
+
+import okio.BufferedSource;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Server-Sent Events解码器，按https://html.spec.whatwg.org/multipage/server-sent-events.html#event-stream-interpretation 解析
+ *
+ * 直接在字节上切分行和字段，行缓冲与data缓冲复用，每个事件只做一次UTF-8解码，
+ * 因此多字节字符被拆在两个网络包之间也能正确解码。
+ * 支持data/event/id/retry字段、注释行、多行data以及CR、LF、CRLF三种换行，未知字段按规范忽略。
+ * 非线程安全，一个实例对应一条流。
+ *
+ * @author xiaoxuan.lp
+ */
+public class SSEDecoder {
+
+    private static final ByteString LINE_TERMINATORS = ByteString.encodeUtf8("\r\n");
+
+    private static final ByteString BOM = ByteString.decodeHex("efbbbf");
+
+    private static final byte[] DATA = ascii("data");
+
+    private static final byte[] EVENT = ascii("event");
+
+    private static final byte[] ID = ascii("id");
+
+    private static final byte[] RETRY = ascii("retry");
+
+    private final BufferedSource source;
+
+    private byte[] line = new byte[256];
+
+    private byte[] data = new byte[1024];
+
+    private int dataLength;
+
+    private String eventType;
+
+    private String lastEventId;
+
+    private Long retry;
+
+    /**
+     * 上一行以CR结束，下一行开头的LF属于同一个换行
+     */
+    private boolean skipLf;
+
+    private boolean started;
+
+    public SSEDecoder(BufferedSource source) {
+        this.source = source;
+    }
+
+    /**
+     * 读取下一个事件，流结束时返回null；流末尾没有以空行结束的事件按规范丢弃
+     */
+    public SSE next() throws IOException {
+        if (!started) {
+            started = true;
+            if (source.rangeEquals(0, BOM)) {
+                source.skip(BOM.size());
+            }
+        }
+        while (true) {
+            if (skipLf) {
+                skipLf = false;
+                if (source.request(1) && source.getBuffer().getByte(0) == '\n') {
+                    source.skip(1);
+                }
+            }
+            long end = source.indexOfElement(LINE_TERMINATORS);
+            if (end == -1) {
+                return null;
+            }
+            int length = readLine(end);
+            skipLf = source.readByte() == '\r';
+            if (length == 0) {
+                SSE sse = dispatch();
+                if (sse != null) {
+                    return sse;
+                }
+            } else {
+                processField(length);
+            }
+        }
+    }
+
+    private int readLine(long end) throws IOException {
+        if (end > Integer.MAX_VALUE - 8) {
+            throw new IOException("sse line too long: " + end);
+        }
+        int length = (int) end;
+        if (line.length < length) {
+            line = new byte[Math.max(length, line.length * 2)];
+        }
+        int offset = 0;
+        while (offset < length) {
+            offset += source.read(line, offset, length - offset);
+        }
+        return length;
+    }
+
+    private void processField(int length) {
+        if (line[0] == ':') {
+            // 注释
+            return;
+        }
+        int colon = 0;
+        while (colon < length && line[colon] != ':') {
+            colon++;
+        }
+        int valueStart = colon < length ? colon + 1 : length;
+        if (valueStart < length && line[valueStart] == ' ') {
+            valueStart++;
+        }
+
+        if (fieldIs(DATA, colon)) {
+            appendData(valueStart, length);
+        } else if (fieldIs(EVENT, colon)) {
+            eventType = utf8(valueStart, length);
+        } else if (fieldIs(ID, colon)) {
+            if (indexOf((byte) 0, valueStart, length) < 0) {
+                lastEventId = utf8(valueStart, length);
+            }
+        } else if (fieldIs(RETRY, colon)) {
+            Long value = parseRetry(valueStart, length);
+            if (value != null) {
+                retry = value;
+            }
+        }
+    }
+
+    private SSE dispatch() {
+        if (dataLength == 0) {
+            eventType = null;
+            return null;
+        }
+        // 去掉最后一个data行追加的LF
+        SSE sse = new SSE(new String(data, 0, dataLength - 1, StandardCharsets.UTF_8), eventType, lastEventId, retry);
+        dataLength = 0;
+        eventType = null;
+        return sse;
+    }
+
+    private void appendData(int from, int to) {
+        int size = to - from;
+        int required = dataLength + size + 1;
+        if (data.length < required) {
+            byte[] grown = new byte[Math.max(required, data.length * 2)];
+            System.arraycopy(data, 0, grown, 0, dataLength);
+            data = grown;
+        }
+        System.arraycopy(line, from, data, dataLength, size);
+        dataLength += size;
+        data[dataLength++] = '\n';
+    }
+
+    private boolean fieldIs(byte[] name, int nameLength) {
+        if (name.length != nameLength) {
+            return false;
+        }
+        for (int i = 0; i < nameLength; i++) {
+            if (line[i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Long parseRetry(int from, int to) {
+        if (from == to || to - from > 18) {
+            return null;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            if (line[i] < '0' || line[i] > '9') {
+                return null;
+            }
+            value = value * 10 + (line[i] - '0');
+        }
+        return value;
+    }
+
+    private String utf8(int from, int to) {
+        return new String(line, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
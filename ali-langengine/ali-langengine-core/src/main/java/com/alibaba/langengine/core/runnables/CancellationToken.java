@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.runnables;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Cooperative cancellation signal, passed to child runnables through {@link RunnableConfig#getCancellationToken()}.
+ *
+ * Runnables check {@link #throwIfCancelled()} between units of work; blocking calls such as HTTP requests
+ * register an {@link #onCancel(java.lang.Runnable) onCancel} callback that aborts them. A child token is
+ * cancelled together with its parent, but cancelling a child leaves the parent untouched.
+ *
+ * Code that has no access to the config (e.g. an HTTP client deep inside a model) reads the token bound to
+ * the current thread with {@link #current()}.
+ *
+ * @author xiaoxuan.lp
+ */
+@Slf4j
+public final class CancellationToken {
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private final Object lock = new Object();
+
+    private List<java.lang.Runnable> callbacks = new ArrayList<>();
+
+    private volatile boolean cancelled;
+
+    private volatile String reason;
+
+    private final Registration parentRegistration;
+
+    public CancellationToken() {
+        this(null);
+    }
+
+    private CancellationToken(CancellationToken parent) {
+        parentRegistration = parent == null ? Registration.NONE : parent.onCancel(() -> cancel(parent.getReason()));
+    }
+
+    /**
+     * A new token that is cancelled when the parent is; a null parent gives an independent token.
+     */
+    public static CancellationToken childOf(CancellationToken parent) {
+        return new CancellationToken(parent);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void cancel() {
+        cancel("cancelled");
+    }
+
+    /**
+     * Cancel the token and run the registered callbacks on the calling thread. Later calls are ignored.
+     */
+    public void cancel(String reason) {
+        List<java.lang.Runnable> toRun;
+        synchronized (lock) {
+            if (cancelled) {
+                return;
+            }
+            this.reason = reason;
+            cancelled = true;
+            toRun = callbacks;
+            callbacks = null;
+        }
+        for (java.lang.Runnable callback : toRun) {
+            try {
+                callback.run();
+            } catch (Throwable e) {
+                log.warn("CancellationToken callback error", e);
+            }
+        }
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException(reason);
+        }
+    }
+
+    /**
+     * Run the callback once the token is cancelled, immediately if it already is. Close the returned
+     * registration when the guarded work is over so that long-lived tokens do not pile up callbacks.
+     */
+    public Registration onCancel(java.lang.Runnable callback) {
+        synchronized (lock) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (lock) {
+                        if (callbacks != null) {
+                            callbacks.remove(callback);
+                        }
+                    }
+                };
+            }
+        }
+        callback.run();
+        return Registration.NONE;
+    }
+
+    /**
+     * Stop following the parent token, once the work guarded by this token is finished.
+     */
+    public void detach() {
+        parentRegistration.close();
+    }
+
+    public static void throwIfCancelled(RunnableConfig config) {
+        if (config != null && config.getCancellationToken() != null) {
+            config.getCancellationToken().throwIfCancelled();
+        }
+    }
+
+    /**
+     * Fail if the config's token is already cancelled, otherwise run the call with the token bound to the
+     * current thread.
+     */
+    public static <T> T callWith(RunnableConfig config, Supplier<T> call) {
+        CancellationToken token = config != null ? config.getCancellationToken() : null;
+        if (token == null) {
+            return call.get();
+        }
+        token.throwIfCancelled();
+        try (Registration ignored = bind(token)) {
+            return call.get();
+        }
+    }
+
+    /**
+     * The token bound to the current thread, or null.
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind the token to the current thread until the returned registration is closed. A null token leaves
+     * the current binding as is.
+     */
+    public static Registration bind(CancellationToken token) {
+        if (token == null) {
+            return Registration.NONE;
+        }
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(token);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public interface Registration extends AutoCloseable {
+
+        Registration NONE = () -> { };
+
+        @Override
+        void close();
+    }
+}
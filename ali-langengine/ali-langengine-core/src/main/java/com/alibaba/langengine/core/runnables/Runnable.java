@@ -59,7 +59,7 @@ public abstract class Runnable<Input, Output> implements RunnableInterface<Input
     }
 
     public  CompletableFuture<Output> invokeAsync(Input input, RunnableConfig config) {
-        return CompletableFuture.supplyAsync(() -> invoke(input, config));
+        return CompletableFuture.supplyAsync(() -> CancellationToken.callWith(config, () -> invoke(input, config)));
     }
 
     public List<Output> batch(List<Input> inputs) {
@@ -120,7 +120,7 @@ public abstract class Runnable<Input, Output> implements RunnableInterface<Input
     }
 
     public CompletableFuture<Output> streamAsync(Input input, RunnableConfig config, Consumer<Object> chunkConsumer) {
-        return CompletableFuture.supplyAsync(() -> stream(input, config, chunkConsumer));
+        return CompletableFuture.supplyAsync(() -> CancellationToken.callWith(config, () -> stream(input, config, chunkConsumer)));
     }
 
     public CompletableFuture<Output> streamLogAsync(Input input, Consumer<Object> chunkConsumer) {
@@ -128,7 +128,7 @@ public abstract class Runnable<Input, Output> implements RunnableInterface<Input
     }
 
     public CompletableFuture<Output> streamLogAsync(Input input, RunnableConfig config, Consumer<Object> chunkConsumer) {
-        return CompletableFuture.supplyAsync(() -> streamLog(input, config, chunkConsumer));
+        return CompletableFuture.supplyAsync(() -> CancellationToken.callWith(config, () -> streamLog(input, config, chunkConsumer)));
     }
 
     public RunnableInterface<Input, Output> bind(Map<String, Object> extraAttributes) {
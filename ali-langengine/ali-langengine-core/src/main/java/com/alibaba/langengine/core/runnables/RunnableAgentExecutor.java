@@ -19,10 +19,15 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.langengine.core.agent.AgentAction;
 import com.alibaba.langengine.core.agent.AgentFinish;
+import com.alibaba.langengine.core.agent.AgentIterationLatency;
 import com.alibaba.langengine.core.agent.AgentNextStep;
+import com.alibaba.langengine.core.agent.ParallelToolInvoker;
+import com.alibaba.langengine.core.agent.ToolNameIndex;
 import com.alibaba.langengine.core.agent.semantickernel.skill.SemanticKernelSkill;
+import com.alibaba.langengine.core.callback.ExecutionContext;
 import com.alibaba.langengine.core.tool.BaseTool;
 import com.alibaba.langengine.core.tool.ToolExecuteResult;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
@@ -30,8 +35,10 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * RunnableAgentExecutor
@@ -94,6 +101,28 @@ public class RunnableAgentExecutor extends Runnable<RunnableHashMap, RunnableHas
      */
     private Function<List<BaseTool>, RunnableHashMap> toolPromptTransform;
 
+    /**
+     * 同一轮模型返回多个工具调用时的最大并发数，小于等于1时按顺序执行
+     */
+    private int maxParallelToolCalls = 1;
+
+    /**
+     * 单个工具的执行超时时间（毫秒），为空表示不限制
+     */
+    private Long toolTimeoutMillis;
+
+    /**
+     * 执行工具的线程池，为空时使用默认线程池
+     */
+    @JsonIgnore
+    private transient ExecutorService toolExecutor;
+
+    @JsonIgnore
+    private transient ToolNameIndex toolNameIndex;
+
+    @JsonIgnore
+    private transient ParallelToolInvoker toolInvoker;
+
     public RunnableAgentExecutor(RunnableAgent agent, List<BaseTool> tools) {
         this(agent, tools, null);
     }
@@ -267,6 +296,7 @@ public class RunnableAgentExecutor extends Runnable<RunnableHashMap, RunnableHas
             return agentFinish;
         }
 
+        long llmStart = System.currentTimeMillis();
         if(chunkConsumer != null) {
             if(config != null && config.isStreamLog()) {
                 agentNextStep = agent.streamLog(input, config, chunkConsumer);
@@ -276,6 +306,8 @@ public class RunnableAgentExecutor extends Runnable<RunnableHashMap, RunnableHas
         } else {
             agentNextStep = agent.invoke(input, config);
         }
+        long llmMillis = System.currentTimeMillis() - llmStart;
+        recordIterationLatency(config, llmMillis, 0L, 0);
         if(agentNextStep == null) {
             return null;
         }
@@ -295,16 +327,46 @@ public class RunnableAgentExecutor extends Runnable<RunnableHashMap, RunnableHas
             boolean finished = false;
             AgentFinish agentFinish = new AgentFinish();
 
-            for (AgentAction childAction : agentAction.getActions()) {
+            List<AgentAction> childActions = agentAction.getActions();
+            List<String> toolNames = new ArrayList<>(childActions.size());
+            List<BaseTool> childTools = new ArrayList<>(childActions.size());
+            for (AgentAction childAction : childActions) {
                 String toolName = containToolName(childAction.getTool());
                 if (StringUtils.isEmpty(toolName)) {
                     String error = String.format("Call llm tool_calls is %s, but the toolName is not exists.", childAction.getTool());
                     log.info(error);
                     return returnStoppedResponse(!StringUtils.isEmpty(childAction.getLog()) ? childAction.getLog() : error);
                 }
-                BaseTool tool = nameToToolMap.get(toolName);
+                toolNames.add(toolName);
+                childTools.add(nameToToolMap.get(toolName));
+            }
+
+            long toolStart = System.currentTimeMillis();
+            List<ToolExecuteResult> toolExecuteResults;
+            List<Supplier<ToolExecuteResult>> calls = new ArrayList<>(childActions.size());
+            for (int i = 0; i < childActions.size(); i++) {
+                BaseTool tool = childTools.get(i);
+                String toolInput = childActions.get(i).getToolInput();
+                calls.add(() -> tool.invoke(toolInput, config, chunkConsumer));
+            }
+            ParallelToolInvoker invoker = toolInvoker();
+            if (ParallelToolInvoker.runsInParallel(childActions.size(), maxParallelToolCalls)) {
+                toolExecuteResults = invoker.invokeAll(toolNames, calls);
+            } else {
+                toolExecuteResults = new ArrayList<>(childActions.size());
+                for (int i = 0; i < childActions.size(); i++) {
+                    ToolExecuteResult toolExecuteResult = invoker.invoke(toolNames.get(i), calls.get(i));
+                    toolExecuteResults.add(toolExecuteResult);
+                    if (toolExecuteResult == null || toolExecuteResult.isInterrupted()) {
+                        break;
+                    }
+                }
+            }
+            recordIterationLatency(config, llmMillis, System.currentTimeMillis() - toolStart, toolExecuteResults.size());
 
-                ToolExecuteResult toolExecuteResult = tool.invoke(childAction.getToolInput(), config, chunkConsumer);
+            for (int i = 0; i < toolExecuteResults.size(); i++) {
+                AgentAction childAction = childActions.get(i);
+                ToolExecuteResult toolExecuteResult = toolExecuteResults.get(i);
                 if (toolExecuteResult == null) {
                     log.error("tool invoke response error");
                     return returnStoppedResponse();
@@ -343,7 +405,10 @@ public class RunnableAgentExecutor extends Runnable<RunnableHashMap, RunnableHas
             }
             BaseTool tool = nameToToolMap.get(toolName);
 
-            ToolExecuteResult toolExecuteResult = tool.invoke(agentAction.getToolInput(), config, chunkConsumer);
+            long toolStart = System.currentTimeMillis();
+            ToolExecuteResult toolExecuteResult = toolInvoker().invoke(toolName,
+                    () -> tool.invoke(agentAction.getToolInput(), config, chunkConsumer));
+            recordIterationLatency(config, llmMillis, System.currentTimeMillis() - toolStart, 1);
             if (toolExecuteResult == null) {
                 log.error("tool invoke error");
                 AgentFinish agentFinish = returnStoppedResponse();
@@ -374,8 +439,17 @@ public class RunnableAgentExecutor extends Runnable<RunnableHashMap, RunnableHas
     }
 
     protected String containToolName(String toolName) {
-        if(nameToToolMap.get(toolName) != null) {
-            return toolName;
+        if(toolName == null) {
+            return null;
+        }
+        ToolNameIndex index = toolNameIndex;
+        if(index == null || !index.isIndexOf(nameToToolMap)) {
+            index = new ToolNameIndex(nameToToolMap);
+            toolNameIndex = index;
+        }
+        String indexedKey = index.resolve(toolName);
+        if(indexedKey != null) {
+            return indexedKey;
         }
 
         for (Map.Entry<String, BaseTool> entry : nameToToolMap.entrySet()) {
@@ -387,4 +461,37 @@ public class RunnableAgentExecutor extends Runnable<RunnableHashMap, RunnableHas
         return null;
     }
 
+    /**
+     * 按当前配置取工具执行器，并发名额在同一配置的多轮之间共享
+     */
+    private ParallelToolInvoker toolInvoker() {
+        ParallelToolInvoker invoker = toolInvoker;
+        if(invoker == null || !invoker.isConfiguredWith(toolExecutor, maxParallelToolCalls, toolTimeoutMillis)) {
+            invoker = new ParallelToolInvoker(toolExecutor, maxParallelToolCalls, toolTimeoutMillis);
+            toolInvoker = invoker;
+        }
+        return invoker;
+    }
+
+    /**
+     * 记录当前迭代的耗时拆分到config的ExecutionContext中，同一轮工具执行完成后覆盖只包含LLM耗时的记录
+     */
+    private void recordIterationLatency(RunnableConfig config, long llmMillis, long toolMillis, int toolCount) {
+        if(config == null || config.getExecutionContext() == null) {
+            return;
+        }
+        ExecutionContext executionContext = config.getExecutionContext();
+        List<AgentIterationLatency> latencies = executionContext.getIterationLatencies();
+        if(latencies == null) {
+            latencies = new ArrayList<>();
+            executionContext.setIterationLatencies(latencies);
+        }
+        int iteration = latencies.size();
+        if(toolCount > 0 && iteration > 0) {
+            iteration -= 1;
+            latencies.set(iteration, new AgentIterationLatency(iteration, llmMillis, toolMillis, toolCount));
+            return;
+        }
+        latencies.add(new AgentIterationLatency(iteration, llmMillis, toolMillis, toolCount));
+    }
 }
@@ -78,4 +78,29 @@ public class RunnableConfig {
     private List<AgentAction> asyncFinishedAction;
 
     private boolean asyncInterrupt;
+
+    /**
+     * 协作式取消信号，向下传递给子 runnable 和 HTTP 调用
+     */
+    private CancellationToken cancellationToken;
+
+    /**
+     * 浅拷贝，用于给子 runnable 传递不同的取消信号等
+     */
+    public RunnableConfig copy() {
+        RunnableConfig config = new RunnableConfig();
+        config.setParallelSecondTimeout(parallelSecondTimeout);
+        config.setMetadata(metadata);
+        config.setRunName(runName);
+        config.setMaxConcurrency(maxConcurrency);
+        config.setRecursionLimit(recursionLimit);
+        config.setStreamLog(streamLog);
+        config.setAsync(async);
+        config.setExtraAttributes(extraAttributes);
+        config.setExecutionContext(executionContext);
+        config.setAsyncFinishedAction(asyncFinishedAction);
+        config.setAsyncInterrupt(asyncInterrupt);
+        config.setCancellationToken(cancellationToken);
+        return config;
+    }
 }
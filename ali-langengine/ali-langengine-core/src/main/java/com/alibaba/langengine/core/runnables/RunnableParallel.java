@@ -21,21 +21,47 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 /**
  * Runnable that runs a mapping of Runnables in parallel, and returns a mapping of their outputs.
  *
+ * Branches run with a child of the caller's cancellation token. Once the outcome is decided (the timeout fires,
+ * a branch fails under {@link FailurePolicy#FAIL_FAST}, or the caller cancels) the branches still running are
+ * cancelled and stop at their next cancellation check instead of spending more model calls.
+ *
  * @author xiaoxuan.lp
  */
 @Slf4j
 @Data
 public class RunnableParallel extends Runnable<Object, RunnableHashMap> {
 
+    public enum FailurePolicy {
+        /**
+         * Stop waiting and cancel the other branches as soon as one branch fails.
+         */
+        FAIL_FAST,
+        /**
+         * Let every branch finish or time out before looking at failures.
+         */
+        WAIT_ALL
+    }
+
     private List<RunnableInterface> steps;
 
+    private FailurePolicy failurePolicy = FailurePolicy.FAIL_FAST;
+
+    /**
+     * Return the outputs of the branches that completed, with the others reported in
+     * {@link RunnableParallelResult#getErrors()}, instead of failing the whole invocation.
+     */
+    private boolean returnPartialResults = false;
+
 
     public RunnableParallel(String name, RunnableInterface... steps) {
         setName(name);
@@ -53,48 +79,95 @@ public class RunnableParallel extends Runnable<Object, RunnableHashMap> {
     }
 
     private RunnableHashMap invoke(Object input, RunnableConfig config, Consumer<Object> chunkConsumer) {
+        CancellationToken parent = config != null ? config.getCancellationToken() : null;
+        CancellationToken token = CancellationToken.childOf(parent);
+        // completed when a branch fails under FAIL_FAST or the token is cancelled, to stop waiting early
+        CompletableFuture<Object> interrupted = new CompletableFuture<>();
+        CancellationToken.Registration wakeUp = token.onCancel(() -> interrupted.complete(null));
         try {
-            RunnableHashMap runnableHashMap = new RunnableHashMap();
+            RunnableConfig branchConfig = config != null ? config.copy() : new RunnableConfig();
+            branchConfig.setCancellationToken(token);
 
             List<CompletableFuture<RunnableOutput>> futures = Lists.newArrayList();
             for (RunnableInterface step : getSteps()) {
                 CompletableFuture<RunnableOutput> future;
                 if(chunkConsumer != null) {
-                    if(config != null && config.isStreamLog()) {
-                        future = step.streamLogAsync(input, config, chunkConsumer);
+                    if(branchConfig.isStreamLog()) {
+                        future = step.streamLogAsync(input, branchConfig, chunkConsumer);
                     } else {
-                        future = step.streamAsync(input, config, chunkConsumer);
+                        future = step.streamAsync(input, branchConfig, chunkConsumer);
                     }
                 } else {
-                    future = step.invokeAsync(input, config);
+                    future = step.invokeAsync(input, branchConfig);
+                }
+                if (failurePolicy == FailurePolicy.FAIL_FAST) {
+                    future.whenComplete((output, e) -> {
+                        if (e != null) {
+                            interrupted.complete(null);
+                        }
+                    });
                 }
                 futures.add(future);
             }
 
-            // 使用 allOf 等待所有的 CompletableFuture 完成
             CompletableFuture<Void> allFutures = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+            int timeout = config != null ? config.getParallelSecondTimeout() : 1200;
+            boolean timedOut = false;
+            try {
+                CompletableFuture.anyOf(allFutures, interrupted).get(timeout, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                timedOut = true;
+            } catch (Throwable e) {
+                // a failing branch, looked at below
+            }
 
-            // 阻塞并等待所有 future 完成
-            if(config != null) {
-                allFutures.get(config.getParallelSecondTimeout(), TimeUnit.SECONDS);
-            } else {
-                allFutures.get(1200, TimeUnit.SECONDS);
+            if (!allFutures.isDone()) {
+                token.cancel(timedOut ? "RunnableParallel timed out after " + timeout + "s" : "RunnableParallel interrupted");
+            }
+            if (parent != null && parent.isCancelled()) {
+                throw new CancellationException(parent.getReason());
             }
 
-            int counter = 0;
-            // 之后获取每个 CompletableFuture 的结果
-            for (CompletableFuture<RunnableOutput> future : futures) {
-                RunnableOutput response  = future.get();
-                if(response instanceof RunnableHashMap) {
-                    runnableHashMap.putAll((RunnableHashMap)response);
+            RunnableParallelResult result = new RunnableParallelResult();
+            Throwable failure = null;
+            for (int i = 0; i < futures.size(); i++) {
+                CompletableFuture<RunnableOutput> future = futures.get(i);
+                RunnableInterface step = steps.get(i);
+                Throwable error = null;
+                if (!future.isDone()) {
+                    error = timedOut ? new TimeoutException(token.getReason()) : new CancellationException(token.getReason());
                 } else {
-                    runnableHashMap.put(steps.get(counter++).getName(), response);
+                    try {
+                        RunnableOutput response = future.join();
+                        if(response instanceof RunnableHashMap) {
+                            result.putAll((RunnableHashMap)response);
+                        } else {
+                            result.put(step.getName(), response);
+                        }
+                    } catch (CompletionException e) {
+                        error = e.getCause() != null ? e.getCause() : e;
+                    } catch (CancellationException e) {
+                        error = e;
+                    }
                 }
+                if (error != null) {
+                    result.getErrors().put(step.getName() != null ? step.getName() : String.valueOf(i), error);
+                    // report the branch that failed rather than the ones cancelled because of it
+                    if (failure == null || (failure instanceof CancellationException && !(error instanceof CancellationException))) {
+                        failure = error;
+                    }
+                }
+            }
+            if (failure != null && !returnPartialResults) {
+                throw failure;
             }
-            return runnableHashMap;
+            return result;
         } catch (Throwable e) {
             log.error("RunnableParallel invoke error", e);
             throw new RuntimeException(e.toString());
+        } finally {
+            wakeUp.close();
+            token.detach();
         }
     }
 
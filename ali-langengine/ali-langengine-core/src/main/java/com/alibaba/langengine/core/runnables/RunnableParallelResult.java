@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.runnables;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Output of {@link RunnableParallel}: the outputs of the branches that completed, plus the error of each branch
+ * that failed, timed out or was cancelled when partial results are enabled.
+ *
+ * @author xiaoxuan.lp
+ */
+public class RunnableParallelResult extends RunnableHashMap {
+
+    private final Map<String, Throwable> errors = new LinkedHashMap<>();
+
+    /**
+     * Errors by branch name, or by branch index for unnamed branches.
+     */
+    public Map<String, Throwable> getErrors() {
+        return errors;
+    }
+
+    public boolean isComplete() {
+        return errors.isEmpty();
+    }
+}
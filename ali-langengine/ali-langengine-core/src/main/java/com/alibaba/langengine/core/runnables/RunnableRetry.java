@@ -15,55 +15,245 @@
  */
 package com.alibaba.langengine.core.runnables;
 
+import com.alibaba.langengine.core.runnables.retry.CircuitBreaker;
+import com.alibaba.langengine.core.runnables.retry.CircuitBreakerOpenException;
+import com.alibaba.langengine.core.runnables.retry.CircuitBreakerRegistry;
+import com.alibaba.langengine.core.runnables.retry.RetryBudget;
+import com.alibaba.langengine.core.runnables.retry.RetryScheduler;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Retry a Runnable if it fails.
  *
+ * Retries wait an exponential backoff with full jitter, a random delay in
+ * [0, min(maxIntervalTime, intervalTime * 2^(retry - 1))]. invoke and stream retry on the calling thread;
+ * invokeAsync schedules its attempts on a {@link RetryScheduler} instead of sleeping. When a
+ * {@link RetryBudget} is set, each retry takes a token from it. When circuitBreakerKey is set, attempts go
+ * through the breaker of that key; an open breaker fails with {@link CircuitBreakerOpenException}. Compose with
+ * {@link Runnable#withFallbacks} to answer from other runnables when the breaker is open or all attempts failed.
+ *
  * @author xiaoxuan.lp
  */
 @Slf4j
 @Data
 public class RunnableRetry extends RunnableBinding {
 
+    /**
+     * Maximum number of retries after the first attempt.
+     */
     private int maxAttemptNumber = 3;
+
+    /**
+     * Base backoff in milliseconds.
+     */
     private long intervalTime = 10;
 
+    /**
+     * Upper bound of the backoff in milliseconds.
+     */
+    private long maxIntervalTime = 2000;
+
+    /**
+     * Exception types worth retrying, each with a predicate on the exception. Empty retries every failure.
+     */
+    private Map<Class<? extends Throwable>, Predicate<Throwable>> retryPredicates = new LinkedHashMap<>();
+
+    /**
+     * Limits retries across every caller of this instance, null (the default) does not limit them.
+     */
+    private RetryBudget retryBudget;
+
+    /**
+     * Key of the circuit breaker guarding the bound runnable, null disables circuit breaking.
+     */
+    private String circuitBreakerKey;
+
+    private CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.getDefault();
+
+    private RetryScheduler retryScheduler = RetryScheduler.defaultScheduler();
+
+    private Random random = new Random();
+
+    /**
+     * Retry only failures of the given type, or caused by it.
+     */
+    public RunnableRetry retryOn(Class<? extends Throwable> type) {
+        return retryOn(type, e -> true);
+    }
+
+    /**
+     * Retry failures of the given type, or caused by it, that match the predicate.
+     */
+    public <T extends Throwable> RunnableRetry retryOn(Class<T> type, Predicate<? super T> predicate) {
+        retryPredicates.put(type, e -> predicate.test(type.cast(e)));
+        return this;
+    }
+
     @Override
     public Object invoke(Object input, RunnableConfig config) {
-        return invoke(input, config, 0, null);
+        return retryOnCallerThread(input, config, null);
     }
 
     @Override
     public Object stream(Object o, RunnableConfig config, Consumer chunkConsumer) {
-        return invoke(o, config, 0, chunkConsumer);
+        return retryOnCallerThread(o, config, chunkConsumer);
+    }
+
+    /**
+     * Unlike the default, waits between attempts without occupying a thread.
+     */
+    @Override
+    public CompletableFuture invokeAsync(Object input, RunnableConfig config) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        schedule(() -> attemptAsync(input, config, 0, null, result), 0, result);
+        return result;
+    }
+
+    private Object retryOnCallerThread(Object input, RunnableConfig config, Consumer chunkConsumer) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Throwable retryError = null;
+        for (int count = 0; ; count++) {
+            retryError = attempt(input, config, chunkConsumer, count, retryError, result);
+            if (retryError == null) {
+                return join(result);
+            }
+            try {
+                Thread.sleep(backoff(count + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void attemptAsync(Object input, RunnableConfig config, int count, Throwable lastError,
+                              CompletableFuture<Object> result) {
+        Throwable retryError = attempt(input, config, null, count, lastError, result);
+        if (retryError != null) {
+            int retry = count + 1;
+            schedule(() -> attemptAsync(input, config, retry, retryError, result), backoff(retry), result);
+        }
     }
 
-    private Object invoke(Object input, RunnableConfig config, int count, Consumer chunkConsumer) {
+    /**
+     * Run one attempt. Completes the result, or returns the error to retry after a backoff.
+     */
+    private Throwable attempt(Object input, RunnableConfig config, Consumer chunkConsumer, int count,
+                              Throwable lastError, CompletableFuture<Object> result) {
+        CancellationToken token = config != null ? config.getCancellationToken() : null;
+        if (token != null && token.isCancelled()) {
+            result.completeExceptionally(new CancellationException(token.getReason()));
+            return null;
+        }
+        CircuitBreaker breaker = circuitBreakerKey != null ? circuitBreakerRegistry.get(circuitBreakerKey) : null;
+        if (breaker != null && !breaker.tryAcquire()) {
+            Throwable error = lastError != null
+                    ? new RuntimeException("last time RunnableRetry invoke error", lastError)
+                    : new CircuitBreakerOpenException(circuitBreakerKey);
+            result.completeExceptionally(error);
+            return null;
+        }
+        Object output;
         try {
-            if(chunkConsumer != null) {
-                if(config != null && config.isStreamLog()) {
-                    return getBound().streamLog(input, config, chunkConsumer);
+            output = CancellationToken.callWith(config, () -> call(getBound(), input, config, chunkConsumer));
+        } catch (Throwable e) {
+            if (e instanceof CancellationException || (token != null && token.isCancelled())) {
+                // cancelled work is not retried
+                if (breaker != null) {
+                    breaker.onIgnored();
                 }
-                return getBound().stream(input, config, chunkConsumer);
-            } else {
-                return getBound().invoke(input, config);
+                result.completeExceptionally(e);
+                return null;
             }
-        } catch (Throwable e) {
             log.error(String.format("[%d] RunnableRetry invoke error", count), e);
-            if(count >= maxAttemptNumber) {
-                throw new RuntimeException("last time RunnableRetry invoke error", e);
+            boolean retryable = isRetryable(e);
+            if (breaker != null) {
+                // a non-retryable error is an answer from the downstream, not a sign that it is unhealthy
+                if (retryable) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
             }
-            // 停顿时间
-            try {
-                Thread.sleep(intervalTime);
-            } catch (InterruptedException ex) {
-                throw new RuntimeException(ex);
+            if (!retryable || count >= maxAttemptNumber || (retryBudget != null && !retryBudget.tryAcquire())) {
+                result.completeExceptionally(new RuntimeException("last time RunnableRetry invoke error", e));
+                return null;
+            }
+            return e;
+        }
+        if (breaker != null) {
+            breaker.onSuccess();
+        }
+        result.complete(output);
+        return null;
+    }
+
+    private Object call(RunnableInterface run, Object input, RunnableConfig config, Consumer chunkConsumer) {
+        if(chunkConsumer != null) {
+            if(config != null && config.isStreamLog()) {
+                return run.streamLog(input, config, chunkConsumer);
+            }
+            return run.stream(input, config, chunkConsumer);
+        }
+        return run.invoke(input, config);
+    }
+
+    private void schedule(java.lang.Runnable task, long delayMillis, CompletableFuture<Object> result) {
+        try {
+            retryScheduler.schedule(task, delayMillis);
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Full jitter backoff before the given retry, counting from 1.
+     */
+    long backoff(int retry) {
+        long ceiling = intervalTime << Math.min(retry - 1, 30);
+        if (ceiling < 0 || ceiling > maxIntervalTime) {
+            ceiling = maxIntervalTime;
+        }
+        return (long) (random.nextDouble() * (ceiling + 1));
+    }
+
+    boolean isRetryable(Throwable e) {
+        if (retryPredicates == null || retryPredicates.isEmpty()) {
+            return true;
+        }
+        Throwable cause = e;
+        for (int depth = 0; cause != null && depth < 16; depth++, cause = cause.getCause()) {
+            for (Map.Entry<Class<? extends Throwable>, Predicate<Throwable>> entry : retryPredicates.entrySet()) {
+                if (entry.getKey().isInstance(cause) && entry.getValue().test(cause)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Object join(CompletableFuture<Object> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
             }
-            return invoke(input ,config, ++count, chunkConsumer);
+            throw new RuntimeException(cause);
         }
     }
-}
\ No newline at end of file
+}
@@ -49,6 +49,7 @@ public class RunnableSequence extends Runnable<Object, RunnableOutput> {
     private RunnableOutput invoke(Object input, RunnableConfig config, Consumer<Object> chunkConsumer) {
         Object output = null;
         for (RunnableInterface step : getSteps()) {
+            CancellationToken.throwIfCancelled(config);
             if(chunkConsumer != null) {
                 if(config != null && config.isStreamLog()) {
                     output = step.streamLog(input, config, chunkConsumer);
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.runnables.retry;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker guarding one downstream key.
+ *
+ * CLOSED lets every call through and opens after {@code failureThreshold} consecutive failures.
+ * OPEN rejects calls until {@code openMillis} have passed, then moves to HALF_OPEN, which lets a
+ * single probe through: success closes the breaker, failure opens it again.
+ *
+ * @author xiaoxuan.lp
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String key;
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAtMillis;
+
+    private boolean probeInFlight;
+
+    public CircuitBreaker(String key, int failureThreshold, long openMillis, LongSupplier clock) {
+        if (failureThreshold < 1 || openMillis < 0) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1 and openMillis must not be negative");
+        }
+        this.key = key;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Ask permission for a call. Every permitted call must be followed by {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #onIgnored()}.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAtMillis < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * The call ended without saying anything about the downstream, e.g. it was cancelled.
+     */
+    public synchronized void onIgnored() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtMillis = clock.getAsLong();
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+}
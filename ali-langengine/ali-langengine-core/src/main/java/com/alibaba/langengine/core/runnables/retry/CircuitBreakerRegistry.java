@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.runnables.retry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breakers by key, so every runnable calling the same downstream shares one breaker.
+ *
+ * @author xiaoxuan.lp
+ */
+public class CircuitBreakerRegistry {
+
+    private static final CircuitBreakerRegistry DEFAULT = new CircuitBreakerRegistry(5, 30_000L);
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private final LongSupplier clock;
+
+    public CircuitBreakerRegistry(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, System::currentTimeMillis);
+    }
+
+    public CircuitBreakerRegistry(int failureThreshold, long openMillis, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * The process-wide registry: opens after 5 consecutive failures and probes again after 30 seconds.
+     */
+    public static CircuitBreakerRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public CircuitBreaker get(String key) {
+        return breakers.computeIfAbsent(key, k -> new CircuitBreaker(k, failureThreshold, openMillis, clock));
+    }
+}
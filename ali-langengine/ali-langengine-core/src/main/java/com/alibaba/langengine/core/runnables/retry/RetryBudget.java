@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.runnables.retry;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket limiting how many retries may be issued, shared by every invocation using it.
+ *
+ * The first attempt of an invocation is free; each retry takes one token. When a provider is failing
+ * for everyone, the bucket drains and callers fail fast instead of multiplying the load.
+ *
+ * @author xiaoxuan.lp
+ */
+public class RetryBudget {
+
+    private final double capacity;
+
+    private final double tokensPerMillis;
+
+    private final LongSupplier clock;
+
+    private double tokens;
+
+    private long lastRefillMillis;
+
+    /**
+     * @param capacity        maximum number of retries that can be issued in a burst
+     * @param tokensPerSecond retries regained per second
+     */
+    public RetryBudget(double capacity, double tokensPerSecond) {
+        this(capacity, tokensPerSecond, System::currentTimeMillis);
+    }
+
+    public RetryBudget(double capacity, double tokensPerSecond, LongSupplier clock) {
+        if (capacity < 1 || tokensPerSecond < 0) {
+            throw new IllegalArgumentException("capacity must be at least 1 and tokensPerSecond must not be negative");
+        }
+        this.capacity = capacity;
+        this.tokensPerMillis = tokensPerSecond / 1000d;
+        this.clock = clock;
+        this.tokens = capacity;
+        this.lastRefillMillis = clock.getAsLong();
+    }
+
+    /**
+     * Take one token if available.
+     *
+     * @return false when the budget is exhausted and the retry should not be issued
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized double getAvailableTokens() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        if (now > lastRefillMillis) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillMillis) * tokensPerMillis);
+            lastRefillMillis = now;
+        }
+    }
+}
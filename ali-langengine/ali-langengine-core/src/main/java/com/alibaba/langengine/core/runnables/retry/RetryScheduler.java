@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.runnables.retry;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs retry attempts after a delay without holding a thread while waiting.
+ *
+ * @author xiaoxuan.lp
+ */
+public interface RetryScheduler {
+
+    /**
+     * Run the task once the delay has elapsed. A delay of zero or less runs it as soon as possible.
+     */
+    void schedule(java.lang.Runnable task, long delayMillis);
+
+    /**
+     * The shared scheduler: a single daemon timer thread that hands due attempts to the common pool,
+     * so a slow attempt never delays the timer.
+     */
+    static RetryScheduler defaultScheduler() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    final class DefaultHolder {
+
+        private static final RetryScheduler INSTANCE = create();
+
+        private DefaultHolder() {
+        }
+
+        private static RetryScheduler create() {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, task -> {
+                Thread thread = new Thread(task, "langengine-retry-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            ScheduledExecutorService executor = timer;
+            return (task, delayMillis) -> {
+                if (delayMillis <= 0) {
+                    ForkJoinPool.commonPool().execute(task);
+                } else {
+                    executor.schedule(() -> ForkJoinPool.commonPool().execute(task), delayMillis, TimeUnit.MILLISECONDS);
+                }
+            };
+        }
+    }
+}
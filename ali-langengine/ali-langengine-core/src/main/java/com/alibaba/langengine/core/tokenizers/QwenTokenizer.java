@@ -15,19 +15,145 @@
  */
 package com.alibaba.langengine.core.tokenizers;
 
+import com.alibaba.langengine.core.jtokkit.api.Encoding;
 import com.alibaba.langengine.core.jtokkit.api.EncodingType;
+import com.alibaba.langengine.core.jtokkit.api.IntArrayList;
 import lombok.Data;
 
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * Qwen tokenizer
+ * 与Qwen官方tokenizer保持一致: 文本先做NFC归一化, 特殊token(<|endoftext|>、<|im_start|>、<|im_end|>、<|extra_N|>)
+ * 各计为一个token, 其余部分按qwen.tiktoken词表和预分词正则做BPE
  *
  * @author xiaoxuan.lp
  */
 @Data
 public class QwenTokenizer extends Tokenizer {
 
+    public static final int SPECIAL_START_ID = 151643;
+
+    /**
+     * 特殊token到id的映射, 顺序与Qwen官方定义一致
+     */
+    public static final Map<String, Integer> SPECIAL_TOKENS;
+
+    private static final Map<Integer, String> SPECIAL_TOKENS_DECODER;
+
+    private static final Pattern SPECIAL_TOKEN_PATTERN = Pattern.compile("<\\|(?:endoftext|im_start|im_end|extra_\\d+)\\|>");
+
+    static {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        int id = SPECIAL_START_ID;
+        map.put("<|endoftext|>", id++);
+        map.put("<|im_start|>", id++);
+        map.put("<|im_end|>", id++);
+        for (int i = 0; i < 205; i++) {
+            map.put("<|extra_" + i + "|>", id++);
+        }
+        SPECIAL_TOKENS = Collections.unmodifiableMap(map);
+        Map<Integer, String> decoder = new HashMap<>();
+        map.forEach((k, v) -> decoder.put(v, k));
+        SPECIAL_TOKENS_DECODER = Collections.unmodifiableMap(decoder);
+    }
+
+    @Override
+    public List<Integer> encode(String text) {
+        List<Integer> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        text = normalize(text);
+        Encoding encoding = TikTokensUtil.getEncoding(getEncoding());
+        int start = 0;
+        Matcher matcher = SPECIAL_TOKEN_PATTERN.matcher(text);
+        while (matcher.find()) {
+            Integer special = SPECIAL_TOKENS.get(matcher.group());
+            if (special == null) {
+                continue;
+            }
+            if (matcher.start() > start) {
+                tokens.addAll(encoding.encodeOrdinary(text.substring(start, matcher.start())).boxed());
+            }
+            tokens.add(special);
+            start = matcher.end();
+        }
+        if (start < text.length()) {
+            tokens.addAll(encoding.encodeOrdinary(text.substring(start)).boxed());
+        }
+        return tokens;
+    }
+
+    @Override
+    public String decode(List<Integer> encodes) {
+        Encoding encoding = TikTokensUtil.getEncoding(getEncoding());
+        StringBuilder builder = new StringBuilder();
+        IntArrayList ordinary = new IntArrayList();
+        for (Integer token : encodes) {
+            String special = SPECIAL_TOKENS_DECODER.get(token);
+            if (special == null) {
+                ordinary.add(token);
+                continue;
+            }
+            if (!ordinary.isEmpty()) {
+                builder.append(encoding.decode(ordinary));
+                ordinary = new IntArrayList();
+            }
+            builder.append(special);
+        }
+        if (!ordinary.isEmpty()) {
+            builder.append(encoding.decode(ordinary));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 只计数不保留token, 比encode().size()少一次装箱列表
+     */
+    @Override
+    public int getTokenCount(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        text = normalize(text);
+        Encoding encoding = TikTokensUtil.getEncoding(getEncoding());
+        if (text.indexOf("<|") < 0) {
+            return encoding.countTokensOrdinary(text);
+        }
+        int count = 0;
+        int start = 0;
+        Matcher matcher = SPECIAL_TOKEN_PATTERN.matcher(text);
+        while (matcher.find()) {
+            if (!SPECIAL_TOKENS.containsKey(matcher.group())) {
+                continue;
+            }
+            if (matcher.start() > start) {
+                count += encoding.countTokensOrdinary(text.substring(start, matcher.start()));
+            }
+            count++;
+            start = matcher.end();
+        }
+        if (start < text.length()) {
+            count += encoding.countTokensOrdinary(text.substring(start));
+        }
+        return count;
+    }
+
     @Override
     public EncodingType getEncoding() {
         return EncodingType.QWEN;
     }
+
+    private static String normalize(String text) {
+        return Normalizer.isNormalized(text, Normalizer.Form.NFC) ? text : Normalizer.normalize(text, Normalizer.Form.NFC);
+    }
 }
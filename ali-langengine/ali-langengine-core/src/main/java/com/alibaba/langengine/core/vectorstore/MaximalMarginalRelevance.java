@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.vectorstore;
+
+import com.alibaba.langengine.core.indexes.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 最大边际相关性(MMR)重排
+ *
+ * 每一步选择 lambda * relevance - (1 - lambda) * maxSimilarityToSelected 最大的候选。
+ * 每个候选与已选集合的最大相似度在选中新文档后增量更新，总代价为 O(k * fetchK * dim)。
+ *
+ * @author xiaoxuan.lp
+ */
+public final class MaximalMarginalRelevance {
+
+    private MaximalMarginalRelevance() {
+    }
+
+    /**
+     * 从候选中选出 k 个
+     *
+     * @param relevance 每个候选与查询的相关度，越大越相关
+     * @param vectors   每个候选的向量，要求已归一化，用点积作为候选间的余弦相似度
+     * @param k         需要选出的数量
+     * @param lambda    相关性权重，1 为纯相关性排序，0 为纯多样性
+     * @return 选中候选的下标，按选中顺序排列
+     */
+    public static int[] select(double[] relevance, float[][] vectors, int k, double lambda) {
+        int n = relevance.length;
+        if (vectors.length != n) {
+            throw new IllegalArgumentException("relevance and vectors must have the same length");
+        }
+        int count = Math.min(k, n);
+        int[] selected = new int[count];
+        if (count <= 0) {
+            return selected;
+        }
+        double[] maxSimilarity = new double[n];
+        boolean[] taken = new boolean[n];
+        double diversityWeight = 1 - lambda;
+        for (int step = 0; step < count; step++) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) {
+                    continue;
+                }
+                double score = lambda * relevance[i] - (step == 0 ? 0 : diversityWeight * maxSimilarity[i]);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            selected[step] = best;
+            taken[best] = true;
+            if (step == count - 1) {
+                break;
+            }
+            float[] chosen = vectors[best];
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) {
+                    continue;
+                }
+                double similarity = dot(chosen, vectors[i]);
+                if (step == 0 || similarity > maxSimilarity[i]) {
+                    maxSimilarity[i] = similarity;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 对带向量的候选文档做 MMR 重排，候选相关度取 {@link Document#getScore()}
+     *
+     * @param candidates 按相关度排好序的候选，要求 embedding 与 score 非空
+     * @param k          需要返回的数量
+     * @param lambda     相关性权重
+     * @return 重排后的文档；若有候选缺少向量，则直接返回前 k 个
+     */
+    public static List<Document> rerank(List<Document> candidates, int k, double lambda) {
+        int n = candidates.size();
+        double[] relevance = new double[n];
+        float[][] vectors = new float[n][];
+        for (int i = 0; i < n; i++) {
+            Document document = candidates.get(i);
+            if (document.getEmbedding() == null || document.getEmbedding().isEmpty() || document.getScore() == null) {
+                return new ArrayList<>(candidates.subList(0, Math.min(k, n)));
+            }
+            relevance[i] = document.getScore();
+            vectors[i] = normalize(document.getEmbedding());
+        }
+        int[] selected = select(relevance, vectors, k, lambda);
+        List<Document> result = new ArrayList<>(selected.length);
+        for (int index : selected) {
+            result.add(candidates.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * 归一化为单位向量，零向量原样返回
+     */
+    public static float[] normalize(List<Double> vector) {
+        float[] result = new float[vector.size()];
+        for (int i = 0; i < result.length; i++) {
+            Double value = vector.get(i);
+            result[i] = value == null ? 0F : value.floatValue();
+        }
+        return normalizeInPlace(result);
+    }
+
+    public static float[] normalize(Double[] vector) {
+        return normalize(Arrays.asList(vector));
+    }
+
+    static float[] normalizeInPlace(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    static double dot(float[] first, float[] second) {
+        int length = Math.min(first.length, second.length);
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += first[i] * second[i];
+        }
+        return sum;
+    }
+}
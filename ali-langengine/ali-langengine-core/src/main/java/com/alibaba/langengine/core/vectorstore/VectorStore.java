@@ -22,6 +22,7 @@ import com.alibaba.langengine.core.util.JacksonUtils;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import lombok.Data;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -107,6 +108,66 @@ public abstract class VectorStore {
      */
     public abstract List<Document> similaritySearch(String query, int k, Double maxDistanceValue, Integer type);
 
+    /**
+     * 批量相似性检索，结果与 queries 一一对应
+     *
+     * 默认逐条调用 similaritySearch；能一次完成多条查询的实现应覆盖此方法
+     *
+     * @param queries
+     * @param k
+     * @param maxDistanceValue
+     * @return
+     */
+    public List<List<Document>> batchSimilaritySearch(List<String> queries, int k, Double maxDistanceValue) {
+        List<List<Document>> result = new ArrayList<>(queries.size());
+        for (String query : queries) {
+            result.add(similaritySearch(query, k, maxDistanceValue));
+        }
+        return result;
+    }
+
+    /**
+     * 最大边际相关性检索：先取 fetchK 个候选，再按 MMR 选出 k 个兼顾相关性与多样性的文档
+     *
+     * 默认实现要求 similaritySearch 返回的文档带有 embedding，且 score 越大越相关；
+     * 不满足时退化为普通相似性检索。能直接拿到向量的实现应覆盖此方法。
+     *
+     * @param query
+     * @param k
+     * @param fetchK
+     * @param lambda 相关性权重，1 为纯相关性，0 为纯多样性
+     * @param maxDistanceValue
+     * @return
+     */
+    public List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, double lambda, Double maxDistanceValue) {
+        List<Document> candidates = similaritySearch(query, Math.max(k, fetchK), maxDistanceValue);
+        return MaximalMarginalRelevance.rerank(candidates, k, lambda);
+    }
+
+    /**
+     * 关键词检索，返回按关键词得分降序的文档
+     *
+     * 默认不支持，返回空列表；支持的实现应覆盖此方法
+     *
+     * @param query
+     * @param k
+     * @return
+     */
+    public List<Document> keywordSearch(String query, int k) {
+        return new ArrayList<>();
+    }
+
+    /**
+     * 按 uniqueId 删除文档
+     *
+     * 默认不支持，不做任何事；支持的实现应覆盖此方法
+     *
+     * @param uniqueIds
+     */
+    public void removeDocuments(List<String> uniqueIds) {
+
+    }
+
     public BaseRetriever asRetriever() {
         VectorStoreRetriever retriever = new VectorStoreRetriever();
         retriever.setVectorStore(this);
@@ -24,6 +24,11 @@ public class EmbeddingEntity {
 
     String name;
 
+    /**
+     * 已删除但还未从列表中清理
+     */
+    volatile boolean deleted;
+
     EmbeddingEntity(String id, EmbeddingValueEntity embeddingValue, String content, String name) {
         this.id = id;
         this.embeddingValue = embeddingValue;
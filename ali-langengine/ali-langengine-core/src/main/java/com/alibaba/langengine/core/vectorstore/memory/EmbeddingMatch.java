@@ -39,6 +39,10 @@ public class EmbeddingMatch {
         return embeddingId;
     }
 
+    public EmbeddingValueEntity embedding() {
+        return embeddingValue;
+    }
+
     public Double score() {
         return score;
     }
@@ -18,7 +18,9 @@ package com.alibaba.langengine.core.vectorstore.memory;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.langengine.core.embeddings.Embeddings;
 import com.alibaba.langengine.core.indexes.Document;
+import com.alibaba.langengine.core.vectorstore.MaximalMarginalRelevance;
 import com.alibaba.langengine.core.vectorstore.VectorStore;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
@@ -41,77 +43,239 @@ public class InMemoryDB extends VectorStore {
 
     private final CopyOnWriteArrayList<EmbeddingEntity> entities = new CopyOnWriteArrayList<>();
 
+    /**
+     * 与 entities 同序的关键词索引，文档编号即在 entities 中的下标
+     */
+    @JsonIgnore
+    private final KeywordIndex keywordIndex = new KeywordIndex();
+
+    /**
+     * 已标记删除、还未从 entities 中清理的条目数
+     */
+    @JsonIgnore
+    private int deletedCount;
+
     @Override
     public void addDocuments(List<Document> documents) {
         if(documents == null || documents.size() == 0) {
             return;
         }
         documents = embedding.embedDocument(documents);
-        for (Document document : documents) {
-            EmbeddingValueEntity embeddingValue = new EmbeddingValueEntity(document.getEmbedding().toArray(new Double[0]));
-            // 阮萤发现NPE的bug
-            entities.add(new EmbeddingEntity(document.getUniqueId(), embeddingValue, document.getPageContent(),
-                    document.getMetadata() != null && document.getMetadata().get("name") != null ? document.getMetadata().get("name").toString() : null));
+        synchronized (keywordIndex) {
+            List<EmbeddingEntity> added = new ArrayList<>(documents.size());
+            for (Document document : documents) {
+                EmbeddingValueEntity embeddingValue = new EmbeddingValueEntity(document.getEmbedding().toArray(new Double[0]));
+                keywordIndex.add(entities.size() + added.size(), document.getPageContent());
+                // 阮萤发现NPE的bug
+                added.add(new EmbeddingEntity(document.getUniqueId(), embeddingValue, document.getPageContent(),
+                        document.getMetadata() != null && document.getMetadata().get("name") != null ? document.getMetadata().get("name").toString() : null));
+            }
+            entities.addAll(added);
+        }
+    }
+
+    /**
+     * 先标记删除，已删除的条目超过一半时再统一清理并重建关键词索引
+     */
+    @Override
+    public void removeDocuments(List<String> uniqueIds) {
+        if (uniqueIds == null || uniqueIds.isEmpty()) {
+            return;
+        }
+        Set<String> ids = new HashSet<>(uniqueIds);
+        synchronized (keywordIndex) {
+            for (EmbeddingEntity entity : entities) {
+                if (!entity.deleted && entity.id != null && ids.contains(entity.id)) {
+                    entity.deleted = true;
+                    deletedCount++;
+                }
+            }
+            if (deletedCount * 2 > entities.size()) {
+                entities.removeIf(entity -> entity.deleted);
+                keywordIndex.clear();
+                for (int i = 0; i < entities.size(); i++) {
+                    keywordIndex.add(i, entities.get(i).content);
+                }
+                deletedCount = 0;
+            }
         }
     }
 
     @Override
     public List<Document> similaritySearch(String query, int k, Double maxDistanceValue, Integer type) {
+        EmbeddingValueEntity referenceEmbedding = embedQuery(query, k);
+        if (referenceEmbedding == null) {
+            return new ArrayList<>();
+        }
+        return topMatches(referenceEmbedding, k, maxDistanceValue).stream()
+                .map(this::toDocument)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 各条查询分别向量化，再在同一次遍历中为所有查询打分
+     */
+    @Override
+    public List<List<Document>> batchSimilaritySearch(List<String> queries, int k, Double maxDistanceValue) {
+        List<EmbeddingValueEntity> references = new ArrayList<>(queries.size());
+        for (String query : queries) {
+            references.add(embedQuery(query, k));
+        }
+        List<List<EmbeddingMatch>> matches = topMatches(references, k, maxDistanceValue);
+        List<List<Document>> result = new ArrayList<>(queries.size());
+        for (List<EmbeddingMatch> queryMatches : matches) {
+            result.add(queryMatches.stream().map(this::toDocument).collect(Collectors.toList()));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, double lambda, Double maxDistanceValue) {
+        EmbeddingValueEntity referenceEmbedding = embedQuery(query, k);
+        if (referenceEmbedding == null) {
+            return new ArrayList<>();
+        }
+        List<EmbeddingMatch> candidates = topMatches(referenceEmbedding, Math.max(k, fetchK), maxDistanceValue);
+        double[] relevance = new double[candidates.size()];
+        float[][] vectors = new float[candidates.size()][];
+        for (int i = 0; i < candidates.size(); i++) {
+            relevance[i] = candidates.get(i).score();
+            vectors[i] = MaximalMarginalRelevance.normalize(candidates.get(i).embedding().vector());
+        }
+        int[] selected = MaximalMarginalRelevance.select(relevance, vectors, k, lambda);
+        List<Document> result = new ArrayList<>(selected.length);
+        for (int index : selected) {
+            result.add(toDocument(candidates.get(index)));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Document> keywordSearch(String query, int k) {
+        List<Document> result = new ArrayList<>();
+        synchronized (keywordIndex) {
+            for (KeywordIndex.Hit hit : keywordIndex.search(query, k + deletedCount)) {
+                EmbeddingEntity entity = entities.get(hit.docId());
+                if (entity.deleted) {
+                    continue;
+                }
+                result.add(toDocument(new EmbeddingMatch(entity.id, entity.embeddingValue, hit.score(), entity.content, entity.name)));
+                if (result.size() == k) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private EmbeddingValueEntity embedQuery(String query, int k) {
         List<String> embeddingStrings = embedding.embedQuery(query, k);
         if (embeddingStrings.size() == 0 || !embeddingStrings.get(0).startsWith("[")) {
-            return new ArrayList<>();
+            return null;
         }
         String embeddingString = embeddingStrings.get(0);
         List<String> embeddings = JSON.parseArray(embeddingString, String.class);
 
-        EmbeddingValueEntity referenceEmbedding = EmbeddingValueEntity.from(embeddings.stream()
+        return EmbeddingValueEntity.from(embeddings.stream()
                 .map(embedding -> Double.parseDouble(embedding))
                 .collect(Collectors.toList()));
+    }
+
+    private List<EmbeddingMatch> topMatches(EmbeddingValueEntity referenceEmbedding, int k, Double maxDistanceValue) {
+        return topMatches(Collections.singletonList(referenceEmbedding), k, maxDistanceValue).get(0);
+    }
 
+    private List<List<EmbeddingMatch>> topMatches(List<EmbeddingValueEntity> referenceEmbeddings, int k, Double maxDistanceValue) {
         Comparator<EmbeddingMatch> comparator = comparingDouble(EmbeddingMatch::score);
-        PriorityQueue<EmbeddingMatch> matches = new PriorityQueue<>(comparator);
+        List<PriorityQueue<EmbeddingMatch>> queues = new ArrayList<>(referenceEmbeddings.size());
+        for (int i = 0; i < referenceEmbeddings.size(); i++) {
+            queues.add(new PriorityQueue<>(comparator));
+        }
+
+        // 查询向量与各自的模只算一次，每个条目拆箱一次后与所有查询比较
+        double[][] references = new double[referenceEmbeddings.size()][];
+        float[] referenceNorms = new float[referenceEmbeddings.size()];
+        for (int i = 0; i < references.length; i++) {
+            if (referenceEmbeddings.get(i) != null) {
+                references[i] = unbox(referenceEmbeddings.get(i).vector());
+                referenceNorms[i] = squaredNorm(references[i]);
+            }
+        }
 
         double minSimilarity = -1;
         if(maxDistanceValue != null) {
             minSimilarity = maxDistanceValue;
         }
+        double[] vector = new double[0];
         for (EmbeddingEntity entity : entities) {
-            double similarity = cosineSimilarity(entity.embeddingValue, referenceEmbedding);
-            if (similarity >= minSimilarity) {
-                matches.add(new EmbeddingMatch(entity.id, entity.embeddingValue, similarity, entity.content, entity.name));
-                if (matches.size() > k) {
-                    matches.poll();
+            if (entity.deleted) {
+                continue;
+            }
+            Double[] values = entity.embeddingValue.vector();
+            if (vector.length != values.length) {
+                vector = new double[values.length];
+            }
+            for (int i = 0; i < values.length; i++) {
+                vector[i] = values[i];
+            }
+            float norm = squaredNorm(vector);
+            for (int i = 0; i < references.length; i++) {
+                if (references[i] == null) {
+                    continue;
+                }
+                double similarity = cosineSimilarity(vector, norm, references[i], referenceNorms[i]);
+                if (similarity >= minSimilarity) {
+                    PriorityQueue<EmbeddingMatch> matches = queues.get(i);
+                    matches.add(new EmbeddingMatch(entity.id, entity.embeddingValue, similarity, entity.content, entity.name));
+                    if (matches.size() > k) {
+                        matches.poll();
+                    }
                 }
             }
         }
 
-        List<EmbeddingMatch> result = new ArrayList<>(matches);
-        result.sort(comparingDouble(EmbeddingMatch::score));
-        Collections.reverse(result);
-
-        return result.stream().map(e -> {
-            Document document = new Document();
-            document.setUniqueId(e.embeddingId());
-            document.setPageContent(e.content());
-            document.setScore(e.score());
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("name", e.name());
-            document.setMetadata(metadata);
-            return document;
-        }).collect(Collectors.toList());
+        List<List<EmbeddingMatch>> results = new ArrayList<>(queues.size());
+        for (PriorityQueue<EmbeddingMatch> matches : queues) {
+            List<EmbeddingMatch> result = new ArrayList<>(matches);
+            result.sort(comparingDouble(EmbeddingMatch::score));
+            Collections.reverse(result);
+            results.add(result);
+        }
+        return results;
     }
 
-    private float cosineSimilarity(EmbeddingValueEntity first, EmbeddingValueEntity second) {
-        float dot = 0.0F;
-        float nru = 0.0F;
-        float nrv = 0.0F;
+    private Document toDocument(EmbeddingMatch e) {
+        Document document = new Document();
+        document.setUniqueId(e.embeddingId());
+        document.setPageContent(e.content());
+        document.setScore(e.score());
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("name", e.name());
+        document.setMetadata(metadata);
+        return document;
+    }
 
-        for (int i = 0; i < first.vector().length; ++i) {
-            dot += first.vector()[i] * second.vector()[i];
-            nru += first.vector()[i] * first.vector()[i];
-            nrv += second.vector()[i] * second.vector()[i];
+    private static double[] unbox(Double[] vector) {
+        double[] result = new double[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i];
         }
+        return result;
+    }
 
-        return dot / (float) (Math.sqrt(nru) * Math.sqrt(nrv));
+    private static float squaredNorm(double[] vector) {
+        float norm = 0.0F;
+        for (double value : vector) {
+            norm += value * value;
+        }
+        return norm;
+    }
+
+    private static float cosineSimilarity(double[] first, float firstNorm, double[] second, float secondNorm) {
+        float dot = 0.0F;
+        for (int i = 0; i < first.length; ++i) {
+            dot += first[i] * second[i];
+        }
+        return dot / (float) (Math.sqrt(firstNorm) * Math.sqrt(secondNorm));
     }
 }
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.vectorstore.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 内存倒排索引，按 BM25 为关键词检索打分
+ *
+ * 文档编号由调用方按 0, 1, 2... 顺序分配。英文和数字按连续字符切词并转小写，
+ * 中日韩字符按单字切词。
+ *
+ * @author xiaoxuan.lp
+ */
+public class KeywordIndex {
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    private int[] documentLengths = new int[16];
+
+    private int documentCount;
+
+    private long totalLength;
+
+    /**
+     * 添加一篇文档，docId 必须等于当前文档数
+     */
+    public synchronized void add(int docId, String text) {
+        if (docId != documentCount) {
+            throw new IllegalArgumentException("docId must be " + documentCount + " but was " + docId);
+        }
+        List<String> tokens = tokenize(text);
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String token : tokens) {
+            termFrequencies.merge(token, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), key -> new Postings()).add(docId, entry.getValue());
+        }
+        if (documentCount == documentLengths.length) {
+            documentLengths = Arrays.copyOf(documentLengths, documentLengths.length * 2);
+        }
+        documentLengths[documentCount++] = tokens.size();
+        totalLength += tokens.size();
+    }
+
+    /**
+     * 返回 BM25 得分最高的 k 篇文档，按得分降序，只包含至少命中一个词的文档
+     */
+    public synchronized List<Hit> search(String query, int k) {
+        if (documentCount == 0 || k <= 0) {
+            return new ArrayList<>();
+        }
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        double averageLength = (double) totalLength / documentCount;
+        double[] scores = new double[documentCount];
+        boolean[] matched = new boolean[documentCount];
+        for (String term : terms) {
+            Postings termPostings = postings.get(term);
+            if (termPostings == null) {
+                continue;
+            }
+            int df = termPostings.size;
+            double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+            for (int i = 0; i < termPostings.size; i++) {
+                int docId = termPostings.docIds[i];
+                int tf = termPostings.frequencies[i];
+                double norm = K1 * (1 - B + B * documentLengths[docId] / averageLength);
+                scores[docId] += idf * tf * (K1 + 1) / (tf + norm);
+                matched[docId] = true;
+            }
+        }
+        PriorityQueue<Hit> top = new PriorityQueue<>((a, b) -> Double.compare(a.score, b.score));
+        for (int docId = 0; docId < documentCount; docId++) {
+            if (!matched[docId]) {
+                continue;
+            }
+            if (top.size() < k) {
+                top.add(new Hit(docId, scores[docId]));
+            } else if (scores[docId] > top.peek().score) {
+                top.poll();
+                top.add(new Hit(docId, scores[docId]));
+            }
+        }
+        List<Hit> result = new ArrayList<>(top);
+        result.sort((a, b) -> Double.compare(b.score, a.score));
+        return result;
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        documentLengths = new int[16];
+        documentCount = 0;
+        totalLength = 0;
+    }
+
+    public synchronized int size() {
+        return documentCount;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isIdeographic(codePoint)) {
+                flush(word, tokens);
+                tokens.add(new String(Character.toChars(codePoint)));
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                word.appendCodePoint(Character.toLowerCase(codePoint));
+            } else {
+                flush(word, tokens);
+            }
+        }
+        flush(word, tokens);
+        return tokens;
+    }
+
+    private static boolean isIdeographic(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static void flush(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    public static final class Hit {
+
+        private final int docId;
+
+        private final double score;
+
+        Hit(int docId, double score) {
+            this.docId = docId;
+            this.score = score;
+        }
+
+        public int docId() {
+            return docId;
+        }
+
+        public double score() {
+            return score;
+        }
+    }
+
+    private static final class Postings {
+
+        private int[] docIds = new int[4];
+
+        private int[] frequencies = new int[4];
+
+        private int size;
+
+        private void add(int docId, int frequency) {
+            if (size == docIds.length) {
+                docIds = Arrays.copyOf(docIds, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docIds[size] = docId;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+}
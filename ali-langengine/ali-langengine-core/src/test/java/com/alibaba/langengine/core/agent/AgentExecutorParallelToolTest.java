@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.agent;
+
+import com.alibaba.langengine.core.callback.BaseCallbackHandler;
+import com.alibaba.langengine.core.callback.BaseCallbackManager;
+import com.alibaba.langengine.core.callback.ExecutionContext;
+import com.alibaba.langengine.core.tool.BaseTool;
+import com.alibaba.langengine.core.tool.DefaultTool;
+import com.alibaba.langengine.core.tool.ToolExecuteResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgentExecutorParallelToolTest {
+
+    @Test
+    public void testParallelActionsKeepOrder() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<BaseTool> tools = Arrays.asList(
+                sleepTool("weather", 300, running, maxRunning),
+                sleepTool("stock", 100, running, maxRunning),
+                sleepTool("news", 200, running, maxRunning));
+
+        AgentExecutor agentExecutor = new AgentExecutor();
+        agentExecutor.setAgent(new ScriptedAgent(multiAction("weather", "stock", "news")));
+        agentExecutor.setTools(tools);
+        agentExecutor.setReturnIntermediateSteps(true);
+        agentExecutor.setMaxParallelToolCalls(3);
+
+        ExecutionContext executionContext = new ExecutionContext();
+        long start = System.currentTimeMillis();
+        Map<String, Object> outputs = agentExecutor.call(new HashMap<>(), executionContext, null, null);
+        long elapsed = System.currentTimeMillis() - start;
+
+        List<AgentAction> steps = (List<AgentAction>) outputs.get("intermediate_steps");
+        assertEquals(3, steps.size());
+        assertEquals("weather:input-weather", steps.get(0).getObservation());
+        assertEquals("stock:input-stock", steps.get(1).getObservation());
+        assertEquals("news:input-news", steps.get(2).getObservation());
+        assertTrue(maxRunning.get() > 1);
+        assertTrue(elapsed < 600, "elapsed " + elapsed);
+
+        List<AgentIterationLatency> latencies = executionContext.getIterationLatencies();
+        assertEquals(2, latencies.size());
+        assertEquals(3, latencies.get(0).getToolCount());
+        assertTrue(latencies.get(0).getToolMillis() >= 250);
+        assertEquals(0, latencies.get(1).getToolCount());
+    }
+
+    @Test
+    public void testBoundedParallelismAndTimeout() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<BaseTool> tools = Arrays.asList(
+                sleepTool("a", 50, running, maxRunning),
+                sleepTool("b", 50, running, maxRunning),
+                sleepTool("slow", 2000, running, maxRunning));
+
+        AgentExecutor agentExecutor = new AgentExecutor();
+        agentExecutor.setAgent(new ScriptedAgent(multiAction("a", "b", "slow")));
+        agentExecutor.setTools(tools);
+        agentExecutor.setReturnIntermediateSteps(true);
+        agentExecutor.setMaxParallelToolCalls(2);
+        agentExecutor.setToolTimeoutMillis(300L);
+
+        Map<String, Object> outputs = agentExecutor.call(new HashMap<>(), new ExecutionContext(), null, null);
+        List<AgentAction> steps = (List<AgentAction>) outputs.get("intermediate_steps");
+        assertEquals("a:input-a", steps.get(0).getObservation());
+        assertEquals("b:input-b", steps.get(1).getObservation());
+        assertTrue(steps.get(2).getObservation().contains("timed out"));
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void testHungToolsDoNotBlockLaterCalls() throws InterruptedException {
+        AtomicBoolean release = new AtomicBoolean();
+        AtomicInteger interrupted = new AtomicInteger();
+        List<Supplier<ToolExecuteResult>> calls = new ArrayList<>();
+        // 前两个工具占满并发名额：一个响应中断，一个忽略中断一直挂住
+        calls.add(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+            return new ToolExecuteResult("sleeper");
+        });
+        calls.add(() -> {
+            while (!release.get()) {
+                Thread.yield();
+            }
+            return new ToolExecuteResult("spinner");
+        });
+        calls.add(() -> new ToolExecuteResult("fast"));
+
+        try {
+            long start = System.currentTimeMillis();
+            List<ToolExecuteResult> results = new ParallelToolInvoker(null, 2, 200L)
+                    .invokeAll(Arrays.asList("sleeper", "spinner", "fast"), calls);
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertTrue(results.get(0).getOutput().contains("timed out"));
+            assertTrue(results.get(1).getOutput().contains("timed out"));
+            assertEquals("fast", results.get(2).getOutput());
+            assertTrue(elapsed < 2000, "elapsed " + elapsed);
+            for (int i = 0; i < 100 && interrupted.get() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, interrupted.get());
+        } finally {
+            release.set(true);
+        }
+    }
+
+    @Test
+    public void testHungToolKeepsItsPermit() throws InterruptedException {
+        AtomicBoolean release = new AtomicBoolean();
+        AtomicInteger fastRuns = new AtomicInteger();
+        ParallelToolInvoker invoker = new ParallelToolInvoker(null, 1, 100L);
+        try {
+            ToolExecuteResult spinner = invoker.invoke("spinner", () -> {
+                while (!release.get()) {
+                    Thread.yield();
+                }
+                return new ToolExecuteResult("spinner");
+            });
+            assertTrue(spinner.getOutput().contains("timed out"));
+
+            // 忽略中断的工具仍在运行，占着唯一的名额，后续调用不会越过并发上限
+            ToolExecuteResult fast = invoker.invoke("fast", () -> {
+                fastRuns.incrementAndGet();
+                return new ToolExecuteResult("fast");
+            });
+            assertTrue(fast.getOutput().contains("timed out"));
+            assertEquals(0, fastRuns.get());
+        } finally {
+            release.set(true);
+        }
+        assertEquals("fast", invoker.invoke("fast", () -> new ToolExecuteResult("fast")).getOutput());
+    }
+
+    @Test
+    public void testPoolThreadsSeeCallerContext() {
+        ExecutionContext executionContext = new ExecutionContext();
+        BaseCallbackHandler.setContext("trace-parallel");
+        BaseCallbackHandler.setExecutionContext(executionContext);
+        try {
+            List<Supplier<ToolExecuteResult>> calls = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                calls.add(() -> new ToolExecuteResult(BaseCallbackHandler.getContext() + "|"
+                        + (BaseCallbackHandler.getExecutionContext() == executionContext)));
+            }
+            List<ToolExecuteResult> results = new ParallelToolInvoker(null, 2, null).invokeAll(Arrays.asList("a", "b"), calls);
+            assertEquals("trace-parallel|true", results.get(0).getOutput());
+            assertEquals("trace-parallel|true", results.get(1).getOutput());
+        } finally {
+            BaseCallbackHandler.removeContext(false);
+            BaseCallbackHandler.removeExecutionContext(false);
+        }
+    }
+
+    @Test
+    public void testSingleParallelismRunsActionsSerially() {
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+        List<BaseTool> tools = new ArrayList<>();
+        for (String name : Arrays.asList("first", "second")) {
+            DefaultTool tool = new DefaultTool();
+            tool.setName(name);
+            tool.setBasicFunc(input -> {
+                threads.add(Thread.currentThread());
+                return name + ":" + input;
+            });
+            tools.add(tool);
+        }
+
+        AgentExecutor agentExecutor = new AgentExecutor();
+        agentExecutor.setAgent(new ScriptedAgent(multiAction("first", "second")));
+        agentExecutor.setTools(tools);
+        agentExecutor.setReturnIntermediateSteps(true);
+
+        Map<String, Object> outputs = agentExecutor.call(new HashMap<>(), new ExecutionContext(), null, null);
+        List<AgentAction> steps = (List<AgentAction>) outputs.get("intermediate_steps");
+        assertEquals("first:input-first", steps.get(0).getObservation());
+        assertEquals("second:input-second", steps.get(1).getObservation());
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+        assertFalse(ParallelToolInvoker.runsInParallel(2, 1));
+        assertFalse(ParallelToolInvoker.runsInParallel(1, 4));
+        assertTrue(ParallelToolInvoker.runsInParallel(2, 2));
+    }
+
+    @Test
+    public void testToolNameIndex() {
+        Map<String, BaseTool> nameToToolMap = new TreeMap<>();
+        nameToToolMap.put("search", sleepTool("search", 0, new AtomicInteger(), new AtomicInteger()));
+        nameToToolMap.put("search_web", sleepTool("search_web", 0, new AtomicInteger(), new AtomicInteger()));
+        ToolNameIndex index = new ToolNameIndex(nameToToolMap);
+
+        assertEquals("search_web", index.resolve("search_web"));
+        assertEquals("search_web", index.resolve("Search-Web"));
+        assertEquals("search", index.resolve("SEARCH"));
+        assertNull(index.resolve("calculator"));
+        assertTrue(index.isIndexOf(nameToToolMap));
+    }
+
+    private static AgentAction multiAction(String... toolNames) {
+        List<AgentAction> actions = new ArrayList<>();
+        for (String toolName : toolNames) {
+            AgentAction action = new AgentAction();
+            action.setTool(toolName);
+            action.setToolInput("input-" + toolName);
+            actions.add(action);
+        }
+        AgentAction agentAction = new AgentAction();
+        agentAction.setActions(actions);
+        return agentAction;
+    }
+
+    private static BaseTool sleepTool(String name, long sleepMillis, AtomicInteger running, AtomicInteger maxRunning) {
+        DefaultTool tool = new DefaultTool();
+        tool.setName(name);
+        tool.setBasicFunc(input -> {
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return name + ":" + input;
+        });
+        return tool;
+    }
+
+    public static class ScriptedAgent extends BaseSingleActionAgent {
+
+        private final Deque<Object> script = new ArrayDeque<>();
+
+        public ScriptedAgent(AgentAction firstStep) {
+            script.add(firstStep);
+            AgentFinish agentFinish = new AgentFinish();
+            Map<String, Object> returnValues = new HashMap<>();
+            returnValues.put("output", "done");
+            agentFinish.setReturnValues(returnValues);
+            script.add(agentFinish);
+        }
+
+        @Override
+        public Object plan(List<AgentAction> intermediateSteps, Map<String, Object> inputs, Consumer<String> consumer,
+                           ExecutionContext executionContext, Map<String, Object> extraAttributes) {
+            return script.poll();
+        }
+
+        @Override
+        public List<String> getInputKeys() {
+            return Collections.singletonList("input");
+        }
+
+        @Override
+        public void setCallbackManager(BaseCallbackManager callbackManager) {
+        }
+    }
+}
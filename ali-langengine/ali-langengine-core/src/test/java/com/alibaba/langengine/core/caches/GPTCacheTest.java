@@ -0,0 +1,310 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.caches;
+
+import com.alibaba.langengine.core.embeddings.Embeddings;
+import com.alibaba.langengine.core.indexes.Document;
+import com.alibaba.langengine.core.outputs.Generation;
+import com.alibaba.langengine.core.vectorstore.memory.InMemoryDB;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GPTCacheTest {
+
+    @Test
+    public void test_exactHitSkipsVectorSearch() {
+        CountingDB store = new CountingDB();
+        GPTCache cache = newCache(store, new InMemoryCache());
+
+        cache.update("what is taobao open platform", "", generations("top"));
+        assertEquals("top", text(cache.get("what is taobao open platform", "")));
+        assertEquals(0, store.searches.get());
+        assertEquals(1, cache.getMetrics().getExactHitCount());
+
+        // 相同 prompt 在不同 llmString 下只需要一份向量
+        cache.update("what is taobao open platform", "[\"\\n\"]", generations("top2"));
+        assertEquals(1, store.getEntities().size());
+        assertEquals("top2", text(cache.get("what is taobao open platform", "[\"\\n\"]")));
+    }
+
+    @Test
+    public void test_semanticHitAndMiss() {
+        GPTCache cache = newCache(new CountingDB(), new InMemoryCache());
+        cache.update("what is taobao open platform", "", generations("top"));
+
+        assertEquals("top", text(cache.get("what is the taobao open platform", "")));
+        assertNull(cache.get("how to cook rice", ""));
+        // 相似问题命中了别的 llmString 下的条目，不能返回
+        assertNull(cache.get("what is the taobao open platform", "other"));
+
+        GPTCacheMetrics metrics = cache.getMetrics();
+        assertEquals(1, metrics.getSemanticHitCount());
+        assertEquals(2, metrics.getMissCount());
+    }
+
+    @Test
+    public void test_batchLookupSearchesOnce() {
+        CountingDB store = new CountingDB();
+        GPTCache cache = newCache(store, new InMemoryCache());
+        cache.update("what is taobao open platform", "", generations("top"));
+        cache.update("what is alipay", "", generations("alipay"));
+
+        List<List<Generation>> result = cache.get(Arrays.asList(
+                "what is taobao open platform",
+                "what is the alipay",
+                "how to cook rice",
+                "what is the taobao open platform"), "");
+
+        assertEquals("top", text(result.get(0)));
+        assertEquals("alipay", text(result.get(1)));
+        assertNull(result.get(2));
+        assertEquals("top", text(result.get(3)));
+        assertEquals(1, store.searches.get());
+        assertEquals(3, store.batchedQueries.get());
+    }
+
+    @Test
+    public void test_lruEvictionRemovesFromIndexAndStorage() {
+        CountingDB store = new CountingDB();
+        InMemoryCache storage = new InMemoryCache();
+        GPTCache cache = newCache(store, storage);
+        cache.setMaxEntries(2);
+
+        cache.update("what is taobao open platform", "", generations("top"));
+        cache.update("what is alipay", "", generations("alipay"));
+        // 访问后 taobao 变为最近使用，淘汰 alipay
+        assertNotNull(cache.get("what is taobao open platform", ""));
+        cache.update("how to cook rice", "", generations("rice"));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("what is alipay", ""));
+        assertNull(storage.get("what is alipay", ""));
+        assertTrue(store.similaritySearch("what is alipay", 3).stream()
+                .noneMatch(document -> "what is alipay".equals(document.getPageContent())));
+        assertEquals("top", text(cache.get("what is taobao open platform", "")));
+        assertEquals(1, cache.getMetrics().getEvictionCount());
+    }
+
+    @Test
+    public void test_ttlExpiry() {
+        AtomicLong now = new AtomicLong(1000);
+        CountingDB store = new CountingDB();
+        InMemoryCache storage = new InMemoryCache();
+        GPTCache cache = newCache(store, storage);
+        cache.setClock(now::get);
+        cache.setTtlMillis(100);
+
+        cache.update("what is taobao open platform", "", generations("top"));
+        now.addAndGet(99);
+        assertEquals("top", text(cache.get("what is taobao open platform", "")));
+        now.addAndGet(1);
+        assertNull(cache.get("what is taobao open platform", ""));
+        assertNull(cache.get("what is the taobao open platform", ""));
+        assertNull(storage.get("what is taobao open platform", ""));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMetrics().getEvictionCount());
+
+        // 写入时顺带清理已过期的条目
+        cache.update("what is alipay", "", generations("alipay"));
+        now.addAndGet(100);
+        cache.update("how to cook rice", "", generations("rice"));
+        assertEquals(1, cache.size());
+        assertNull(storage.get("what is alipay", ""));
+    }
+
+    @Test
+    public void test_clear() {
+        CountingDB store = new CountingDB();
+        InMemoryCache storage = new InMemoryCache();
+        GPTCache cache = newCache(store, storage);
+        cache.update("what is taobao open platform", "", generations("top"));
+        cache.update("what is alipay", "", generations("alipay"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("what is alipay", ""));
+        assertNull(storage.get("what is alipay", ""));
+        assertTrue(store.similaritySearch("what is alipay", 3).isEmpty());
+    }
+
+    @Test
+    public void test_valuesLiveOnlyInStorage() {
+        CountingDB store = new CountingDB();
+        InMemoryCache storage = new InMemoryCache();
+        GPTCache cache = newCache(store, storage);
+        cache.update("what is taobao open platform", "", generations("top"));
+
+        // 基础缓存自行淘汰后，精确匹配与相似度检索都不能再返回旧值
+        storage.remove("what is taobao open platform", "");
+        assertNull(cache.get("what is taobao open platform", ""));
+        assertNull(cache.get("what is the taobao open platform", ""));
+        assertEquals(2, store.searches.get());
+        assertEquals(0, cache.getMetrics().getExactHitCount());
+    }
+
+    @Test
+    public void test_toStringSkipsCachedEntries() {
+        GPTCache cache = newCache(new CountingDB(), new InMemoryCache());
+        cache.update("what is alipay", "", generations("alipay"));
+
+        // entries/indexedPrompts由锁保护，lombok生成的toString/equals/hashCode不能在锁外遍历它们
+        String text = cache.toString();
+        assertFalse(text.contains("entries="), text);
+        assertFalse(text.contains("indexedPrompts="), text);
+        assertEquals(cache, cache);
+    }
+
+    /**
+     * 耗时且依赖机器性能，默认不跑：-Dlangengine.benchmark.enabled=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "langengine.benchmark.enabled", matches = "true")
+    public void test_benchmarkLookupAt100kEntries() {
+        int entries = 100_000;
+        CountingDB store = new CountingDB();
+        store.setEmbedding(new RandomEmbeddings(32));
+        GPTCache cache = newCache(store, new InMemoryCache());
+        cache.setMaxEntries(0);
+        cache.setSimilarityThreshold(0.99);
+        for (int i = 0; i < entries; i++) {
+            cache.update("prompt " + i, "", generations("answer " + i));
+        }
+        assertEquals(entries, cache.size());
+
+        int lookups = 200;
+        Random random = new Random(7);
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            int id = random.nextInt(entries);
+            assertEquals("answer " + id, text(cache.get("prompt " + id, "")));
+        }
+        long exactNanos = (System.nanoTime() - start) / lookups;
+
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            assertNull(cache.get("unseen prompt " + i, ""));
+        }
+        long semanticNanos = (System.nanoTime() - start) / lookups;
+
+        assertTrue(exactNanos * 10 < semanticNanos, "exact " + exactNanos + " ns, semantic " + semanticNanos + " ns");
+    }
+
+    private static GPTCache newCache(InMemoryDB store, InMemoryCache storage) {
+        if (store.getEmbedding() == null) {
+            store.setEmbedding(new WordEmbeddings());
+        }
+        CacheManager cacheManager = new CacheManager();
+        cacheManager.setVectorStore(store);
+        cacheManager.setCacheStorage(storage);
+        GPTCache cache = new GPTCache();
+        cache.setCacheManager(cacheManager);
+        cache.setEmbedding(store.getEmbedding());
+        return cache;
+    }
+
+    private static List<Generation> generations(String text) {
+        Generation generation = new Generation();
+        generation.setText(text);
+        return Collections.singletonList(generation);
+    }
+
+    private static String text(List<Generation> generations) {
+        return generations == null ? null : generations.get(0).getText();
+    }
+
+    static class CountingDB extends InMemoryDB {
+
+        final AtomicInteger searches = new AtomicInteger();
+
+        final AtomicInteger batchedQueries = new AtomicInteger();
+
+        @Override
+        public List<List<Document>> batchSimilaritySearch(List<String> queries, int k, Double maxDistanceValue) {
+            searches.incrementAndGet();
+            batchedQueries.addAndGet(queries.size());
+            return super.batchSimilaritySearch(queries, k, maxDistanceValue);
+        }
+    }
+
+    /**
+     * Bag-of-words embeddings over a fixed hashed vocabulary, so reworded questions stay close.
+     */
+    static class WordEmbeddings extends Embeddings {
+
+        private static final int DIMENSIONS = 64;
+
+        @Override
+        public String getModelType() {
+            return "words";
+        }
+
+        @Override
+        public List<Document> embedDocument(List<Document> documents) {
+            for (Document document : documents) {
+                document.setEmbedding(embed(document.getPageContent()));
+            }
+            return documents;
+        }
+
+        @Override
+        public List<String> embedQuery(String text, int recommend) {
+            return Collections.singletonList(embed(text).toString());
+        }
+
+        List<Double> embed(String text) {
+            Double[] vector = new Double[DIMENSIONS];
+            Arrays.fill(vector, 0d);
+            for (String word : text.toLowerCase().split("\\s+")) {
+                if (!word.isEmpty()) {
+                    vector[Math.floorMod(word.hashCode(), DIMENSIONS)] += 1d;
+                }
+            }
+            return Arrays.asList(vector);
+        }
+    }
+
+    /**
+     * Pseudo-random unit-ish vectors seeded by the text, so unrelated prompts are far apart.
+     */
+    static class RandomEmbeddings extends WordEmbeddings {
+
+        private final int dimensions;
+
+        RandomEmbeddings(int dimensions) {
+            this.dimensions = dimensions;
+        }
+
+        @Override
+        List<Double> embed(String text) {
+            Random random = new Random(text.hashCode());
+            List<Double> vector = new ArrayList<>(dimensions);
+            for (int i = 0; i < dimensions; i++) {
+                vector.add(random.nextGaussian());
+            }
+            return vector;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.callback;
+
+import com.alibaba.langengine.core.callback.async.AsyncCallbackDispatcher;
+import com.alibaba.langengine.core.callback.async.CallbackOverflowPolicy;
+import com.alibaba.langengine.core.callback.async.CallbackStage;
+import lombok.Getter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncCallbackDispatcherTest {
+
+    @Test
+    public void testAsyncDispatchKeepsOrderAndSnapshot() {
+        RecordingHandler handler = new RecordingHandler();
+        try (AsyncCallbackDispatcher dispatcher = new AsyncCallbackDispatcher()) {
+            CallbackManager callbackManager = new CallbackManager(new ArrayList<>(Collections.singletonList(handler)),
+                    new HashMap<>(), dispatcher);
+
+            BaseCallbackHandler.setContext("trace-1");
+            Map<String, Object> inputs = new HashMap<>();
+            inputs.put("question", "q1");
+            ExecutionContext executionContext = new ExecutionContext();
+            executionContext.setInputs(inputs);
+            callbackManager.onChainStart(executionContext);
+            // 发布之后的修改不影响已发布的事件
+            inputs.put("question", "q2");
+            executionContext.setChainInstanceId("changed");
+            callbackManager.getChild().onLlmStart(executionContext);
+            callbackManager.onChainEnd(executionContext);
+
+            assertTrue(dispatcher.flush(5, TimeUnit.SECONDS));
+            assertEquals(3, handler.getStages().size());
+            assertEquals("onChainStart", handler.getStages().get(0));
+            assertEquals("onLlmStart", handler.getStages().get(1));
+            assertEquals("onChainEnd", handler.getStages().get(2));
+            assertEquals("q1", handler.getInputs().get(0).get("question"));
+            assertEquals("q2", handler.getInputs().get(1).get("question"));
+            assertEquals("trace-1", handler.getTraceIds().get(0));
+            assertNotSame(executionContext, handler.getContexts().get(0));
+            assertNotEquals(Thread.currentThread().getName(), handler.getThreadNames().get(0));
+            assertEquals(3, dispatcher.getMetrics().getDispatchedCount());
+        } finally {
+            BaseCallbackHandler.removeContext(false);
+        }
+    }
+
+    @Test
+    public void testDropPolicy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingHandler handler = new BlockingHandler(release);
+        try (AsyncCallbackDispatcher dispatcher = new AsyncCallbackDispatcher(4, 1, CallbackOverflowPolicy.DROP)) {
+            List<BaseCallbackHandler> handlers = Collections.singletonList(handler);
+            CallbackManager callbackManager = new CallbackManager(new ArrayList<>(handlers), new HashMap<>(), dispatcher);
+            for (int i = 0; i < 100; i++) {
+                callbackManager.onToolStart(new ExecutionContext());
+            }
+            release.countDown();
+            assertTrue(dispatcher.flush(5, TimeUnit.SECONDS));
+            assertTrue(dispatcher.getMetrics().getDroppedCount() > 0);
+            assertEquals(100, dispatcher.getMetrics().getPublishedCount());
+            assertEquals(100, dispatcher.getMetrics().getDroppedCount() + dispatcher.getMetrics().getDispatchedCount());
+        }
+    }
+
+    @Test
+    public void testBlockPolicy() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        try (AsyncCallbackDispatcher dispatcher = new AsyncCallbackDispatcher(8, 4, CallbackOverflowPolicy.BLOCK)) {
+            CallbackManager callbackManager = new CallbackManager(new ArrayList<>(Collections.singletonList(handler)),
+                    new HashMap<>(), dispatcher);
+            int threads = 4;
+            int perThread = 500;
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread producer = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        callbackManager.onRetrieverStart(new ExecutionContext());
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            assertTrue(dispatcher.flush(5, TimeUnit.SECONDS));
+            assertEquals(0, dispatcher.getMetrics().getDroppedCount());
+            assertEquals(threads * perThread, handler.getStages().size());
+            assertTrue(dispatcher.getMetrics().getBatchCount() <= threads * perThread);
+        }
+    }
+
+    @Test
+    public void testHandlerPublishingUnderBlockPolicy() {
+        RecordingHandler recorder = new RecordingHandler();
+        try (AsyncCallbackDispatcher dispatcher = new AsyncCallbackDispatcher(2, 1, CallbackOverflowPolicy.BLOCK)) {
+            CallbackManager child = new CallbackManager(new ArrayList<>(Collections.singletonList(recorder)),
+                    new HashMap<>(), dispatcher);
+            // handler在后台线程中发布的事件超过缓冲区容量，不能等待后台线程自己消费
+            RepublishingHandler republisher = new RepublishingHandler(child, 20);
+            CallbackManager callbackManager = new CallbackManager(new ArrayList<>(Collections.singletonList(republisher)),
+                    new HashMap<>(), dispatcher);
+            callbackManager.onChainStart(new ExecutionContext());
+
+            assertTrue(dispatcher.flush(5, TimeUnit.SECONDS));
+            assertEquals(20, recorder.getStages().size());
+            assertEquals(0, dispatcher.getMetrics().getDroppedCount());
+        }
+    }
+
+    @Test
+    public void testCloseWhilePublishingLosesNothing() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            RecordingHandler handler = new RecordingHandler();
+            AsyncCallbackDispatcher dispatcher = new AsyncCallbackDispatcher(64, 8, CallbackOverflowPolicy.BLOCK);
+            List<BaseCallbackHandler> handlers = Collections.singletonList(handler);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread producer = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 200; i++) {
+                        dispatcher.publish(CallbackStage.RETRIEVER_START, new ExecutionContext(), handlers);
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            start.countDown();
+            dispatcher.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            // 每个事件要么被分发要么计入丢弃，不会停留在已停止消费的缓冲区中
+            assertTrue(dispatcher.flush(1, TimeUnit.SECONDS));
+            assertEquals(0, dispatcher.getPendingCount());
+            assertEquals(dispatcher.getMetrics().getDispatchedCount(), handler.getStages().size());
+        }
+    }
+
+    @Test
+    public void testSyncWhenDispatcherClosed() {
+        RecordingHandler handler = new RecordingHandler();
+        AsyncCallbackDispatcher dispatcher = new AsyncCallbackDispatcher();
+        dispatcher.close();
+        CallbackManager callbackManager = new CallbackManager(new ArrayList<>(Collections.singletonList(handler)),
+                new HashMap<>(), dispatcher);
+        callbackManager.onAgentAction(new ExecutionContext());
+        assertEquals(1, handler.getStages().size());
+        assertEquals(Thread.currentThread().getName(), handler.getThreadNames().get(0));
+    }
+
+    @Getter
+    public static class RecordingHandler extends EmptyCallbackHandler {
+
+        private final List<String> stages = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> traceIds = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+        private final List<ExecutionContext> contexts = Collections.synchronizedList(new ArrayList<>());
+        private final List<Map<String, Object>> inputs = Collections.synchronizedList(new ArrayList<>());
+
+        private void record(String stage, ExecutionContext executionContext) {
+            stages.add(stage);
+            traceIds.add(getContext());
+            threadNames.add(Thread.currentThread().getName());
+            contexts.add(executionContext);
+            inputs.add(executionContext.getInputs());
+        }
+
+        @Override
+        public void onChainStart(ExecutionContext executionContext) {
+            record("onChainStart", executionContext);
+        }
+
+        @Override
+        public void onChainEnd(ExecutionContext executionContext) {
+            record("onChainEnd", executionContext);
+        }
+
+        @Override
+        public void onLlmStart(ExecutionContext executionContext) {
+            record("onLlmStart", executionContext);
+        }
+
+        @Override
+        public void onAgentAction(ExecutionContext executionContext) {
+            record("onAgentAction", executionContext);
+        }
+
+        @Override
+        public void onRetrieverStart(ExecutionContext executionContext) {
+            record("onRetrieverStart", executionContext);
+        }
+    }
+
+    public static class RepublishingHandler extends EmptyCallbackHandler {
+
+        private final CallbackManager target;
+
+        private final int count;
+
+        public RepublishingHandler(CallbackManager target, int count) {
+            this.target = target;
+            this.count = count;
+        }
+
+        @Override
+        public void onChainStart(ExecutionContext executionContext) {
+            for (int i = 0; i < count; i++) {
+                target.onRetrieverStart(new ExecutionContext());
+            }
+        }
+    }
+
+    public static class BlockingHandler extends EmptyCallbackHandler {
+
+        private final CountDownLatch release;
+
+        public BlockingHandler(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void onToolStart(ExecutionContext executionContext) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
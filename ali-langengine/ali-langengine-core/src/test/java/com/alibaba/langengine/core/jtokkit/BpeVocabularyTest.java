@@ -0,0 +1,268 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.jtokkit;
+
+import com.alibaba.langengine.core.jtokkit.api.Encoding;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BpeVocabularyTest {
+
+    private static final String[] VOCABULARIES = {
+            "/jtokkit/qwen.tiktoken",
+            "/jtokkit/cl100k_base.tiktoken",
+            "/jtokkit/p50k_base.tiktoken",
+            "/jtokkit/r50k_base.tiktoken"
+    };
+
+    private static final String R50K = "/jtokkit/r50k_base.tiktoken";
+
+    private static Path cacheDir;
+
+    private static String previousCacheDir;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        cacheDir = Files.createTempDirectory("jtokkit");
+        previousCacheDir = System.setProperty(BpeVocabulary.CACHE_DIR_KEY, cacheDir.toString());
+    }
+
+    @AfterAll
+    public static void tearDown() throws Exception {
+        if (previousCacheDir == null) {
+            System.clearProperty(BpeVocabulary.CACHE_DIR_KEY);
+        } else {
+            System.setProperty(BpeVocabulary.CACHE_DIR_KEY, previousCacheDir);
+        }
+        deleteRecursively(cacheDir);
+    }
+
+    @Test
+    public void test_lookupMatchesTextVocabulary() {
+        for (String vocabulary : VOCABULARIES) {
+            Map<byte[], Integer> mergeableRanks = EncodingFactory.loadMergeableRanks(vocabulary);
+            BpeVocabulary binary = BpeVocabulary.load(vocabulary);
+            assertEquals(mergeableRanks.size(), binary.size(), vocabulary);
+            for (Map.Entry<byte[], Integer> entry : mergeableRanks.entrySet()) {
+                byte[] token = entry.getKey();
+                assertEquals(entry.getValue().intValue(), binary.rank(new ByteArrayWrapper(token), 0, token.length), vocabulary);
+                assertArrayEquals(token, binary.decode(entry.getValue()), vocabulary);
+            }
+            assertNull(binary.decode(-1));
+            assertNull(binary.decode(Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * 三套词表各编码3000条语料，耗时较长，默认不跑：-Dlangengine.benchmark.enabled=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "langengine.benchmark.enabled", matches = "true")
+    public void test_encodingsMatchTextLoader() {
+        List<String> corpus = corpus(new Random(20240101), 3000);
+        assertIdentical(corpus, EncodingFactory::qwen, "/jtokkit/qwen.tiktoken");
+        assertIdentical(corpus, EncodingFactory::cl100kBase, "/jtokkit/cl100k_base.tiktoken");
+        assertIdentical(corpus, encoder -> EncodingFactory.from50kParameters("r50k_base", encoder, Collections.emptyMap()),
+                "/jtokkit/r50k_base.tiktoken");
+    }
+
+    /**
+     * 耗时且依赖机器性能，默认不跑：-Dlangengine.benchmark.enabled=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "langengine.benchmark.enabled", matches = "true")
+    public void test_startupAndFootprint() {
+        // 预先编译到缓存目录, 之后的加载只做内存映射
+        BpeVocabulary.load("/jtokkit/qwen.tiktoken");
+
+        long usedBefore = usedHeap();
+        long start = System.nanoTime();
+        TokenEncoder text = new TokenEncoder(EncodingFactory.loadMergeableRanks("/jtokkit/qwen.tiktoken"));
+        long textMillis = (System.nanoTime() - start) / 1_000_000;
+        long textHeap = usedHeap() - usedBefore;
+
+        usedBefore = usedHeap();
+        start = System.nanoTime();
+        TokenEncoder binary = EncodingFactory.loadTokenEncoder("/jtokkit/qwen.tiktoken");
+        long binaryMillis = (System.nanoTime() - start) / 1_000_000;
+        long binaryHeap = usedHeap() - usedBefore;
+
+        assertTrue(binaryHeap < textHeap, String.format("qwen vocabulary, text: %d ms / %d KB heap, binary: %d ms / %d KB heap",
+                textMillis, textHeap / 1024, binaryMillis, binaryHeap / 1024));
+        // 保持引用直到测量结束
+        assertTrue(text != null && binary != null);
+    }
+
+    @Test
+    public void test_corruptCacheFileIsRebuilt() throws Exception {
+        Path dir = Files.createTempDirectory("jtokkit");
+        String previous = System.setProperty(BpeVocabulary.CACHE_DIR_KEY, dir.toString());
+        try {
+            URL text = BpeVocabulary.class.getResource(R50K);
+            BpeVocabulary.mapCompiled(R50K, text);
+            Path cached = cacheFiles(dir).get(0);
+            assertTrue(cached.getFileName().toString().matches("r50k_base-v\\d+-[0-9a-f]{64}\\.bpe"), cached.toString());
+            byte[] expected = Files.readAllBytes(cached);
+
+            byte[] corrupt = expected.clone();
+            corrupt[corrupt.length / 2] ^= 1;
+            Files.write(cached, corrupt);
+            assertEquals(ByteBuffer.wrap(expected), BpeVocabulary.mapCompiled(R50K, text));
+            assertArrayEquals(expected, Files.readAllBytes(cached));
+
+            Files.write(cached, Arrays.copyOf(expected, expected.length / 2));
+            assertEquals(ByteBuffer.wrap(expected), BpeVocabulary.mapCompiled(R50K, text));
+            assertArrayEquals(expected, Files.readAllBytes(cached));
+        } finally {
+            System.setProperty(BpeVocabulary.CACHE_DIR_KEY, previous);
+            deleteRecursively(dir);
+        }
+    }
+
+    @Test
+    public void test_sharedCacheDirectoryIsNotUsed() throws Exception {
+        Path dir = Files.createTempDirectory("jtokkit");
+        Assumptions.assumeTrue(Files.getFileAttributeView(dir, PosixFileAttributeView.class) != null);
+        Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwxrwxrwx"));
+        String previous = System.setProperty(BpeVocabulary.CACHE_DIR_KEY, dir.toString());
+        try {
+            ByteBuffer buffer = BpeVocabulary.mapCompiled(R50K, BpeVocabulary.class.getResource(R50K));
+            assertEquals(BpeVocabulary.compile(EncodingFactory.loadMergeableRanks(R50K)).size(), buffer.getInt(8));
+            assertTrue(cacheFiles(dir).isEmpty());
+        } finally {
+            System.setProperty(BpeVocabulary.CACHE_DIR_KEY, previous);
+            deleteRecursively(dir);
+        }
+    }
+
+    private static List<Path> cacheFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(BpeVocabulary.BINARY_SUFFIX)).collect(Collectors.toList());
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static void assertIdentical(List<String> corpus, Function<TokenEncoder, Encoding> factory, String vocabulary) {
+        Encoding text = factory.apply(new TokenEncoder(EncodingFactory.loadMergeableRanks(vocabulary)));
+        Encoding binary = factory.apply(EncodingFactory.loadTokenEncoder(vocabulary));
+        for (String sample : corpus) {
+            assertEquals(text.encodeOrdinary(sample), binary.encodeOrdinary(sample), sample);
+            assertEquals(text.countTokensOrdinary(sample), binary.countTokensOrdinary(sample), sample);
+        }
+        String all = String.join("", corpus);
+        assertEquals(all, binary.decode(binary.encodeOrdinary(all)));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * 固定种子的多语种语料: 英文、中文、日文、俄文、数字、标点、emoji、代码和长串重复字符
+     */
+    private static List<String> corpus(Random random, int size) {
+        String[] words = {"the", "token", "encoding", " vocabulary", "Hello", "world", "don't", "we'll", "I'm", "JSON",
+                "def", "return", "public static void", "{", "}", "();", "=>", "http://example.com/a?b=c"};
+        List<String> corpus = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder sample = new StringBuilder();
+            int parts = 1 + random.nextInt(20);
+            for (int p = 0; p < parts; p++) {
+                switch (random.nextInt(10)) {
+                    case 0:
+                        sample.append(words[random.nextInt(words.length)]);
+                        break;
+                    case 1:
+                        appendRange(sample, random, 0x4E00, 0x9FA5, 1 + random.nextInt(12));
+                        break;
+                    case 2:
+                        appendRange(sample, random, 0x3041, 0x30FF, 1 + random.nextInt(8));
+                        break;
+                    case 3:
+                        appendRange(sample, random, 0x0410, 0x044F, 1 + random.nextInt(10));
+                        break;
+                    case 4:
+                        sample.append(random.nextInt(1_000_000));
+                        break;
+                    case 5:
+                        sample.append(" \t\n  ".substring(random.nextInt(5)));
+                        break;
+                    case 6:
+                        sample.appendCodePoint(0x1F600 + random.nextInt(80));
+                        break;
+                    case 7:
+                        appendRange(sample, random, 0x21, 0x7E, 1 + random.nextInt(6));
+                        break;
+                    case 8:
+                        // 超过VERY_LARGE_TOKENIZER_BYTE_THRESHOLD, 走TokenEncoderLarge
+                        for (int r = 600 + random.nextInt(200); r > 0; r--) {
+                            sample.append(random.nextBoolean() ? 'a' : 'b');
+                        }
+                        break;
+                    default:
+                        appendRange(sample, random, 'a', 'z', 1 + random.nextInt(10));
+                        sample.append(' ');
+                        break;
+                }
+            }
+            corpus.add(sample.toString());
+        }
+        return corpus;
+    }
+
+    private static void appendRange(StringBuilder sample, Random random, int from, int to, int count) {
+        for (int i = 0; i < count; i++) {
+            sample.appendCodePoint(from + random.nextInt(to - from + 1));
+        }
+    }
+}
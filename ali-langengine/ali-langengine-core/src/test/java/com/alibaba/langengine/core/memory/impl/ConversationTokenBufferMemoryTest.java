@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.memory.impl;
+
+import com.alibaba.langengine.core.memory.ChatMessageHistory;
+import com.alibaba.langengine.core.messages.BaseMessage;
+import com.alibaba.langengine.core.messages.MessageConverter;
+import com.alibaba.langengine.core.tokenizers.GPT3Tokenizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ConversationTokenBufferMemory 增量 token 计数测试
+ *
+ * @author xiaoxuan.lp
+ */
+public class ConversationTokenBufferMemoryTest {
+
+    private static final String[] WORDS = {
+        "hello", "world", "the", "order", "refund", "shipping", "price", "is", "not", "what",
+        "1024", "3.14", "?", "!", ",", "don't", "we'll", "你好", "退款", "订单", "GPT", "API", "e-mail"
+    };
+
+    @Test
+    public void test_pruningMatchesFullRetokenization() {
+        Random random = new Random(20231013);
+        for (int conversation = 0; conversation < 30; conversation++) {
+            int limit = 20 + random.nextInt(300);
+            ConversationTokenBufferMemory memory = new ConversationTokenBufferMemory();
+            memory.setMaxTokenLimit(limit);
+            LegacyTokenBufferMemory legacy = new LegacyTokenBufferMemory(limit);
+
+            for (int turn = 0; turn < 40; turn++) {
+                Map<String, Object> inputs = singleton("input", sentence(random));
+                Map<String, Object> outputs = singleton("output", sentence(random));
+                memory.saveContext(inputs, outputs);
+                legacy.saveContext(inputs, outputs);
+                assertEquals(contents(legacy.getChatMemory().getMessages()), contents(memory.getChatMemory().getMessages()),
+                    "conversation " + conversation + " turn " + turn + " limit " + limit);
+            }
+        }
+    }
+
+    @Test
+    public void test_externalChangesRebuildTheWindow() {
+        ConversationTokenBufferMemory memory = new ConversationTokenBufferMemory();
+        memory.setMaxTokenLimit(30);
+        LegacyTokenBufferMemory legacy = new LegacyTokenBufferMemory(30);
+        List<ConversationTokenBufferMemory> memories = Arrays.asList(memory, legacy);
+
+        memories.forEach(m -> m.saveContext(singleton("input", "hello there"), singleton("output", "hi, how can I help")));
+        memories.forEach(m -> m.getChatMemory().clear());
+        memories.forEach(m -> m.saveContext(singleton("input", "where is my order"), singleton("output", "it ships tomorrow")));
+        assertEquals(Arrays.asList("where is my order", "it ships tomorrow"), contents(memory.getChatMemory().getMessages()));
+
+        // drop the last answer behind the memory's back, then continue the conversation
+        memories.forEach(m -> m.getChatMemory().getMessages().remove(1));
+        memories.forEach(m -> m.saveContext(singleton("input", "a b c d e f g h i j k l m n"),
+            singleton("output", "o p q r s t u v w x y z")));
+        assertEquals(contents(legacy.getChatMemory().getMessages()), contents(memory.getChatMemory().getMessages()));
+        assertEquals("o p q r s t u v w x y z", memory.getChatMemory().getMessages().get(memory.getChatMemory().getMessages().size() - 1).getContent());
+    }
+
+    /**
+     * 耗时且依赖机器性能，默认不跑：-Dlangengine.benchmark.enabled=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "langengine.benchmark.enabled", matches = "true")
+    public void test_benchmarkTenThousandTurns() {
+        Random random = new Random(42);
+        int turns = 10_000;
+        List<Map<String, Object>> inputs = new ArrayList<>();
+        List<Map<String, Object>> outputs = new ArrayList<>();
+        for (int i = 0; i < turns; i++) {
+            inputs.add(singleton("input", sentence(random)));
+            outputs.add(singleton("output", sentence(random)));
+        }
+
+        ConversationTokenBufferMemory memory = new ConversationTokenBufferMemory();
+        memory.setMaxTokenLimit(20_000);
+        long start = System.nanoTime();
+        for (int i = 0; i < turns; i++) {
+            memory.saveContext(inputs.get(i), outputs.get(i));
+        }
+        long incrementalNanos = System.nanoTime() - start;
+
+        // the legacy implementation re-tokenizes the whole buffer, so only time a tenth of the session
+        LegacyTokenBufferMemory legacy = new LegacyTokenBufferMemory(20_000);
+        start = System.nanoTime();
+        for (int i = 0; i < turns / 10; i++) {
+            legacy.saveContext(inputs.get(i), outputs.get(i));
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        assertFalse(memory.getChatMemory().getMessages().isEmpty());
+        assertTrue(memory.getChatMemory().getMessages().size() < turns * 2);
+        // 按每轮平均耗时比较
+        assertTrue(incrementalNanos / turns < legacyNanos / (turns / 10), String.format(
+            "incremental %d turns %.1f ms, legacy %d turns %.1f ms", turns, incrementalNanos / 1e6, turns / 10, legacyNanos / 1e6));
+    }
+
+    private static String sentence(Random random) {
+        int length = 1 + random.nextInt(25);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+
+    private static Map<String, Object> singleton(String key, Object value) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(key, value);
+        return map;
+    }
+
+    private static List<String> contents(List<BaseMessage> messages) {
+        return messages.stream().map(BaseMessage::getContent).collect(Collectors.toList());
+    }
+
+    /**
+     * The implementation before per-message token caching, kept as the reference for the pruning boundary.
+     */
+    static class LegacyTokenBufferMemory extends ConversationTokenBufferMemory {
+
+        LegacyTokenBufferMemory(int maxTokenLimit) {
+            setMaxTokenLimit(maxTokenLimit);
+            setChatMemory(new ChatMessageHistory());
+        }
+
+        @Override
+        public void saveContext(Map<String, Object> inputs, Map<String, Object> outputs) {
+            getChatMemory().addUserMessage(inputs.get("input").toString());
+            getChatMemory().addAIMessage(outputs.get("output").toString());
+            List<BaseMessage> buffer = getChatMemory().getMessages();
+            GPT3Tokenizer tokenizer = new GPT3Tokenizer();
+            int currBufferLength = tokenizer.getTokenCount(
+                MessageConverter.getBufferString(buffer, getHumanPrefix(), getAiPrefix(), getSystemPrefix(), null, getToolPrefix()));
+
+            while (currBufferLength > getMaxTokenLimit()) {
+                int firstBufferLength = tokenizer.getTokenCount(
+                    MessageConverter.getBufferString(Arrays.asList(buffer.get(0)), getHumanPrefix(),
+                        getAiPrefix(), getSystemPrefix(), null, getToolPrefix()));
+                buffer.remove(0);
+                currBufferLength -= firstBufferLength;
+            }
+            getChatMemory().setMessages(buffer);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.model.fastchat.service;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SSEDecoderTest {
+
+    @Test
+    public void test_fieldsCommentsAndUnknownFields() throws IOException {
+        List<SSE> events = decode(source(":HTTP_STATUS/200\n"
+                + "event: delta\n"
+                + "id: 1\n"
+                + "retry: 3000\n"
+                + "foo: ignored\n"
+                + "data: {\"a\":1}\n"
+                + "\n"
+                + "data:{\"a\":2}\n"
+                + "\n"));
+
+        assertEquals(2, events.size());
+        assertEquals("{\"a\":1}", events.get(0).getData());
+        assertEquals("delta", events.get(0).getEvent());
+        assertEquals("1", events.get(0).getId());
+        assertEquals(Long.valueOf(3000), events.get(0).getRetry());
+        // 事件类型每个事件重置，id与retry保留
+        assertEquals("{\"a\":2}", events.get(1).getData());
+        assertEquals("message", events.get(1).getEvent());
+        assertEquals("1", events.get(1).getId());
+        assertEquals(Long.valueOf(3000), events.get(1).getRetry());
+    }
+
+    @Test
+    public void test_multiLineDataAndEmptyEvents() throws IOException {
+        List<SSE> events = decode(source("data: first\n"
+                + "data:  second\n"
+                + "data\n"
+                + "\n"
+                + "event: ping\n"
+                + "\n"
+                + "retry: abc\n"
+                + "data: [DONE]\n"
+                + "\n"
+                + "data: unterminated\n"));
+
+        assertEquals(2, events.size());
+        assertEquals("first\n second\n", events.get(0).getData());
+        assertNull(events.get(0).getRetry());
+        assertTrue(events.get(1).isDone());
+    }
+
+    @Test
+    public void test_lineTerminatorsAndBom() throws IOException {
+        String stream = "\uFEFFdata: lf\n\ndata: crlf\r\n\r\ndata: cr\r\rid: 7\r\ndata: mixed\n\r\n";
+        List<SSE> events = decode(source(stream));
+
+        assertEquals(4, events.size());
+        assertEquals("lf", events.get(0).getData());
+        assertEquals("crlf", events.get(1).getData());
+        assertEquals("cr", events.get(2).getData());
+        assertEquals("mixed", events.get(3).getData());
+        assertEquals("7", events.get(3).getId());
+    }
+
+    @Test
+    public void test_chunkBoundariesInsideUtf8Sequences() throws IOException {
+        StringBuilder stream = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String content = "{\"content\":\"第" + i + "段 😀 héllo\"}";
+            expected.add(content);
+            stream.append("event: 增量\r\n").append("data: ").append(content).append("\r\n\r\n");
+        }
+        byte[] bytes = stream.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (int chunkSize = 1; chunkSize <= 16; chunkSize++) {
+            List<SSE> events = decode(chunked(bytes, chunkSize));
+            assertEquals(expected.size(), events.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i), events.get(i).getData());
+                assertEquals("增量", events.get(i).getEvent());
+            }
+        }
+    }
+
+    @Test
+    public void test_toBytesRoundTrip() throws IOException {
+        SSE sse = new SSE("第一行\n第二行", "delta", "9", null);
+        List<SSE> events = decode(source(new String(sse.toBytes(), StandardCharsets.UTF_8)));
+
+        assertEquals(1, events.size());
+        assertEquals("第一行\n第二行", events.get(0).getData());
+        assertEquals("delta", events.get(0).getEvent());
+        assertEquals("9", events.get(0).getId());
+    }
+
+    /**
+     * 耗时且依赖机器性能，默认不跑：-Dlangengine.benchmark.enabled=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "langengine.benchmark.enabled", matches = "true")
+    public void test_benchmarkDecodeRecordedStream() throws IOException {
+        byte[] stream = recordedStream(10 * 1024 * 1024);
+        int expected = decode(source(stream)).size();
+
+        int rounds = 5;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            assertEquals(expected, decode(chunked(stream, 1400)).size());
+        }
+        long decoderNanos = (System.nanoTime() - start) / rounds;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            assertEquals(expected, readLines(stream));
+        }
+        long readerNanos = (System.nanoTime() - start) / rounds;
+
+        System.out.printf("sse %d MB, %d events: SSEDecoder %.0f events/s, BufferedReader.readLine %.0f events/s%n",
+                stream.length >> 20, expected, expected / (decoderNanos / 1e9), expected / (readerNanos / 1e9));
+    }
+
+    private static List<SSE> decode(BufferedSource source) throws IOException {
+        SSEDecoder decoder = new SSEDecoder(source);
+        List<SSE> events = new ArrayList<>();
+        SSE sse;
+        while ((sse = decoder.next()) != null) {
+            events.add(sse);
+        }
+        return events;
+    }
+
+    private static BufferedSource source(String stream) {
+        return new Buffer().writeUtf8(stream);
+    }
+
+    private static BufferedSource source(byte[] stream) {
+        return new Buffer().write(stream);
+    }
+
+    /**
+     * 每次最多读出chunkSize个字节，模拟网络分包
+     */
+    private static BufferedSource chunked(byte[] stream, int chunkSize) {
+        return Okio.buffer(new ForwardingSource(new Buffer().write(stream)) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                return super.read(sink, Math.min(byteCount, chunkSize));
+            }
+        });
+    }
+
+    /**
+     * 原ResponseBodyCallback的读法，作为对照
+     */
+    private static int readLines(byte[] stream) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(stream)));
+        int count = 0;
+        String line;
+        SSE sse = null;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("data:")) {
+                sse = new SSE(line.substring(5).trim());
+            } else if (line.equals("") && sse != null) {
+                count++;
+                sse = null;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 按OpenAI兼容接口的chat.completion.chunk格式生成的流
+     */
+    private static byte[] recordedStream(int size) {
+        StringBuilder builder = new StringBuilder(size + 512);
+        String[] tokens = {"Hello", "，", "世界", " streaming", "的", "回答", "!", " 😀"};
+        for (int i = 0; builder.length() < size; i++) {
+            builder.append("data: {\"id\":\"chatcmpl-8x1\",\"object\":\"chat.completion.chunk\",\"created\":1700000000,")
+                    .append("\"model\":\"qwen-plus\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"")
+                    .append(tokens[i % tokens.length])
+                    .append("\"},\"finish_reason\":null}]}\n\n");
+        }
+        builder.append("data: [DONE]\n\n");
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
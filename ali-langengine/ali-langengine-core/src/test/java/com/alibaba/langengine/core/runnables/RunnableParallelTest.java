@@ -0,0 +1,220 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.runnables;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RunnableParallelTest {
+
+    @Test
+    public void test_failFastCancelsOtherBranches() throws Exception {
+        SlowRunnable slow = new SlowRunnable("slow", 100, 20);
+        SlowRunnable failing = new SlowRunnable("failing", 2, 20).failAtEnd();
+        CountingRunnable afterSlow = new CountingRunnable("after");
+        RunnableParallel parallel = new RunnableParallel(slow, failing, new RunnableSequence(new SlowRunnable("first", 100, 20), afterSlow));
+
+        long start = System.nanoTime();
+        RuntimeException error = assertThrows(RuntimeException.class, () -> parallel.invoke("hi", new RunnableConfig()));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(error.getMessage().contains("failing"), error.getMessage());
+        assertTrue(elapsedMillis < 1000, "took " + elapsedMillis + " ms");
+        assertStopped(slow);
+        assertEquals(1, slow.invocations.get());
+        assertEquals(1, failing.invocations.get());
+        assertEquals(0, afterSlow.invocations.get());
+    }
+
+    @Test
+    public void test_waitAllReturnsPartialResultsWithErrors() {
+        SlowRunnable quick = new SlowRunnable("quick", 3, 20);
+        SlowRunnable failing = new SlowRunnable("failing", 1, 20).failAtEnd();
+        SlowRunnable slower = new SlowRunnable("slower", 6, 20);
+        RunnableParallel parallel = new RunnableParallel(quick, failing, slower);
+        parallel.setFailurePolicy(RunnableParallel.FailurePolicy.WAIT_ALL);
+        parallel.setReturnPartialResults(true);
+
+        RunnableParallelResult result = (RunnableParallelResult) parallel.invoke("hi", new RunnableConfig());
+
+        assertEquals("quick:hi", result.get("quick").toString());
+        assertEquals("slower:hi", result.get("slower").toString());
+        assertFalse(result.containsKey("failing"));
+        assertFalse(result.isComplete());
+        assertEquals(1, result.getErrors().size());
+        assertTrue(result.getErrors().get("failing") instanceof IllegalStateException);
+        assertEquals(6, slower.steps.get());
+    }
+
+    @Test
+    public void test_timeoutCancelsAndKeepsCompletedBranches() throws Exception {
+        SlowRunnable quick = new SlowRunnable("quick", 1, 10);
+        SlowRunnable slow = new SlowRunnable("slow", 500, 20);
+        RunnableParallel parallel = new RunnableParallel(quick, slow);
+        parallel.setReturnPartialResults(true);
+        RunnableConfig config = new RunnableConfig();
+        config.setParallelSecondTimeout(1);
+
+        RunnableParallelResult result = (RunnableParallelResult) parallel.invoke("hi", config);
+
+        assertEquals("quick:hi", result.get("quick").toString());
+        assertTrue(result.getErrors().get("slow") instanceof TimeoutException);
+        assertStopped(slow);
+        assertTrue(slow.steps.get() < 100, "slow ran " + slow.steps.get() + " steps");
+        // the caller's config is left untouched
+        assertNull(config.getCancellationToken());
+    }
+
+    @Test
+    public void test_callerCancellationStopsBranches() throws Exception {
+        SlowRunnable slow = new SlowRunnable("slow", 500, 20);
+        SlowRunnable other = new SlowRunnable("other", 500, 20);
+        RunnableParallel parallel = new RunnableParallel(slow, other);
+        parallel.setReturnPartialResults(true);
+        CancellationToken token = new CancellationToken();
+        RunnableConfig config = new RunnableConfig();
+        config.setCancellationToken(token);
+
+        CompletableFuture<RunnableHashMap> result = CompletableFuture.supplyAsync(() -> parallel.invoke("hi", config));
+        Thread.sleep(100);
+        token.cancel("user left");
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> join(result));
+        assertTrue(error.getMessage().contains("user left"), error.getMessage());
+        assertStopped(slow);
+        assertStopped(other);
+    }
+
+    @Test
+    public void test_cancelledTokenPreventsBranchesFromStarting() {
+        CountingRunnable first = new CountingRunnable("first");
+        CountingRunnable second = new CountingRunnable("second");
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        RunnableConfig config = new RunnableConfig();
+        config.setCancellationToken(token);
+
+        assertThrows(RuntimeException.class, () -> new RunnableParallel(first, second).invoke("hi", config));
+        assertEquals(0, first.invocations.get());
+        assertEquals(0, second.invocations.get());
+    }
+
+    @Test
+    public void test_retryStopsWhenCancelled() {
+        CancellationToken token = new CancellationToken();
+        RunnableConfig config = new RunnableConfig();
+        config.setCancellationToken(token);
+        AtomicInteger calls = new AtomicInteger();
+        RunnableRetry retry = new RunnableRetry();
+        retry.setBound(new SlowRunnable("flaky", 1, 1) {
+            @Override
+            public RunnableOutput invoke(Object input, RunnableConfig config) {
+                calls.incrementAndGet();
+                token.cancel();
+                throw new IllegalStateException("flaky");
+            }
+        });
+        retry.setRetryScheduler((task, delayMillis) -> task.run());
+
+        assertThrows(IllegalStateException.class, () -> retry.invoke("hi", config));
+        assertEquals(1, calls.get());
+    }
+
+    private static void assertStopped(SlowRunnable runnable) throws InterruptedException {
+        // the step in flight when the token was cancelled may still finish
+        Thread.sleep(runnable.stepMillis * 2L);
+        int steps = runnable.steps.get();
+        Thread.sleep(runnable.stepMillis * 5L);
+        assertEquals(steps, runnable.steps.get(), runnable.getName() + " kept working after cancellation");
+        assertTrue(runnable.steps.get() < runnable.totalSteps);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (RuntimeException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Works in small steps and checks the cancellation token between them, like a runnable making several model calls.
+     */
+    static class SlowRunnable extends Runnable<Object, RunnableOutput> {
+
+        final AtomicInteger invocations = new AtomicInteger();
+
+        final AtomicInteger steps = new AtomicInteger();
+
+        final int totalSteps;
+
+        final long stepMillis;
+
+        private boolean failAtEnd;
+
+        SlowRunnable(String name, int totalSteps, long stepMillis) {
+            setName(name);
+            this.totalSteps = totalSteps;
+            this.stepMillis = stepMillis;
+        }
+
+        SlowRunnable failAtEnd() {
+            failAtEnd = true;
+            return this;
+        }
+
+        @Override
+        public RunnableOutput invoke(Object input, RunnableConfig config) {
+            invocations.incrementAndGet();
+            for (int i = 0; i < totalSteps; i++) {
+                CancellationToken.throwIfCancelled(config);
+                try {
+                    Thread.sleep(stepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("interrupted");
+                }
+                steps.incrementAndGet();
+            }
+            if (failAtEnd) {
+                throw new IllegalStateException(getName() + " failed");
+            }
+            RunnableStringVar output = new RunnableStringVar();
+            output.setValue(getName() + ":" + input);
+            return output;
+        }
+
+        @Override
+        public RunnableOutput stream(Object input, RunnableConfig config, Consumer<Object> chunkConsumer) {
+            return invoke(input, config);
+        }
+    }
+
+    static class CountingRunnable extends SlowRunnable {
+
+        CountingRunnable(String name) {
+            super(name, 0, 0);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.runnables;
+
+import com.alibaba.langengine.core.runnables.retry.CircuitBreaker;
+import com.alibaba.langengine.core.runnables.retry.CircuitBreakerOpenException;
+import com.alibaba.langengine.core.runnables.retry.CircuitBreakerRegistry;
+import com.alibaba.langengine.core.runnables.retry.RetryBudget;
+import com.alibaba.langengine.core.runnables.retry.RetryScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RunnableRetryTest {
+
+    @Test
+    public void test_retriesWithFullJitterBackoff() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        FlakyRunnable flaky = new FlakyRunnable(3);
+        RunnableRetry retry = newRetry(flaky, scheduler);
+        retry.setIntervalTime(100);
+        retry.setMaxIntervalTime(250);
+        retry.setRandom(new FixedRandom(0.999999));
+
+        CompletableFuture<Object> result = retry.invokeAsync("hi", null);
+        scheduler.advance(0);
+        assertEquals(1, flaky.calls);
+        assertFalse(result.isDone());
+
+        scheduler.advance(99);
+        assertEquals(1, flaky.calls);
+        scheduler.advance(1);
+        assertEquals(2, flaky.calls);
+        scheduler.advance(200);
+        assertEquals(3, flaky.calls);
+        // the third backoff is capped at maxIntervalTime
+        scheduler.advance(249);
+        assertEquals(3, flaky.calls);
+        scheduler.advance(1);
+        assertEquals(4, flaky.calls);
+        assertEquals("ok:hi", result.join());
+        assertEquals(Arrays.asList(0L, 100L, 200L, 250L), scheduler.delays);
+    }
+
+    @Test
+    public void test_jitterSpreadsRetriesOfConcurrentCallers() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        RunnableRetry retry = newRetry(new FlakyRunnable(Integer.MAX_VALUE), scheduler);
+        retry.setIntervalTime(1000);
+        retry.setMaxAttemptNumber(1);
+        retry.setRetryBudget(null);
+        retry.setRandom(new Random(7));
+
+        for (int i = 0; i < 100; i++) {
+            retry.invokeAsync("hi", null);
+        }
+        scheduler.advance(0);
+        List<Long> retryDelays = scheduler.delays.subList(100, scheduler.delays.size());
+        assertEquals(100, retryDelays.size());
+        assertTrue(retryDelays.stream().allMatch(delay -> delay >= 0 && delay <= 1000));
+        assertTrue(retryDelays.stream().distinct().count() > 50);
+    }
+
+    @Test
+    public void test_retryPredicates() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        FlakyRunnable flaky = new FlakyRunnable(Integer.MAX_VALUE);
+        flaky.error = () -> new IllegalArgumentException("bad request");
+        RunnableRetry retry = newRetry(flaky, scheduler)
+                .retryOn(IllegalStateException.class, e -> e.getMessage().contains("429"));
+
+        CompletableFuture<Object> result = retry.invokeAsync("hi", null);
+        scheduler.advance(10_000);
+        assertEquals(1, flaky.calls);
+        assertEquals("bad request", rootCause(result).getMessage());
+
+        flaky.error = () -> new RuntimeException(new IllegalStateException("HTTP 429"));
+        result = retry.invokeAsync("hi", null);
+        scheduler.advance(10_000);
+        assertEquals(1 + 4, flaky.calls);
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    @Test
+    public void test_budgetSharedAcrossInvocations() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        FlakyRunnable flaky = new FlakyRunnable(Integer.MAX_VALUE);
+        RunnableRetry retry = newRetry(flaky, scheduler);
+        retry.setRetryBudget(new RetryBudget(5, 1, scheduler::now));
+
+        List<CompletableFuture<Object>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(retry.invokeAsync("hi", null));
+        }
+        scheduler.advance(100);
+        // 10 first attempts plus the 5 retries the budget allowed
+        assertEquals(15, flaky.calls);
+        assertTrue(results.stream().allMatch(CompletableFuture::isCompletedExceptionally));
+
+        flaky.calls = 0;
+        retry.invokeAsync("hi", null);
+        scheduler.advance(100);
+        assertEquals(1, flaky.calls);
+
+        // the bucket refills one token per second
+        scheduler.advance(2_000);
+        flaky.calls = 0;
+        retry.invokeAsync("hi", null);
+        scheduler.advance(100);
+        assertEquals(1 + 2, flaky.calls);
+    }
+
+    @Test
+    public void test_breakerOpensHalfOpensAndCloses() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry(3, 5_000, scheduler::now);
+        FlakyRunnable flaky = new FlakyRunnable(Integer.MAX_VALUE);
+        RunnableRetry retry = newRetry(flaky, scheduler);
+        retry.setMaxAttemptNumber(0);
+        retry.setCircuitBreakerKey("llm");
+        retry.setCircuitBreakerRegistry(registry);
+        CircuitBreaker breaker = registry.get("llm");
+
+        for (int i = 0; i < 3; i++) {
+            retry.invokeAsync("hi", null);
+            scheduler.advance(0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(3, flaky.calls);
+
+        CompletableFuture<Object> rejected = retry.invokeAsync("hi", null);
+        scheduler.advance(0);
+        assertEquals(3, flaky.calls);
+        assertTrue(rootCause(rejected) instanceof CircuitBreakerOpenException);
+
+        // after the open period a single probe goes through and fails, reopening the breaker
+        scheduler.advance(5_000);
+        retry.invokeAsync("hi", null);
+        retry.invokeAsync("hi", null);
+        scheduler.advance(0);
+        assertEquals(4, flaky.calls);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        scheduler.advance(5_000);
+        flaky.failures = 0;
+        CompletableFuture<Object> probe = retry.invokeAsync("hi", null);
+        scheduler.advance(0);
+        assertEquals("ok:hi", probe.join());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void test_openBreakerComposesWithFallbacks() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry(2, 60_000, scheduler::now);
+        FlakyRunnable flaky = new FlakyRunnable(Integer.MAX_VALUE);
+        FlakyRunnable fallback = new FlakyRunnable(0);
+        RunnableRetry retry = newRetry(flaky, scheduler);
+        retry.setIntervalTime(1);
+        retry.setCircuitBreakerKey("llm");
+        retry.setCircuitBreakerRegistry(registry);
+        RunnableInterface withFallbacks = retry.withFallbacks(fallback);
+
+        // the second failure opens the breaker, the pending retry is rejected and the fallback answers
+        assertEquals("ok:hi", withFallbacks.invoke("hi", null));
+        assertEquals(2, flaky.calls);
+        assertEquals(1, fallback.calls);
+
+        // while open, the retry fails fast without calling the bound runnable
+        CompletableFuture<Object> rejected = retry.invokeAsync("again", null);
+        scheduler.advance(0);
+        assertTrue(rootCause(rejected) instanceof CircuitBreakerOpenException);
+        assertEquals("ok:again", withFallbacks.invoke("again", null));
+        assertEquals(2, flaky.calls);
+        assertEquals(2, fallback.calls);
+    }
+
+    @Test
+    public void test_invokeKeepsLegacyBehaviour() {
+        FlakyRunnable flaky = new FlakyRunnable(2);
+        RunnableRetry retry = (RunnableRetry) flaky.withRetry(3, null);
+        retry.setIntervalTime(1);
+        assertEquals("ok:hi", retry.invoke("hi"));
+        assertEquals(3, flaky.calls);
+
+        List<Object> chunks = new ArrayList<>();
+        flaky.failures = 1;
+        assertEquals("ok:hi", retry.stream("hi", chunks::add));
+        assertEquals(Collections.singletonList("ok:hi"), chunks);
+
+        flaky.failures = Integer.MAX_VALUE;
+        flaky.calls = 0;
+        RuntimeException error = assertThrows(RuntimeException.class, () -> retry.invoke("hi"));
+        assertEquals("last time RunnableRetry invoke error", error.getMessage());
+        assertEquals(4, flaky.calls);
+    }
+
+    @Test
+    public void test_synchronousRetriesStayOnCallerThread() {
+        FlakyRunnable flaky = new FlakyRunnable(2);
+        RunnableRetry retry = (RunnableRetry) flaky.withRetry(3, null);
+        retry.setIntervalTime(1);
+        assertNull(retry.getRetryBudget());
+
+        assertEquals("ok:hi", retry.invoke("hi"));
+        flaky.failures = 2;
+        List<Thread> chunkThreads = new ArrayList<>();
+        assertEquals("ok:hi", retry.stream("hi", chunk -> chunkThreads.add(Thread.currentThread())));
+        assertEquals(6, flaky.threads.size());
+        assertTrue(flaky.threads.stream().allMatch(thread -> thread == Thread.currentThread()));
+        assertEquals(Collections.singletonList(Thread.currentThread()), chunkThreads);
+    }
+
+    @Test
+    public void test_noBudgetByDefault() {
+        FlakyRunnable flaky = new FlakyRunnable(Integer.MAX_VALUE);
+        RunnableRetry retry = (RunnableRetry) flaky.withRetry(2, null);
+        retry.setIntervalTime(0);
+        for (int i = 0; i < 20; i++) {
+            assertThrows(RuntimeException.class, () -> retry.invoke("hi"));
+        }
+        // every call still gets its retries, no instance-wide budget runs out
+        assertEquals(20 * 3, flaky.calls);
+    }
+
+    private static RunnableRetry newRetry(FlakyRunnable bound, VirtualScheduler scheduler) {
+        RunnableRetry retry = new RunnableRetry();
+        retry.setBound(bound);
+        retry.setRetryScheduler(scheduler);
+        retry.setRetryBudget(new RetryBudget(1000, 0, scheduler::now));
+        return retry;
+    }
+
+    private static Throwable rootCause(CompletableFuture<Object> result) {
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Fails the first {@code failures} calls, then echoes the input.
+     */
+    static class FlakyRunnable extends Runnable<Object, Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        int failures;
+
+        int calls;
+
+        final List<Thread> threads = new ArrayList<>();
+
+        transient java.util.function.Supplier<RuntimeException> error = () -> new IllegalStateException("flaky");
+
+        FlakyRunnable(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public Object invoke(Object input, RunnableConfig config) {
+            calls++;
+            threads.add(Thread.currentThread());
+            if (failures > 0) {
+                failures--;
+                throw error.get();
+            }
+            return "ok:" + input;
+        }
+
+        @Override
+        public Object stream(Object input, RunnableConfig config, Consumer<Object> chunkConsumer) {
+            Object output = invoke(input, config);
+            chunkConsumer.accept(output);
+            return output;
+        }
+    }
+
+    /**
+     * Virtual clock: scheduled tasks run on the test thread when time is advanced past their due time.
+     */
+    static class VirtualScheduler implements RetryScheduler {
+
+        final List<Long> delays = new ArrayList<>();
+
+        private final PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) ->
+                a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        private final List<java.lang.Runnable> tasks = new ArrayList<>();
+
+        private long now;
+
+        long now() {
+            return now;
+        }
+
+        @Override
+        public void schedule(java.lang.Runnable task, long delayMillis) {
+            delays.add(delayMillis);
+            tasks.add(task);
+            queue.add(new long[]{now + Math.max(0, delayMillis), tasks.size() - 1});
+        }
+
+        void advance(long millis) {
+            long target = now + millis;
+            while (!queue.isEmpty() && queue.peek()[0] <= target) {
+                long[] next = queue.poll();
+                now = next[0];
+                tasks.get((int) next[1]).run();
+            }
+            now = target;
+        }
+    }
+
+    static class FixedRandom extends Random {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double value;
+
+        FixedRandom(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.core.vectorstore;
+
+import com.alibaba.langengine.core.embeddings.Embeddings;
+import com.alibaba.langengine.core.indexes.Document;
+import com.alibaba.langengine.core.indexes.VectorStoreRetriever;
+import com.alibaba.langengine.core.vectorstore.memory.InMemoryDB;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorStoreRetrieverSearchTypeTest {
+
+    @Test
+    public void test_mmrSkipsNearDuplicates() {
+        InMemoryDB store = newStore();
+        store.addDocuments(Arrays.asList(
+                document("1", "apple pie recipe with cinnamon"),
+                document("2", "apple pie recipe with cinnamon"),
+                document("3", "apple pie recipe with cinnamon"),
+                document("4", "apple orchard history"),
+                document("5", "banana bread")));
+
+        VectorStoreRetriever retriever = (VectorStoreRetriever) store.asRetriever();
+        List<Document> similar = retriever.getRelevantDocuments("apple pie", 2);
+        assertEquals("apple pie recipe with cinnamon", similar.get(0).getPageContent());
+        assertEquals("apple pie recipe with cinnamon", similar.get(1).getPageContent());
+
+        retriever.setSearchType("mmr");
+        retriever.setFetchK(5);
+        List<Document> diverse = retriever.getRelevantDocuments("apple pie", 2);
+        assertEquals(2, diverse.size());
+        assertEquals("apple pie recipe with cinnamon", diverse.get(0).getPageContent());
+        assertEquals("apple orchard history", diverse.get(1).getPageContent());
+    }
+
+    @Test
+    public void test_mmrWithLambdaOneMatchesSimilarity() {
+        InMemoryDB store = newStore();
+        store.addDocuments(Arrays.asList(
+                document("1", "apple pie recipe with cinnamon"),
+                document("2", "apple pie"),
+                document("3", "apple orchard history"),
+                document("4", "banana bread")));
+
+        List<String> similar = ids(store.similaritySearch("apple pie", 3));
+        List<String> mmr = ids(store.maxMarginalRelevanceSearch("apple pie", 3, 4, 1.0d, null));
+        assertEquals(similar, mmr);
+    }
+
+    @Test
+    public void test_defaultMmrUsesCandidateEmbeddings() {
+        List<Document> candidates = new ArrayList<>();
+        candidates.add(scored("a", 0.9, 1, 0));
+        candidates.add(scored("b", 0.89, 1, 0.01));
+        candidates.add(scored("c", 0.5, 0, 1));
+
+        List<Document> reranked = MaximalMarginalRelevance.rerank(candidates, 2, 0.5);
+        assertEquals(Arrays.asList("a", "c"), ids(reranked));
+
+        candidates.get(1).setEmbedding(null);
+        assertEquals(Arrays.asList("a", "b"), ids(MaximalMarginalRelevance.rerank(candidates, 2, 0.5)));
+    }
+
+    @Test
+    public void test_keywordSearchRanksRareTermsFirst() {
+        InMemoryDB store = newStore();
+        store.addDocuments(Arrays.asList(
+                document("1", "the order api returns the order list"),
+                document("2", "taobao.traderates.get returns rates for an order"),
+                document("3", "the item api returns the item detail"),
+                document("4", "接口没有获取评价信息")));
+
+        List<Document> hits = store.keywordSearch("traderates order", 10);
+        assertEquals("2", hits.get(0).getUniqueId());
+        assertEquals(new HashSet<>(Arrays.asList("1", "2")), new HashSet<>(ids(hits)));
+
+        assertEquals("4", store.keywordSearch("评价", 10).get(0).getUniqueId());
+        assertTrue(store.keywordSearch("unknown", 10).isEmpty());
+    }
+
+    @Test
+    public void test_reciprocalRankFusion() {
+        List<Document> vector = Arrays.asList(document("a", "a"), document("b", "b"), document("c", "c"));
+        List<Document> keyword = Arrays.asList(document("c", "c"), document("d", "d"), document("b", "b"));
+
+        List<Document> fused = VectorStoreRetriever.reciprocalRankFusion(Arrays.asList(vector, keyword), 3, 60);
+        // b: 1/62 + 1/63, c: 1/63 + 1/61, a: 1/61, d: 1/62
+        assertEquals(Arrays.asList("c", "b", "a"), ids(fused));
+        assertEquals(1.0d / 63 + 1.0d / 61, fused.get(0).getScore(), 1e-12);
+    }
+
+    @Test
+    public void test_hybridSurfacesKeywordOnlyMatches() {
+        InMemoryDB store = newStore();
+        store.addDocuments(Arrays.asList(
+                document("1", "refund policy"),
+                document("2", "refund policy for damaged goods"),
+                document("3", "error code E1024 returned by the payment gateway"),
+                document("4", "shipping times for remote regions")));
+
+        VectorStoreRetriever retriever = (VectorStoreRetriever) store.asRetriever();
+        assertEquals(Arrays.asList("1", "2"), ids(retriever.getRelevantDocuments("refund E1024", 2)));
+
+        retriever.setSearchType("hybrid");
+        retriever.setFetchK(4);
+        // the rare error code ranks first for keywords and pulls document 3 above document 2
+        assertEquals(Arrays.asList("1", "3"), ids(retriever.getRelevantDocuments("refund E1024", 2)));
+    }
+
+    @Test
+    public void test_mmrMatchesNaiveSelection() {
+        double[] relevance = new double[200];
+        float[][] vectors = randomVectors(relevance, 32);
+        assertArrayEquals(naiveSelect(relevance, vectors, 20, 0.5), MaximalMarginalRelevance.select(relevance, vectors, 20, 0.5));
+    }
+
+    /**
+     * 耗时且依赖机器性能，默认不跑：-Dlangengine.benchmark.enabled=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "langengine.benchmark.enabled", matches = "true")
+    public void test_benchmarkMmrAtFetchK1000() {
+        int fetchK = 1000;
+        int k = 50;
+        double[] relevance = new double[fetchK];
+        float[][] vectors = randomVectors(relevance, 256);
+
+        // warm up both implementations before timing
+        for (int i = 0; i < 3; i++) {
+            MaximalMarginalRelevance.select(relevance, vectors, k, 0.5);
+            naiveSelect(relevance, vectors, k, 0.5);
+        }
+        long start = System.nanoTime();
+        int[] incremental = MaximalMarginalRelevance.select(relevance, vectors, k, 0.5);
+        long incrementalNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        int[] naive = naiveSelect(relevance, vectors, k, 0.5);
+        long naiveNanos = System.nanoTime() - start;
+
+        assertArrayEquals(naive, incremental);
+        assertTrue(incrementalNanos < naiveNanos, String.format("mmr fetchK=%d k=%d: incremental %.2f ms, naive %.2f ms",
+                fetchK, k, incrementalNanos / 1e6, naiveNanos / 1e6));
+    }
+
+    private static float[][] randomVectors(double[] relevance, int dim) {
+        Random random = new Random(42);
+        float[][] vectors = new float[relevance.length][dim];
+        for (int i = 0; i < relevance.length; i++) {
+            relevance[i] = random.nextDouble();
+            for (int d = 0; d < dim; d++) {
+                vectors[i][d] = (float) random.nextGaussian();
+            }
+            MaximalMarginalRelevance.normalizeInPlace(vectors[i]);
+        }
+        return vectors;
+    }
+
+    /**
+     * MMR recomputing the similarity to every selected document at each step, O(k^2 * fetchK).
+     */
+    private static int[] naiveSelect(double[] relevance, float[][] vectors, int k, double lambda) {
+        List<Integer> selected = new ArrayList<>();
+        Set<Integer> taken = new HashSet<>();
+        while (selected.size() < Math.min(k, relevance.length)) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < relevance.length; i++) {
+                if (taken.contains(i)) {
+                    continue;
+                }
+                double maxSimilarity = 0;
+                for (int j = 0; j < selected.size(); j++) {
+                    double similarity = MaximalMarginalRelevance.dot(vectors[i], vectors[selected.get(j)]);
+                    maxSimilarity = j == 0 ? similarity : Math.max(maxSimilarity, similarity);
+                }
+                double score = lambda * relevance[i] - (1 - lambda) * maxSimilarity;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            selected.add(best);
+            taken.add(best);
+        }
+        return selected.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static InMemoryDB newStore() {
+        InMemoryDB store = new InMemoryDB();
+        store.setEmbedding(new VocabularyEmbeddings());
+        return store;
+    }
+
+    private static Document document(String id, String content) {
+        Document document = new Document();
+        document.setUniqueId(id);
+        document.setPageContent(content);
+        return document;
+    }
+
+    private static Document scored(String id, double score, double... embedding) {
+        Document document = document(id, id);
+        document.setScore(score);
+        document.setEmbedding(Arrays.stream(embedding).boxed().collect(Collectors.toList()));
+        return document;
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getUniqueId).collect(Collectors.toList());
+    }
+
+    /**
+     * Deterministic bag-of-words embeddings: each distinct lower-cased word gets its own dimension.
+     */
+    static class VocabularyEmbeddings extends Embeddings {
+
+        private static final int DIMENSIONS = 512;
+
+        private final Map<String, Integer> vocabulary = new ConcurrentHashMap<>();
+
+        @Override
+        public String getModelType() {
+            return "vocabulary";
+        }
+
+        @Override
+        public List<Document> embedDocument(List<Document> documents) {
+            for (Document document : documents) {
+                document.setEmbedding(embed(document.getPageContent()));
+            }
+            return documents;
+        }
+
+        @Override
+        public List<String> embedQuery(String text, int recommend) {
+            return Collections.singletonList(embed(text).toString());
+        }
+
+        private List<Double> embed(String text) {
+            Double[] vector = new Double[DIMENSIONS];
+            Arrays.fill(vector, 0d);
+            for (String word : text.toLowerCase().split("\\s+")) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                int index = vocabulary.computeIfAbsent(word, key -> vocabulary.size() % DIMENSIONS);
+                vector[index] += 1d;
+            }
+            return Arrays.asList(vector);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.deepsearch.loader;
+
+import com.alibaba.langengine.core.indexes.Document;
+import com.alibaba.langengine.core.textsplitter.RecursiveCharacterTextSplitter;
+import com.alibaba.langengine.core.textsplitter.TextSplitter;
+import com.alibaba.langengine.core.vectorstore.VectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Ingests crawled pages into a vector store in three stages.
+ *
+ * 1. The calling (crawler) thread extracts plain text from the page and splits it with a shared splitter.
+ * 2. Chunks whose content hash was already seen, on any page, are dropped; the rest go into a bounded queue.
+ *    The hashes of a batch that fails to write are forgotten again, so resubmitting its pages retries those chunks.
+ *    A full queue blocks the caller, so a slow embedding model slows the crawl down instead of growing memory.
+ * 3. A single writer thread drains the queue and calls {@link VectorStore#addDocuments(List)} once per batch,
+ *    flushing when the batch reaches {@code batchSize} or {@code flushIntervalMillis} after its first chunk.
+ *
+ * Call {@link #flush()} to wait for everything submitted so far, and {@link #close()} when the crawl is done.
+ */
+@Slf4j
+public class IngestionPipeline implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200L;
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 1500;
+
+    public static final int DEFAULT_MAX_CHUNK_OVERLAP = 100;
+
+    private static final Pattern SCRIPT_OR_STYLE = Pattern.compile("(?is)<(script|style)[^>]*>.*?</\\1>");
+
+    private static final Pattern TAG = Pattern.compile("(?s)<[^>]*>");
+
+    private static final Pattern BLANK_LINES = Pattern.compile("\\n\\s*\\n+");
+
+    private final VectorStore vectorStore;
+
+    private final TextSplitter textSplitter;
+
+    private final int batchSize;
+
+    private final long flushIntervalMillis;
+
+    private final BlockingQueue<Document> queue;
+
+    private final Set<String> seenChunkHashes = ConcurrentHashMap.newKeySet();
+
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    private final Object progressLock = new Object();
+
+    private final AtomicLong pageCount = new AtomicLong();
+
+    private final AtomicLong enqueuedChunkCount = new AtomicLong();
+
+    private final AtomicLong duplicateChunkCount = new AtomicLong();
+
+    private final AtomicLong writtenChunkCount = new AtomicLong();
+
+    private final AtomicLong failedChunkCount = new AtomicLong();
+
+    private final AtomicLong batchCount = new AtomicLong();
+
+    public IngestionPipeline(VectorStore vectorStore) {
+        this(vectorStore, defaultTextSplitter(), DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param vectorStore         target store, called from the writer thread only
+     * @param textSplitter        splitter shared by all submitting threads, must not be reconfigured while in use
+     * @param batchSize           maximum number of chunks per {@code addDocuments} call
+     * @param flushIntervalMillis maximum time a chunk waits for its batch to fill
+     * @param queueCapacity       number of chunks buffered before submitters block
+     */
+    public IngestionPipeline(VectorStore vectorStore, TextSplitter textSplitter, int batchSize,
+                             long flushIntervalMillis, int queueCapacity) {
+        if (vectorStore == null || textSplitter == null) {
+            throw new IllegalArgumentException("vectorStore and textSplitter must not be null");
+        }
+        if (batchSize <= 0 || flushIntervalMillis <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("batchSize, flushIntervalMillis and queueCapacity must be positive");
+        }
+        this.vectorStore = vectorStore;
+        this.textSplitter = textSplitter;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::runWriter, "deepsearch-ingestion-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public static RecursiveCharacterTextSplitter defaultTextSplitter() {
+        RecursiveCharacterTextSplitter textSplitter = new RecursiveCharacterTextSplitter();
+        textSplitter.setMaxChunkSize(DEFAULT_MAX_CHUNK_SIZE);
+        textSplitter.setMaxChunkOverlap(DEFAULT_MAX_CHUNK_OVERLAP);
+        return textSplitter;
+    }
+
+    /**
+     * Extracts, splits and enqueues one page. Blocks while the queue is full.
+     *
+     * @param url  page url, stored as the {@code source} metadata of every chunk
+     * @param html raw html, only used when {@code text} is empty
+     * @param text text already extracted by the parser, may be null
+     * @return number of chunks enqueued after dedup
+     */
+    public int submitPage(String url, String html, String text) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("ingestion pipeline is closed");
+        }
+        pageCount.incrementAndGet();
+        String content = StringUtils.isNotBlank(text) ? text : htmlToText(html);
+        if (StringUtils.isBlank(content)) {
+            return 0;
+        }
+        int enqueued = 0;
+        for (String chunk : textSplitter.splitText(content)) {
+            if (StringUtils.isBlank(chunk)) {
+                continue;
+            }
+            if (!seenChunkHashes.add(DigestUtils.sha256Hex(chunk))) {
+                duplicateChunkCount.incrementAndGet();
+                continue;
+            }
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("source", url);
+            Document document = new Document(chunk, metadata);
+            enqueuedChunkCount.incrementAndGet();
+            queue.put(document);
+            enqueued++;
+        }
+        return enqueued;
+    }
+
+    /**
+     * Waits until every chunk enqueued before this call has been written or has failed.
+     */
+    public void flush() throws InterruptedException {
+        long target = enqueuedChunkCount.get();
+        synchronized (progressLock) {
+            while (writtenChunkCount.get() + failedChunkCount.get() < target) {
+                if (!writer.isAlive()) {
+                    throw new IllegalStateException("ingestion writer has stopped");
+                }
+                progressLock.wait(flushIntervalMillis);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting pages, writes whatever is still queued and stops the writer thread.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        writer.join();
+    }
+
+    public long getPageCount() {
+        return pageCount.get();
+    }
+
+    public long getEnqueuedChunkCount() {
+        return enqueuedChunkCount.get();
+    }
+
+    public long getDuplicateChunkCount() {
+        return duplicateChunkCount.get();
+    }
+
+    public long getWrittenChunkCount() {
+        return writtenChunkCount.get();
+    }
+
+    public long getFailedChunkCount() {
+        return failedChunkCount.get();
+    }
+
+    /**
+     * Number of {@code addDocuments} calls, i.e. embedding requests for stores that embed per call.
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    static String htmlToText(String html) {
+        if (StringUtils.isBlank(html)) {
+            return "";
+        }
+        String text = SCRIPT_OR_STYLE.matcher(html).replaceAll(" ");
+        text = TAG.matcher(text).replaceAll("\n");
+        text = text.replace("&nbsp;", " ")
+                .replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&#39;", "'")
+                .replace("&amp;", "&");
+        return BLANK_LINES.matcher(text).replaceAll("\n\n").trim();
+    }
+
+    private void runWriter() {
+        List<Document> batch = new ArrayList<>(batchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Document first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    // take whatever is already queued without waiting, then wait for the rest until the deadline
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || closed) {
+                        break;
+                    }
+                    Document next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("ingestion writer interrupted, {} chunks left in queue", queue.size());
+        }
+    }
+
+    private void write(List<Document> batch) {
+        try {
+            vectorStore.addDocuments(new ArrayList<>(batch));
+            writtenChunkCount.addAndGet(batch.size());
+        } catch (Throwable e) {
+            log.error("ingestion batch of {} chunks failed", batch.size(), e);
+            for (Document document : batch) {
+                seenChunkHashes.remove(DigestUtils.sha256Hex(document.getPageContent()));
+            }
+            failedChunkCount.addAndGet(batch.size());
+        } finally {
+            batchCount.incrementAndGet();
+            synchronized (progressLock) {
+                progressLock.notifyAll();
+            }
+        }
+    }
+}
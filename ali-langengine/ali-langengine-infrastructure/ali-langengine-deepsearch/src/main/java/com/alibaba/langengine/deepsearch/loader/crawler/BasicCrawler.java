@@ -19,9 +19,8 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
-import com.alibaba.langengine.core.indexes.Document;
-import com.alibaba.langengine.core.textsplitter.RecursiveCharacterTextSplitter;
 import com.alibaba.langengine.deepsearch.DeepSearcher;
+import com.alibaba.langengine.deepsearch.loader.IngestionPipeline;
 import org.apache.http.Header;
 
 import edu.uci.ics.crawler4j.crawler.Page;
@@ -35,10 +34,17 @@ public class BasicCrawler extends WebCrawler {
 
     private final AtomicInteger numSeenImages;
 
-    private DeepSearcher deepSearcher;
+    private final IngestionPipeline ingestionPipeline;
 
     /**
-     * Creates a new crawler instance.
+     * Whether this crawler created the pipeline itself and must close it on exit.
+     */
+    private final boolean ownsPipeline;
+
+    /**
+     * Creates a new crawler instance with its own ingestion pipeline. Prefer
+     * {@link #BasicCrawler(AtomicInteger, IngestionPipeline)} with one pipeline shared by all crawlers,
+     * so that chunks from different crawler threads are batched and deduplicated together.
      *
      * @param numSeenImages This is just an example to demonstrate how you can pass objects to crawlers. In this
      * example, we pass an AtomicInteger to all crawlers and they increment it whenever they see a url which points
@@ -46,7 +52,18 @@ public class BasicCrawler extends WebCrawler {
      */
     public BasicCrawler(AtomicInteger numSeenImages, DeepSearcher deepSearcher) {
         this.numSeenImages = numSeenImages;
-        this.deepSearcher = deepSearcher;
+        this.ingestionPipeline = deepSearcher != null ? new IngestionPipeline(deepSearcher.getVectorStore()) : null;
+        this.ownsPipeline = true;
+    }
+
+    /**
+     * Creates a new crawler instance that feeds a shared ingestion pipeline. The caller closes the pipeline
+     * once the crawl has finished.
+     */
+    public BasicCrawler(AtomicInteger numSeenImages, IngestionPipeline ingestionPipeline) {
+        this.numSeenImages = numSeenImages;
+        this.ingestionPipeline = ingestionPipeline;
+        this.ownsPipeline = false;
     }
 
     /**
@@ -99,20 +116,14 @@ public class BasicCrawler extends WebCrawler {
             logger.debug("Html length: {}", html.length());
             logger.debug("Number of outgoing links: {}", links.size());
 
-            if(deepSearcher != null) {
-                List<Document> documentList = new ArrayList<>();
-                Document document = new Document();
-                document.setPageContent(html);
-                Map<String, Object> metadata = new HashMap<>();
-                metadata.put("source", url);
-                document.setMetadata(metadata);
-                documentList.add(document);
-
-                RecursiveCharacterTextSplitter textSplitter = new RecursiveCharacterTextSplitter();
-                textSplitter.setMaxChunkSize(1500);
-                textSplitter.setMaxChunkOverlap(100);
-                List<Document> chunks = textSplitter.splitDocuments(documentList);
-                deepSearcher.getVectorStore().addDocuments(chunks);
+            if(ingestionPipeline != null) {
+                try {
+                    int chunks = ingestionPipeline.submitPage(url, html, text);
+                    logger.debug("Chunks enqueued: {}", chunks);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.warn("Interrupted while enqueuing {}", url);
+                }
             }
         }
 
@@ -126,4 +137,15 @@ public class BasicCrawler extends WebCrawler {
 
         logger.debug("=============");
     }
+
+    @Override
+    public void onBeforeExit() {
+        if (ownsPipeline && ingestionPipeline != null) {
+            try {
+                ingestionPipeline.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 }
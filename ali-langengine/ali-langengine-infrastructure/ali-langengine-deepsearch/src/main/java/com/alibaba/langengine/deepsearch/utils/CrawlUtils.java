@@ -16,6 +16,7 @@
 package com.alibaba.langengine.deepsearch.utils;
 
 import com.alibaba.langengine.deepsearch.DeepSearcher;
+import com.alibaba.langengine.deepsearch.loader.IngestionPipeline;
 import com.alibaba.langengine.deepsearch.loader.crawler.BasicCrawler;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.crawler.CrawlController;
@@ -50,7 +51,16 @@ public class CrawlUtils {
         controller.addSeed(url);
         int numberOfCrawlers = 8;
         AtomicInteger numSeenImages = new AtomicInteger();
-        CrawlController.WebCrawlerFactory<BasicCrawler> factory = () -> new BasicCrawler(numSeenImages, deepSearcher);
-        controller.start(factory, numberOfCrawlers);
+        IngestionPipeline ingestionPipeline = new IngestionPipeline(deepSearcher.getVectorStore());
+        CrawlController.WebCrawlerFactory<BasicCrawler> factory = () -> new BasicCrawler(numSeenImages, ingestionPipeline);
+        try {
+            controller.start(factory, numberOfCrawlers);
+        } finally {
+            try {
+                ingestionPipeline.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
@@ -0,0 +1,360 @@
+/**
+ * Copyright (C) 2024 AIDC-AI
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.deepsearch.loader;
+
+import com.alibaba.langengine.core.embeddings.Embeddings;
+import com.alibaba.langengine.core.indexes.Document;
+import com.alibaba.langengine.core.textsplitter.RecursiveCharacterTextSplitter;
+import com.alibaba.langengine.core.vectorstore.memory.InMemoryDB;
+import com.alibaba.langengine.deepsearch.loader.crawler.BasicCrawler;
+import com.sun.net.httpserver.HttpServer;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.CrawlController;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestionPipelineTest {
+
+    private static final String SHARED_FOOTER = "This footer paragraph appears on every page of the site and should only be embedded once.";
+
+    @Test
+    public void test_batchesChunksAcrossPages() throws Exception {
+        FakeEmbeddings embeddings = new FakeEmbeddings(0);
+        InMemoryDB store = newStore(embeddings);
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, smallSplitter(), 32, 1000, 256)) {
+            for (int i = 0; i < 40; i++) {
+                pipeline.submitPage("http://localhost/page" + i, null, pageText(i));
+            }
+            pipeline.flush();
+
+            assertEquals(pipeline.getEnqueuedChunkCount(), pipeline.getWrittenChunkCount());
+            assertEquals(pipeline.getWrittenChunkCount(), embeddings.embeddedDocuments.get());
+            assertEquals(pipeline.getBatchCount(), embeddings.calls.get());
+            // one chunk per page would mean one embedding call per page
+            assertTrue(embeddings.calls.get() < 40, "calls: " + embeddings.calls.get());
+        }
+    }
+
+    @Test
+    public void test_deduplicatesIdenticalChunks() throws Exception {
+        FakeEmbeddings embeddings = new FakeEmbeddings(0);
+        InMemoryDB store = newStore(embeddings);
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, smallSplitter(), 16, 50, 64)) {
+            int first = pipeline.submitPage("http://localhost/a", null, SHARED_FOOTER);
+            int second = pipeline.submitPage("http://localhost/b", null, SHARED_FOOTER);
+            pipeline.flush();
+
+            assertEquals(1, first);
+            assertEquals(0, second);
+            assertEquals(1, pipeline.getDuplicateChunkCount());
+            assertEquals(1, embeddings.embeddedDocuments.get());
+        }
+    }
+
+    @Test
+    public void test_failedChunksAreRetriedOnResubmit() throws Exception {
+        FakeEmbeddings embeddings = new FakeEmbeddings(0);
+        embeddings.failures.set(1);
+        InMemoryDB store = newStore(embeddings);
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, smallSplitter(), 16, 50, 64)) {
+            assertEquals(1, pipeline.submitPage("http://localhost/a", null, SHARED_FOOTER));
+            pipeline.flush();
+            assertEquals(1, pipeline.getFailedChunkCount());
+
+            assertEquals(1, pipeline.submitPage("http://localhost/a", null, SHARED_FOOTER));
+            pipeline.flush();
+            assertEquals(1, pipeline.getWrittenChunkCount());
+            assertEquals(0, pipeline.getDuplicateChunkCount());
+            assertEquals(Collections.singletonList(SHARED_FOOTER), embeddings.texts);
+        }
+    }
+
+    @Test
+    public void test_flushesPartialBatchOnTimeout() throws Exception {
+        FakeEmbeddings embeddings = new FakeEmbeddings(0);
+        InMemoryDB store = newStore(embeddings);
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, smallSplitter(), 1000, 50, 64)) {
+            pipeline.submitPage("http://localhost/a", null, "a single short page");
+            long start = System.currentTimeMillis();
+            pipeline.flush();
+
+            assertEquals(1, embeddings.calls.get());
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+    }
+
+    @Test
+    public void test_extractsTextFromHtml() throws Exception {
+        FakeEmbeddings embeddings = new FakeEmbeddings(0);
+        InMemoryDB store = newStore(embeddings);
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, smallSplitter(), 16, 50, 64)) {
+            pipeline.submitPage("http://localhost/a",
+                    "<html><head><style>p{color:red}</style><script>var x = 1;</script></head>"
+                            + "<body><p>Hello &amp; welcome</p></body></html>", null);
+            pipeline.flush();
+
+            assertEquals(1, embeddings.texts.size());
+            assertEquals("Hello & welcome", embeddings.texts.get(0));
+        }
+    }
+
+    @Test
+    public void test_backpressureBoundsQueuedChunks() throws Exception {
+        FakeEmbeddings embeddings = new FakeEmbeddings(20);
+        InMemoryDB store = newStore(embeddings);
+        int queueCapacity = 8;
+        int batchSize = 4;
+        try (IngestionPipeline pipeline = new IngestionPipeline(store, smallSplitter(), batchSize, 10, queueCapacity)) {
+            CountDownLatch done = new CountDownLatch(1);
+            Thread crawler = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 30; i++) {
+                        pipeline.submitPage("http://localhost/page" + i, null, pageText(i));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            crawler.start();
+
+            long maxBacklog = 0;
+            while (!done.await(2, TimeUnit.MILLISECONDS)) {
+                maxBacklog = Math.max(maxBacklog, pipeline.getEnqueuedChunkCount() - pipeline.getWrittenChunkCount());
+            }
+            pipeline.flush();
+
+            // queued chunks plus the batch being embedded plus the chunk a submitter is about to enqueue
+            assertTrue(maxBacklog <= queueCapacity + batchSize + 1, "backlog: " + maxBacklog);
+            assertEquals(pipeline.getEnqueuedChunkCount(), pipeline.getWrittenChunkCount());
+        }
+    }
+
+    @Test
+    public void test_crawlLocalSite(@TempDir Path storage) throws Exception {
+        int pages = 12;
+        HttpServer server = startSite(pages);
+        FakeEmbeddings embeddings = new FakeEmbeddings(0);
+        InMemoryDB store = newStore(embeddings);
+        IngestionPipeline pipeline = new IngestionPipeline(store, smallSplitter(), 32, 100, 128);
+        try {
+            CrawlConfig config = new CrawlConfig();
+            config.setCrawlStorageFolder(storage.toString());
+            config.setPolitenessDelay(0);
+            config.setMaxDepthOfCrawling(2);
+            config.setIncludeBinaryContentInCrawling(false);
+            config.setResumableCrawling(false);
+
+            PageFetcher pageFetcher = new PageFetcher(config);
+            RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
+            robotstxtConfig.setEnabled(false);
+            CrawlController controller = new CrawlController(config, pageFetcher, new RobotstxtServer(robotstxtConfig, pageFetcher));
+            controller.addSeed("http://localhost:" + server.getAddress().getPort() + "/page0.html");
+            AtomicInteger numSeenImages = new AtomicInteger();
+            controller.start(() -> new BasicCrawler(numSeenImages, pipeline), 4);
+        } finally {
+            pipeline.close();
+            server.stop(0);
+        }
+
+        assertEquals(pages, pipeline.getPageCount());
+        assertEquals(pipeline.getEnqueuedChunkCount(), pipeline.getWrittenChunkCount());
+        // the shared navigation and footer are embedded for the first page only
+        assertTrue(pipeline.getDuplicateChunkCount() >= pages - 1, "duplicates: " + pipeline.getDuplicateChunkCount());
+        assertEquals(embeddings.texts.size(), new HashSet<>(embeddings.texts).size());
+    }
+
+    /**
+     * Timing-dependent, skipped by default: -Ddeepsearch.benchmark.enabled=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "deepsearch.benchmark.enabled", matches = "true")
+    public void test_benchmark() throws Exception {
+        int pages = 400;
+        long perCallLatencyMillis = 3;
+
+        FakeEmbeddings baselineEmbeddings = new FakeEmbeddings(perCallLatencyMillis);
+        InMemoryDB baselineStore = newStore(baselineEmbeddings);
+        RecursiveCharacterTextSplitter splitter = IngestionPipeline.defaultTextSplitter();
+        long start = System.nanoTime();
+        for (int i = 0; i < pages; i++) {
+            List<Document> chunks = splitter.splitDocuments(Collections.singletonList(new Document(longPageText(i), null)));
+            baselineStore.addDocuments(chunks);
+        }
+        long baselineNanos = System.nanoTime() - start;
+
+        FakeEmbeddings pipelineEmbeddings = new FakeEmbeddings(perCallLatencyMillis);
+        InMemoryDB pipelineStore = newStore(pipelineEmbeddings);
+        long pipelineNanos;
+        long chunks;
+        try (IngestionPipeline pipeline = new IngestionPipeline(pipelineStore)) {
+            start = System.nanoTime();
+            for (int i = 0; i < pages; i++) {
+                pipeline.submitPage("http://localhost/page" + i, null, longPageText(i));
+            }
+            pipeline.flush();
+            pipelineNanos = System.nanoTime() - start;
+            chunks = pipeline.getWrittenChunkCount();
+        }
+
+        assertTrue(pipelineEmbeddings.calls.get() < baselineEmbeddings.calls.get(), String.format(
+                "per-page: %d chunks, %d embedding calls, %.0f chunks/s; pipeline: %d chunks, %d embedding calls, %.0f chunks/s",
+                baselineEmbeddings.embeddedDocuments.get(), baselineEmbeddings.calls.get(),
+                baselineEmbeddings.embeddedDocuments.get() / (baselineNanos / 1e9),
+                chunks, pipelineEmbeddings.calls.get(), chunks / (pipelineNanos / 1e9)));
+    }
+
+    private static InMemoryDB newStore(Embeddings embeddings) {
+        InMemoryDB store = new InMemoryDB();
+        store.setEmbedding(embeddings);
+        return store;
+    }
+
+    private static RecursiveCharacterTextSplitter smallSplitter() {
+        RecursiveCharacterTextSplitter textSplitter = new RecursiveCharacterTextSplitter();
+        textSplitter.setMaxChunkSize(200);
+        textSplitter.setMaxChunkOverlap(0);
+        return textSplitter;
+    }
+
+    private static String pageText(int i) {
+        return "Page " + i + " talks about topic " + i + " in some detail.\n\n"
+                + "A second paragraph for page " + i + " adds a little more text.\n\n"
+                + SHARED_FOOTER;
+    }
+
+    private static String longPageText(int i) {
+        StringBuilder builder = new StringBuilder();
+        for (int p = 0; p < 6; p++) {
+            builder.append("Page ").append(i).append(" paragraph ").append(p).append(": ");
+            for (int w = 0; w < 60; w++) {
+                builder.append("word").append(w).append(' ');
+            }
+            builder.append("\n\n");
+        }
+        return builder.toString();
+    }
+
+    private static HttpServer startSite(int pages) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            int index;
+            try {
+                index = Integer.parseInt(path.replace("/page", "").replace(".html", ""));
+            } catch (NumberFormatException e) {
+                index = -1;
+            }
+            if (index < 0 || index >= pages) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            StringBuilder links = new StringBuilder();
+            for (int i = 0; i < pages; i++) {
+                links.append("<a href=\"/page").append(i).append(".html\">page ").append(i).append("</a> ");
+            }
+            // shared content comes first so that every page starts with the same chunks
+            String body = "<html><body>"
+                    + "<div><p>" + links + "</p></div>"
+                    + "<div><p>" + SHARED_FOOTER + "</p></div>"
+                    + "<div><p>Page " + index + " talks about topic " + index + " in some detail.</p></div>"
+                    + "</body></html>";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    static class FakeEmbeddings extends Embeddings {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        final AtomicInteger embeddedDocuments = new AtomicInteger();
+
+        final List<String> texts = Collections.synchronizedList(new ArrayList<>());
+
+        /**
+         * Number of upcoming calls that fail.
+         */
+        final AtomicInteger failures = new AtomicInteger();
+
+        private final long latencyMillis;
+
+        FakeEmbeddings(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public String getModelType() {
+            return "fake";
+        }
+
+        @Override
+        public List<Document> embedDocument(List<Document> documents) {
+            calls.incrementAndGet();
+            if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new IllegalStateException("embedding service unavailable");
+            }
+            embeddedDocuments.addAndGet(documents.size());
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            for (Document document : documents) {
+                texts.add(document.getPageContent());
+                String content = document.getPageContent();
+                List<Double> embedding = new ArrayList<>();
+                embedding.add((double) content.length());
+                embedding.add((double) content.hashCode());
+                document.setEmbedding(embedding);
+            }
+            return documents;
+        }
+
+        @Override
+        public List<String> embedQuery(String text, int recommend) {
+            return Collections.singletonList("[" + text.length() + "," + text.hashCode() + "]");
+        }
+    }
+}
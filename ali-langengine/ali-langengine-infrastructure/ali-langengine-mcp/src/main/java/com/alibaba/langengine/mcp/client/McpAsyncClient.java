@@ -15,6 +15,7 @@
  */
 package com.alibaba.langengine.mcp.client;
 
+import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.TypeReference;
 import com.alibaba.langengine.mcp.spec.*;
 import com.alibaba.langengine.mcp.spec.schema.*;
@@ -37,6 +38,7 @@ import reactor.core.scheduler.Schedulers;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -104,6 +106,22 @@ public class McpAsyncClient {
 	 */
 	private final McpTransport transport;
 
+	/**
+	 * Cached tools, indexed by name, refreshed on tools/list_changed notifications.
+	 */
+	private final McpCatalog<Tool> toolCatalog;
+
+	/**
+	 * Cached resources, indexed by uri, refreshed on resources/list_changed
+	 * notifications.
+	 */
+	private final McpCatalog<Resource> resourceCatalog;
+
+	/**
+	 * Cached prompts, indexed by name, refreshed on prompts/list_changed notifications.
+	 */
+	private final McpCatalog<Prompt> promptCatalog;
+
 	/**
 	 * Create a new McpAsyncClient with the given transport and session request-response
 	 * timeout.
@@ -140,6 +158,13 @@ public class McpAsyncClient {
 
 		this.roots = roots != null ? new ConcurrentHashMap<>(roots) : new ConcurrentHashMap<>();
 
+		this.toolCatalog = new McpCatalog<>("tools", cursor -> this.listTools(cursor), ListToolsResult::getTools,
+				ListToolsResult::getNextCursor, Tool::getName, McpAsyncClient::parseInputSchema);
+		this.resourceCatalog = new McpCatalog<>("resources", cursor -> this.listResources(cursor),
+				ListResourcesResult::getResources, ListResourcesResult::getNextCursor, Resource::getUri, null);
+		this.promptCatalog = new McpCatalog<>("prompts", cursor -> this.listPrompts(cursor),
+				ListPromptsResult::getPrompts, ListPromptsResult::getNextCursor, Prompt::getName, null);
+
 		// Request Handlers
 		Map<String, DefaultMcpSession.RequestHandler> requestHanlers = new HashMap<>();
 
@@ -441,12 +466,17 @@ public class McpAsyncClient {
 	}
 
 	/**
-	 * Retrieves the list of all tools provided by the server.
+	 * Retrieves the list of all tools provided by the server. When the server announced
+	 * tools/list_changed notifications, the list is served from the tool catalog and
+	 * holds every page.
 	 * @return A Mono that emits the list of tools result containing: - tools: List of
 	 * available tools, each with a name, description, and input schema - nextCursor:
 	 * Optional cursor for pagination if more tools are available
 	 */
 	public Mono<ListToolsResult> listTools() {
+		if (toolsListChangedAnnounced()) {
+			return this.toolCatalog.list().map(tools -> new ListToolsResult(tools, null));
+		}
 		return this.listTools(null);
 	}
 
@@ -462,31 +492,85 @@ public class McpAsyncClient {
 				LIST_TOOLS_RESULT_TYPE_REF);
 	}
 
+	/**
+	 * Looks up a tool by name in the tool catalog. The catalog is loaded on first use.
+	 * When the server did not announce tools/list_changed notifications, nothing would
+	 * tell the client that the catalog went stale, so it is fetched again on every call.
+	 * @param name the tool name
+	 * @return A Mono that emits the tool, or completes empty if the server has no such
+	 * tool
+	 */
+	public Mono<Tool> getTool(String name) {
+		return toolSnapshot().flatMap(snapshot -> Mono.justOrEmpty(snapshot.get(name)));
+	}
+
+	/**
+	 * Looks up the parsed input schema of a tool in the tool catalog. Schemas are parsed
+	 * once, when the catalog is loaded; the tools themselves keep the raw schema the
+	 * server sent. Like {@link #getTool(String)}, the catalog is fetched again on every
+	 * call when the server did not announce tools/list_changed notifications.
+	 * @param name the tool name
+	 * @return A Mono that emits the schema, or completes empty if the server has no such
+	 * tool or its schema could not be parsed
+	 */
+	public Mono<JsonSchema> getToolInputSchema(String name) {
+		return toolSnapshot().flatMap(snapshot -> Mono.justOrEmpty((JsonSchema) snapshot.getParsed(name)));
+	}
+
+	private Mono<McpCatalog.Snapshot<Tool>> toolSnapshot() {
+		if (toolsListChangedAnnounced()) {
+			return this.toolCatalog.snapshot();
+		}
+		return Mono.defer(() -> {
+			this.toolCatalog.invalidate();
+			return this.toolCatalog.refresh();
+		});
+	}
+
+	private boolean toolsListChangedAnnounced() {
+		return listChangedAnnounced(capabilities -> capabilities.getTools() != null
+				? capabilities.getTools().getListChanged() : null);
+	}
+
+	/**
+	 * Get the client-side cache of the server's tools.
+	 * @return the tool catalog
+	 */
+	public McpCatalog<Tool> getToolCatalog() {
+		return this.toolCatalog;
+	}
+
 	/**
 	 * Creates a notification handler for tools/list_changed notifications from the
 	 * server. When the server's available tools change, it sends a notification to inform
-	 * connected clients. This handler automatically fetches the updated tool list and
-	 * distributes it to all registered consumers.
+	 * connected clients. This handler invalidates the tool catalog, refreshes it and
+	 * distributes the updated tool list to all registered consumers.
 	 * @param toolsChangeConsumers List of consumers that will be notified when the tools
 	 * list changes. Each consumer receives the complete updated list of tools.
 	 * @return A NotificationHandler that processes tools/list_changed notifications by:
-	 * 1. Fetching the current list of tools from the server 2. Distributing the updated
-	 * list to all registered consumers 3. Handling any errors that occur during this
-	 * process
+	 * 1. Refreshing the tool catalog from the server 2. Distributing the updated list to
+	 * all registered consumers 3. Handling any errors that occur during this process
 	 */
 	private DefaultMcpSession.NotificationHandler toolsChangeNotificationHandler(
 			List<Consumer<List<Tool>>> toolsChangeConsumers) {
-
-		return params -> listTools().flatMap(listToolsResult -> Mono.fromRunnable(() -> {
-			for (Consumer<List<Tool>> toolsChangeConsumer : toolsChangeConsumers) {
-				toolsChangeConsumer.accept(listToolsResult.getTools());
-			}
-		}).subscribeOn(Schedulers.boundedElastic())).onErrorResume(error -> {
-			logger.error("Error handling tools list change notification", error);
-			return Mono.empty();
-		}).then(); // Convert to Mono<Void>
+		return listChangedNotificationHandler(this.toolCatalog, toolsChangeConsumers, "tools");
 	};
 
+	private static JsonSchema parseInputSchema(Tool tool) {
+		Object inputSchema = tool.getInputSchema();
+		if (inputSchema == null || inputSchema instanceof JsonSchema) {
+			return (JsonSchema) inputSchema;
+		}
+		try {
+			return McpJsonUtil.parseSchema(
+					inputSchema instanceof String ? (String) inputSchema : JSON.toJSONString(inputSchema));
+		}
+		catch (RuntimeException e) {
+			logger.warn("Could not parse the input schema of tool '{}'", tool.getName(), e);
+			return null;
+		}
+	}
+
 	// --------------------------
 	// Resources
 	// --------------------------
@@ -501,13 +585,26 @@ public class McpAsyncClient {
 	};
 
 	/**
-	 * Send a resources/list request.
+	 * Send a resources/list request. When the server announced resources/list_changed
+	 * notifications, the list is served from the resource catalog and holds every page.
 	 * @return A Mono that completes with the list of resources result
 	 */
 	public Mono<ListResourcesResult> listResources() {
+		if (listChangedAnnounced(capabilities -> capabilities.getResources() != null
+				? capabilities.getResources().getListChanged() : null)) {
+			return this.resourceCatalog.list().map(resources -> new ListResourcesResult(resources, null));
+		}
 		return this.listResources(null);
 	}
 
+	/**
+	 * Get the client-side cache of the server's resources, indexed by uri.
+	 * @return the resource catalog
+	 */
+	public McpCatalog<Resource> getResourceCatalog() {
+		return this.resourceCatalog;
+	}
+
 	/**
 	 * Send a resources/list request.
 	 * @param cursor the cursor for pagination
@@ -598,14 +695,7 @@ public class McpAsyncClient {
 	private DefaultMcpSession.NotificationHandler resourcesChangeNotificationHandler(
 			List<Consumer<List<Resource>>> resourcesChangeConsumers) {
 
-		return params -> listResources().flatMap(listResourcesResult -> Mono.fromRunnable(() -> {
-			for (Consumer<List<Resource>> resourceChangeConsumer : resourcesChangeConsumers) {
-				resourceChangeConsumer.accept(listResourcesResult.getResources());
-			}
-		}).subscribeOn(Schedulers.boundedElastic())).onErrorResume(error -> {
-			logger.error("Error handling resources list change notification", error);
-			return Mono.empty();
-		}).then();
+		return listChangedNotificationHandler(this.resourceCatalog, resourcesChangeConsumers, "resources");
 	};
 
 	// --------------------------
@@ -618,13 +708,26 @@ public class McpAsyncClient {
 	};
 
 	/**
-	 * List all available prompts.
+	 * List all available prompts. When the server announced prompts/list_changed
+	 * notifications, the list is served from the prompt catalog and holds every page.
 	 * @return A Mono that completes with the list of prompts result
 	 */
 	public Mono<ListPromptsResult> listPrompts() {
+		if (listChangedAnnounced(capabilities -> capabilities.getPrompts() != null
+				? capabilities.getPrompts().getListChanged() : null)) {
+			return this.promptCatalog.list().map(prompts -> new ListPromptsResult(prompts, null));
+		}
 		return this.listPrompts(null);
 	}
 
+	/**
+	 * Get the client-side cache of the server's prompts, indexed by name.
+	 * @return the prompt catalog
+	 */
+	public McpCatalog<Prompt> getPromptCatalog() {
+		return this.promptCatalog;
+	}
+
 	/**
 	 * List all available prompts.
 	 * @param cursor the cursor for pagination
@@ -657,17 +760,46 @@ public class McpAsyncClient {
 	private DefaultMcpSession.NotificationHandler promptsChangeNotificationHandler(
 			List<Consumer<List<Prompt>>> promptsChangeConsumers) {
 
-		return params -> {// @formatter:off
-			return listPrompts().flatMap(listPromptsResult -> Mono.fromRunnable(() -> {
-				for (Consumer<List<Prompt>> promptChangeConsumer : promptsChangeConsumers) {
-					promptChangeConsumer.accept(listPromptsResult.getPrompts());
+		return listChangedNotificationHandler(this.promptCatalog, promptsChangeConsumers, "prompts");
+	};
+
+	// --------------------------
+	// Catalogs
+	// --------------------------
+
+	/**
+	 * Only servers that announced list_changed notifications tell the client when a
+	 * cached list goes stale.
+	 */
+	private boolean listChangedAnnounced(Function<ServerCapabilities, Boolean> listChanged) {
+		ServerCapabilities capabilities = this.serverCapabilities;
+		return capabilities != null && Boolean.TRUE.equals(listChanged.apply(capabilities));
+	}
+
+	/**
+	 * Invalidates the catalog and refreshes it. Notifications that arrive while a refresh
+	 * is running share the next refresh, and consumers are only called for catalog
+	 * versions they have not seen yet.
+	 */
+	private <T> DefaultMcpSession.NotificationHandler listChangedNotificationHandler(McpCatalog<T> catalog,
+			List<Consumer<List<T>>> changeConsumers, String name) {
+
+		AtomicLong notifiedVersion = new AtomicLong();
+		return params -> {
+			catalog.invalidate();
+			return catalog.refresh().flatMap(snapshot -> Mono.fromRunnable(() -> {
+				if (notifiedVersion.getAndAccumulate(snapshot.getVersion(), Math::max) >= snapshot.getVersion()) {
+					return;
+				}
+				for (Consumer<List<T>> changeConsumer : changeConsumers) {
+					changeConsumer.accept(snapshot.getItems());
 				}
 			}).subscribeOn(Schedulers.boundedElastic())).onErrorResume(error -> {
-				logger.error("Error handling prompts list change notification", error);
+				logger.error("Error handling {} list change notification", name, error);
 				return Mono.empty();
 			}).then(); // Convert to Mono<Void>
-		}; // @formatter:on
-	};
+		};
+	}
 
 	// --------------------------
 	// Logging
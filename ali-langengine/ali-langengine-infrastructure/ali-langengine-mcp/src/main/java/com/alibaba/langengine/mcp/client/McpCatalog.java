@@ -0,0 +1,294 @@
+/*
+ * Copyright 2024-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.mcp.client;
+
+import com.alibaba.langengine.mcp.spec.McpError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Client-side cache of one of the server's list endpoints (tools, resources or
+ * prompts).
+ *
+ * <p>
+ * A refresh follows the pagination cursors once and indexes the items by key. Concurrent
+ * refreshes share a single request chain. {@link #invalidate()}, called when the server
+ * sends a list_changed notification, marks the current snapshot stale: readers keep
+ * getting the stale snapshot while a refresh runs in the background, and only the
+ * very first load makes callers wait.
+ *
+ * @param <T> the item type
+ */
+public class McpCatalog<T> {
+
+	private final static Logger logger = LoggerFactory.getLogger(McpCatalog.class);
+
+	private final String name;
+
+	private final Function<String, Mono<Page<T>>> pageFetcher;
+
+	private final Function<T, String> keyFunction;
+
+	private final Function<T, ?> itemParser;
+
+	private final AtomicReference<Snapshot<T>> snapshot = new AtomicReference<>();
+
+	private final AtomicReference<Mono<Snapshot<T>>> inflight = new AtomicReference<>();
+
+	/**
+	 * Bumped by every invalidation. A snapshot is stale when it was fetched before the
+	 * latest invalidation.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	private final AtomicLong version = new AtomicLong();
+
+	/**
+	 * Create a catalog over a paginated list endpoint.
+	 * @param name the catalog name, used in log and error messages
+	 * @param fetcher fetches one page for the given cursor, null for the first page
+	 * @param itemsOf extracts the items of a page
+	 * @param nextCursorOf extracts the cursor of the next page, null or empty on the last
+	 * page
+	 * @param keyFunction the key items are indexed by
+	 * @param itemParser applied once to every fetched item when it is indexed; a non-null
+	 * result is kept next to the item, see {@link Snapshot#getParsed(String)}. The item
+	 * itself is left as the server sent it. May be null
+	 */
+	public <R> McpCatalog(String name, Function<String, Mono<R>> fetcher, Function<R, List<T>> itemsOf,
+			Function<R, String> nextCursorOf, Function<T, String> keyFunction, Function<T, ?> itemParser) {
+		this.name = name;
+		this.pageFetcher = cursor -> fetcher.apply(cursor)
+			.map(result -> new Page<>(itemsOf.apply(result), nextCursorOf.apply(result)));
+		this.keyFunction = keyFunction;
+		this.itemParser = itemParser;
+	}
+
+	/**
+	 * The current snapshot. Loads the catalog if it was never loaded; if the snapshot is
+	 * stale it is returned as is and a refresh is started in the background.
+	 * @return A Mono that emits the snapshot
+	 */
+	public Mono<Snapshot<T>> snapshot() {
+		return Mono.defer(() -> {
+			Snapshot<T> current = this.snapshot.get();
+			if (current == null) {
+				return awaitGeneration(this.generation.get());
+			}
+			if (current.generation < this.generation.get()) {
+				join().subscribe(null,
+						error -> logger.warn("Background refresh of the {} catalog failed, serving stale entries",
+								this.name, error));
+			}
+			return Mono.just(current);
+		});
+	}
+
+	/**
+	 * All items, in the order the server listed them.
+	 * @return A Mono that emits the items
+	 */
+	public Mono<List<T>> list() {
+		return snapshot().map(Snapshot::getItems);
+	}
+
+	/**
+	 * Look up an item by key.
+	 * @param key the item key
+	 * @return A Mono that emits the item, or completes empty if there is no such item
+	 */
+	public Mono<T> get(String key) {
+		return snapshot().flatMap(current -> Mono.justOrEmpty(current.get(key)));
+	}
+
+	/**
+	 * Fetch the catalog again, unless a refresh that started after the latest
+	 * invalidation is already running, in which case its result is shared.
+	 * @return A Mono that emits a snapshot no older than the latest invalidation
+	 */
+	public Mono<Snapshot<T>> refresh() {
+		return Mono.defer(() -> awaitGeneration(this.generation.get()));
+	}
+
+	/**
+	 * Mark the current snapshot stale.
+	 */
+	public void invalidate() {
+		this.generation.incrementAndGet();
+	}
+
+	/**
+	 * Number of times the catalog has been loaded; 0 before the first load.
+	 */
+	public long getVersion() {
+		Snapshot<T> current = this.snapshot.get();
+		return current != null ? current.version : 0;
+	}
+
+	/**
+	 * Whether the catalog was loaded and has not been invalidated since.
+	 */
+	public boolean isFresh() {
+		Snapshot<T> current = this.snapshot.get();
+		return current != null && current.generation >= this.generation.get();
+	}
+
+	/**
+	 * A refresh that started before the required generation may have missed the change,
+	 * so wait for it and then join the next one.
+	 */
+	private Mono<Snapshot<T>> awaitGeneration(long required) {
+		return join().flatMap(fetched -> fetched.generation >= required ? Mono.just(fetched)
+				: awaitGeneration(required));
+	}
+
+	/**
+	 * Join the running refresh, or start one.
+	 */
+	private Mono<Snapshot<T>> join() {
+		while (true) {
+			Mono<Snapshot<T>> running = this.inflight.get();
+			if (running != null) {
+				return running;
+			}
+			Sinks.One<Snapshot<T>> sink = Sinks.one();
+			Mono<Snapshot<T>> candidate = sink.asMono();
+			if (!this.inflight.compareAndSet(null, candidate)) {
+				continue;
+			}
+			long fetchedGeneration = this.generation.get();
+			fetchAll(null, new ArrayList<>(), new HashSet<>()).subscribe(items -> {
+				Snapshot<T> fetched = new Snapshot<>(items, this.keyFunction, this.itemParser, fetchedGeneration,
+						this.version.incrementAndGet());
+				this.snapshot.set(fetched);
+				this.inflight.compareAndSet(candidate, null);
+				logger.debug("Loaded {} {} (version {})", items.size(), this.name, fetched.version);
+				sink.tryEmitValue(fetched);
+			}, error -> {
+				this.inflight.compareAndSet(candidate, null);
+				sink.tryEmitError(error);
+			});
+			return candidate;
+		}
+	}
+
+	private Mono<List<T>> fetchAll(String cursor, List<T> items, Set<String> seenCursors) {
+		return this.pageFetcher.apply(cursor).flatMap(page -> {
+			if (page.items != null) {
+				items.addAll(page.items);
+			}
+			if (page.nextCursor == null || page.nextCursor.isEmpty()) {
+				return Mono.just(items);
+			}
+			if (!seenCursors.add(page.nextCursor)) {
+				return Mono.error(new McpError(
+						"Server returned cursor '" + page.nextCursor + "' twice while listing " + this.name));
+			}
+			return fetchAll(page.nextCursor, items, seenCursors);
+		});
+	}
+
+	/**
+	 * An immutable view of the catalog as of one refresh.
+	 */
+	public static final class Snapshot<T> {
+
+		private final List<T> items;
+
+		private final Map<String, T> index;
+
+		private final Map<String, Object> parsed;
+
+		private final long generation;
+
+		private final long version;
+
+		private Snapshot(List<T> items, Function<T, String> keyFunction, Function<T, ?> itemParser,
+				long generation, long version) {
+			Map<String, T> index = new LinkedHashMap<>();
+			Map<String, Object> parsed = new HashMap<>();
+			for (T item : items) {
+				String key = keyFunction.apply(item);
+				if (index.putIfAbsent(key, item) == null && itemParser != null) {
+					Object value = itemParser.apply(item);
+					if (value != null) {
+						parsed.put(key, value);
+					}
+				}
+			}
+			this.items = Collections.unmodifiableList(items);
+			this.index = Collections.unmodifiableMap(index);
+			this.parsed = Collections.unmodifiableMap(parsed);
+			this.generation = generation;
+			this.version = version;
+		}
+
+		public List<T> getItems() {
+			return this.items;
+		}
+
+		public T get(String key) {
+			return this.index.get(key);
+		}
+
+		public Map<String, T> asMap() {
+			return this.index;
+		}
+
+		/**
+		 * What the catalog's item parser derived from the item with the given key.
+		 * @param key the item key
+		 * @return the parsed value, or null if there is no such item or it could not be
+		 * parsed
+		 */
+		public Object getParsed(String key) {
+			return this.parsed.get(key);
+		}
+
+		public long getVersion() {
+			return this.version;
+		}
+
+	}
+
+	private static final class Page<T> {
+
+		private final List<T> items;
+
+		private final String nextCursor;
+
+		private Page(List<T> items, String nextCursor) {
+			this.items = items;
+			this.nextCursor = nextCursor;
+		}
+
+	}
+
+}
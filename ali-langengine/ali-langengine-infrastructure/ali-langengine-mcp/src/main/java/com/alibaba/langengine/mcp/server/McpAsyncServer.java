@@ -480,14 +480,14 @@ public class McpAsyncServer {
 			return Mono.error(new McpError("Server must be configured with prompt capabilities"));
 		}
 
-		if (this.prompts.containsKey(promptRegistration.getPropmpt().getName())) {
+		if (this.prompts.containsKey(promptRegistration.getPrompt().getName())) {
 			return Mono
-				.error(new McpError("Prompt with name '" + promptRegistration.getPropmpt().getName() + "' already exists"));
+				.error(new McpError("Prompt with name '" + promptRegistration.getPrompt().getName() + "' already exists"));
 		}
 
-		this.prompts.put(promptRegistration.getPropmpt().getName(), promptRegistration);
+		this.prompts.put(promptRegistration.getPrompt().getName(), promptRegistration);
 
-		logger.info("Added prompt handler: {}", promptRegistration.getPropmpt().getName());
+		logger.info("Added prompt handler: {}", promptRegistration.getPrompt().getName());
 
 		// Servers that declared the listChanged capability SHOULD send a notification,
 		// when the list of available prompts changes
@@ -539,7 +539,7 @@ public class McpAsyncServer {
 			// new TypeReference<McpSchema.PaginatedRequest>() {
 			// });
 
-			List<Prompt> promptList = this.prompts.values().stream().map(PromptRegistration::getPropmpt).collect(Collectors.toList());
+			List<Prompt> promptList = this.prompts.values().stream().map(PromptRegistration::getPrompt).collect(Collectors.toList());
 
 			return Mono.just(new ListPromptsResult(promptList, null));
 		};
@@ -399,7 +399,7 @@ public interface McpServer {
 		 */
 		public Builder prompts(List<PromptRegistration> prompts) {
 			for (PromptRegistration prompt : prompts) {
-				this.prompts.put(prompt.getPropmpt().getName(), prompt);
+				this.prompts.put(prompt.getPrompt().getName(), prompt);
 			}
 			return this;
 		}
@@ -422,7 +422,7 @@ public interface McpServer {
 		 */
 		public Builder prompts(PromptRegistration... prompts) {
 			for (PromptRegistration prompt : prompts) {
-				this.prompts.put(prompt.getPropmpt().getName(), prompt);
+				this.prompts.put(prompt.getPrompt().getName(), prompt);
 			}
 			return this;
 		}
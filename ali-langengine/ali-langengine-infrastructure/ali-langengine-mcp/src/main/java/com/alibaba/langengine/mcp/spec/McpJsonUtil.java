@@ -28,12 +28,17 @@ public class McpJsonUtil {
         JSONObject map = JSON.parseObject(jsonText);
 
         // Determine message type based on specific JSON structure
+        // message classes have no default constructor, build them explicitly
         if (map.containsKey("method") && map.containsKey("id")) {
-            return map.toJavaObject(JSONRPCRequest.class);
+            return new JSONRPCRequest(map.getString("jsonrpc"), map.getString("method"), map.getString("id"),
+                    map.get("params"));
         } else if (map.containsKey("method") && !map.containsKey("id")) {
-            return map.toJavaObject(JSONRPCNotification.class);
+            return new JSONRPCNotification(map.getString("jsonrpc"), map.getString("method"), map.get("params"));
         } else if (map.containsKey("result") || map.containsKey("error")) {
-            return map.toJavaObject(JSONRPCResponse.class);
+            JSONObject error = map.getJSONObject("error");
+            return new JSONRPCResponse(map.getString("jsonrpc"), map.getString("id"), map.get("result"),
+                    error == null ? null : new JSONRPCError(error.getInteger("code"), error.getString("message"),
+                            error.get("data")));
         }
 
         throw new IllegalArgumentException("Cannot deserialize JSONRPCMessage: " + jsonText);
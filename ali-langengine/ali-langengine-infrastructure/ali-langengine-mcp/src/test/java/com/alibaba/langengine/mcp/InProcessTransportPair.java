@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.mcp;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import com.alibaba.langengine.mcp.spec.ClientMcpTransport;
+import com.alibaba.langengine.mcp.spec.JSONRPCMessage;
+import com.alibaba.langengine.mcp.spec.ServerMcpTransport;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * A client and a server transport connected to each other in memory. Messages sent on
+ * one end are handled by the other end on a separate thread, like over a real connection.
+ */
+public class InProcessTransportPair {
+
+	private final End clientEnd = new End();
+
+	private final End serverEnd = new End();
+
+	public InProcessTransportPair() {
+		this.clientEnd.peer = this.serverEnd;
+		this.serverEnd.peer = this.clientEnd;
+	}
+
+	public ClientMcpTransport client() {
+		return this.clientEnd;
+	}
+
+	public ServerMcpTransport server() {
+		return this.serverEnd;
+	}
+
+	private static class End implements ClientMcpTransport, ServerMcpTransport {
+
+		private final Sinks.Many<JSONRPCMessage> inbound = Sinks.many().unicast().onBackpressureBuffer();
+
+		private End peer;
+
+		@Override
+		public Mono<Void> connect(Function<Mono<JSONRPCMessage>, Mono<JSONRPCMessage>> handler) {
+			return this.inbound.asFlux()
+				.publishOn(Schedulers.boundedElastic())
+				.flatMap(message -> Mono.just(message).transform(handler))
+				.then();
+		}
+
+		@Override
+		public Mono<Void> sendMessage(JSONRPCMessage message) {
+			return Mono.fromRunnable(() -> this.peer.inbound.emitNext(message,
+					Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1))));
+		}
+
+		@Override
+		public Mono<Void> closeGracefully() {
+			return Mono.fromRunnable(this.inbound::tryEmitComplete);
+		}
+
+		@Override
+		public <T> T unmarshalFrom(Object data, TypeReference<T> typeRef) {
+			return JSON.parseObject(JSON.toJSONString(data), typeRef);
+		}
+
+	}
+
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2024-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.langengine.mcp.client;
+
+import com.alibaba.fastjson.TypeReference;
+import com.alibaba.langengine.mcp.InProcessTransportPair;
+import com.alibaba.langengine.mcp.spec.DefaultMcpSession;
+import com.alibaba.langengine.mcp.spec.Implementation;
+import com.alibaba.langengine.mcp.spec.MethodDefined;
+import com.alibaba.langengine.mcp.spec.Schema;
+import com.alibaba.langengine.mcp.spec.ServerCapabilities;
+import com.alibaba.langengine.mcp.spec.schema.InitializeResult;
+import com.alibaba.langengine.mcp.spec.schema.JsonSchema;
+import com.alibaba.langengine.mcp.spec.schema.prompts.ListPromptsResult;
+import com.alibaba.langengine.mcp.spec.schema.prompts.Prompt;
+import com.alibaba.langengine.mcp.spec.schema.resources.ListResourcesResult;
+import com.alibaba.langengine.mcp.spec.schema.resources.Resource;
+import com.alibaba.langengine.mcp.spec.schema.tools.ListToolsResult;
+import com.alibaba.langengine.mcp.spec.schema.tools.Tool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@Timeout(30)
+class McpCatalogTests {
+
+	private static final String TOOLS_LIST = MethodDefined.ToolsList.getValue();
+
+	private InProcessTransportPair transports;
+
+	private TestServer server;
+
+	private McpAsyncClient client;
+
+	@BeforeEach
+	void setUp() {
+		this.transports = new InProcessTransportPair();
+		this.server = new TestServer(this.transports, 5);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (this.client != null) {
+			this.client.closeGracefully().block(Duration.ofSeconds(5));
+		}
+		this.server.session.closeGracefully().block(Duration.ofSeconds(5));
+	}
+
+	@Test
+	void testFollowsCursorsOnceAndIndexesTools() {
+		this.client = newClient(tools -> {
+		});
+		this.client.initialize().block();
+
+		Tool tool = this.client.getTool("tool-4").block();
+		assertThat(tool).isNotNull();
+		JsonSchema schema = this.client.getToolInputSchema("tool-4").block();
+		assertThat(schema.getType()).isEqualTo("object");
+		assertThat(schema.getRequired()).containsExactly("query");
+		// 5 tools, 2 per page
+		assertThat(this.server.requests(TOOLS_LIST)).isEqualTo(3);
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(this.client.getTool("tool-" + (i % 5)).block()).isNotNull();
+		}
+		assertThat(this.client.getTool("missing").blockOptional()).isEmpty();
+		assertThat(this.server.requests(TOOLS_LIST)).isEqualTo(3);
+		assertThat(this.client.getToolCatalog().getVersion()).isEqualTo(1);
+		assertThat(this.client.getToolCatalog().isFresh()).isTrue();
+	}
+
+	@Test
+	void testCachedToolsKeepTheRawInputSchema() {
+		String rawSchema = "{\"$schema\":\"http://json-schema.org/draft-07/schema#\",\"type\":\"object\","
+				+ "\"description\":\"search input\",\"$defs\":{\"q\":{\"type\":\"string\"}},"
+				+ "\"properties\":{\"query\":{\"anyOf\":[{\"$ref\":\"#/$defs/q\"},{\"type\":\"null\"}]}}}";
+		this.server.tools.clear();
+		this.server.tools.add(new Tool("search", "Search", rawSchema));
+		this.client = newClient(tools -> {
+		});
+
+		Tool tool = this.client.getTool("search").block();
+		assertThat(tool.getInputSchema()).isEqualTo(rawSchema);
+		assertThat(this.client.listTools().block().getTools().get(0).getInputSchema()).isEqualTo(rawSchema);
+		assertThat(this.client.getToolInputSchema("search").block().getType()).isEqualTo("object");
+		assertThat(this.client.getToolInputSchema("missing").blockOptional()).isEmpty();
+	}
+
+	@Test
+	void testConcurrentLookupsShareOneRefresh() {
+		this.client = newClient(tools -> {
+		});
+		this.client.initialize().block();
+		this.server.latencyMillis = 100;
+
+		List<Tool> tools = Flux.range(0, 64)
+			.flatMap(i -> this.client.getTool("tool-" + (i % 5)).subscribeOn(Schedulers.parallel()))
+			.collectList()
+			.block();
+
+		assertThat(tools).hasSize(64);
+		assertThat(this.server.requests(TOOLS_LIST)).isEqualTo(3);
+	}
+
+	@Test
+	void testListChangedServesStaleWhileRevalidating() {
+		List<List<Tool>> notified = new CopyOnWriteArrayList<>();
+		this.client = newClient(notified::add);
+		this.client.initialize().block();
+		assertThat(this.client.getToolCatalog().list().block()).hasSize(5);
+
+		this.server.latencyMillis = 300;
+		this.server.addTool(6);
+		this.server.notifyListChanged(MethodDefined.NotificationsToolsListChanged);
+		await().atMost(Duration.ofSeconds(5)).until(() -> this.server.requests(TOOLS_LIST) > 3);
+
+		// while the refresh is running, readers get the stale catalog without a round trip
+		assertThat(this.client.getToolCatalog().isFresh()).isFalse();
+		long start = System.nanoTime();
+		assertThat(this.client.getToolCatalog().list().block()).hasSize(5);
+		assertThat(this.client.getTool("tool-6").blockOptional()).isEmpty();
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(250));
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> this.client.getToolCatalog().getVersion() == 2);
+		assertThat(this.client.getTool("tool-6").block()).isNotNull();
+		assertThat(this.server.requests(TOOLS_LIST)).isEqualTo(6);
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+			assertThat(notified).hasSize(1);
+			assertThat(notified.get(0)).hasSize(6);
+		});
+	}
+
+	@Test
+	void testNotificationBurstWithConcurrentLookups() {
+		List<List<Tool>> notified = new CopyOnWriteArrayList<>();
+		this.client = newClient(notified::add);
+		this.client.initialize().block();
+		assertThat(this.client.getToolCatalog().list().block()).hasSize(5);
+
+		this.server.latencyMillis = 50;
+		this.server.addTool(6);
+		for (int i = 0; i < 20; i++) {
+			this.server.notifyListChanged(MethodDefined.NotificationsToolsListChanged);
+		}
+		List<Tool> found = Flux.range(0, 64)
+			.flatMap(i -> this.client.getTool("tool-" + (i % 5)).subscribeOn(Schedulers.parallel()))
+			.collectList()
+			.block();
+		assertThat(found).hasSize(64);
+
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+			assertThat(this.client.getToolCatalog().isFresh()).isTrue();
+			assertThat(this.client.getTool("tool-6").block()).isNotNull();
+			assertThat(notified).isNotEmpty();
+			assertThat(notified.get(notified.size() - 1)).hasSize(6);
+		});
+
+		// 20 notifications collapse into at most two refreshes of 3 pages each: the one
+		// started by the first notification, and one covering those that arrived while
+		// it was running
+		int refreshRequests = this.server.requests(TOOLS_LIST) - 3;
+		assertThat(refreshRequests).isIn(3, 6);
+		assertThat(notified.size()).isEqualTo(refreshRequests / 3);
+	}
+
+	@Test
+	void testListCallsUseCatalogsWhenServerAnnouncesListChanged() {
+		this.client = newClient(tools -> {
+		});
+		this.client.initialize().block();
+
+		for (int i = 0; i < 10; i++) {
+			ListToolsResult result = this.client.listTools().block();
+			assertThat(result.getTools()).hasSize(5);
+			assertThat(result.getNextCursor()).isNull();
+			assertThat(this.client.listResources().block().getResources()).hasSize(1);
+			assertThat(this.client.listPrompts().block().getPrompts()).hasSize(1);
+		}
+		assertThat(this.server.requests(TOOLS_LIST)).isEqualTo(3);
+		assertThat(this.server.requests(MethodDefined.ResourcesList.getValue())).isEqualTo(1);
+		assertThat(this.server.requests(MethodDefined.PromptsList.getValue())).isEqualTo(1);
+
+		// an explicit cursor still goes to the server
+		assertThat(this.client.listTools("2").block().getTools()).hasSize(2);
+		assertThat(this.server.requests(TOOLS_LIST)).isEqualTo(4);
+
+		assertThat(this.client.getResourceCatalog().get("test://resource").block()).isNotNull();
+		this.server.notifyListChanged(MethodDefined.NotificationsResourcesListChanged);
+		await().atMost(Duration.ofSeconds(5))
+			.until(() -> this.server.requests(MethodDefined.ResourcesList.getValue()) == 2);
+		assertThat(this.client.getPromptCatalog().get("test-prompt").block()).isNotNull();
+		assertThat(this.server.requests(MethodDefined.PromptsList.getValue())).isEqualTo(1);
+	}
+
+	@Test
+	void testListCallsGoToServerWithoutListChanged() {
+		this.client = newClient(tools -> {
+		});
+
+		this.client.listTools().block();
+		this.client.listTools().block();
+		assertThat(this.server.requests(TOOLS_LIST)).isEqualTo(2);
+	}
+
+	@Test
+	void testToolLookupsGoToServerWithoutListChanged() {
+		this.server.toolsListChanged = false;
+		this.client = newClient(tools -> {
+		});
+		this.client.initialize().block();
+
+		assertThat(this.client.getTool("tool-4").block()).isNotNull();
+		assertThat(this.server.requests(TOOLS_LIST)).isEqualTo(3);
+
+		// no notification will ever invalidate the catalog, so a new tool must still be seen
+		this.server.addTool(6);
+		assertThat(this.client.getTool("tool-6").block()).isNotNull();
+		assertThat(this.client.getToolInputSchema("tool-6").block().getType()).isEqualTo("object");
+		assertThat(this.server.requests(TOOLS_LIST)).isEqualTo(9);
+	}
+
+	private McpAsyncClient newClient(Consumer<List<Tool>> toolsChangeConsumer) {
+		return McpClient.using(this.transports.client())
+			.requestTimeout(Duration.ofSeconds(5))
+			.toolsChangeConsumer(toolsChangeConsumer)
+			.async();
+	}
+
+	/**
+	 * A server that pages its tools and counts the requests it receives.
+	 */
+	private static class TestServer {
+
+		private static final int PAGE_SIZE = 2;
+
+		private final List<Tool> tools = new CopyOnWriteArrayList<>();
+
+		private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+		private final InProcessTransportPair transports;
+
+		private final DefaultMcpSession session;
+
+		private volatile long latencyMillis;
+
+		private volatile boolean toolsListChanged = true;
+
+		TestServer(InProcessTransportPair transports, int toolCount) {
+			this.transports = transports;
+			for (int i = 0; i < toolCount; i++) {
+				addTool(i);
+			}
+
+			Map<String, DefaultMcpSession.RequestHandler> requestHandlers = new HashMap<>();
+			requestHandlers.put(MethodDefined.Initialize.getValue(), params -> {
+				ServerCapabilities capabilities = ServerCapabilities.builder()
+					.tools(this.toolsListChanged)
+					.resources(false, true)
+					.prompts(true)
+					.build();
+				return Mono.just(new InitializeResult(Schema.LATEST_PROTOCOL_VERSION, capabilities,
+						new Implementation("test-server", "1.0.0"), null));
+			});
+			requestHandlers.put(TOOLS_LIST, params -> {
+				int from = cursor(params);
+				int to = Math.min(from + PAGE_SIZE, this.tools.size());
+				String nextCursor = to < this.tools.size() ? String.valueOf(to) : null;
+				return respond(TOOLS_LIST, new ListToolsResult(new ArrayList<>(this.tools.subList(from, to)), nextCursor));
+			});
+			requestHandlers.put(MethodDefined.ResourcesList.getValue(),
+					params -> respond(MethodDefined.ResourcesList.getValue(), new ListResourcesResult(
+							Collections.singletonList(
+									new Resource("test://resource", "Test Resource", null, "text/plain", null)),
+							null)));
+			requestHandlers.put(MethodDefined.PromptsList.getValue(),
+					params -> respond(MethodDefined.PromptsList.getValue(), new ListPromptsResult(
+							Collections.singletonList(new Prompt("test-prompt", "Test Prompt", null)), null)));
+
+			Map<String, DefaultMcpSession.NotificationHandler> notificationHandlers = new HashMap<>();
+			notificationHandlers.put(MethodDefined.NotificationsInitialized.getValue(), params -> Mono.empty());
+
+			this.session = new DefaultMcpSession(Duration.ofSeconds(5), transports.server(), requestHandlers,
+					notificationHandlers);
+		}
+
+		void addTool(int index) {
+			this.tools.add(new Tool("tool-" + index, "Tool " + index,
+					"{\"type\":\"object\",\"properties\":{\"query\":{\"type\":\"string\"}},\"required\":[\"query\"]}"));
+		}
+
+		void notifyListChanged(MethodDefined method) {
+			this.session.sendNotification(method.getValue()).block();
+		}
+
+		int requests(String method) {
+			AtomicInteger count = this.requests.get(method);
+			return count != null ? count.get() : 0;
+		}
+
+		private Mono<Object> respond(String method, Object result) {
+			this.requests.computeIfAbsent(method, key -> new AtomicInteger()).incrementAndGet();
+			Mono<Object> response = Mono.just(result);
+			return this.latencyMillis > 0 ? response.delayElement(Duration.ofMillis(this.latencyMillis)) : response;
+		}
+
+		private int cursor(Object params) {
+			Map<String, Object> request = this.transports.server()
+				.unmarshalFrom(params, new TypeReference<Map<String, Object>>() {
+				});
+			Object cursor = request != null ? request.get("cursor") : null;
+			return cursor != null ? Integer.parseInt(cursor.toString()) : 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2024-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.langengine.mcp.server.transport;
+
+import com.alibaba.langengine.mcp.server.McpAsyncServer;
+import com.alibaba.langengine.mcp.server.McpServer;
+import com.alibaba.langengine.mcp.spec.ServerCapabilities;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link HttpServletSseServerTransport} inside an embedded Tomcat over raw sockets.
+ * The default run keeps a small number of sessions open; the load run with thousands of
+ * sessions is enabled with {@code -Dmcp.sse.load.enabled=true} and sized with
+ * {@code -Dmcp.sse.loadSessions=N}.
+ */
+public class HttpServletSseServerTransportLoadTests {
+
+	private static final String MESSAGE_ENDPOINT = "/mcp/message";
+
+	private static final int SMOKE_SESSIONS = 50;
+
+	private static final int LOAD_SESSIONS = Integer.getInteger("mcp.sse.loadSessions", 2000);
+
+	private static final Pattern ENDPOINT_PATTERN = Pattern.compile("event: endpoint\ndata: ([^\n]+)\n");
+
+	private Tomcat tomcat;
+
+	private int port;
+
+	private HttpServletSseServerTransport transport;
+
+	private McpAsyncServer server;
+
+	private final List<SseClient> clients = new ArrayList<>();
+
+	@BeforeEach
+	public void before() throws Exception {
+		startServer(new HttpServletSseServerTransport(MESSAGE_ENDPOINT));
+	}
+
+	@AfterEach
+	public void after() throws Exception {
+		for (SseClient client : clients) {
+			client.close();
+		}
+		clients.clear();
+		if (server != null) {
+			server.closeGracefully().block();
+		}
+		if (tomcat != null) {
+			tomcat.stop();
+			tomcat.destroy();
+		}
+	}
+
+	@Test
+	void testSessionsReceiveBroadcast() throws Exception {
+		assertBroadcastReachesSessions(SMOKE_SESSIONS);
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "mcp.sse.load.enabled", matches = "true")
+	void testThousandsOfSessionsReceiveBroadcast() throws Exception {
+		assertBroadcastReachesSessions(LOAD_SESSIONS);
+	}
+
+	private void assertBroadcastReachesSessions(int sessions) throws Exception {
+		for (int i = 0; i < sessions; i++) {
+			clients.add(SseClient.open(port));
+		}
+		assertThat(transport.getSessionCount()).isEqualTo(sessions);
+
+		server.notifyToolsListChanged().block();
+		for (SseClient client : clients) {
+			assertThat(client.readUntil("notifications/tools/list_changed")).isTrue();
+		}
+	}
+
+	@Test
+	void testResponsesAreRoutedToTheRequestingSession() throws Exception {
+		SseClient first = SseClient.open(port);
+		SseClient second = SseClient.open(port);
+		clients.add(first);
+		clients.add(second);
+
+		// both clients use the same request id, each must only see its own answer
+		assertThat(post(first.endpoint, "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"method\":\"tools/list\",\"params\":{}}"))
+			.isEqualTo(202);
+		assertThat(first.readUntil("\"id\":\"1\"")).isTrue();
+
+		assertThat(post(second.endpoint, "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"method\":\"ping\",\"params\":{}}"))
+			.isEqualTo(202);
+		assertThat(second.readUntil("\"id\":\"1\"")).isTrue();
+		assertThat(second.received()).doesNotContain("\"tools\"");
+		assertThat(first.readUntil("\"result\":\"\"", 300)).isFalse();
+	}
+
+	@Test
+	void testUnknownSessionIsRejected() throws Exception {
+		assertThat(post(MESSAGE_ENDPOINT + "?sessionId=missing", "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"method\":\"ping\"}"))
+			.isEqualTo(404);
+	}
+
+	@Test
+	void testIdleSessionIsEvictedDespiteHeartbeats() throws Exception {
+		restartServer(Duration.ofMillis(100), Duration.ofMillis(600));
+
+		SseClient client = SseClient.open(port);
+		clients.add(client);
+		assertThat(client.readUntil(": ping")).isTrue();
+		assertThat(client.readUntil(": ping")).isTrue();
+		assertThat(awaitSessionCount(0, 5000)).isTrue();
+	}
+
+	@Test
+	void testClientMessagesKeepSessionAlive() throws Exception {
+		restartServer(Duration.ofMillis(100), Duration.ofMillis(600));
+
+		SseClient client = SseClient.open(port);
+		clients.add(client);
+		long until = System.currentTimeMillis() + 1500;
+		int id = 0;
+		while (System.currentTimeMillis() < until) {
+			assertThat(post(client.endpoint, "{\"jsonrpc\":\"2.0\",\"id\":\"" + (++id)
+					+ "\",\"method\":\"ping\",\"params\":{}}"))
+				.isEqualTo(202);
+			Thread.sleep(150);
+		}
+		assertThat(transport.getSessionCount()).isEqualTo(1);
+
+		// once the client goes quiet only heartbeats are written, which do not count
+		assertThat(awaitSessionCount(0, 5000)).isTrue();
+	}
+
+	private void restartServer(Duration heartbeatInterval, Duration idleTimeout) throws Exception {
+		after();
+		startServer(new HttpServletSseServerTransport(MESSAGE_ENDPOINT, HttpServletSseServerTransport.DEFAULT_SSE_ENDPOINT,
+				HttpServletSseServerTransport.DEFAULT_MAX_QUEUED_EVENTS, heartbeatInterval, idleTimeout));
+	}
+
+	private boolean awaitSessionCount(int expected, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (transport.getSessionCount() != expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		return transport.getSessionCount() == expected;
+	}
+
+	private void startServer(HttpServletSseServerTransport sseTransport) throws Exception {
+		this.transport = sseTransport;
+		this.server = McpServer.using(sseTransport)
+			.serverInfo("load-test-server", "1.0.0")
+			.capabilities(ServerCapabilities.builder().tools(true).build())
+			.async();
+
+		tomcat = new Tomcat();
+		tomcat.setPort(0);
+		String baseDir = Files.createTempDirectory("mcp-sse").toString();
+		tomcat.setBaseDir(baseDir);
+		((AbstractHttp11Protocol<?>) tomcat.getConnector().getProtocolHandler()).setMaxConnections(Math.max(SMOKE_SESSIONS, LOAD_SESSIONS) * 2);
+
+		Context context = tomcat.addContext("", baseDir);
+		org.apache.catalina.Wrapper wrapper = context.createWrapper();
+		wrapper.setName("mcpServlet");
+		wrapper.setServlet(sseTransport);
+		wrapper.setLoadOnStartup(1);
+		wrapper.setAsyncSupported(true);
+		context.addChild(wrapper);
+		context.addServletMappingDecoded("/*", "mcpServlet");
+
+		tomcat.start();
+		port = tomcat.getConnector().getLocalPort();
+	}
+
+	private int post(String path, String body) throws IOException {
+		try (Socket socket = new Socket("localhost", port)) {
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			OutputStream out = socket.getOutputStream();
+			out.write(("POST " + path + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+					+ "Content-Length: " + bytes.length + "\r\nConnection: close\r\n\r\n")
+				.getBytes(StandardCharsets.UTF_8));
+			out.write(bytes);
+			out.flush();
+			byte[] status = new byte[12];
+			int read = 0;
+			InputStream in = socket.getInputStream();
+			while (read < status.length) {
+				int n = in.read(status, read, status.length - read);
+				if (n < 0) {
+					break;
+				}
+				read += n;
+			}
+			return Integer.parseInt(new String(status, 9, 3, StandardCharsets.US_ASCII));
+		}
+	}
+
+	/**
+	 * Minimal SSE client on a raw socket, so thousands of them stay cheap.
+	 */
+	private static class SseClient implements AutoCloseable {
+
+		private final Socket socket;
+
+		private final StringBuilder buffer = new StringBuilder();
+
+		private String endpoint;
+
+		private int consumed = 0;
+
+		private SseClient(Socket socket) {
+			this.socket = socket;
+		}
+
+		static SseClient open(int port) throws IOException {
+			Socket socket = new Socket("localhost", port);
+			socket.getOutputStream()
+				.write("GET /sse HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n"
+					.getBytes(StandardCharsets.UTF_8));
+			SseClient client = new SseClient(socket);
+			if (!client.readUntil("event: endpoint")) {
+				throw new IOException("no endpoint event");
+			}
+			client.readUntil("\n\n");
+			Matcher matcher = ENDPOINT_PATTERN.matcher(client.buffer);
+			if (!matcher.find()) {
+				throw new IOException("malformed endpoint event: " + client.buffer);
+			}
+			client.endpoint = matcher.group(1);
+			return client;
+		}
+
+		boolean readUntil(String marker) throws IOException {
+			return readUntil(marker, 5000);
+		}
+
+		boolean readUntil(String marker, int timeoutMillis) throws IOException {
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			byte[] chunk = new byte[4096];
+			while (true) {
+				int index = buffer.indexOf(marker, consumed);
+				if (index >= 0) {
+					consumed = index + marker.length();
+					return true;
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				socket.setSoTimeout((int) remaining);
+				try {
+					int n = socket.getInputStream().read(chunk);
+					if (n < 0) {
+						return false;
+					}
+					buffer.append(new String(chunk, 0, n, StandardCharsets.UTF_8));
+				}
+				catch (SocketTimeoutException e) {
+					return false;
+				}
+			}
+		}
+
+		String received() {
+			return buffer.toString();
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+
+	}
+
+}
@@ -16,7 +16,9 @@ import io.reactivex.functions.Function;
 
 import com.alibaba.dflow.InitEntry.Entry;
 import com.alibaba.dflow.InitEntry.RequestResender;
+import com.alibaba.dflow.config.AsyncLocalMessageChannel;
 import com.alibaba.dflow.config.GlobalStoreInterface;
+import com.alibaba.dflow.config.HashedWheelDelayManager;
 import com.alibaba.dflow.config.RetryProtectedContentStoreInterface;
 import com.alibaba.dflow.config.RetryProtectedGlobalStoreInterface;
 import com.alibaba.dflow.config.StepHandler;
@@ -719,7 +721,8 @@ public abstract class DFlow<T> implements ValidClosure {
                 }
                 SimpleMessage message = new SimpleMessage(
                     msgId,
-                    name);
+                    name,
+                    traceId);
                 //此处没有先尝试找当前设置的消息。偷懒了，由于仅仅发生在内部转换以调用，几率少，少隔离一下问题不是特别大
                 return getMessageChannel().send(message);
             }
@@ -1139,7 +1142,8 @@ public abstract class DFlow<T> implements ValidClosure {
             logger.info("DFLow trigger nextMsg:" + msgId);
             SimpleMessage message = new SimpleMessage(
                 msgId,
-                JSON.toJSONString(new CallerMessage(traceId, nextStepId)));
+                JSON.toJSONString(new CallerMessage(traceId, nextStepId)),
+                traceId);
             if (!getMessageChannel(pipelineName).send(message)) {
                 logger.error("MQ send failed:" + traceId);
                 globalError(traceId, new Exception("MQ send fail"));
@@ -1160,7 +1164,8 @@ public abstract class DFlow<T> implements ValidClosure {
             }
             SimpleMessage message = new SimpleMessage(
                 msgId,
-                JSON.toJSONString(new CallerMessage(traceId, nextStepId)));
+                JSON.toJSONString(new CallerMessage(traceId, nextStepId)),
+                traceId);
             if (!getMessageChannel(pipelineName).send(message)) {
                 logger.error("MQ send failed:" + traceId);
                 globalError(traceId, new Exception("MQ send fail"));
@@ -1413,12 +1418,24 @@ public abstract class DFlow<T> implements ValidClosure {
     }
 
     public static class SimpleMessage implements Message {
+        /**
+         * 本地通道按此header做traceId分区, 保证同一trace的消息有序
+         */
+        public static final String TRACE_ID = "TRACE_ID";
+
         private String msg;
         private MessageHeaders headers;
 
         public SimpleMessage(String id, String msg) {
+            this(id, msg, null);
+        }
+
+        public SimpleMessage(String id, String msg, String traceId) {
             HashMap map = new HashMap();
             map.put("KEYS", id);
+            if (traceId != null) {
+                map.put(TRACE_ID, traceId);
+            }
             headers = new MessageHeaders(map);
             this.msg = msg;
         }
@@ -1477,13 +1494,7 @@ public abstract class DFlow<T> implements ValidClosure {
     public static void globalInitForTest() {
         DFlow.g_testMode = true;
 
-        DFlow.setDelayManager(new DFlowDelayManager() {
-            @Override
-            protected void addTask(String idname, String traceId, long timeout) throws Exception {
-                Thread.sleep(timeout);
-                resume(idname, traceId);
-            }
-        });
+        DFlow.setDelayManager(new HashedWheelDelayManager());
         DFlow.setGlobalStorage(new GlobalStoreInterface() {
             private ConcurrentHashMap<String, AtomicLong> counter = new ConcurrentHashMap<>();
             private ConcurrentHashMap<String, String> m = new ConcurrentHashMap<>();
@@ -1578,37 +1589,7 @@ public abstract class DFlow<T> implements ValidClosure {
             }
         });
 
-        DFlow.setSubscribableChannel(new org.springframework.messaging.SubscribableChannel() {
-
-            MessageHandler handler;
-
-            @Override
-            public boolean send(Message<?> message) {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        handler.handleMessage(message);
-                    }
-                }).start();
-                return true;
-            }
-
-            @Override
-            public boolean send(Message<?> message, long timeout) {
-                return send(message);
-            }
-
-            @Override
-            public boolean subscribe(MessageHandler messageHandler) {
-                handler = messageHandler;
-                return true;
-            }
-
-            @Override
-            public boolean unsubscribe(MessageHandler messageHandler) {
-                return true;
-            }
-        });
+        DFlow.setSubscribableChannel(new AsyncLocalMessageChannel());
 
         System.out.println("TestDFLow inited");
     }
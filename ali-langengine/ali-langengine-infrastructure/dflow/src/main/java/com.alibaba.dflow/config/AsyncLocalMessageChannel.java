@@ -0,0 +1,235 @@
+package com.alibaba.dflow.config;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import com.alibaba.dflow.DFlow.SimpleMessage;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+
+/**
+ * 单机异步消息通道
+ * 消息按traceId哈希到固定数量的分区队列, 同一分区串行消费保证同一trace内有序, 不同分区在有界线程池上并发;
+ * 每个分区有容量上限, 外部发送方满时等待, 通道自身的消费线程(即DFlow步骤内触发下一步)不受限, 避免自己等自己
+ */
+public class AsyncLocalMessageChannel extends LocalMessageChannel implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncLocalMessageChannel.class);
+
+    public static final int DEFAULT_PARTITIONS = 64;
+    public static final int DEFAULT_PARTITION_CAPACITY = 1024;
+    public static final long DEFAULT_SEND_TIMEOUT_MS = 3000;
+    /**
+     * 单个分区一次调度最多处理的消息数, 之后让出线程给其他分区
+     */
+    private static final int DRAIN_BATCH = 64;
+
+    private static final ThreadLocal<AsyncLocalMessageChannel> CONSUMING = new ThreadLocal<>();
+
+    private final Partition[] partitions;
+    private final int mask;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final long sendTimeoutMs;
+    private volatile Function<Message<?>, String> partitionKey = AsyncLocalMessageChannel::defaultPartitionKey;
+    private volatile boolean closed = false;
+
+    public AsyncLocalMessageChannel() {
+        this(DEFAULT_PARTITIONS, Runtime.getRuntime().availableProcessors() * 2, DEFAULT_PARTITION_CAPACITY,
+            DEFAULT_SEND_TIMEOUT_MS);
+    }
+
+    public AsyncLocalMessageChannel(int partitions, int threads, int partitionCapacity, long sendTimeoutMs) {
+        this(partitions, newIdleTimeoutPool(threads, "dflow-local-channel-%d"), true, partitionCapacity,
+            sendTimeoutMs);
+    }
+
+    /**
+     * 非daemon线程, 空闲后自动回收: 有消息未处理时进程不会退出, 全部处理完后也不会阻止退出
+     * 每个分区同时最多只有一个调度任务, 所以任务队列长度不会超过分区数
+     */
+    static ThreadPoolExecutor newIdleTimeoutPool(int threads, String namingPattern) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new BasicThreadFactory.Builder().namingPattern(namingPattern).daemon(false).build());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @param executor 外部提供的线程池, 通道关闭时不负责关闭它
+     */
+    public AsyncLocalMessageChannel(int partitions, ExecutorService executor, int partitionCapacity,
+        long sendTimeoutMs) {
+        this(partitions, executor, false, partitionCapacity, sendTimeoutMs);
+    }
+
+    private AsyncLocalMessageChannel(int partitions, ExecutorService executor, boolean ownExecutor,
+        int partitionCapacity, long sendTimeoutMs) {
+        if (partitions <= 0 || partitionCapacity <= 0) {
+            throw new IllegalArgumentException("partitions and partitionCapacity must be positive");
+        }
+        int size = 1;
+        while (size < partitions) {
+            size <<= 1;
+        }
+        this.partitions = new Partition[size];
+        for (int i = 0; i < size; i++) {
+            this.partitions[i] = new Partition(partitionCapacity);
+        }
+        this.mask = size - 1;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    /**
+     * 自定义分区key, 默认取SimpleMessage.TRACE_ID header, 没有时退化为KEYS header
+     */
+    public void setPartitionKey(Function<Message<?>, String> partitionKey) {
+        this.partitionKey = partitionKey;
+    }
+
+    @Override
+    public boolean send(Message<?> message) {
+        return send(message, sendTimeoutMs);
+    }
+
+    @Override
+    public boolean send(Message<?> message, long timeout) {
+        if (closed) {
+            return false;
+        }
+        Partition partition = partitionOf(message);
+        boolean permit;
+        if (CONSUMING.get() == this) {
+            permit = partition.permits.tryAcquire();
+        } else {
+            try {
+                permit = timeout < 0 ? acquire(partition) : partition.permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (!permit) {
+                logger.warn("DFlow local channel partition full, message dropped:" + message.getHeaders().get("KEYS"));
+                return false;
+            }
+        }
+        partition.queue.offer(new Envelope(message, permit));
+        schedule(partition);
+        return true;
+    }
+
+    private static boolean acquire(Partition partition) throws InterruptedException {
+        partition.permits.acquire();
+        return true;
+    }
+
+    private Partition partitionOf(Message<?> message) {
+        String key = partitionKey.apply(message);
+        if (key == null) {
+            return partitions[0];
+        }
+        int h = key.hashCode();
+        return partitions[(h ^ (h >>> 16)) & mask];
+    }
+
+    static String defaultPartitionKey(Message<?> message) {
+        Object traceId = message.getHeaders().get(SimpleMessage.TRACE_ID);
+        if (traceId == null) {
+            traceId = message.getHeaders().get("KEYS");
+        }
+        return traceId == null ? null : traceId.toString();
+    }
+
+    private void schedule(Partition partition) {
+        if (partition.scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> drain(partition));
+            } catch (RuntimeException e) {
+                partition.scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain(Partition partition) {
+        CONSUMING.set(this);
+        try {
+            List<MessageHandler> current = handlers;
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                Envelope envelope = partition.queue.poll();
+                if (envelope == null) {
+                    break;
+                }
+                if (envelope.permit) {
+                    partition.permits.release();
+                }
+                for (MessageHandler handler : current) {
+                    try {
+                        handler.handleMessage(envelope.message);
+                    } catch (Throwable t) {
+                        logger.error("DFlow local channel handle failed:" + envelope.message.getHeaders().get("KEYS"), t);
+                    }
+                }
+            }
+        } finally {
+            CONSUMING.remove();
+            partition.scheduled.set(false);
+        }
+        //处理期间有新消息或者批次用完, 重新调度
+        if (!partition.queue.isEmpty() && !closed) {
+            schedule(partition);
+        }
+    }
+
+    /**
+     * 所有分区中尚未处理的消息数
+     */
+    public int pending() {
+        int n = 0;
+        for (Partition p : partitions) {
+            n += p.queue.size();
+        }
+        return n;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private static class Partition {
+        final ConcurrentLinkedQueue<Envelope> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+        final Semaphore permits;
+
+        Partition(int capacity) {
+            this.permits = new Semaphore(capacity);
+        }
+    }
+
+    private static class Envelope {
+        final Message<?> message;
+        final boolean permit;
+
+        Envelope(Message<?> message, boolean permit) {
+            this.message = message;
+            this.permit = permit;
+        }
+    }
+}
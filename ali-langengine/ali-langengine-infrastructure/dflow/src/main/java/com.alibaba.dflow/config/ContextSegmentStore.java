@@ -0,0 +1,32 @@
+package com.alibaba.dflow.config;
+
+import java.util.List;
+
+/**
+ * 增量持久化的底层存储, 每个traceId对应一个只追加的片段列表, 列表总是以一个checkpoint开头
+ * 可以用redis list / rdb表等实现
+ */
+public interface ContextSegmentStore {
+    /**
+     * 按写入顺序返回全部片段, 不存在时返回null或空列表
+     */
+    List<byte[]> read(String traceId);
+
+    /**
+     * 追加一个增量片段
+     * 仅当当前片段列表以epoch对应的checkpoint开头且片段数等于expectedCount时才写入, 判断和写入需要原子完成
+     * (例如redis用lua脚本), 片段数相同但checkpoint已被其他节点替换时不能写入
+     *
+     * @return 是否写入
+     */
+    boolean append(String traceId, long epoch, int expectedCount, byte[] segment);
+
+    /**
+     * 清空已有片段并写入新的checkpoint, 每个checkpoint的epoch都不相同
+     */
+    void reset(String traceId, long epoch, byte[] checkpoint);
+
+    void expire(String traceId);
+
+    void remove(String traceId);
+}
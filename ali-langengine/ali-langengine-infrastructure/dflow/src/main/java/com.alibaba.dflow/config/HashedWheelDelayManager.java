@@ -0,0 +1,192 @@
+package com.alibaba.dflow.config;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.alibaba.dflow.internal.DFlowDelay.DFlowDelayManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于时间轮的单机DFlowDelayManager
+ * addTask只入队不阻塞, 一个tick线程推进时间轮, 到期任务交给resume线程池执行; 进程重启后未到期任务会丢失
+ * tick线程按需启动, 没有待触发任务时退出, 因此有任务时进程不会提前退出, 空闲时也不会阻止退出
+ */
+public class HashedWheelDelayManager extends DFlowDelayManager implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(HashedWheelDelayManager.class);
+
+    public static final long DEFAULT_TICK_MS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+    private final LinkedList<Timeout>[] wheel;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final ExecutorService resumeExecutor;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final long startNanos;
+    private volatile Thread worker;
+    /**
+     * 已放入时间轮尚未触发的任务数, 只在tick线程中修改
+     */
+    private int scheduled = 0;
+    private volatile boolean closed = false;
+
+    public HashedWheelDelayManager() {
+        this(DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE, AsyncLocalMessageChannel.newIdleTimeoutPool(
+            Runtime.getRuntime().availableProcessors(), "dflow-delay-resume-%d"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashedWheelDelayManager(long tickMs, int wheelSize, ExecutorService resumeExecutor) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMs and wheelSize must be positive");
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.wheel = new LinkedList[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new LinkedList<>();
+        }
+        this.mask = size - 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.resumeExecutor = resumeExecutor;
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    protected void addTask(String idname, String traceId, long timeout) throws Exception {
+        if (closed) {
+            throw new IllegalStateException("HashedWheelDelayManager closed");
+        }
+        long deadline = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(timeout, 0));
+        pendingTimeouts.add(new Timeout(idname, traceId, deadline));
+        startWorker();
+    }
+
+    private void startWorker() {
+        if (running.compareAndSet(false, true)) {
+            Thread t = new Thread(this::run, "dflow-delay-wheel");
+            t.setDaemon(false);
+            worker = t;
+            t.start();
+        }
+    }
+
+    /**
+     * 已提交但尚未触发的任务数, 仅用于观测
+     */
+    public int pending() {
+        int n = pendingTimeouts.size();
+        synchronized (wheel) {
+            for (LinkedList<Timeout> bucket : wheel) {
+                n += bucket.size();
+            }
+        }
+        return n;
+    }
+
+    private void run() {
+        long tick = (System.nanoTime() - startNanos) / tickNanos;
+        int idleTicks = 0;
+        while (!closed) {
+            long deadline = tickNanos * (tick + 1);
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (closed) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            synchronized (wheel) {
+                transferPending(tick);
+                expire(wheel[(int)(tick & mask)], deadline);
+            }
+            tick++;
+            if (scheduled > 0 || !pendingTimeouts.isEmpty()) {
+                idleTicks = 0;
+            } else if (++idleTicks >= wheel.length) {
+                running.set(false);
+                //退出前再检查一次, 防止和addTask竞争丢任务
+                if (pendingTimeouts.isEmpty() || !running.compareAndSet(false, true)) {
+                    return;
+                }
+                idleTicks = 0;
+            }
+        }
+    }
+
+    private void transferPending(long currentTick) {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            long ticks = timeout.deadline / tickNanos;
+            //已经过期的放到当前槽, 本轮立即触发
+            long target = Math.max(ticks, currentTick);
+            timeout.remainingRounds = (target - currentTick) / wheel.length;
+            wheel[(int)(target & mask)].add(timeout);
+            scheduled++;
+        }
+    }
+
+    private void expire(LinkedList<Timeout> bucket, long deadline) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                it.remove();
+                scheduled--;
+                fire(timeout);
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    private void fire(Timeout timeout) {
+        try {
+            resumeExecutor.execute(() -> {
+                try {
+                    resume(timeout.idname, timeout.traceId);
+                } catch (Throwable t) {
+                    logger.error("DFlow delay resume failed:" + timeout.traceId, t);
+                }
+            });
+        } catch (Throwable t) {
+            logger.error("DFlow delay resume rejected:" + timeout.traceId, t);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Thread t = worker;
+        if (t != null) {
+            t.interrupt();
+        }
+        resumeExecutor.shutdown();
+    }
+
+    private static class Timeout {
+        final String idname;
+        final String traceId;
+        final long deadline;
+        long remainingRounds;
+
+        Timeout(String idname, String traceId, long deadline) {
+            this.idname = idname;
+            this.traceId = traceId;
+            this.deadline = deadline;
+        }
+    }
+}
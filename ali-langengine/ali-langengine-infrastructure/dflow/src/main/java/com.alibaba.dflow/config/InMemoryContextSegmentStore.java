@@ -0,0 +1,66 @@
+package com.alibaba.dflow.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地内存实现, 用于单机测试
+ */
+public class InMemoryContextSegmentStore implements ContextSegmentStore {
+
+    private final ConcurrentHashMap<String, Segments> segments = new ConcurrentHashMap<>();
+
+    /**
+     * 每次写入都替换为新的不可变列表, 读取不需要加锁
+     */
+    private static class Segments {
+        private final long epoch;
+        private final List<byte[]> list;
+
+        private Segments(long epoch, List<byte[]> list) {
+            this.epoch = epoch;
+            this.list = Collections.unmodifiableList(list);
+        }
+    }
+
+    @Override
+    public List<byte[]> read(String traceId) {
+        Segments current = segments.get(traceId);
+        return current == null ? Collections.emptyList() : current.list;
+    }
+
+    @Override
+    public boolean append(String traceId, long epoch, int expectedCount, byte[] segment) {
+        boolean[] appended = new boolean[1];
+        segments.computeIfPresent(traceId, (k, current) -> {
+            if (current.epoch != epoch || current.list.size() != expectedCount) {
+                return current;
+            }
+            List<byte[]> list = new ArrayList<>(current.list.size() + 1);
+            list.addAll(current.list);
+            list.add(segment);
+            appended[0] = true;
+            return new Segments(epoch, list);
+        });
+        return appended[0];
+    }
+
+    @Override
+    public void reset(String traceId, long epoch, byte[] checkpoint) {
+        List<byte[]> list = new ArrayList<>();
+        list.add(checkpoint);
+        segments.put(traceId, new Segments(epoch, list));
+    }
+
+    @Override
+    public void expire(String traceId) {
+        segments.remove(traceId);
+    }
+
+    @Override
+    public void remove(String traceId) {
+        segments.remove(traceId);
+    }
+}
@@ -0,0 +1,73 @@
+package com.alibaba.dflow.config;
+
+import java.util.List;
+
+import com.alibaba.dflow.PersistentException;
+import com.alibaba.dflow.internal.ContextStack;
+import com.alibaba.dflow.internal.ContextStackCodec;
+import com.alibaba.dflow.internal.ContextStackCodec.Encoded;
+
+/**
+ * 增量持久化的ContextStoreInterface实现
+ * 每次putContext只写入变化的global key和栈节点, 每checkpointInterval个片段写一次全量checkpoint,
+ * getContext时栈节点延迟到首次访问才反序列化
+ * 取值的类型还原规则见ContextNodeCodec, 与dump/rebuild的JSON方式略有不同
+ * 用法: DFlow.setStorage(new IncrementalContextStore(segmentStore))
+ */
+public class IncrementalContextStore implements ContextStoreInterface {
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 32;
+
+    private final ContextSegmentStore segmentStore;
+    private final int checkpointInterval;
+
+    public IncrementalContextStore(ContextSegmentStore segmentStore) {
+        this(segmentStore, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public IncrementalContextStore(ContextSegmentStore segmentStore, int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("checkpointInterval must be positive");
+        }
+        this.segmentStore = segmentStore;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    @Override
+    public ContextStack getContext(String traceId) {
+        List<byte[]> segments = segmentStore.read(traceId);
+        if (segments == null || segments.isEmpty()) {
+            return null;
+        }
+        return ContextStackCodec.decode(traceId, segments);
+    }
+
+    @Override
+    public void putContext(String key, ContextStack context) throws PersistentException {
+        //第一次写或者达到checkpointInterval, 需要全量
+        if (ContextStackCodec.canWriteDelta(context, key, checkpointInterval)) {
+            Encoded delta = ContextStackCodec.encodeDelta(context);
+            if (delta == null) {
+                return;
+            }
+            if (segmentStore.append(key, delta.getEpoch(), delta.getBaseSegmentCount(), delta.getBytes())) {
+                ContextStackCodec.commit(context, key, delta);
+                return;
+            }
+            //其他节点写过(追加了片段或者替换了checkpoint), 用全量覆盖
+        }
+        Encoded checkpoint = ContextStackCodec.encodeCheckpoint(context);
+        segmentStore.reset(key, checkpoint.getEpoch(), checkpoint.getBytes());
+        ContextStackCodec.commit(context, key, checkpoint);
+    }
+
+    @Override
+    public void expireContext(String traceId) {
+        segmentStore.expire(traceId);
+    }
+
+    @Override
+    public void removeContext(String traceId) {
+        segmentStore.remove(traceId);
+    }
+}
@@ -1,16 +1,17 @@
 package com.alibaba.dflow.config;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.SubscribableChannel;
 
+/**
+ * 单机同步消息通道, 在发送线程上直接调用handler
+ * handler列表写时复制, send时不需要再拷贝
+ */
 public class LocalMessageChannel implements SubscribableChannel {
-    private ArrayList<MessageHandler> handlers = new ArrayList<>();
+    protected final CopyOnWriteArrayList<MessageHandler> handlers = new CopyOnWriteArrayList<>();
 
     public LocalMessageChannel() {}
 
@@ -27,13 +28,12 @@ public class LocalMessageChannel implements SubscribableChannel {
 
     @Override
     public boolean send(Message<?> message) {
-        ((ArrayList<MessageHandler>)handlers.clone()).forEach(x->x.handleMessage(message));
+        handlers.forEach(x->x.handleMessage(message));
         return true;
     }
 
     @Override
     public boolean send(Message<?> message, long l) {
-        ((ArrayList<MessageHandler>)handlers.clone()).forEach(x->x.handleMessage(message));
-        return true;
+        return send(message);
     }
-};
\ No newline at end of file
+};
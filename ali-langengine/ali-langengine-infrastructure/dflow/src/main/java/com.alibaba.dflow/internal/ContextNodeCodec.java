@@ -0,0 +1,241 @@
+package com.alibaba.dflow.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.alibaba.dflow.internal.ContextStack.ContextNode;
+import com.alibaba.fastjson.JSON;
+
+/**
+ * ContextNode及global取值的紧凑二进制编码
+ * 常见类型(String/Integer/Long/Double/Boolean/String[]/Map/List)直接按类型编码并原样还原,
+ * Map还原为LinkedHashMap, List还原为ArrayList, 其余对象退化为JSON字符串并按JSON.parse还原
+ * 注意与dump/rebuild的JSON方式不完全一致: JSON方式会把能放进int的Long还原为Integer, Double还原为BigDecimal,
+ * Map/List/String[]还原为JSONObject/JSONArray
+ * 无序Map按key排序编码, 保证相同内容得到相同的字节和指纹
+ */
+public class ContextNodeCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte BOOL = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte STRING_ARRAY = 6;
+    private static final byte MAP = 7;
+    private static final byte LIST = 8;
+    private static final byte JSON_VALUE = 9;
+
+    private ContextNodeCodec() {}
+
+    public static byte[] encodeNode(Map<String, Object> node) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeMap(out, node);
+        } catch (IOException e) {
+            throw new IllegalStateException("encode ContextNode failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ContextNode decodeNode(byte[] data) {
+        ContextNode node = new ContextNode();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String key = readString(in);
+                node.put(key, readValue(in));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("decode ContextNode failed", e);
+        }
+        return node;
+    }
+
+    public static byte[] encodeValue(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeValue(out, value);
+        } catch (IOException e) {
+            throw new IllegalStateException("encode value failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Object decodeValue(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            return readValue(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("decode value failed", e);
+        }
+    }
+
+    /**
+     * 64位FNV-1a, 用于判断节点或取值是否变化
+     */
+    public static long fingerprint(byte[] data) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : data) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 取值是否不可变, 同一个不可变对象没有被替换时不需要重新编码
+     * String[]只作为子任务id列表整体设置, 也按不可变处理
+     */
+    public static boolean isImmutable(Object value) {
+        return value == null
+            || value instanceof String
+            || value instanceof Integer
+            || value instanceof Long
+            || value instanceof Boolean
+            || value instanceof Double
+            || value instanceof Float
+            || value instanceof Short
+            || value instanceof Byte
+            || value instanceof Character
+            || value instanceof BigDecimal
+            || value instanceof BigInteger
+            || value instanceof Enum
+            || value instanceof String[];
+    }
+
+    public static boolean hasOnlyImmutableValues(Map<String, Object> node) {
+        for (Object value : node.values()) {
+            if (!isImmutable(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+        if (!(map instanceof LinkedHashMap) && !(map instanceof SortedMap)) {
+            TreeMap<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            map = sorted;
+        }
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeString(out, String.valueOf(entry.getKey()));
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String)value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer)value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long)value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOL);
+            out.writeBoolean((Boolean)value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double)value);
+        } else if (value instanceof String[]) {
+            String[] array = (String[])value;
+            out.writeByte(STRING_ARRAY);
+            out.writeInt(array.length);
+            for (String s : array) {
+                writeValue(out, s);
+            }
+        } else if (value instanceof Map) {
+            out.writeByte(MAP);
+            writeMap(out, (Map<?, ?>)value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>)value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object o : list) {
+                writeValue(out, o);
+            }
+        } else {
+            out.writeByte(JSON_VALUE);
+            writeString(out, JSON.toJSONString(value));
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case BOOL:
+                return in.readBoolean();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING_ARRAY: {
+                String[] array = new String[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = (String)readValue(in);
+                }
+                return array;
+            }
+            case MAP: {
+                int size = in.readInt();
+                LinkedHashMap<String, Object> map = new LinkedHashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    String key = readString(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            case LIST: {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case JSON_VALUE:
+                return JSON.parse(readString(in));
+            default:
+                throw new IOException("unknown value type " + type);
+        }
+    }
+}
@@ -3,7 +3,10 @@ package com.alibaba.dflow.internal;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
@@ -29,6 +32,20 @@ public class ContextStack{
     private HashMap<String,Object> global = new HashMap<>();
 
     private Stack<ContextNode> stack = new Stack<>();
+    private byte[][] lazyNodes;
+
+    /**
+     * 增量持久化状态: 上次写入的key/checkpoint epoch/片段数, global各key的取值和指纹,
+     * 以及各栈节点的实例/修改次数/指纹, 由ContextStackCodec维护
+     */
+    String persistedKey;
+    long persistedEpoch;
+    int persistedSegmentCount;
+    HashMap<String,Long> persistedGlobalHashes;
+    HashMap<String,Object> persistedGlobalValues;
+    ContextNode[] persistedNodes;
+    int[] persistedNodeVersions;
+    long[] persistedNodeHashes;
 
     private static HashSet<String> INNERKEYS = new HashSet<String>(){{
         this.add(ContextNode.ID);
@@ -42,7 +59,7 @@ public class ContextStack{
         ContextStack stack  =new ContextStack();
         stack.setId(this.getId());
         stack.global = (HashMap<String, Object>)this.global.clone();
-        stack.stack = (Stack<ContextNode>)this.stack.clone();
+        stack.stack = (Stack<ContextNode>)this.stack().clone();
         return stack;
     }
 
@@ -50,7 +67,7 @@ public class ContextStack{
         HashMap<String,Object> res = new HashMap<>();
         res.put("id",getId());
         res.put("global",JSON.toJSONString(global));
-        res.put("stack",JSON.toJSONString(stack));
+        res.put("stack",JSON.toJSONString(stack()));
         return JSON.toJSONString(res);
     }
 
@@ -67,7 +84,7 @@ public class ContextStack{
 
     public ContextNode findNodeByDebugName(String debugName){
         if(debugName == null){return null;}
-        for(ContextNode n : stack){
+        for(ContextNode n : stack()){
             if(debugName.equals(n.getDebugname())){
                 return n;
             }
@@ -76,42 +93,75 @@ public class ContextStack{
     }
 
     void setName(String name){
-        stack.peek().setName(name);
+        stack().peek().setName(name);
     }
     public String getName(){
-        if(stack.empty()){
+        if(stack().empty()){
             return null;
         }
-        return stack.peek().getName();
+        return stack().peek().getName();
     }
 
     void setChildTask(String[] childTask){
-        if(stack.empty()){
+        if(stack().empty()){
             return;
         }
-        stack.peek().setChildTask(childTask);
+        stack().peek().setChildTask(childTask);
     }
 
     public Stack<ContextNode> getStack(){
-        return stack;
+        return stack();
     }
 
     void pop(){
-        if(stack.empty()){
+        if(stack().empty()){
             return;
         }
-        stack.pop();
+        stack().pop();
     }
 
     void setClosureData(String key,HashMap<String,Object> closureData){
-        this.stack.peek().setClosure(key,closureData);
+        stack().peek().setClosure(key,closureData);
     }
     HashMap<String,Object> getClosureData(String key){
-        return this.stack.peek().getClosure(key);
+        return stack().peek().getClosure(key);
     }
 
     void setStack(Stack<ContextNode> stack){
         this.stack = stack;
+        this.lazyNodes = null;
+    }
+
+    /**
+     * 增量持久化加载时栈节点保持为二进制, 首次访问时才解码
+     */
+    Stack<ContextNode> stack(){
+        byte[][] nodes = lazyNodes;
+        if(nodes != null){
+            Stack<ContextNode> decoded = new Stack<>();
+            for(byte[] node : nodes){
+                decoded.push(ContextNodeCodec.decodeNode(node));
+            }
+            stack = decoded;
+            lazyNodes = null;
+            if(persistedNodeHashes != null && persistedNodeHashes.length == nodes.length){
+                persistedNodes = decoded.toArray(new ContextNode[nodes.length]);
+                persistedNodeVersions = new int[nodes.length];
+                for(int i = 0; i < nodes.length; i++){
+                    persistedNodeVersions[i] = persistedNodes[i].version;
+                }
+            }
+        }
+        return stack;
+    }
+
+    void setLazyNodes(byte[][] nodes){
+        this.stack = new Stack<>();
+        this.lazyNodes = nodes;
+    }
+
+    byte[][] getLazyNodes(){
+        return lazyNodes;
     }
 
     public void put(String key,Object o) {
@@ -119,7 +169,7 @@ public class ContextStack{
     }
 
     void setStatus(String status){
-        stack.peek().setStatus(status);
+        stack().peek().setStatus(status);
     }
     public String getErrorMsg(){
         return String.valueOf(global.get(ERROR_MSG));
@@ -180,42 +230,42 @@ public class ContextStack{
     }
 
     String getStatus(){
-        int i = stack.size();
+        int i = stack().size();
         if(i > 0) {
-            return stack.peek().getStatus();
+            return stack().peek().getStatus();
         }
         return null;
     }
 
     Object getResult(){
-        int i = stack.size();
+        int i = stack().size();
         if(i > 0){
-            return stack.get(i-1).getRet();
+            return stack().get(i-1).getRet();
         }
         return null;
     }
 
     Object getParam(){
-        int i = stack.size();
+        int i = stack().size();
         if(i > 0){
-            return stack.get(i-1).getParam();
+            return stack().get(i-1).getParam();
         }
         return null;
     }
     void setResult(Object o){
-        stack.peek().setRet(o);
+        stack().peek().setRet(o);
     }
 
     void push(ContextNode node){
-        stack.push(node);
+        stack().push(node);
     }
 
     void addAll(ContextStack stack){
-        this.stack.addAll(stack.stack);
+        stack().addAll(stack.stack());
     }
 
     int size(){
-        return stack.size();
+        return stack().size();
     }
 
     public String get(String key){
@@ -238,13 +288,13 @@ public class ContextStack{
     }
 
     public void setIP(String IP) {
-        stack.peek().setIP(IP);
+        stack().peek().setIP(IP);
     }
     public String getIP(){
-        if(stack.isEmpty()){
+        if(stack().isEmpty()){
             return InternalHelper.getIp();
         }
-        return stack.peek().getIP();
+        return stack().peek().getIP();
     }
 
 
@@ -265,6 +315,93 @@ public class ContextStack{
         public static final String TOTAL_SIZE = "SCATTER_TOTAL_CHILDSIZE";
         public static final String PARALLEL = "SCATTER_IS_PARALLEL";
 
+        /**
+         * 修改次数, 增量持久化据此判断节点是否需要重新编码
+         * 只统计通过Map方法对节点本身的修改, 取值对象内部的修改由ContextStackCodec另行处理
+         */
+        transient int version;
+
+        @Override
+        public Object put(String key, Object value) {
+            version++;
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ?> m) {
+            version++;
+            super.putAll(m);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            version++;
+            return super.remove(key);
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            version++;
+            return super.remove(key, value);
+        }
+
+        @Override
+        public void clear() {
+            version++;
+            super.clear();
+        }
+
+        @Override
+        public Object putIfAbsent(String key, Object value) {
+            version++;
+            return super.putIfAbsent(key, value);
+        }
+
+        @Override
+        public Object replace(String key, Object value) {
+            version++;
+            return super.replace(key, value);
+        }
+
+        @Override
+        public boolean replace(String key, Object oldValue, Object newValue) {
+            version++;
+            return super.replace(key, oldValue, newValue);
+        }
+
+        @Override
+        public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+            version++;
+            return super.computeIfAbsent(key, mappingFunction);
+        }
+
+        @Override
+        public Object computeIfPresent(String key,
+            BiFunction<? super String, ? super Object, ?> remappingFunction) {
+            version++;
+            return super.computeIfPresent(key, remappingFunction);
+        }
+
+        @Override
+        public Object compute(String key,
+            BiFunction<? super String, ? super Object, ?> remappingFunction) {
+            version++;
+            return super.compute(key, remappingFunction);
+        }
+
+        @Override
+        public Object merge(String key, Object value,
+            BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            version++;
+            return super.merge(key, value, remappingFunction);
+        }
+
+        @Override
+        public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+            version++;
+            super.replaceAll(function);
+        }
+
         public Integer getCurrentIndex(){
             return (Integer)get(CURRENT_INDEX);
         }
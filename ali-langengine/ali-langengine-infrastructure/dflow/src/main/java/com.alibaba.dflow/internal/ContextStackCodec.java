@@ -0,0 +1,376 @@
+package com.alibaba.dflow.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.alibaba.dflow.internal.ContextStack.ContextNode;
+
+/**
+ * ContextStack增量持久化编码
+ * 片段分为全量checkpoint和增量delta两种, 增量只包含变化/删除的global key以及变化的栈节点,
+ * 解码时global立即还原, 栈节点保持二进制直到首次访问
+ * 每个checkpoint带一个随机epoch, 增量只能追加在同一epoch且片段数一致的序列之后, 避免并发写入时的ABA问题
+ * 增量编码时, 没有被替换的不可变global取值, 以及实例和修改次数都没变且只包含不可变取值的栈节点不会重新编码;
+ * 其余取值重新编码后按指纹判断是否变化, 所以取值对象被原地修改也能写入
+ */
+public class ContextStackCodec {
+
+    private static final byte CHECKPOINT = 1;
+    private static final byte DELTA = 2;
+
+    private ContextStackCodec() {}
+
+    /**
+     * 一次编码的结果, 写入成功后通过commit记录到ContextStack上
+     */
+    public static class Encoded {
+        private final byte[] bytes;
+        private final boolean checkpoint;
+        private final long epoch;
+        private final int baseSegmentCount;
+        private final HashMap<String, Long> globalHashes;
+        private final HashMap<String, Object> globalValues;
+        private final ContextNode[] nodes;
+        private final int[] nodeVersions;
+        private final long[] nodeHashes;
+
+        Encoded(byte[] bytes, boolean checkpoint, long epoch, int baseSegmentCount,
+            HashMap<String, Long> globalHashes, HashMap<String, Object> globalValues, ContextNode[] nodes,
+            int[] nodeVersions, long[] nodeHashes) {
+            this.bytes = bytes;
+            this.checkpoint = checkpoint;
+            this.epoch = epoch;
+            this.baseSegmentCount = baseSegmentCount;
+            this.globalHashes = globalHashes;
+            this.globalValues = globalValues;
+            this.nodes = nodes;
+            this.nodeVersions = nodeVersions;
+            this.nodeHashes = nodeHashes;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public boolean isCheckpoint() {
+            return checkpoint;
+        }
+
+        /**
+         * 所属checkpoint的epoch
+         */
+        public long getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * 增量写入前存储中应有的片段数, checkpoint为0
+         */
+        public int getBaseSegmentCount() {
+            return baseSegmentCount;
+        }
+    }
+
+    /**
+     * 是否可以基于上次持久化的状态写增量
+     *
+     * @param context 待写入的上下文
+     * @param key 存储key
+     * @param maxSegmentCount 片段数达到该值时需要写checkpoint
+     */
+    public static boolean canWriteDelta(ContextStack context, String key, int maxSegmentCount) {
+        return context.persistedGlobalHashes != null
+            && key.equals(context.persistedKey)
+            && context.persistedEpoch != 0
+            && context.persistedSegmentCount > 0
+            && context.persistedSegmentCount < maxSegmentCount;
+    }
+
+    public static Encoded encodeCheckpoint(ContextStack context) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        long epoch = newEpoch();
+        HashMap<String, Long> globalHashes = new HashMap<>();
+        HashMap<String, Object> globalValues = new HashMap<>();
+        ContextNode[] nodes = null;
+        int[] nodeVersions = null;
+        long[] nodeHashes;
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(CHECKPOINT);
+            out.writeLong(epoch);
+            out.writeBoolean(context.getId() != null);
+            if (context.getId() != null) {
+                ContextNodeCodec.writeString(out, context.getId());
+            }
+            out.writeInt(context.getGlobal().size());
+            for (Map.Entry<String, Object> entry : context.getGlobal().entrySet()) {
+                byte[] value = ContextNodeCodec.encodeValue(entry.getValue());
+                globalHashes.put(entry.getKey(), ContextNodeCodec.fingerprint(value));
+                globalValues.put(entry.getKey(), entry.getValue());
+                ContextNodeCodec.writeString(out, entry.getKey());
+                writeBytes(out, value);
+            }
+            byte[][] lazyNodes = context.getLazyNodes();
+            if (lazyNodes == null) {
+                Stack<ContextNode> stack = context.stack();
+                nodes = stack.toArray(new ContextNode[stack.size()]);
+                nodeVersions = new int[nodes.length];
+            }
+            int size = lazyNodes != null ? lazyNodes.length : nodes.length;
+            nodeHashes = new long[size];
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                byte[] node;
+                if (lazyNodes != null) {
+                    node = lazyNodes[i];
+                } else {
+                    nodeVersions[i] = nodes[i].version;
+                    node = ContextNodeCodec.encodeNode(nodes[i]);
+                }
+                nodeHashes[i] = ContextNodeCodec.fingerprint(node);
+                writeBytes(out, node);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("encode ContextStack checkpoint failed", e);
+        }
+        return new Encoded(bytes.toByteArray(), true, epoch, 0, globalHashes, globalValues, nodes, nodeVersions,
+            nodeHashes);
+    }
+
+    /**
+     * 编码相对上次持久化的增量, 没有任何变化时返回null
+     */
+    public static Encoded encodeDelta(ContextStack context) {
+        HashMap<String, Long> globalHashes = new HashMap<>();
+        HashMap<String, Object> globalValues = new HashMap<>();
+        List<String> changedKeys = new ArrayList<>();
+        List<byte[]> changedValues = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : context.getGlobal().entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            globalValues.put(key, value);
+            Long old = context.persistedGlobalHashes.get(key);
+            if (old != null && value == context.persistedGlobalValues.get(key) && ContextNodeCodec.isImmutable(value)) {
+                globalHashes.put(key, old);
+                continue;
+            }
+            byte[] encoded = ContextNodeCodec.encodeValue(value);
+            long hash = ContextNodeCodec.fingerprint(encoded);
+            globalHashes.put(key, hash);
+            if (old == null || old != hash) {
+                changedKeys.add(key);
+                changedValues.add(encoded);
+            }
+        }
+        List<String> removedKeys = new ArrayList<>();
+        for (String key : context.persistedGlobalHashes.keySet()) {
+            if (!globalHashes.containsKey(key)) {
+                removedKeys.add(key);
+            }
+        }
+
+        long[] oldNodeHashes = context.persistedNodeHashes;
+        ContextNode[] oldNodes = context.persistedNodes;
+        int[] oldNodeVersions = context.persistedNodeVersions;
+        ContextNode[] nodes;
+        int[] nodeVersions;
+        long[] nodeHashes;
+        List<Integer> changedIndexes = new ArrayList<>();
+        List<byte[]> changedNodes = new ArrayList<>();
+        if (context.getLazyNodes() != null) {
+            // 栈从未被访问过, 不可能有变化
+            nodes = oldNodes;
+            nodeVersions = oldNodeVersions;
+            nodeHashes = oldNodeHashes;
+        } else {
+            Stack<ContextNode> stack = context.stack();
+            nodes = stack.toArray(new ContextNode[stack.size()]);
+            nodeVersions = new int[nodes.length];
+            nodeHashes = new long[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                ContextNode node = nodes[i];
+                nodeVersions[i] = node.version;
+                boolean persisted = i < oldNodeHashes.length;
+                if (persisted && oldNodes != null && oldNodes[i] == node && oldNodeVersions[i] == node.version
+                    && ContextNodeCodec.hasOnlyImmutableValues(node)) {
+                    nodeHashes[i] = oldNodeHashes[i];
+                    continue;
+                }
+                byte[] encoded = ContextNodeCodec.encodeNode(node);
+                nodeHashes[i] = ContextNodeCodec.fingerprint(encoded);
+                if (!persisted || oldNodeHashes[i] != nodeHashes[i]) {
+                    changedIndexes.add(i);
+                    changedNodes.add(encoded);
+                }
+            }
+        }
+
+        if (changedKeys.isEmpty() && removedKeys.isEmpty() && changedIndexes.isEmpty()
+            && nodeHashes.length == oldNodeHashes.length) {
+            // 没有需要写入的内容, 但节点实例和修改次数可能变了, 记下来避免下次重复编码
+            context.persistedGlobalValues = globalValues;
+            context.persistedNodes = nodes;
+            context.persistedNodeVersions = nodeVersions;
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(DELTA);
+            out.writeInt(removedKeys.size());
+            for (String key : removedKeys) {
+                ContextNodeCodec.writeString(out, key);
+            }
+            out.writeInt(changedKeys.size());
+            for (int i = 0; i < changedKeys.size(); i++) {
+                ContextNodeCodec.writeString(out, changedKeys.get(i));
+                writeBytes(out, changedValues.get(i));
+            }
+            out.writeInt(nodeHashes.length);
+            out.writeInt(changedIndexes.size());
+            for (int i = 0; i < changedIndexes.size(); i++) {
+                out.writeInt(changedIndexes.get(i));
+                writeBytes(out, changedNodes.get(i));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("encode ContextStack delta failed", e);
+        }
+        return new Encoded(bytes.toByteArray(), false, context.persistedEpoch, context.persistedSegmentCount,
+            globalHashes, globalValues, nodes, nodeVersions, nodeHashes);
+    }
+
+    /**
+     * 写入成功后记录持久化状态, 之后的写入可以基于此计算增量
+     */
+    public static void commit(ContextStack context, String key, Encoded encoded) {
+        context.persistedKey = key;
+        context.persistedEpoch = encoded.epoch;
+        context.persistedSegmentCount = encoded.baseSegmentCount + 1;
+        context.persistedGlobalHashes = encoded.globalHashes;
+        context.persistedGlobalValues = encoded.globalValues;
+        context.persistedNodes = encoded.nodes;
+        context.persistedNodeVersions = encoded.nodeVersions;
+        context.persistedNodeHashes = encoded.nodeHashes;
+    }
+
+    /**
+     * 按顺序回放片段还原ContextStack, 第一个片段必须是checkpoint
+     */
+    public static ContextStack decode(String key, List<byte[]> segments) {
+        String id = null;
+        long epoch = 0;
+        HashMap<String, Object> global = new HashMap<>();
+        HashMap<String, Long> globalHashes = new HashMap<>();
+        List<byte[]> nodes = new ArrayList<>();
+        boolean hasCheckpoint = false;
+        try {
+            for (byte[] segment : segments) {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(segment));
+                byte kind = in.readByte();
+                if (kind == CHECKPOINT) {
+                    hasCheckpoint = true;
+                    global.clear();
+                    globalHashes.clear();
+                    nodes.clear();
+                    epoch = in.readLong();
+                    id = in.readBoolean() ? ContextNodeCodec.readString(in) : null;
+                    int globalSize = in.readInt();
+                    for (int i = 0; i < globalSize; i++) {
+                        readGlobal(in, global, globalHashes);
+                    }
+                    int stackSize = in.readInt();
+                    for (int i = 0; i < stackSize; i++) {
+                        nodes.add(readBytes(in));
+                    }
+                } else if (kind == DELTA) {
+                    if (!hasCheckpoint) {
+                        throw new IllegalStateException("context " + key + " has delta without checkpoint");
+                    }
+                    int removed = in.readInt();
+                    for (int i = 0; i < removed; i++) {
+                        String removedKey = ContextNodeCodec.readString(in);
+                        global.remove(removedKey);
+                        globalHashes.remove(removedKey);
+                    }
+                    int changed = in.readInt();
+                    for (int i = 0; i < changed; i++) {
+                        readGlobal(in, global, globalHashes);
+                    }
+                    int stackSize = in.readInt();
+                    while (nodes.size() > stackSize) {
+                        nodes.remove(nodes.size() - 1);
+                    }
+                    int changedNodes = in.readInt();
+                    for (int i = 0; i < changedNodes; i++) {
+                        int index = in.readInt();
+                        byte[] node = readBytes(in);
+                        if (index < nodes.size()) {
+                            nodes.set(index, node);
+                        } else {
+                            nodes.add(node);
+                        }
+                    }
+                } else {
+                    throw new IllegalStateException("context " + key + " has unknown segment type " + kind);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("decode context " + key + " failed", e);
+        }
+        if (!hasCheckpoint) {
+            return null;
+        }
+
+        ContextStack context = new ContextStack();
+        context.setId(id);
+        context.getGlobal().putAll(global);
+        byte[][] lazyNodes = nodes.toArray(new byte[nodes.size()][]);
+        long[] nodeHashes = new long[lazyNodes.length];
+        for (int i = 0; i < lazyNodes.length; i++) {
+            nodeHashes[i] = ContextNodeCodec.fingerprint(lazyNodes[i]);
+        }
+        context.setLazyNodes(lazyNodes);
+        context.persistedKey = key;
+        context.persistedEpoch = epoch;
+        context.persistedSegmentCount = segments.size();
+        context.persistedGlobalHashes = globalHashes;
+        context.persistedGlobalValues = new HashMap<>(context.getGlobal());
+        context.persistedNodeHashes = nodeHashes;
+        return context;
+    }
+
+    private static void readGlobal(DataInputStream in, HashMap<String, Object> global,
+        HashMap<String, Long> globalHashes) throws IOException {
+        String key = ContextNodeCodec.readString(in);
+        byte[] value = readBytes(in);
+        global.put(key, ContextNodeCodec.decodeValue(value));
+        globalHashes.put(key, ContextNodeCodec.fingerprint(value));
+    }
+
+    private static long newEpoch() {
+        long epoch;
+        do {
+            epoch = ThreadLocalRandom.current().nextLong();
+        } while (epoch == 0);
+        return epoch;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return b;
+    }
+}
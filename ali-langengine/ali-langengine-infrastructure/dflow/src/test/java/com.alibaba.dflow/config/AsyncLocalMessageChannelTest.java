@@ -0,0 +1,162 @@
+package com.alibaba.dflow.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import com.alibaba.dflow.DFlow.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncLocalMessageChannelTest {
+
+    @Test
+    public void testMessagesOfOneTraceStayOrdered() throws Exception {
+        int traces = 32;
+        int steps = 100;
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(traces * steps);
+        Random random = new Random(20240601);
+        try (AsyncLocalMessageChannel channel = new AsyncLocalMessageChannel(16, 4, 1024, 3000)) {
+            channel.subscribe(message -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                String[] parts = ((String)message.getPayload()).split(":");
+                received.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(Integer.parseInt(parts[1]));
+                if (random.nextInt(20) == 0) {
+                    sleep(1);
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+
+            // 每个trace由一个发送线程按顺序发送, 多个trace并发发送
+            ExecutorService senders = Executors.newFixedThreadPool(8);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < traces; t++) {
+                String traceId = "trace" + t;
+                futures.add(senders.submit(() -> {
+                    for (int step = 0; step < steps; step++) {
+                        assertTrue(channel.send(new SimpleMessage("key", traceId + ":" + step, traceId)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            senders.shutdown();
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        }
+
+        assertEquals(traces, received.size());
+        for (Map.Entry<String, List<Integer>> entry : received.entrySet()) {
+            List<Integer> order = entry.getValue();
+            assertEquals(steps, order.size(), entry.getKey());
+            for (int i = 0; i < steps; i++) {
+                assertEquals(i, order.get(i).intValue(), entry.getKey());
+            }
+        }
+        // 不同trace在多个线程上并发处理
+        assertTrue(maxRunning.get() > 1, "max concurrent handlers " + maxRunning.get());
+    }
+
+    @Test
+    public void testFullPartitionBlocksThenRejectsOutsideSender() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Object> handled = new ArrayList<>();
+        try (AsyncLocalMessageChannel channel = new AsyncLocalMessageChannel(1, 1, 2, 200)) {
+            channel.subscribe(message -> {
+                entered.countDown();
+                await(release);
+                synchronized (handled) {
+                    handled.add(message.getPayload());
+                }
+            });
+
+            assertTrue(channel.send(new SimpleMessage("key", "m0", "trace")));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            // m0已被取出处理, 队列里还能放2条
+            assertTrue(channel.send(new SimpleMessage("key", "m1", "trace")));
+            assertTrue(channel.send(new SimpleMessage("key", "m2", "trace")));
+            long start = System.nanoTime();
+            assertFalse(channel.send(new SimpleMessage("key", "m3", "trace")));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+            assertEquals(2, channel.pending());
+
+            // 消费后腾出空间, 等待中的发送方可以继续
+            release.countDown();
+            assertTrue(channel.send(new SimpleMessage("key", "m4", "trace"), 5000));
+            waitUntil(() -> channel.pending() == 0);
+        }
+        waitUntil(() -> {
+            synchronized (handled) {
+                return handled.size() == 4;
+            }
+        });
+        synchronized (handled) {
+            assertEquals(Arrays.asList("m0", "m1", "m2", "m4"), handled);
+        }
+    }
+
+    @Test
+    public void testSendFromWorkerIsNotBlockedByFullPartition() throws Exception {
+        CountDownLatch done = new CountDownLatch(11);
+        try (AsyncLocalMessageChannel channel = new AsyncLocalMessageChannel(1, 1, 1, 60_000)) {
+            channel.subscribe(message -> {
+                // 步骤内触发下一步: 分区容量只有1, 但消费线程自己的发送不能等待自己
+                if ("start".equals(message.getPayload())) {
+                    for (int i = 0; i < 10; i++) {
+                        assertTrue(channel.send(new SimpleMessage("key", "next" + i, "trace")));
+                    }
+                }
+                done.countDown();
+            });
+            assertTrue(channel.send(new SimpleMessage("key", "start", "trace")));
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testClosedChannelRejectsMessages() {
+        AsyncLocalMessageChannel channel = new AsyncLocalMessageChannel(1, 1, 1, 100);
+        channel.close();
+        assertFalse(channel.send(new SimpleMessage("key", "m", "trace")));
+    }
+
+    static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.alibaba.dflow.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static com.alibaba.dflow.config.AsyncLocalMessageChannelTest.waitUntil;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedWheelDelayManagerTest {
+
+    @Test
+    public void testTasksFireAfterTheirDelayInOrder() throws Exception {
+        // 时间轮一圈只有40ms, 更长的延迟要转多圈
+        RecordingDelayManager manager = new RecordingDelayManager(5, 8);
+        try {
+            long[] delays = {0, 30, 70, 150, 300};
+            long start = System.nanoTime();
+            for (int i = delays.length - 1; i >= 0; i--) {
+                manager.addTask("step", "trace" + delays[i], delays[i]);
+            }
+            waitUntil(() -> manager.fired.size() == delays.length);
+
+            List<String> order = new ArrayList<>();
+            for (long delay : delays) {
+                String traceId = "trace" + delay;
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(manager.fired.get(traceId) - start);
+                assertTrue(elapsedMs >= delay, traceId + " fired after " + elapsedMs + "ms");
+                assertTrue(elapsedMs < delay + 200, traceId + " fired after " + elapsedMs + "ms");
+                order.add(traceId);
+            }
+            order.sort((a, b) -> Long.compare(manager.fired.get(a), manager.fired.get(b)));
+            assertEquals(Arrays.asList("trace0", "trace30", "trace70", "trace150", "trace300"), order);
+            assertEquals(0, manager.pending());
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void testWorkerStopsWhenIdleAndRestartsOnNewTask() throws Exception {
+        RecordingDelayManager manager = new RecordingDelayManager(5, 8);
+        try {
+            manager.addTask("step", "first", 10);
+            waitUntil(() -> manager.fired.containsKey("first"));
+            // 空转一圈(8个tick)后tick线程退出
+            waitUntil(() -> !wheelThreadAlive());
+
+            manager.addTask("step", "second", 10);
+            waitUntil(() -> manager.fired.containsKey("second"));
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void testClosedManagerRejectsTasks() {
+        RecordingDelayManager manager = new RecordingDelayManager(5, 8);
+        manager.close();
+        assertThrows(IllegalStateException.class, () -> manager.addTask("step", "trace", 10));
+    }
+
+    private static boolean wheelThreadAlive() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("dflow-delay-wheel") && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 记录每个trace被恢复的时间, 不真正恢复DFlow
+     */
+    private static class RecordingDelayManager extends HashedWheelDelayManager {
+        final ConcurrentHashMap<String, Long> fired = new ConcurrentHashMap<>();
+
+        RecordingDelayManager(long tickMs, int wheelSize) {
+            super(tickMs, wheelSize, AsyncLocalMessageChannel.newIdleTimeoutPool(2, "dflow-delay-test-%d"));
+        }
+
+        @Override
+        protected void resume(String idname, String traceId) {
+            fired.put(traceId, System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.alibaba.dflow.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.alibaba.dflow.PersistentException;
+import com.alibaba.dflow.internal.ContextStack;
+import com.alibaba.dflow.internal.ContextStack.ContextNode;
+import org.junit.jupiter.api.Test;
+
+import static com.alibaba.dflow.internal.ContextStackCodecTest.canonical;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalContextStoreTest {
+
+    @Test
+    public void testReplayAcrossCheckpointBoundaries() throws PersistentException {
+        InMemoryContextSegmentStore segmentStore = new InMemoryContextSegmentStore();
+        IncrementalContextStore store = new IncrementalContextStore(segmentStore, 3);
+        ContextStack context = new ContextStack();
+        context.setId("trace");
+
+        List<Integer> segmentCounts = new ArrayList<>();
+        for (int step = 0; step < 12; step++) {
+            mutate(context, step);
+            store.putContext("trace", context);
+            segmentCounts.add(segmentStore.read("trace").size());
+
+            ContextStack loaded = store.getContext("trace");
+            assertEquals(canonical(context), canonical(loaded), "step " + step);
+            // 隔一步换成从存储加载的上下文继续写, 覆盖在解码结果上写增量的路径
+            if (step % 2 == 1) {
+                context = loaded;
+            }
+        }
+        assertEquals(Arrays.asList(1, 2, 3, 1, 2, 3, 1, 2, 3, 1, 2, 3), segmentCounts);
+    }
+
+    @Test
+    public void testUnchangedContextWritesNothing() throws PersistentException {
+        InMemoryContextSegmentStore segmentStore = new InMemoryContextSegmentStore();
+        IncrementalContextStore store = new IncrementalContextStore(segmentStore);
+        ContextStack context = new ContextStack();
+        mutate(context, 0);
+        store.putContext("trace", context);
+        store.putContext("trace", context);
+        store.getContext("trace").getStack();
+        store.putContext("trace", store.getContext("trace"));
+        assertEquals(1, segmentStore.read("trace").size());
+    }
+
+    @Test
+    public void testReplacedCheckpointWithSameSegmentCountIsDetected() throws PersistentException {
+        InMemoryContextSegmentStore segmentStore = new InMemoryContextSegmentStore();
+        IncrementalContextStore store = new IncrementalContextStore(segmentStore, 3);
+        ContextStack writerA = new ContextStack();
+        writerA.setId("trace");
+        mutate(writerA, 0);
+        store.putContext("trace", writerA);
+        mutate(writerA, 1);
+        store.putContext("trace", writerA);
+
+        // B基于两个片段的状态加载, A随后写到checkpoint之后又回到两个片段
+        ContextStack writerB = store.getContext("trace");
+        for (int step = 2; step < 5; step++) {
+            mutate(writerA, step);
+            store.putContext("trace", writerA);
+        }
+        assertEquals(2, segmentStore.read("trace").size());
+
+        writerB.put("writer", "B");
+        store.putContext("trace", writerB);
+        // B不能把增量追加到A的checkpoint之后, 只能整体覆盖
+        assertEquals(1, segmentStore.read("trace").size());
+        assertEquals(canonical(writerB), canonical(store.getContext("trace")));
+    }
+
+    private static void mutate(ContextStack context, int step) {
+        context.put("step", step);
+        if (step % 3 == 0) {
+            ContextNode node = new ContextNode();
+            node.setName("node-" + step);
+            node.setStatus(ContextStack.STATUS_BEGIN);
+            node.setParam(Arrays.asList("p", step));
+            context.getStack().push(node);
+        } else if (step % 3 == 1) {
+            context.getStack().peek().setStatus(ContextStack.STATUS_END);
+            context.getStack().peek().setRet("ret-" + step);
+            context.put("removable", step);
+        } else {
+            context.getGlobal().remove("removable");
+            if (context.getStack().size() > 2) {
+                context.getStack().pop();
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.alibaba.dflow.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.alibaba.dflow.internal.ContextStack.ContextNode;
+import com.alibaba.dflow.internal.ContextStackCodec.Encoded;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContextStackCodecTest {
+
+    @Test
+    public void testCheckpointRoundTripKeepsTypes() {
+        ContextStack context = new ContextStack();
+        context.setId("trace-1");
+        context.put("int", 1);
+        context.put("long", 2L);
+        context.put("double", 1.5d);
+        context.put("bool", true);
+        context.put("nil", null);
+        context.put("list", new ArrayList<>(Arrays.asList("a", 1, 3L)));
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("b", 2);
+        map.put("a", Collections.singletonMap("nested", 4L));
+        context.put("map", map);
+        context.put("array", new String[] {"x", "y"});
+        context.push(node("step-1", "END"));
+        context.push(node("step-2", "BEGIN"));
+
+        Encoded checkpoint = ContextStackCodec.encodeCheckpoint(context);
+        ContextStack decoded = ContextStackCodec.decode("trace-1", Collections.singletonList(checkpoint.getBytes()));
+
+        assertEquals("trace-1", decoded.getId());
+        // 类型原样还原, 不会像JSON方式那样把Long变成Integer
+        assertEquals(Integer.valueOf(1), decoded.getGlobal().get("int"));
+        assertEquals(Long.valueOf(2L), decoded.getGlobal().get("long"));
+        assertEquals(Double.valueOf(1.5d), decoded.getGlobal().get("double"));
+        assertEquals(Boolean.TRUE, decoded.getGlobal().get("bool"));
+        assertTrue(decoded.getGlobal().containsKey("nil"));
+        assertEquals(Arrays.asList("a", 1, 3L), decoded.getGlobal().get("list"));
+        assertTrue(decoded.getGlobal().get("map") instanceof LinkedHashMap);
+        assertArrayEquals(new String[] {"x", "y"}, (String[])decoded.getGlobal().get("array"));
+        assertEquals(canonical(context), canonical(decoded));
+        assertEquals("BEGIN", decoded.getStack().peek().getStatus());
+    }
+
+    @Test
+    public void testMapEncodingIsCanonical() {
+        HashMap<String, Object> small = new HashMap<>();
+        HashMap<String, Object> large = new HashMap<>(1024);
+        for (int i = 0; i < 20; i++) {
+            small.put("key" + i, i);
+            large.put("key" + (19 - i), 19 - i);
+        }
+        assertArrayEquals(ContextNodeCodec.encodeValue(small), ContextNodeCodec.encodeValue(large));
+
+        // 解码后再编码得到相同的字节, 指纹不会因为迭代顺序变化
+        byte[] encoded = ContextNodeCodec.encodeValue(small);
+        Object decoded = ContextNodeCodec.decodeValue(encoded);
+        assertTrue(decoded instanceof LinkedHashMap);
+        assertArrayEquals(encoded, ContextNodeCodec.encodeValue(decoded));
+
+        LinkedHashMap<String, Object> ordered = new LinkedHashMap<>();
+        ordered.put("z", 1);
+        ordered.put("a", 2);
+        assertEquals(Arrays.asList("z", "a"),
+            new ArrayList<>(((Map<?, ?>)ContextNodeCodec.decodeValue(ContextNodeCodec.encodeValue(ordered))).keySet()));
+    }
+
+    @Test
+    public void testDeltaOnlyContainsChangedNodes() {
+        ContextStack context = new ContextStack();
+        context.setId("trace-2");
+        for (int i = 0; i < 50; i++) {
+            context.push(node("step-" + i, "END"));
+        }
+        Encoded checkpoint = ContextStackCodec.encodeCheckpoint(context);
+        ContextStackCodec.commit(context, "trace-2", checkpoint);
+        assertNull(ContextStackCodec.encodeDelta(context));
+
+        context.setStatus("RETRYING");
+        Encoded delta = ContextStackCodec.encodeDelta(context);
+        assertNotNull(delta);
+        int nodeSize = ContextNodeCodec.encodeNode(context.getStack().peek()).length;
+        assertTrue(delta.getBytes().length < nodeSize + 64, "delta " + delta.getBytes().length);
+        assertEquals(checkpoint.getEpoch(), delta.getEpoch());
+        assertEquals(1, delta.getBaseSegmentCount());
+        ContextStackCodec.commit(context, "trace-2", delta);
+
+        ContextStack decoded = ContextStackCodec.decode("trace-2",
+            Arrays.asList(checkpoint.getBytes(), delta.getBytes()));
+        assertEquals(canonical(context), canonical(decoded));
+    }
+
+    @Test
+    public void testValuesMutatedInPlaceAreStillWritten() {
+        ContextStack context = new ContextStack();
+        HashMap<String, Object> data = new HashMap<>();
+        context.put("data", data);
+        ContextNode node = node("step", "BEGIN");
+        List<Object> ret = new ArrayList<>();
+        node.setRet(ret);
+        context.push(node);
+        List<byte[]> segments = new ArrayList<>();
+        Encoded checkpoint = ContextStackCodec.encodeCheckpoint(context);
+        segments.add(checkpoint.getBytes());
+        ContextStackCodec.commit(context, "trace-3", checkpoint);
+
+        // 没有经过put, 只修改了取值对象本身
+        data.put("x", 1);
+        ret.add("done");
+        Encoded delta = ContextStackCodec.encodeDelta(context);
+        assertNotNull(delta);
+        segments.add(delta.getBytes());
+
+        ContextStack decoded = ContextStackCodec.decode("trace-3", segments);
+        assertEquals(Collections.singletonMap("x", 1), decoded.getGlobal().get("data"));
+        assertEquals(Collections.singletonList("done"), decoded.getStack().peek().getRet());
+    }
+
+    @Test
+    public void testGlobalRemovalAndReplacement() {
+        ContextStack context = new ContextStack();
+        context.put("keep", "same");
+        context.put("drop", 1);
+        context.put("change", 1L);
+        List<byte[]> segments = new ArrayList<>();
+        Encoded checkpoint = ContextStackCodec.encodeCheckpoint(context);
+        segments.add(checkpoint.getBytes());
+        ContextStackCodec.commit(context, "trace-4", checkpoint);
+
+        context.getGlobal().remove("drop");
+        context.put("change", 2L);
+        context.put("added", "new");
+        Encoded delta = ContextStackCodec.encodeDelta(context);
+        segments.add(delta.getBytes());
+
+        ContextStack decoded = ContextStackCodec.decode("trace-4", segments);
+        assertEquals(canonical(context), canonical(decoded));
+        assertFalse(decoded.getGlobal().containsKey("drop"));
+    }
+
+    static ContextNode node(String name, String status) {
+        ContextNode node = new ContextNode();
+        node.setName(name);
+        node.setId(name + "-id");
+        node.setStatus(status);
+        node.setStartTime(1000L);
+        node.setParam("param-" + name);
+        return node;
+    }
+
+    /**
+     * 与Map实现类和迭代顺序无关的比较形式
+     */
+    public static Object canonical(ContextStack context) {
+        List<Object> nodes = new ArrayList<>();
+        for (ContextNode node : context.getStack()) {
+            nodes.add(canonical(node));
+        }
+        return Arrays.asList(context.getId(), canonical(context.getGlobal()), nodes);
+    }
+
+    static Object canonical(Object value) {
+        if (value instanceof Map) {
+            TreeMap<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), canonical(entry.getValue()));
+            }
+            return sorted;
+        }
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object o : (List<?>)value) {
+                list.add(canonical(o));
+            }
+            return list;
+        }
+        if (value instanceof String[]) {
+            return Arrays.asList((String[])value);
+        }
+        return value;
+    }
+}